@@ -0,0 +1,379 @@
+package io.github.sogoagain.simple_mp3player;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+// < Id3TagReader >
+// 음원 파일의 ID3 태그에서 제목, 아티스트, 앨범, 트랙 번호, 재생 시간을 읽는 클래스
+// 파일 전체를 읽지 않고 FileChannel의 위치 지정 읽기(read(ByteBuffer, position))로 필요한 부분만 읽는다.
+// 1. ID3v2: 파일 앞의 태그 헤더를 읽고, 프레임 헤더들을 차례로 읽으며 필요한 텍스트 프레임의 내용만 읽는다.
+//           앨범 아트(APIC) 같은 다른 프레임은 헤더의 크기만큼 건너뛴다.
+// 2. ID3v1: 파일 끝의 128바이트 블록을 읽어 ID3v2에 없던 정보를 채운다.
+// 3. 재생 시간: TLEN 프레임이 없으면 태그 바로 뒤 첫 MPEG 오디오 프레임의 헤더(와 Xing/Info 헤더)로 추정한다.
+//            MPEG 오디오 파일(.mp3)에서만 추정한다. (다른 형식의 오디오 데이터에서도 프레임 헤더처럼 보이는 바이트가 흔히 나온다.)
+// 태그가 없는 정보는 null(문자열) 또는 -1(숫자)이다.
+class Id3TagReader {
+
+    // < Tag >
+    // 음원 파일에서 읽은 태그 정보
+    static class Tag {
+        String title;
+        String artist;
+        String album;
+        int trackNumber = -1;
+        long durationMs = -1;       // 재생 시간 (TLEN 프레임 또는 MPEG 헤더로 추정한 값)
+
+        private boolean isComplete() {
+            return title != null && artist != null && album != null && trackNumber >= 0 && durationMs >= 0;
+        }
+    }
+
+    private static final int ID3V1_SIZE = 128;              // ID3v1 블록 크기
+    private static final int MAX_TEXT_FRAME_SIZE = 4 * 1024;    // 읽을 텍스트 프레임의 최대 크기
+    private static final int MPEG_SYNC_SEARCH = 4 * 1024;   // 태그 뒤에서 MPEG 프레임 헤더를 찾을 범위
+    private static final int MAX_MPEG_FRAME_SIZE = 1441;    // Layer III 프레임의 최대 크기 (MPEG1, 320kbps, 32kHz, 패딩)
+    private static final String MPEG_EXTENSION = ".mp3";    // 재생 시간을 MPEG 헤더로 추정할 파일의 확장자
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    private static final Charset[] TEXT_ENCODINGS = {
+            ISO_8859_1, Charset.forName("UTF-16"), Charset.forName("UTF-16BE"), Charset.forName("UTF-8") };
+
+    // 읽을 프레임 종류
+    private static final int FIELD_TITLE = 0;
+    private static final int FIELD_ARTIST = 1;
+    private static final int FIELD_ALBUM = 2;
+    private static final int FIELD_TRACK = 3;
+    private static final int FIELD_LENGTH = 4;
+    private static final String[] FRAME_IDS = { "TIT2", "TPE1", "TALB", "TRCK", "TLEN" };       // ID3v2.3, v2.4
+    private static final String[] FRAME_IDS_V22 = { "TT2", "TP1", "TAL", "TRK", "TLE" };       // ID3v2.2
+
+    // MPEG Layer III 비트레이트(kbps)와 샘플레이트(Hz) 표
+    private static final int[] BITRATES_V1_L3 = { 0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320 };
+    private static final int[] BITRATES_V2_L3 = { 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 };
+    private static final int[] SAMPLE_RATES_V1 = { 44100, 48000, 32000 };
+
+    private Id3TagReader() {
+    }
+
+    // < read() >
+    // 음원 파일의 태그를 읽는다. 파일을 읽지 못하면 null을 반환한다.
+    static Tag read(File file) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            long fileSize = channel.size();
+
+            Tag tag = new Tag();
+            long audioStart = readId3v2(channel, fileSize, tag);
+            long audioEnd = readId3v1(channel, fileSize, tag) ? fileSize - ID3V1_SIZE : fileSize;
+            if(tag.durationMs < 0 && file.getName().toLowerCase(Locale.US).endsWith(MPEG_EXTENSION))
+                tag.durationMs = estimateDuration(channel, audioStart, audioEnd);
+            return tag;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            if(raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    // < readId3v2() >
+    // 파일 앞의 ID3v2 태그에서 필요한 텍스트 프레임들을 읽는다. 오디오 데이터가 시작되는 위치(태그가 없으면 0)를 반환한다.
+    // ID3v2.3의 태그 전체 unsynchronisation은 프레임 내용에만 되돌린다. (프레임 헤더에는 0xFF가 거의 나오지 않는다.)
+    // 압축되거나 암호화된 프레임은 건너뛴다.
+    private static long readId3v2(FileChannel channel, long fileSize, Tag tag) throws IOException {
+        ByteBuffer header = readAt(channel, 0, 10);
+        if(header.remaining() < 10 || header.get(0) != 'I' || header.get(1) != 'D' || header.get(2) != '3')
+            return 0;
+
+        int majorVersion = header.get(3);
+        int flags = header.get(5) & 0xFF;
+        int tagSize = readSyncsafe(header, 6);
+        if(tagSize < 0)
+            return 0;
+        long framesEnd = Math.min(10L + tagSize, fileSize);
+        long audioStart = 10L + tagSize + ((majorVersion == 4 && (flags & 0x10) != 0) ? 10 : 0);
+        if(majorVersion < 2 || majorVersion > 4)
+            return audioStart;
+
+        boolean isUnsynchronised = (flags & 0x80) != 0;
+        long position = 10;
+        // 확장 헤더를 건너뛴다. (v2.3은 크기에 자신의 4바이트가 빠져있고, v2.4는 syncsafe 정수이다.)
+        if(majorVersion >= 3 && (flags & 0x40) != 0) {
+            ByteBuffer extHeader = readAt(channel, position, 4);
+            if(extHeader.remaining() < 4)
+                return audioStart;
+            int extHeaderSize = (majorVersion == 3) ? extHeader.getInt(0) + 4 : readSyncsafe(extHeader, 0);
+            if(extHeaderSize < 4)
+                return audioStart;
+            position += extHeaderSize;
+        }
+
+        String[] frameIds = (majorVersion == 2) ? FRAME_IDS_V22 : FRAME_IDS;
+        int frameHeaderSize = (majorVersion == 2) ? 6 : 10;
+        while(position + frameHeaderSize <= framesEnd && !tag.isComplete()) {
+            ByteBuffer frameHeader = readAt(channel, position, frameHeaderSize);
+            if(frameHeader.remaining() < frameHeaderSize || frameHeader.get(0) == 0)
+                break;      // 패딩
+
+            String frameId;
+            int frameSize;
+            int formatFlags = 0;
+            if(majorVersion == 2) {
+                frameId = new String(new byte[] { frameHeader.get(0), frameHeader.get(1), frameHeader.get(2) }, ISO_8859_1);
+                frameSize = ((frameHeader.get(3) & 0xFF) << 16) | ((frameHeader.get(4) & 0xFF) << 8) | (frameHeader.get(5) & 0xFF);
+            } else {
+                frameId = new String(new byte[] { frameHeader.get(0), frameHeader.get(1), frameHeader.get(2), frameHeader.get(3) }, ISO_8859_1);
+                frameSize = (majorVersion == 4) ? readSyncsafe(frameHeader, 4) : frameHeader.getInt(4);
+                formatFlags = frameHeader.get(9) & 0xFF;
+            }
+            if(frameSize <= 0 || position + frameHeaderSize + frameSize > framesEnd)
+                break;
+
+            int field = indexOf(frameIds, frameId);
+            if(field >= 0 && frameSize <= MAX_TEXT_FRAME_SIZE) {
+                int dataOffset = 0;
+                boolean isFrameUnsynchronised = isUnsynchronised;
+                boolean isReadable = true;
+                if(majorVersion == 3) {
+                    isReadable = (formatFlags & 0xC0) == 0;     // 압축, 암호화
+                } else if(majorVersion == 4) {
+                    isReadable = (formatFlags & 0x0C) == 0;     // 압축, 암호화
+                    isFrameUnsynchronised |= (formatFlags & 0x02) != 0;
+                    if((formatFlags & 0x01) != 0)
+                        dataOffset = 4;                         // 데이터 길이 표시
+                }
+
+                if(isReadable && frameSize > dataOffset) {
+                    ByteBuffer body = readAt(channel, position + frameHeaderSize + dataOffset, frameSize - dataOffset);
+                    byte[] data = new byte[body.remaining()];
+                    body.get(data);
+                    if(isFrameUnsynchronised)
+                        data = resynchronise(data);
+                    setField(tag, field, decodeText(data), false);
+                }
+            }
+            position += frameHeaderSize + frameSize;
+        }
+        return audioStart;
+    }
+
+    // < readId3v1() >
+    // 파일 끝의 ID3v1(.1) 블록을 읽어 ID3v2에서 찾지 못한 정보만 채운다. ID3v1 블록이 있으면 true를 반환한다.
+    private static boolean readId3v1(FileChannel channel, long fileSize, Tag tag) throws IOException {
+        if(fileSize < ID3V1_SIZE)
+            return false;
+        ByteBuffer block = readAt(channel, fileSize - ID3V1_SIZE, ID3V1_SIZE);
+        if(block.remaining() < ID3V1_SIZE || block.get(0) != 'T' || block.get(1) != 'A' || block.get(2) != 'G')
+            return false;
+
+        byte[] bytes = new byte[ID3V1_SIZE];
+        block.get(bytes);
+        setField(tag, FIELD_TITLE, decodeLatin1(bytes, 3, 30), true);
+        setField(tag, FIELD_ARTIST, decodeLatin1(bytes, 33, 30), true);
+        setField(tag, FIELD_ALBUM, decodeLatin1(bytes, 63, 30), true);
+        // ID3v1.1: 주석의 29번째 바이트가 0이고 30번째 바이트가 0이 아니면 트랙 번호이다.
+        if(tag.trackNumber < 0 && bytes[125] == 0 && bytes[126] != 0)
+            tag.trackNumber = bytes[126] & 0xFF;
+        return true;
+    }
+
+    // < estimateDuration() >
+    // 오디오 데이터 앞부분에서 MPEG Layer III 프레임 헤더를 찾아 재생 시간을 추정한다.
+    // 프레임 헤더처럼 보이는 바이트가 우연히 나올 수 있으므로, 그 프레임 길이만큼 뒤에 같은 형식(버전, 레이어, 샘플레이트)의
+    // 프레임 헤더가 이어지는 경우만 (또는 그 프레임에서 오디오 데이터가 끝나는 경우만) 프레임으로 인정한다.
+    // Xing/Info 헤더에 프레임 수가 있으면(VBR) 프레임 수로 계산하고, 없으면 첫 프레임의 비트레이트로(CBR) 계산한다.
+    // 이어지는 두 프레임을 찾지 못하면 -1을 반환한다.
+    private static long estimateDuration(FileChannel channel, long audioStart, long audioEnd) throws IOException {
+        if(audioEnd - audioStart < 4)
+            return -1;
+        int audioSize = (int) Math.min(audioEnd - audioStart, MPEG_SYNC_SEARCH + MAX_MPEG_FRAME_SIZE + 4);
+        ByteBuffer buffer = readAt(channel, audioStart, audioSize);
+
+        for(int i = 0; i + 4 <= buffer.limit() && i < MPEG_SYNC_SEARCH; i++) {
+            int frameSize = getFrameSize(buffer, i);
+            if(frameSize < 0)
+                continue;
+
+            // 다음 프레임 헤더를 확인한다. (패딩과 비트레이트는 프레임마다 다를 수 있으므로 비교하지 않는다.)
+            int next = i + frameSize;
+            if(next + 4 <= buffer.limit()) {
+                if(getFrameSize(buffer, next) < 0
+                        || (buffer.get(next + 1) & 0xFE) != (buffer.get(i + 1) & 0xFE)
+                        || (buffer.get(next + 2) & 0x0C) != (buffer.get(i + 2) & 0x0C))
+                    continue;
+            } else if(audioStart + next != audioEnd) {
+                continue;
+            }
+
+            int versionBits = (buffer.get(i + 1) >> 3) & 0x03;     // 0: MPEG2.5, 2: MPEG2, 3: MPEG1
+            int bitrateIndex = (buffer.get(i + 2) >> 4) & 0x0F;
+            int sampleRateIndex = (buffer.get(i + 2) >> 2) & 0x03;
+            int channelMode = (buffer.get(i + 3) >> 6) & 0x03;     // 3: 모노
+
+            boolean isMpeg1 = versionBits == 3;
+            int sampleRate = getSampleRate(versionBits, sampleRateIndex);
+            int samplesPerFrame = isMpeg1 ? 1152 : 576;
+            int bitrate = (isMpeg1 ? BITRATES_V1_L3 : BITRATES_V2_L3)[bitrateIndex];
+
+            // Xing/Info 헤더는 사이드 정보 바로 뒤에 있다.
+            int sideInfoSize = isMpeg1 ? (channelMode == 3 ? 17 : 32) : (channelMode == 3 ? 9 : 17);
+            int xing = i + 4 + sideInfoSize;
+            if(xing + 12 <= buffer.limit()) {
+                int marker = buffer.getInt(xing);
+                if((marker == 0x58696E67 || marker == 0x496E666F) && (buffer.getInt(xing + 4) & 0x01) != 0) {   // "Xing", "Info"
+                    long numOfFrames = buffer.getInt(xing + 8) & 0xFFFFFFFFL;
+                    return numOfFrames * samplesPerFrame * 1000 / sampleRate;
+                }
+            }
+            return (audioEnd - audioStart - i) * 8 / bitrate;
+        }
+        return -1;
+    }
+
+    // < getFrameSize() >
+    // position 위치의 4바이트가 MPEG Layer III 프레임 헤더이면 프레임 크기(헤더 포함)를 반환하고, 아니면 -1을 반환한다.
+    private static int getFrameSize(ByteBuffer buffer, int position) {
+        if((buffer.get(position) & 0xFF) != 0xFF || (buffer.get(position + 1) & 0xE0) != 0xE0)
+            return -1;
+
+        int versionBits = (buffer.get(position + 1) >> 3) & 0x03;
+        int layerBits = (buffer.get(position + 1) >> 1) & 0x03;    // 1: Layer III
+        int bitrateIndex = (buffer.get(position + 2) >> 4) & 0x0F;
+        int sampleRateIndex = (buffer.get(position + 2) >> 2) & 0x03;
+        int padding = (buffer.get(position + 2) >> 1) & 0x01;
+        if(versionBits == 1 || layerBits != 1 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3)
+            return -1;
+
+        boolean isMpeg1 = versionBits == 3;
+        int bitrate = (isMpeg1 ? BITRATES_V1_L3 : BITRATES_V2_L3)[bitrateIndex];
+        return (isMpeg1 ? 144 : 72) * bitrate * 1000 / getSampleRate(versionBits, sampleRateIndex) + padding;
+    }
+
+    private static int getSampleRate(int versionBits, int sampleRateIndex) {
+        return SAMPLE_RATES_V1[sampleRateIndex] / (versionBits == 3 ? 1 : (versionBits == 2 ? 2 : 4));
+    }
+
+    // < setField() >
+    // 프레임에서 읽은 값을 태그에 기록한다. onlyIfMissing이 true이면 아직 비어있는 값만 채운다.
+    private static void setField(Tag tag, int field, String value, boolean onlyIfMissing) {
+        if(value == null)
+            return;
+        switch(field) {
+            case FIELD_TITLE:
+                if(!onlyIfMissing || tag.title == null)
+                    tag.title = value;
+                break;
+            case FIELD_ARTIST:
+                if(!onlyIfMissing || tag.artist == null)
+                    tag.artist = value;
+                break;
+            case FIELD_ALBUM:
+                if(!onlyIfMissing || tag.album == null)
+                    tag.album = value;
+                break;
+            case FIELD_TRACK:
+                // "3/12" 형식이면 앞의 숫자만 읽는다.
+                int trackNumber = parseLeadingInt(value);
+                if(trackNumber >= 0)
+                    tag.trackNumber = trackNumber;
+                break;
+            case FIELD_LENGTH:
+                int durationMs = parseLeadingInt(value);
+                if(durationMs > 0)
+                    tag.durationMs = durationMs;
+                break;
+        }
+    }
+
+    // < decodeText() >
+    // ID3v2 텍스트 프레임의 내용을 첫 바이트의 인코딩으로 디코딩한다.
+    // 값이 여러 개이면(v2.4, null로 구분) 첫 번째 값만 반환한다. 비어있으면 null을 반환한다.
+    private static String decodeText(byte[] data) {
+        if(data.length < 2 || data[0] < 0 || data[0] >= TEXT_ENCODINGS.length)
+            return null;
+        String text = new String(data, 1, data.length - 1, TEXT_ENCODINGS[data[0]]);
+        int end = text.indexOf('\u0000');
+        if(end >= 0)
+            text = text.substring(0, end);
+        text = text.trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    private static String decodeLatin1(byte[] bytes, int offset, int length) {
+        int end = offset;
+        while(end < offset + length && bytes[end] != 0)
+            end++;
+        String text = new String(bytes, offset, end - offset, ISO_8859_1).trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    // < resynchronise() >
+    // unsynchronisation으로 0xFF 뒤에 끼워넣은 0x00을 제거한다.
+    private static byte[] resynchronise(byte[] data) {
+        byte[] result = new byte[data.length];
+        int length = 0;
+        for(int i = 0; i < data.length; i++) {
+            result[length++] = data[i];
+            if(data[i] == (byte) 0xFF && i + 1 < data.length && data[i + 1] == 0)
+                i++;
+        }
+        byte[] trimmed = new byte[length];
+        System.arraycopy(result, 0, trimmed, 0, length);
+        return trimmed;
+    }
+
+    // < readAt() >
+    // position 위치부터 length 바이트를 읽는다. 파일 끝에 닿으면 읽은 만큼만 반환한다.
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer, position + buffer.position()) < 0)
+                break;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // 7비트씩 나눠 기록된 syncsafe 정수를 읽는다. 형식이 잘못되었으면 -1을 반환한다.
+    private static int readSyncsafe(ByteBuffer buffer, int offset) {
+        int value = 0;
+        for(int i = 0; i < 4; i++) {
+            int b = buffer.get(offset + i) & 0xFF;
+            if((b & 0x80) != 0)
+                return -1;
+            value = (value << 7) | b;
+        }
+        return value;
+    }
+
+    private static int parseLeadingInt(String value) {
+        int result = 0;
+        int i = 0;
+        while(i < value.length() && i < 9 && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+            result = result * 10 + (value.charAt(i) - '0');
+            i++;
+        }
+        return (i == 0) ? -1 : result;
+    }
+
+    private static int indexOf(String[] array, String value) {
+        for(int i = 0; i < array.length; i++) {
+            if(array[i].equals(value))
+                return i;
+        }
+        return -1;
+    }
+}
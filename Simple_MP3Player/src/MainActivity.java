@@ -7,6 +7,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
+import android.os.AsyncTask;
 import android.os.Environment;
 import android.os.IBinder;
 import android.support.v4.app.ActivityCompat;
@@ -18,8 +19,9 @@ import android.view.View;
 import android.widget.*;
 
 import java.io.File;
-import java.io.FilenameFilter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -30,7 +32,11 @@ public class MainActivity extends AppCompatActivity {
     private ImageButton m_startButton, m_pauseButton;   // 재생, 일시정지 버튼
 
     private ArrayList<String> m_listMusicTitle; // 노래파일명(확장자제외)들을 담고있는 ArrayList
-    private File[] m_musicFiles;    // 공용 MUSIC 디렉터리 안에 있는 mp3 파일들
+    private ArrayAdapter<String> m_listViewAdapter; // m_listMusicTitle을 리스트 뷰에 보여주는 어댑터
+    private MusicLibrary m_library;         // MUSIC 디렉터리의 음원 목록을 보관하는 라이브러리 색인
+    private ReconcileTask m_reconcileTask;  // 라이브러리 색인을 MUSIC 디렉터리와 맞추는 AsyncTask
+    private File[] m_musicFiles;    // 공용 MUSIC 디렉터리와 하위 디렉터리 안에 있는 음원 파일들
+    private HashMap<String, Integer> m_musicIndexByPath = new HashMap<>();  // 음원 파일 경로 -> m_musicFiles에서의 인덱스
     private int m_numOfMusic;       // 음원 갯수
     private int m_selectedMusicIndex = 0;   // 현재 선택된 음원의 인덱스
 
@@ -70,6 +76,10 @@ public class MainActivity extends AppCompatActivity {
             // MusicService.ICallback 객체 등록
             m_service.registerCallback(m_callback); //콜백 등록
 
+            // 서비스가 시작된 뒤 노래 목록이 바뀌었을 수 있으므로 지금 목록을 알려준다.
+            if(m_musicFiles != null)
+                m_service.updateMusicFiles(m_musicFiles, getMusicTitles());
+
             // 엑티비티에서 재생중이라고 표시되고있는 제목을 MusicService에서 재생중인 제목으로 변경한다.
             // 재생중인 노래의 인덱스를 받아온다.
             m_musicTitle.setText(m_service.getPlayMusicTitle());
@@ -205,6 +215,8 @@ public class MainActivity extends AppCompatActivity {
     protected void onDestroy() {
         super.onDestroy();
         Log.i(TAG, "onDestory()");
+        if(m_reconcileTask != null)
+            m_reconcileTask.cancel(false);
     }
 
     // MUSIC 디렉터리 접근 권한 설정을 확인한뒤 적절한 처리를 한다.
@@ -250,58 +262,131 @@ public class MainActivity extends AppCompatActivity {
 
     // < getMusicList() >
     // MUSIC 디렉터리에 저장되어 있는 노래 들을 읽어 오는 메소드
-    // 1. MUSIC 저장소에 있는 파일들 중 확장자가 .mp3인 파일들을 읽어들인다.
-    // 2. 그 후, 파일명에서 확장자 .mp3를 노래 리스트를 보여주는 ListView에 목록을 뿌린다.
+    // 1. 매번 MUSIC 디렉터리를 읽지 않고 MusicLibrary의 색인 파일에서 지난번 노래 목록을 한 번에 읽어 ListView에 뿌린다.
+    // 2. 그 후, ReconcileTask를 통해 백그라운드에서 MUSIC 디렉터리와 색인을 맞추고, 바뀐 것이 있을 때만 목록을 갱신한다.
     private void getMusicList() {
-        // .mp3 파일을 추출할 때 사용하는 FileFilter 객체
-        // 뒤에 붙은 확장자가 .mp3인 것만 걸러낼때 사용한다.
-        FilenameFilter mp3FileFilter = new FilenameFilter() {
-            @Override
-            public boolean accept(File dir, String filename) {
-                return filename.endsWith(".mp3");
-            }
-        };
+        m_library = new MusicLibrary(new File(getFilesDir(), MusicLibrary.INDEX_FILENAME));
+        m_listMusicTitle = new ArrayList<>();
+
+        // simple_list_item_1을 layout으로 하고 musicListView 항목으로하는 어댑터 생성
+        m_listViewAdapter = new ArrayAdapter<String>(this, android.R.layout.simple_list_item_1, m_listMusicTitle);
+        // MUSIC 디렉터리에 있는 노래 파일들을 보여주는 ListView
+        // musicListView 리스트 뷰에 어댑터를 연결한고 리스너를 설정한다.
+        ListView musicListView = (ListView)findViewById(R.id.lvMusicList);
+        try {
+            musicListView.setAdapter(m_listViewAdapter);
+            musicListView.setOnItemClickListener(onClickListItem);
+        } catch(NullPointerException e) {
+            e.printStackTrace();
+        }
 
-        // MUSIC 디렉토리를 읽어 리스트 뷰를 설정하고 .mp3파일들의 File객체 배열을 생성한다.
+        // 색인에 있는 노래 목록을 먼저 보여준다.
+        setMusicList(m_library.load());
+
+        // MUSIC 디렉토리와 색인을 백그라운드에서 맞춘다.
         try {
             // Public Directory 중에 Music 디렉토리에 대한 File 객체를 반환한다
             File musicDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_MUSIC);
+            m_reconcileTask = new ReconcileTask();
+            m_reconcileTask.execute(musicDir);
+        }
+        catch (SecurityException e) {
+            e.printStackTrace();
+        }
+    }
 
-            // .mp3파일만을 추출한다
-            String[] strAryMP3File = musicDir.list(mp3FileFilter);
+    // < setMusicList() >
+    // 음원 목록으로 m_musicFiles, m_listMusicTitle을 만들고 리스트 뷰를 갱신한다.
+    // 선택되어 있던 노래는 새 목록에서 같은 파일의 인덱스로 옮긴다.
+    private void setMusicList(ArrayList<MusicLibrary.Track> tracks) {
+        File selectedFile = (m_selectedMusicIndex < m_numOfMusic) ? m_musicFiles[m_selectedMusicIndex] : null;
+
+        m_musicFiles = new File[tracks.size()];
+        m_listMusicTitle.clear();
+        m_musicIndexByPath.clear();
+        for (int i = 0; i < tracks.size(); i++) {
+            m_musicFiles[i] = tracks.get(i).getFile();
+            m_listMusicTitle.add(tracks.get(i).title);
+            m_musicIndexByPath.put(tracks.get(i).path, i);
+        }
+        m_numOfMusic = m_musicFiles.length;
 
-            // Music 디렉토리에서 .mp3 파일만을 추출해 m_musicFiles에 각 파일의 경로를 저장한다.
-            m_musicFiles = musicDir.listFiles(mp3FileFilter);
-            m_numOfMusic = m_musicFiles.length;
+        Integer selectedIndex = (selectedFile == null) ? null : m_musicIndexByPath.get(selectedFile.getAbsolutePath());
+        m_selectedMusicIndex = (selectedIndex == null) ? 0 : selectedIndex;
 
-            // 아래 코드는 File 객체 배열의 길이만큼 for 루프를 돌면서 파일(혹은 디렉토리)의 이름을 로그로 출력한다
-            for (int i = 0; i < m_numOfMusic; i++) {
-                Log.i(TAG, "music directory file " + (i) + " : " + m_musicFiles[i].getName());
+        onMusicListChanged();
+    }
+
+    // < addTracks() >
+    // 탐색 중에 찾은 새 음원이나 바뀐 음원들을 목록에 반영한다.
+    // 목록에 있던 음원은 제목만 바꾸고, 새 음원은 목록 끝에 추가하므로 기존 노래들의 인덱스는 바뀌지 않는다.
+    private void addTracks(ArrayList<MusicLibrary.Track> tracks) {
+        ArrayList<File> newFiles = new ArrayList<>();
+        for (MusicLibrary.Track track : tracks) {
+            Integer index = m_musicIndexByPath.get(track.path);
+            if(index != null) {
+                m_listMusicTitle.set(index, track.title);
+            } else {
+                m_musicIndexByPath.put(track.path, m_numOfMusic + newFiles.size());
+                m_listMusicTitle.add(track.title);
+                newFiles.add(track.getFile());
             }
+        }
 
-            // 추출된 strAryMP3File 배열 항목들의 ".mp3" 확장자를 제거하여
-            // ArrayList인 m_listMusicTitle에 모두 추가한뒤 반환한다.
-            m_listMusicTitle = new ArrayList<>();
+        if(!newFiles.isEmpty()) {
+            m_musicFiles = Arrays.copyOf(m_musicFiles, m_numOfMusic + newFiles.size());
+            for (int i = 0; i < newFiles.size(); i++)
+                m_musicFiles[m_numOfMusic + i] = newFiles.get(i);
+            m_numOfMusic = m_musicFiles.length;
+        }
 
-            for (String filename : strAryMP3File) {
-                filename = filename.replace(".mp3", "");
-                m_listMusicTitle.add(filename);
-            }
+        onMusicListChanged();
+    }
 
-            // simple_list_item_1을 layout으로 하고 musicListView 항목으로하는 어댑터 생성
-            ArrayAdapter<String> listViewAdapter = new ArrayAdapter<String>(this, android.R.layout.simple_list_item_1, m_listMusicTitle);
-            // MUSIC 디렉터리에 있는 노래 파일들을 보여주는 ListView
-            // musicListView 리스트 뷰에 어댑터를 연결한고 리스너를 설정한다.
-            ListView musicListView = (ListView)findViewById(R.id.lvMusicList);
-            try {
-                musicListView.setAdapter(listViewAdapter);
-                musicListView.setOnItemClickListener(onClickListItem);
-            } catch(NullPointerException e) {
-                e.printStackTrace();
-            }
+    // < onMusicListChanged() >
+    // 리스트 뷰를 갱신하고, 바운딩된 MusicService에도 바뀐 음원 목록과 제목들을 알려준다.
+    private void onMusicListChanged() {
+        m_listViewAdapter.notifyDataSetChanged();
+        if(m_bound)
+            m_service.updateMusicFiles(m_musicFiles, getMusicTitles());
+    }
+
+    // < getMusicTitles() >
+    // m_musicFiles 순서대로 라이브러리 색인에서 읽어둔 제목들을 배열로 반환한다.
+    // MusicService는 이 제목들로 Notification을 보여주므로 메인 스레드에서 태그를 읽지 않는다.
+    private String[] getMusicTitles() {
+        return m_listMusicTitle.toArray(new String[m_listMusicTitle.size()]);
+    }
+
+    // < ReconcileTask >
+    // MUSIC 디렉터리와 라이브러리 색인을 백그라운드에서 맞추는 AsyncTask
+    // 1. MusicScanner가 하위 디렉터리까지 병렬로 탐색하면서 새 음원이나 바뀐 음원을 찾을 때마다
+    //    publishProgress()로 넘겨 onProgressUpdate()에서 바로 목록에 추가한다.
+    // 2. 탐색이 끝나고 목록이 바뀌었으면 onPostExecute()에서 정렬된 목록으로 리스트 뷰를 갱신한다. (없어진 음원도 빠진다.)
+    private class ReconcileTask extends AsyncTask<File, ArrayList<MusicLibrary.Track>, ArrayList<MusicLibrary.Track>> {
+        @Override
+        protected ArrayList<MusicLibrary.Track> doInBackground(File... params) {
+            return m_library.reconcile(params[0], new MusicLibrary.Listener() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public void onTracksFound(ArrayList<MusicLibrary.Track> tracks) {
+                    publishProgress(tracks);
+                }
+            });
         }
-        catch (SecurityException e) {
-            e.printStackTrace();
+
+        @Override
+        @SafeVarargs
+        protected final void onProgressUpdate(ArrayList<MusicLibrary.Track>... values) {
+            for (ArrayList<MusicLibrary.Track> tracks : values)
+                addTracks(tracks);
+        }
+
+        @Override
+        protected void onPostExecute(ArrayList<MusicLibrary.Track> tracks) {
+            // 바뀐 것이 없으면 null이다.
+            if(tracks != null)
+                setMusicList(tracks);
         }
     }
 
@@ -418,11 +503,12 @@ public class MainActivity extends AppCompatActivity {
     // 1. MusicService가 실행중이지 않다면 서비스를 실행한다.
     // 2. MusicService와 바인딩 되어있지 않다면 바운딩을 시도한다.
     private void startAndBindService() {
-        // 서비스가 실행중이지 않다면 현재 선택된 음악의 인덱스와 음원 파일들의 File객체를 인텐트에 담아 서비스를 실행한다.
-        if(!isAliveService(MainActivity.this)) {
+        // 서비스가 실행중이지 않다면 현재 선택된 음악의 경로만 인텐트에 담아 서비스를 실행한다.
+        // 음원 목록 전체는 바운딩된 뒤 updateMusicFiles()로 넘겨준다. (큰 목록을 인텐트에 담으면 TransactionTooLargeException이 날 수 있다.)
+        // 재생할 음원이 없다면 서비스를 실행하지 않는다.
+        if(m_selectedMusicIndex < m_numOfMusic && !isAliveService(MainActivity.this)) {
             Intent intent = new Intent(MainActivity.this, MusicService.class);
-            intent.putExtra("MUSIC_INDEX", m_selectedMusicIndex);
-            intent.putExtra("MUSIC_FILES", m_musicFiles);
+            intent.putExtra("MUSIC_PATH", m_musicFiles[m_selectedMusicIndex].getAbsolutePath());
             setResult(RESULT_OK, intent);
             startService(intent);
         }
@@ -0,0 +1,226 @@
+package io.github.sogoagain.simple_mp3player;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// < MusicLibrary >
+// MUSIC 디렉터리에 있는 음원들의 목록(라이브러리 색인)을 앱 내부 저장소의 파일에 보관하는 클래스
+// 1. load(): 색인 파일을 한 번에 읽어 지난번에 찾은 음원 목록을 바로 반환한다. (MUSIC 디렉터리를 읽지 않는다.)
+// 2. reconcile(): MusicScanner로 MUSIC 디렉터리를 하위 디렉터리까지 탐색해 색인과 맞춘다.
+//                 크기나 수정시각이 바뀐 파일과 새 파일만 다시 살펴보고, 없어진 파일은 목록에서 뺀다.
+//                 바뀐 것이 있을 때만 색인 파일을 다시 쓴다.
+// 새 파일이나 바뀐 파일은 Id3TagReader로 태그만 읽어 제목, 아티스트, 앨범, 트랙 번호, 재생 시간을 색인에 기록한다.
+// 색인 파일 형식: 매직넘버, 버전, 음원 수, 음원마다 [경로, 크기, 수정시각, 제목, 아티스트, 앨범, 트랙 번호, 재생 시간]
+//               (없는 아티스트, 앨범은 빈 문자열로 기록한다.)
+class MusicLibrary {
+
+    private static final String TAG = "MusicLibrary";    // 디버깅을 위한 태그
+    static final String INDEX_FILENAME = "library.index";   // 색인 파일 이름
+    private static final int INDEX_MAGIC = 0x4D4C4931;      // "MLI1"
+    private static final int INDEX_VERSION = 2;
+
+    // < Track >
+    // 라이브러리에 있는 음원 하나의 정보
+    static class Track {
+        final String path;          // 음원 파일의 절대 경로
+        final long size;            // 파일 크기
+        final long lastModified;    // 파일 수정시각
+        final String title;         // 목록에 보여줄 제목 (태그에 제목이 없으면 확장자를 뺀 파일명)
+        final String artist;        // 아티스트 (없으면 null)
+        final String album;         // 앨범 (없으면 null)
+        final int trackNumber;      // 트랙 번호 (없으면 -1)
+        final long durationMs;      // 재생 시간 (알 수 없으면 -1)
+
+        Track(String path, long size, long lastModified, String title, String artist, String album,
+              int trackNumber, long durationMs) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.title = title;
+            this.artist = artist;
+            this.album = album;
+            this.trackNumber = trackNumber;
+            this.durationMs = durationMs;
+        }
+
+        File getFile() {
+            return new File(path);
+        }
+    }
+
+    // 음원 목록의 정렬 기준 (파일 경로 순)
+    private static final Comparator<Track> BY_PATH = new Comparator<Track>() {
+        @Override
+        public int compare(Track lhs, Track rhs) {
+            return lhs.path.compareTo(rhs.path);
+        }
+    };
+
+    // < Listener >
+    // reconcile()이 탐색 중에 찾은 새 음원이나 바뀐 음원들을 받는 인터페이스
+    // 디렉터리 하나를 다 읽을 때마다 MusicScanner의 스레드에서 호출된다.
+    interface Listener {
+        void onTracksFound(ArrayList<Track> tracks);
+    }
+
+    private final File m_indexFile;     // 색인 파일
+    private ArrayList<Track> m_tracks = new ArrayList<>();  // 색인에 들어있는 음원들 (경로 순)
+
+    MusicLibrary(File indexFile) {
+        m_indexFile = indexFile;
+    }
+
+    // < load() >
+    // 색인 파일을 한 번에 읽어 음원 목록을 반환한다.
+    // 색인 파일이 없거나 손상되었으면 빈 목록을 반환한다. (reconcile()에서 다시 만든다.)
+    synchronized ArrayList<Track> load() {
+        ArrayList<Track> tracks = new ArrayList<>();
+        if(m_indexFile.exists()) {
+            try {
+                byte[] bytes = new byte[(int) m_indexFile.length()];
+                FileInputStream in = new FileInputStream(m_indexFile);
+                try {
+                    new DataInputStream(in).readFully(bytes);
+                } finally {
+                    in.close();
+                }
+
+                DataInputStream indexIn = new DataInputStream(new ByteArrayInputStream(bytes));
+                if(indexIn.readInt() == INDEX_MAGIC && indexIn.readInt() == INDEX_VERSION) {
+                    int numOfTracks = indexIn.readInt();
+                    for(int i = 0; i < numOfTracks; i++) {
+                        tracks.add(new Track(indexIn.readUTF(), indexIn.readLong(), indexIn.readLong(), indexIn.readUTF(),
+                                emptyToNull(indexIn.readUTF()), emptyToNull(indexIn.readUTF()),
+                                indexIn.readInt(), indexIn.readLong()));
+                    }
+                }
+            } catch (IOException e) {
+                // 기록 도중 중단되어 잘린 색인은 버린다.
+                e.printStackTrace();
+                tracks.clear();
+            }
+        }
+
+        m_tracks = tracks;
+        return new ArrayList<>(tracks);
+    }
+
+    // < reconcile() >
+    // MUSIC 디렉터리를 하위 디렉터리까지 탐색해 색인과 맞춘다. 시간이 걸리므로 백그라운드 스레드에서 호출해야 한다.
+    // 1. 크기와 수정시각이 색인과 같은 파일은 색인의 정보를 그대로 사용한다.
+    // 2. 새 파일이나 바뀐 파일은 examine()으로 다시 살펴보고, 디렉터리마다 listener에 바로 넘긴다. (listener는 null이어도 된다.)
+    // 3. 탐색이 끝나고 목록이 바뀌었으면 색인 파일을 다시 쓰고 새 목록을 반환한다. 바뀐 것이 없으면 null을 반환한다.
+    synchronized ArrayList<Track> reconcile(File musicDir, final Listener listener) {
+        if(!musicDir.isDirectory())
+            return null;
+
+        // 탐색 스레드들은 indexed를 읽기만 한다.
+        final HashMap<String, Track> indexed = new HashMap<>();
+        for(Track track : m_tracks)
+            indexed.put(track.path, track);
+
+        final ArrayList<Track> tracks = new ArrayList<>();
+        final AtomicInteger numOfExamined = new AtomicInteger();
+        MusicScanner.scan(musicDir, new MusicScanner.Listener() {
+            @Override
+            public void onFilesFound(File dir, ArrayList<File> files) {
+                ArrayList<Track> found = new ArrayList<>();
+                ArrayList<Track> changed = new ArrayList<>();
+                for(File file : files) {
+                    Track track = indexed.get(file.getAbsolutePath());
+                    long size = file.length();
+                    long lastModified = file.lastModified();
+                    if(track == null || track.size != size || track.lastModified != lastModified) {
+                        track = examine(file, size, lastModified);
+                        changed.add(track);
+                    }
+                    found.add(track);
+                }
+
+                synchronized (tracks) {
+                    tracks.addAll(found);
+                }
+                numOfExamined.addAndGet(changed.size());
+                if(listener != null && !changed.isEmpty())
+                    listener.onTracksFound(changed);
+            }
+        });
+        Collections.sort(tracks, BY_PATH);
+
+        Log.i(TAG, "reconcile(): " + tracks.size() + "개 중 " + numOfExamined.get() + "개를 다시 읽었습니다.");
+        if(numOfExamined.get() == 0 && tracks.size() == m_tracks.size())
+            return null;
+
+        m_tracks = tracks;
+        writeIndex(tracks);
+        return new ArrayList<>(tracks);
+    }
+
+    // < examine() >
+    // 새 파일이나 바뀐 파일의 정보를 만든다.
+    // Id3TagReader로 파일 앞뒤의 태그만 읽고, 태그에 제목이 없으면 파일명에서 확장자를 뺀 것을 제목으로 한다.
+    private static Track examine(File file, long size, long lastModified) {
+        Id3TagReader.Tag tag = Id3TagReader.read(file);
+        if(tag == null)
+            return new Track(file.getAbsolutePath(), size, lastModified, getFileTitle(file), null, null, -1, -1);
+        return new Track(file.getAbsolutePath(), size, lastModified,
+                (tag.title != null) ? tag.title : getFileTitle(file), tag.artist, tag.album, tag.trackNumber, tag.durationMs);
+    }
+
+    // < getFileTitle() >
+    // 파일명에서 확장자를 뺀 것을 반환한다.
+    static String getFileTitle(File file) {
+        String filename = file.getName();
+        int dot = filename.lastIndexOf('.');
+        return (dot > 0) ? filename.substring(0, dot) : filename;
+    }
+
+    private static String emptyToNull(String string) {
+        return string.isEmpty() ? null : string;
+    }
+
+    // < writeIndex() >
+    // 임시 파일에 색인을 기록한 뒤 색인 파일로 이름을 바꾼다.
+    private void writeIndex(ArrayList<Track> tracks) {
+        File tmpFile = new File(m_indexFile.getPath() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            try {
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(INDEX_VERSION);
+                out.writeInt(tracks.size());
+                for(Track track : tracks) {
+                    out.writeUTF(track.path);
+                    out.writeLong(track.size);
+                    out.writeLong(track.lastModified);
+                    out.writeUTF(track.title);
+                    out.writeUTF(track.artist == null ? "" : track.artist);
+                    out.writeUTF(track.album == null ? "" : track.album);
+                    out.writeInt(track.trackNumber);
+                    out.writeLong(track.durationMs);
+                }
+            } finally {
+                out.close();
+            }
+
+            if(!tmpFile.renameTo(m_indexFile))
+                throw new IOException("색인 파일을 교체하지 못했습니다.");
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmpFile.delete();
+        }
+    }
+}
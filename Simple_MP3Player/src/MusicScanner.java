@@ -0,0 +1,92 @@
+package io.github.sogoagain.simple_mp3player;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// < MusicScanner >
+// MUSIC 디렉터리를 하위 디렉터리까지 병렬로 탐색해 음원 파일들을 찾는 클래스
+// 1. 디렉터리 하나를 ScanTask 하나가 맡고, 하위 디렉터리마다 새 ScanTask를 만들어 ForkJoinPool에서 함께 실행한다.
+// 2. 디렉터리 하나를 다 읽을 때마다 그 디렉터리의 음원 파일들을 Listener에 바로 넘긴다. (탐색이 끝날 때까지 기다리지 않는다.)
+// 3. 숨김 디렉터리(.으로 시작)와 .nomedia 파일이 있는 디렉터리는 안드로이드 미디어 스캐너처럼 건너뛴다.
+class MusicScanner {
+
+    // 재생할 수 있는 음원 파일 확장자들 (MediaPlayer가 지원하는 형식)
+    static final String[] AUDIO_EXTENSIONS = { ".mp3", ".m4a", ".aac", ".flac", ".ogg", ".oga", ".opus", ".wav", ".mid", ".amr" };
+    private static final int MAX_DEPTH = 16;    // 심볼릭 링크가 순환하더라도 끝나도록 탐색할 최대 깊이
+
+    // < Listener >
+    // 디렉터리 하나에서 찾은 음원 파일들을 받는 인터페이스
+    // 여러 ScanTask 스레드에서 동시에 호출될 수 있다.
+    interface Listener {
+        void onFilesFound(File dir, ArrayList<File> files);
+    }
+
+    private MusicScanner() {
+    }
+
+    // < scan() >
+    // rootDir부터 하위 디렉터리까지 탐색하고, 탐색이 모두 끝나면 반환한다.
+    static void scan(File rootDir, Listener listener) {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            pool.invoke(new ScanTask(rootDir, 0, listener));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // < isAudioFile() >
+    // 파일명의 확장자가 AUDIO_EXTENSIONS 중 하나이면 true를 반환한다. (대소문자 구분 없음)
+    static boolean isAudioFile(String filename) {
+        String lowerName = filename.toLowerCase(Locale.US);
+        for(String extension : AUDIO_EXTENSIONS) {
+            if(lowerName.endsWith(extension))
+                return true;
+        }
+        return false;
+    }
+
+    // < ScanTask >
+    // 디렉터리 하나를 읽어 음원 파일들을 Listener에 넘기고, 하위 디렉터리들은 새 ScanTask로 나눠 실행한다.
+    private static class ScanTask extends RecursiveAction {
+        private final File m_dir;
+        private final int m_depth;
+        private final Listener m_listener;
+
+        ScanTask(File dir, int depth, Listener listener) {
+            m_dir = dir;
+            m_depth = depth;
+            m_listener = listener;
+        }
+
+        @Override
+        protected void compute() {
+            File[] children = m_dir.listFiles();
+            if(children == null)
+                return;
+
+            ArrayList<File> audioFiles = new ArrayList<>();
+            ArrayList<ScanTask> subTasks = new ArrayList<>();
+            for(File child : children) {
+                String name = child.getName();
+                // .nomedia 파일이 있으면 이 디렉터리와 하위 디렉터리를 모두 건너뛴다.
+                if(name.equals(".nomedia"))
+                    return;
+                if(child.isDirectory()) {
+                    if(!name.startsWith(".") && m_depth < MAX_DEPTH)
+                        subTasks.add(new ScanTask(child, m_depth + 1, m_listener));
+                } else if(isAudioFile(name)) {
+                    audioFiles.add(child);
+                }
+            }
+
+            // 이 디렉터리의 음원을 먼저 넘긴 뒤 하위 디렉터리들을 병렬로 탐색한다.
+            if(!audioFiles.isEmpty())
+                m_listener.onFilesFound(m_dir, audioFiles);
+            invokeAll(subTasks);
+        }
+    }
+}
@@ -47,61 +47,134 @@ public class MusicService extends Service {
     private static final String TAG = "MusicService";
 
     // 음악을 재생하기위한 MediaPlayer 객체
+    // 두 객체를 번갈아 사용한다. m_musicPlayer는 현재 노래를, m_nextPlayer는 다음 노래를 미리 준비해둔다.
     private MediaPlayer m_musicPlayer = null;
+    private MediaPlayer m_nextPlayer = null;
     private File[] m_musicFiles;        // .mp3 파일들의 File 객체
+    private String[] m_musicTitles;     // m_musicFiles의 제목들 (엑티비티가 라이브러리 색인에서 읽어둔 것. 모르면 null)
     private int m_playingMusicIndex;    // 현재 재생중인 음원의 인덱스
+    private String m_playingMusicTitle; // 현재 재생중인 음원의 제목 (ID3 태그의 제목 또는 확장자를 뺀 파일명)
+
+    private boolean m_isPrepared = false;       // m_musicPlayer의 prepareAsync()가 끝났는지 여부
+    private boolean m_isStartPending = false;   // 준비가 끝나기 전에 startMusic()이 호출되었는지 여부
+    private File m_nextMusicFile = null;        // m_nextPlayer에 설정된 음원 파일 (없으면 null)
+    private int m_nextMusicIndex;               // m_nextPlayer에 설정된 음원의 인덱스
+    private boolean m_isNextPrepared = false;   // m_nextPlayer의 prepareAsync()가 끝났는지 여부
+    private boolean m_isNextChained = false;    // m_nextPlayer가 setNextMediaPlayer()로 m_musicPlayer에 이어졌는지 여부
 
     // < onCreate() >
-    // 1. MediaPlayer() 객체 m_musicPlayer을 생성한다.
-    // 2. m_musicPlayer에 노래가 끝나면 호출되는 이벤트에 대한 리스너 객체를 선언 및 등록한다.
-    //    이 이벤트 리스너는 노래가 재생이 완료되면 다음 노래를 재생한다.
+    // 1. MediaPlayer 객체 m_musicPlayer와 m_nextPlayer를 생성한다.
+    // 2. 두 객체 모두 같은 리스너들을 등록한다. 리스너에서는 넘겨받은 MediaPlayer가 어느 쪽인지 확인해 처리한다.
     @Override
     public void onCreate() {
         Log.d(TAG, "onCreate()");
-        // MediaPlayer 객체 생성
-        m_musicPlayer = new MediaPlayer();
-        m_musicPlayer.setLooping(false); // 반복재생 여부 설정
+        m_musicPlayer = createPlayer();
+        m_nextPlayer = createPlayer();
+    }
+
+    // < createPlayer() >
+    // 1. MediaPlayer 객체를 생성한다.
+    // 2. 준비(prepareAsync)가 끝나면 호출되는 리스너를 등록한다.
+    //    현재 노래가 준비되면 대기중인 재생 요청을 처리하고 다음 노래를 미리 준비한다.
+    //    다음 노래가 준비되면 현재 노래에 setNextMediaPlayer()로 이어 노래 사이에 끊김이 없게 한다.
+    // 3. 노래가 끝나면 호출되는 리스너를 등록한다. 이 이벤트 리스너는 노래가 재생이 완료되면 다음 노래를 재생한다.
+    // 4. 오류가 생기면 호출되는 리스너를 등록한다.
+    private MediaPlayer createPlayer() {
+        MediaPlayer player = new MediaPlayer();
+        player.setLooping(false); // 반복재생 여부 설정
+
+        player.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
+            @Override
+            public void onPrepared(MediaPlayer mp) {
+                if(mp == m_musicPlayer) {
+                    m_isPrepared = true;
+                    if(m_isStartPending) {
+                        m_isStartPending = false;
+                        m_musicPlayer.start();
+                    }
+                    prepareNextMusic();
+                } else if(mp == m_nextPlayer) {
+                    m_isNextPrepared = true;
+                    chainNextMusic();
+                }
+            }
+        });
 
         // 노래 재생이 완료되면 호출되는 이벤트에 대한 리스너 객체를 선언 및 등록한다.
-        m_musicPlayer.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
+        player.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
             @Override
             public void onCompletion(MediaPlayer mp) {
+                if(mp != m_musicPlayer)
+                    return;
+
                 // 노래 재생이 완료되면 다음 노래를 재생한다.
-                // 마지막곡의 다음곡은 처음곡이다.
-                m_playingMusicIndex++;
-                if(m_playingMusicIndex > m_musicFiles.length - 1) {
-                    m_playingMusicIndex = 0;
+                if(m_isNextChained) {
+                    // 다음 노래는 MediaPlayer가 이미 이어서 재생하고 있으므로 두 객체의 역할만 바꾼다.
+                    swapPlayers();
+                } else {
+                    // 다음 노래가 아직 준비되지 않았다면 지금 준비해서 재생한다.
+                    // 마지막곡의 다음곡은 처음곡이다.
+                    setMusic(getNextMusicIndex(m_playingMusicIndex));
+                    startMusic();
                 }
 
-                // 해당하는 노래 인덱스에 맞춰 m_musicPlayer을 설정한다.
-                setMusic(m_playingMusicIndex);
-                // 노래를 재생한다.
-                startMusic();
-
                 // 액티비티로부터 m_callback 객체를 받았다면
                 // 자동으로 다음 노래를 재생했을 때, 재생되는 음원의 인덱스를 액티비티에 보내준다.
                 if(m_callback != null)
                     m_callback.updateTitleTextView(m_playingMusicIndex);
             }
         });
+
+        // 오류가 생기면 호출되는 이벤트에 대한 리스너 객체를 선언 및 등록한다.
+        // 1. 다음 노래를 준비하다 생긴 오류는 미리 준비한 것을 버린다. (노래가 끝나면 그때 다시 준비한다.)
+        // 2. 현재 노래를 준비하다 생긴 오류는 재생 요청을 취소한다.
+        // 3. 현재 노래를 재생하다 생긴 오류는 false를 반환해 onCompletion()이 호출되도록 한다. (다음 노래로 넘어간다.)
+        player.setOnErrorListener(new MediaPlayer.OnErrorListener() {
+            @Override
+            public boolean onError(MediaPlayer mp, int what, int extra) {
+                Log.e(TAG, "MediaPlayer 오류: " + what + ", " + extra);
+                if(mp == m_nextPlayer) {
+                    m_nextPlayer.reset();
+                    m_nextMusicFile = null;
+                    m_isNextPrepared = false;
+                    m_isNextChained = false;
+                    return true;
+                }
+
+                m_isNextChained = false;
+                if(!m_isPrepared) {
+                    m_isStartPending = false;
+                    return true;
+                }
+                return false;
+            }
+        });
+        return player;
     }
 
     // < onDestroy() >
-    // m_musicPlayer의 리소스를 정리한다.
+    // m_musicPlayer와 m_nextPlayer의 리소스를 정리한다.
     @Override
     public void onDestroy() {
         Log.d(TAG, "onDestroy()");
 
-        if(m_musicPlayer.isPlaying())
+        if(m_isPrepared && m_musicPlayer.isPlaying())
             m_musicPlayer.stop();
         m_musicPlayer.reset();
         m_musicPlayer.release();
         m_musicPlayer = null;
+
+        m_nextPlayer.reset();
+        m_nextPlayer.release();
+        m_nextPlayer = null;
     }
 
     // < onStartCommand() >
-    // 1. 액티비티에 의해 서비스가 실행됐을 경우 엑티비티로부터 재생할 노래의 인덱스와 mp3파일들의 File객체 배열을 받아온다.
-    // 2. 재생해야할 노래를 재생한다.
+    // 1. 액티비티에 의해 서비스가 실행됐을 경우 엑티비티로부터 재생할 노래의 경로를 받아온다.
+    // 2. 이미 음원 목록을 받아두었다면 목록에서 해당 노래의 인덱스를 찾는다.
+    //    아직 목록이 없다면 (바운딩 전이거나 인텐트가 다시 전달된 경우) 그 노래 하나만으로 목록을 만든다.
+    //    전체 목록은 엑티비티와 바운딩되면 updateMusicFiles()로 받아온다.
+    // 3. 재생해야할 노래를 재생한다.
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         // intent: startService() 호출 시 넘기는 intent 객체
@@ -109,23 +182,36 @@ public class MusicService extends Service {
         // startId: start 요청을 나타내는 unique integer id
         Log.d(TAG, "onStartCommand()");
 
-        // 액티비티로부터 전달받은 인텐트에서 재생할 노래의 인덱스와 mp3파일들의 File객체 배열을 받아온다.
-        try {
-            m_musicFiles = (File[]) intent.getExtras().get("MUSIC_FILES");
-            m_playingMusicIndex = intent.getIntExtra("MUSIC_INDEX", 0);
-        } catch(Exception e) {
-            Toast.makeText(this, "음원 리스트를 전달받는 중 오류가 생겼습니다.", Toast.LENGTH_SHORT).show();
-            e.printStackTrace();
+        // 액티비티로부터 전달받은 인텐트에서 재생할 노래의 경로를 받아온다.
+        String musicPath = (intent != null) ? intent.getStringExtra("MUSIC_PATH") : null;
+        if(musicPath == null) {
+            Toast.makeText(this, "재생할 음원을 전달받는 중 오류가 생겼습니다.", Toast.LENGTH_SHORT).show();
             this.stopSelf();
+            return START_NOT_STICKY;
         }
 
-        // 전달받은 인덱스에 해당하는 음원을 재생한다.
-        setMusic(m_playingMusicIndex);
+        File musicFile = new File(musicPath);
+        int musicIndex = -1;
+        if(m_musicFiles != null) {
+            for(int i = 0; i < m_musicFiles.length; i++) {
+                if(m_musicFiles[i].equals(musicFile)) {
+                    musicIndex = i;
+                    break;
+                }
+            }
+        }
+        if(musicIndex < 0) {
+            m_musicFiles = new File[] { musicFile };
+            m_musicTitles = null;
+            musicIndex = 0;
+        }
+
+        // 해당 음원을 재생한다.
+        setMusic(musicIndex);
         startMusic();
 
-        // 인텐트로부터 mp3파일들의 File객체 배열을 받아오는데, 이는 음악 재생에 있어 중요하다.
-        // 따라서 MusicService는 생존 유지가 중요할 뿐더러 intent정보가 서비스 동작에 중요한 역할을 한다.
-        // 따라서 START_REDELIVER_INTENT값을 반환한다.
+        // 인텐트에는 재생할 노래의 경로만 담겨 있어 크기가 작으므로 다시 전달받아도 부담이 없다.
+        // 서비스가 종료되었다 다시 실행되면 그 노래부터 이어서 재생하도록 START_REDELIVER_INTENT값을 반환한다.
         return START_REDELIVER_INTENT;
     }
 
@@ -144,74 +230,205 @@ public class MusicService extends Service {
         m_callback = cb;
     }
 
+    // < updateMusicFiles() >
+    // 엑티비티의 노래 목록이 바뀌었을 때 새 목록과 제목들을 받아온다.
+    // 제목은 엑티비티가 라이브러리 색인에서 이미 읽어둔 것이므로 서비스에서 태그를 다시 읽지 않는다.
+    // 재생중인 노래는 그대로 두고 새 목록에서의 인덱스를 다시 찾는다. (새 목록에 없으면 처음 노래의 인덱스로 한다.)
+    // 재생중인 노래의 제목이 바뀌었으면 Notification을 갱신한다.
+    // 미리 준비해둔 다음 노래가 새 목록에서의 다음 노래와 다르면 다시 준비한다.
+    void updateMusicFiles(File[] musicFiles, String[] musicTitles) {
+        File playingFile = (m_musicFiles != null && m_playingMusicIndex < m_musicFiles.length)
+                ? m_musicFiles[m_playingMusicIndex] : null;
+        m_musicFiles = musicFiles;
+        m_musicTitles = musicTitles;
+        m_playingMusicIndex = 0;
+        for(int i = 0; i < musicFiles.length; i++) {
+            if(musicFiles[i].equals(playingFile)) {
+                m_playingMusicIndex = i;
+                String title = getMusicTitle(i);
+                if(m_playingMusicTitle != null && !title.equals(m_playingMusicTitle)) {
+                    m_playingMusicTitle = title;
+                    showNotification();
+                }
+                break;
+            }
+        }
+
+        if(m_isPrepared)
+            prepareNextMusic();
+    }
+
     // < setMusic() >
     // 노래를 재생하기에 앞서 MediaPlayer객체인 m_musicPlayer를 노래 재생 이전단계까지 설정한다.
     // 1. 매개변수로 재생할 음원의 인덱스를 받아온다.
-    // 2. MediaPlayer의 reset() 함수를 호출해 m_musicPlayer의 상태를 Idle 상태로 설정한다.
-    // 3. 현재 재생할 음원의 파일 경로를 바탕으로 m_musicPlayer의 음원 소스를 등록한다.
-    // 4. m_musicPlayer을 prepare 상태로 설정한다.
-    // 5. 현재 재생중인 노래 정보를 보여주기 위해 Notification객체를 생성한다.
-    // 6. 현재 실행중인 서비스를 Foreground로 실행하기 위해 startForeground()를 호출한다.
+    // 2. 재생할 음원이 m_nextPlayer에 미리 준비되어 있다면 (다음곡버튼) 두 객체의 역할만 바꾼다.
+    // 3. 아니라면 m_musicPlayer의 reset() 함수를 호출해 Idle 상태로 설정하고 음원 소스를 등록한 뒤,
+    //    prepareAsync()로 준비를 시작한다. 준비는 백그라운드에서 진행되므로 이 메소드는 바로 반환된다.
+    //    준비가 끝나면 onPrepared()에서 대기중인 재생 요청을 처리하고 다음 노래를 미리 준비한다.
+    // 4. 현재 재생중인 노래 정보를 Notification으로 보여주며 서비스를 Foreground로 실행한다.
+    //    (제목은 엑티비티에서 받아온 것을 쓰므로 메인 스레드에서 파일을 읽지 않는다.)
     void setMusic(int musicIndex) {
         m_playingMusicIndex = musicIndex;
-        try {
-            Log.i(TAG, "재생할 음원 파일 경로: " + m_musicFiles[m_playingMusicIndex].getAbsolutePath());
-
-            String filepath = m_musicFiles[m_playingMusicIndex].getAbsolutePath();
+        File musicFile = m_musicFiles[m_playingMusicIndex];
+        Log.i(TAG, "재생할 음원 파일 경로: " + musicFile.getAbsolutePath());
 
-            m_musicPlayer.reset();
-            m_musicPlayer.setDataSource(filepath);
-            m_musicPlayer.prepare();
+        if(m_isNextPrepared && musicFile.equals(m_nextMusicFile)) {
+            m_isStartPending = false;
+            swapPlayers();
+            return;
+        }
 
-            //***************************************
-            // Service를 Foreground로 실행하기 위한 과정
+        // 현재 노래와 미리 준비한 다음 노래를 모두 버린다.
+        m_isPrepared = false;
+        m_isStartPending = false;
+        m_isNextChained = false;
+        m_isNextPrepared = false;
+        m_nextMusicFile = null;
+        m_nextPlayer.reset();
+        m_musicPlayer.reset();
+        try {
+            m_musicPlayer.setDataSource(musicFile.getAbsolutePath());
+            m_musicPlayer.prepareAsync();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
 
-            // 1. Notification 객체 생성
-            // 1-1. Intent 객체 생성 - MainActivity 클래스를 실행하기 위한 Intent 객체
-            Intent sintent = new Intent(this, MainActivity.class);
-            // 1-2. Intent 객체를 이용하여 PendingIntent 객체를 생성 - Activity를 실행하기 위한 PendingIntent
-            PendingIntent pIntent = PendingIntent.getActivity(this, 0, sintent, PendingIntent.FLAG_UPDATE_CURRENT);
+        m_playingMusicTitle = getMusicTitle(m_playingMusicIndex);
+        showNotification();
+    }
 
-            // 1-3. Notification 객체 생성
-            Notification noti = new Notification.Builder(this)
-                    .setContentTitle("Simple_MP3Player")
-                    .setContentText(m_musicFiles[m_playingMusicIndex].getName().replace(".mp3", ""))
-                    .setSmallIcon(R.drawable.ic_music_note_black_24dp)
-                    .setContentIntent(pIntent)
-                    .build();
+    // < swapPlayers() >
+    // m_nextPlayer에 준비된 다음 노래를 현재 노래로 만든다.
+    // 1. m_musicPlayer와 m_nextPlayer의 역할을 바꾸고, 끝난 쪽은 reset() 해둔다.
+    // 2. 재생중인 노래 정보와 Notification을 바꾼 뒤, 그 다음 노래를 미리 준비한다.
+    private void swapPlayers() {
+        MediaPlayer finishedPlayer = m_musicPlayer;
+        m_musicPlayer = m_nextPlayer;
+        m_nextPlayer = finishedPlayer;
+        m_playingMusicIndex = m_nextMusicIndex;
+        m_isPrepared = true;
+
+        m_nextMusicFile = null;
+        m_isNextPrepared = false;
+        m_isNextChained = false;
+        m_nextPlayer.reset();
+
+        m_playingMusicTitle = getMusicTitle(m_playingMusicIndex);
+        showNotification();
+        prepareNextMusic();
+    }
 
-            // 2. foregound service 설정 - startForeground() 메소드 호출, 위에서 생성한 nofication 객체 넘겨줌
-            startForeground(123, noti);
-            //****************************************
+    // < prepareNextMusic() >
+    // 현재 노래의 다음 노래를 m_nextPlayer에 미리 준비한다. (마지막곡의 다음곡은 처음곡이다.)
+    // 이미 같은 음원이 준비되어 있거나 준비중이면 인덱스만 맞춘다.
+    private void prepareNextMusic() {
+        if(m_musicFiles == null || m_musicFiles.length == 0)
+            return;
+
+        int nextIndex = getNextMusicIndex(m_playingMusicIndex);
+        File nextFile = m_musicFiles[nextIndex];
+        m_nextMusicIndex = nextIndex;
+        if(nextFile.equals(m_nextMusicFile)) {
+            chainNextMusic();
+            return;
+        }
 
+        if(m_isNextChained)
+            m_musicPlayer.setNextMediaPlayer(null);
+        m_isNextChained = false;
+        m_isNextPrepared = false;
+        m_nextMusicFile = nextFile;
+        m_nextPlayer.reset();
+        try {
+            m_nextPlayer.setDataSource(nextFile.getAbsolutePath());
+            m_nextPlayer.prepareAsync();
         } catch (IOException e) {
             e.printStackTrace();
+            m_nextMusicFile = null;
+        }
+    }
+
+    // < chainNextMusic() >
+    // 현재 노래와 다음 노래가 모두 준비되었다면 setNextMediaPlayer()로 이어,
+    // 현재 노래가 끝나는 즉시 MediaPlayer가 다음 노래를 재생하도록 한다.
+    private void chainNextMusic() {
+        if(m_isPrepared && m_isNextPrepared && !m_isNextChained) {
+            m_musicPlayer.setNextMediaPlayer(m_nextPlayer);
+            m_isNextChained = true;
         }
     }
 
+    // < getMusicTitle() >
+    // musicIndex 노래의 제목을 반환한다.
+    // 엑티비티에서 받아온 제목이 없으면 파일명에서 확장자를 뺀 것을 반환한다. (태그는 읽지 않는다.)
+    private String getMusicTitle(int musicIndex) {
+        if(m_musicTitles != null && musicIndex < m_musicTitles.length && m_musicTitles[musicIndex] != null)
+            return m_musicTitles[musicIndex];
+        return MusicLibrary.getFileTitle(m_musicFiles[musicIndex]);
+    }
+
+    // < getNextMusicIndex() >
+    // musicIndex 다음 노래의 인덱스를 반환한다. 마지막곡의 다음곡은 처음곡이다.
+    private int getNextMusicIndex(int musicIndex) {
+        return (musicIndex + 1 < m_musicFiles.length) ? musicIndex + 1 : 0;
+    }
+
+    // < showNotification() >
+    // 현재 재생중인 노래 정보를 보여주기 위해 Notification객체를 생성하고
+    // 현재 실행중인 서비스를 Foreground로 실행하기 위해 startForeground()를 호출한다.
+    private void showNotification() {
+        //***************************************
+        // Service를 Foreground로 실행하기 위한 과정
+
+        // 1. Notification 객체 생성
+        // 1-1. Intent 객체 생성 - MainActivity 클래스를 실행하기 위한 Intent 객체
+        Intent sintent = new Intent(this, MainActivity.class);
+        // 1-2. Intent 객체를 이용하여 PendingIntent 객체를 생성 - Activity를 실행하기 위한 PendingIntent
+        PendingIntent pIntent = PendingIntent.getActivity(this, 0, sintent, PendingIntent.FLAG_UPDATE_CURRENT);
+
+        // 1-3. Notification 객체 생성
+        Notification noti = new Notification.Builder(this)
+                .setContentTitle("Simple_MP3Player")
+                .setContentText(m_playingMusicTitle)
+                .setSmallIcon(R.drawable.ic_music_note_black_24dp)
+                .setContentIntent(pIntent)
+                .build();
+
+        // 2. foregound service 설정 - startForeground() 메소드 호출, 위에서 생성한 nofication 객체 넘겨줌
+        startForeground(123, noti);
+        //****************************************
+    }
+
     // < startMusic() >
     // 현재 m_musicPlayer에 설정된 음원을 재생한다.
+    // 아직 준비중이라면 준비가 끝나는 대로 재생하도록 표시해둔다.
     void startMusic() {
-        m_musicPlayer.start();
+        if(m_isPrepared)
+            m_musicPlayer.start();
+        else
+            m_isStartPending = true;
     }
 
     // < pauseMusic() >
     // 현재 m_musicPlayer에서 재생중인 음원을 일시정지한다.
+    // 아직 준비중이라면 대기중인 재생 요청을 취소한다.
     void pauseMusic() {
-        m_musicPlayer.pause();
+        m_isStartPending = false;
+        if(m_isPrepared && m_musicPlayer.isPlaying())
+            m_musicPlayer.pause();
     }
 
     // < getPlayMusicTitle() >
     // 현재재생중인 음원의 제목을 반환한다.
     String getPlayMusicTitle() {
-        return m_musicFiles[m_playingMusicIndex].getName().replace(".mp3","");
+        return m_playingMusicTitle;
     }
 
     // < getIsPlaying() >
-    // 1. 반환값 true: 현재 노래가 재생중임.
+    // 1. 반환값 true: 현재 노래가 재생중이거나, 준비가 끝나는 대로 재생될 예정임.
     // 2. 반환값 false: 현재 노래가 재생중이지 않음.
     boolean getIsPlaying() {
-        return m_musicPlayer.isPlaying();
+        return m_isStartPending || (m_isPrepared && m_musicPlayer.isPlaying());
     }
 
     // < getMusicIndex() >
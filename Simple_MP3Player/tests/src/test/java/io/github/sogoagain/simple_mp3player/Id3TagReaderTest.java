@@ -0,0 +1,292 @@
+package io.github.sogoagain.simple_mp3player;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+// < Id3TagReaderTest >
+// 직접 만든 작은 태그 바이트 배열을 임시 파일로 써서 Id3TagReader가 읽는 값을 확인한다.
+// 1. ID3v2.2/2.3/2.4 프레임 헤더와 텍스트 인코딩, unsynchronisation
+// 2. ID3v1.1 블록의 트랙 번호와 ID3v2에 없던 정보 채우기
+// 3. MPEG 프레임 헤더(CBR)와 Xing 헤더(VBR)로 추정한 재생 시간, MPEG 오디오가 아닌 경우
+public class Id3TagReaderTest {
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    private static final Charset UTF_16 = Charset.forName("UTF-16");
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // MPEG1 Layer III, 128kbps, 44.1kHz, 스테레오, 패딩 없음 (프레임 크기 417바이트)
+    private static final byte[] MPEG_HEADER = { (byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x00 };
+    private static final int MPEG_FRAME_SIZE = 417;
+
+    private File m_dir;
+
+    @Before
+    public void setUp() throws IOException {
+        m_dir = Files.createTempDirectory("id3-test").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = m_dir.listFiles();
+        if(files != null) {
+            for(File file : files)
+                file.delete();
+        }
+        m_dir.delete();
+    }
+
+    @Test
+    public void readsId3v23Frames() throws IOException {
+        byte[] tag = id3v2(3, 0,
+                frameV23("TIT2", text(0, "Title", ISO_8859_1)),
+                frameV23("APIC", new byte[300]),
+                frameV23("TPE1", text(1, "아티스트", UTF_16)),
+                frameV23("TALB", text(0, "Album", ISO_8859_1)),
+                frameV23("TRCK", text(0, "3/12", ISO_8859_1)),
+                frameV23("TLEN", text(0, "215000", ISO_8859_1)));
+
+        Id3TagReader.Tag result = readFile("v23.mp3", tag);
+
+        assertEquals("Title", result.title);
+        assertEquals("아티스트", result.artist);
+        assertEquals("Album", result.album);
+        assertEquals(3, result.trackNumber);
+        assertEquals(215000, result.durationMs);
+    }
+
+    @Test
+    public void readsId3v22Frames() throws IOException {
+        byte[] tag = id3v2(2, 0,
+                frameV22("TT2", text(0, "Old Title", ISO_8859_1)),
+                frameV22("TP1", text(0, "Old Artist", ISO_8859_1)),
+                frameV22("TAL", text(0, "Old Album", ISO_8859_1)),
+                frameV22("TRK", text(0, "7", ISO_8859_1)));
+
+        Id3TagReader.Tag result = readFile("v22.mp3", tag);
+
+        assertEquals("Old Title", result.title);
+        assertEquals("Old Artist", result.artist);
+        assertEquals("Old Album", result.album);
+        assertEquals(7, result.trackNumber);
+        assertEquals(-1, result.durationMs);
+    }
+
+    @Test
+    public void readsId3v24SyncsafeAndUnsynchronisedFrames() throws IOException {
+        // 프레임 크기가 syncsafe 정수이고, 제목 프레임만 프레임 단위 unsynchronisation(0x02)과 데이터 길이 표시(0x01)가 있다.
+        // v2.4는 텍스트 프레임에 null로 구분된 여러 값을 둘 수 있으며 첫 번째 값만 읽는다.
+        byte[] title = text(0, "AÿB", ISO_8859_1);
+        byte[] unsynchronised = concat(new byte[] { 0, 0, 0, (byte) title.length },
+                new byte[] { title[0], title[1], (byte) 0xFF, 0x00, title[3] });
+        byte[] tag = id3v2(4, 0,
+                frameV24("TIT2", 0x03, unsynchronised),
+                frameV24("TPE1", 0, concat(text(3, "가수", UTF_8), new byte[] { 0 }, "다른 가수".getBytes(UTF_8))),
+                frameV24("TALB", 0, text(3, "앨범", UTF_8)));
+
+        Id3TagReader.Tag result = readFile("v24.mp3", tag);
+
+        assertEquals("AÿB", result.title);
+        assertEquals("가수", result.artist);
+        assertEquals("앨범", result.album);
+        assertEquals(-1, result.trackNumber);
+    }
+
+    @Test
+    public void undoesTagUnsynchronisationInFrameBodies() throws IOException {
+        // 태그 전체 unsynchronisation 플래그(0x80): 0xFF 뒤에 0x00이 끼워져 있다.
+        byte[] body = { 0, 'x', (byte) 0xFF, 0x00, 'y' };
+        byte[] tag = id3v2(3, 0x80, frameV23("TIT2", body));
+
+        Id3TagReader.Tag result = readFile("unsync.mp3", tag);
+
+        assertEquals("xÿy", result.title);
+    }
+
+    @Test
+    public void id3v1FillsOnlyMissingFields() throws IOException {
+        byte[] tag = id3v2(3, 0, frameV23("TIT2", text(0, "V2 Title", ISO_8859_1)));
+        byte[] v1 = id3v1("V1 Title", "V1 Artist", "V1 Album", 9);
+
+        Id3TagReader.Tag result = readFile("both.mp3", concat(tag, new byte[64], v1));
+
+        assertEquals("V2 Title", result.title);
+        assertEquals("V1 Artist", result.artist);
+        assertEquals("V1 Album", result.album);
+        assertEquals(9, result.trackNumber);
+    }
+
+    @Test
+    public void id3v1WithoutTrackByte() throws IOException {
+        byte[] v1 = id3v1("Only V1", "Artist", "Album", 0);
+
+        Id3TagReader.Tag result = readFile("v1.mp3", concat(new byte[16], v1));
+
+        assertEquals("Only V1", result.title);
+        assertEquals(-1, result.trackNumber);
+    }
+
+    @Test
+    public void estimatesCbrDurationFromFrameHeader() throws IOException {
+        byte[] tag = id3v2(3, 0, frameV23("TIT2", text(0, "CBR", ISO_8859_1)));
+        byte[] audio = frames(10);
+
+        Id3TagReader.Tag result = readFile("cbr.mp3", concat(tag, audio));
+
+        // 4170바이트 * 8 / 128kbps
+        assertEquals(audio.length * 8 / 128, result.durationMs);
+    }
+
+    @Test
+    public void estimatesVbrDurationFromXingHeader() throws IOException {
+        byte[] audio = frames(3);
+        // 스테레오 MPEG1의 사이드 정보(32바이트) 바로 뒤에 "Xing", 플래그(프레임 수 있음), 프레임 수
+        int xing = 4 + 32;
+        byte[] xingHeader = { 'X', 'i', 'n', 'g', 0, 0, 0, 1, 0, 0, 0x03, (byte) 0xE8 };   // 1000프레임
+        System.arraycopy(xingHeader, 0, audio, xing, xingHeader.length);
+
+        Id3TagReader.Tag result = readFile("vbr.mp3", audio);
+
+        assertEquals(1000L * 1152 * 1000 / 44100, result.durationMs);
+    }
+
+    @Test
+    public void skipsSyncBytesWithoutFollowingFrame() throws IOException {
+        // 프레임 헤더처럼 보이는 바이트 뒤에 다음 프레임이 없으면 무시하고, 그 뒤의 진짜 프레임들로 추정한다.
+        byte[] noise = new byte[100];
+        System.arraycopy(MPEG_HEADER, 0, noise, 10, MPEG_HEADER.length);
+        byte[] audio = frames(4);
+
+        Id3TagReader.Tag result = readFile("noise.mp3", concat(noise, audio));
+
+        assertEquals(audio.length * 8 / 128, result.durationMs);
+    }
+
+    @Test
+    public void doesNotEstimateDurationOfOtherFormats() throws IOException {
+        byte[] noise = new byte[2000];
+        System.arraycopy(MPEG_HEADER, 0, noise, 10, MPEG_HEADER.length);
+
+        assertEquals(-1, readFile("noise.mp3", noise).durationMs);
+        assertEquals(-1, readFile("frames.m4a", frames(10)).durationMs);
+        assertEquals(-1, readFile("frames.wav", frames(10)).durationMs);
+    }
+
+    @Test
+    public void ignoresFilesWithoutTags() throws IOException {
+        Id3TagReader.Tag result = readFile("empty.mp3", new byte[0]);
+
+        assertNotNull(result);
+        assertNull(result.title);
+        assertNull(result.artist);
+        assertEquals(-1, result.trackNumber);
+        assertEquals(-1, result.durationMs);
+    }
+
+    // < readFile() >
+    // bytes를 임시 파일로 쓰고 Id3TagReader로 읽는다.
+    private Id3TagReader.Tag readFile(String filename, byte[] bytes) throws IOException {
+        File file = new File(m_dir, filename);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        return Id3TagReader.read(file);
+    }
+
+    // < id3v2() >
+    // ID3v2 태그 헤더(버전, 플래그, syncsafe 크기) 뒤에 프레임들과 패딩을 붙인다.
+    private static byte[] id3v2(int majorVersion, int flags, byte[]... frames) {
+        byte[] body = concat(concat(frames), new byte[32]);
+        byte[] header = { 'I', 'D', '3', (byte) majorVersion, 0, (byte) flags, 0, 0, 0, 0 };
+        System.arraycopy(syncsafe(body.length), 0, header, 6, 4);
+        return concat(header, body);
+    }
+
+    private static byte[] frameV22(String id, byte[] data) {
+        byte[] header = new byte[6];
+        System.arraycopy(id.getBytes(ISO_8859_1), 0, header, 0, 3);
+        header[3] = (byte) (data.length >> 16);
+        header[4] = (byte) (data.length >> 8);
+        header[5] = (byte) data.length;
+        return concat(header, data);
+    }
+
+    private static byte[] frameV23(String id, byte[] data) {
+        byte[] header = new byte[10];
+        System.arraycopy(id.getBytes(ISO_8859_1), 0, header, 0, 4);
+        header[4] = (byte) (data.length >> 24);
+        header[5] = (byte) (data.length >> 16);
+        header[6] = (byte) (data.length >> 8);
+        header[7] = (byte) data.length;
+        return concat(header, data);
+    }
+
+    private static byte[] frameV24(String id, int formatFlags, byte[] data) {
+        byte[] header = new byte[10];
+        System.arraycopy(id.getBytes(ISO_8859_1), 0, header, 0, 4);
+        System.arraycopy(syncsafe(data.length), 0, header, 4, 4);
+        header[9] = (byte) formatFlags;
+        return concat(header, data);
+    }
+
+    // < text() >
+    // 텍스트 프레임 내용 (첫 바이트가 인코딩)
+    private static byte[] text(int encoding, String value, Charset charset) {
+        return concat(new byte[] { (byte) encoding }, value.getBytes(charset));
+    }
+
+    // < id3v1() >
+    // 파일 끝의 128바이트 ID3v1(.1) 블록 (trackNumber가 0이면 ID3v1.0)
+    private static byte[] id3v1(String title, String artist, String album, int trackNumber) {
+        byte[] block = new byte[128];
+        block[0] = 'T';
+        block[1] = 'A';
+        block[2] = 'G';
+        putLatin1(block, 3, title);
+        putLatin1(block, 33, artist);
+        putLatin1(block, 63, album);
+        if(trackNumber > 0)
+            block[126] = (byte) trackNumber;
+        else
+            putLatin1(block, 97, "a comment that fills all thirty");
+        return block;
+    }
+
+    private static void putLatin1(byte[] block, int offset, String value) {
+        byte[] bytes = value.getBytes(ISO_8859_1);
+        System.arraycopy(bytes, 0, block, offset, Math.min(bytes.length, 30));
+    }
+
+    // < frames() >
+    // MPEG_HEADER로 시작하는 빈 프레임 numOfFrames개
+    private static byte[] frames(int numOfFrames) {
+        byte[] audio = new byte[MPEG_FRAME_SIZE * numOfFrames];
+        for(int i = 0; i < numOfFrames; i++)
+            System.arraycopy(MPEG_HEADER, 0, audio, i * MPEG_FRAME_SIZE, MPEG_HEADER.length);
+        return audio;
+    }
+
+    private static byte[] syncsafe(int value) {
+        return new byte[] { (byte) ((value >> 21) & 0x7F), (byte) ((value >> 14) & 0x7F), (byte) ((value >> 7) & 0x7F), (byte) (value & 0x7F) };
+    }
+
+    private static byte[] concat(byte[]... arrays) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for(byte[] array : arrays)
+            out.write(array, 0, array.length);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,125 @@
+package io.github.sogoagain.simple_notepad;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/*
+            < 벤치마크용 메모 저장소 >
+ 임시 디렉터리에 numOfNotes개의 메모를 저장하고 카탈로그를 만들어 둔다. (Trial마다 한 번)
+ 앱의 NoteStorage와 같은 순서로 저장소를 쌓되, 파일 위치만 임시 디렉터리로 바꾼다.
+    - 메모 제목은 "note i"이고, DUPLICATE_RATIO만큼은 "meeting (i)" 형식의 중복 제목이다.
+      (JVM의 기본 문자셋이 UTF-8이 아니면 한글 파일 이름이 깨지므로 제목은 영문으로 한다.)
+    - 메모 내용은 BODY_LINES줄이고, TEMPLATE_RATIO만큼은 같은 템플릿 내용이다. (DedupNoteStore에서 blob을 함께 사용)
+ */
+@State(Scope.Benchmark)
+public class NoteFixture {
+    static final String DUPLICATE_TITLE = "meeting";
+    private static final int DUPLICATE_RATIO = 10;     // 10개 중 1개는 중복 제목
+    private static final int TEMPLATE_RATIO = 5;       // 5개 중 1개는 템플릿 내용
+    private static final int BODY_LINES = 40;          // 메모 내용의 줄 수 (약 2KB)
+    private static final int WRITE_BATCH = 1000;       // 메모를 채울 때 한 번에 저장하는 메모 수
+
+    @Param({"1000", "10000", "100000"})
+    public int numOfNotes;
+
+    @Param({"file", "segment", "dedup"})
+    public String storeType;
+
+    File m_rootDir;             // 임시 디렉터리
+    DeltaNoteStore m_store;     // 메모 저장소
+    NoteCatalog m_catalog;      // 메모 목록 카탈로그
+    String[] m_titles;          // 저장된 메모 제목들
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        m_rootDir = Files.createTempDirectory("notepad-bench").toFile();
+        m_store = openStore(m_rootDir, storeType);
+
+        m_titles = new String[numOfNotes];
+        String template = makeBody(-1);
+        for(int start = 0; start < numOfNotes; start += WRITE_BATCH) {
+            int count = Math.min(WRITE_BATCH, numOfNotes - start);
+            String[] titles = new String[count];
+            byte[][] bodies = new byte[count][];
+            for(int i = 0; i < count; i++) {
+                int index = start + i;
+                titles[i] = (index % DUPLICATE_RATIO == 0) ? DUPLICATE_TITLE + " (" + (index + 1) + ")" : "note " + index;
+                String body = (index % TEMPLATE_RATIO == 0) ? template : makeBody(index);
+                bodies[i] = NoteCodec.encode(body.getBytes(NoteReader.UTF_8));
+                m_titles[index] = titles[i];
+            }
+
+            IOException[] errors = new IOException[count];
+            m_store.writeNotes(titles, bodies, errors);
+            for(IOException error : errors) {
+                if(error != null)
+                    throw error;
+            }
+        }
+
+        // 카탈로그 파일이 없으므로 저장소를 스캔해 스냅샷을 만든다.
+        m_catalog = new NoteCatalog(m_store, getCatalogFile());
+        m_catalog.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        deleteRecursively(m_rootDir);
+    }
+
+    File getCatalogFile() {
+        File catalogDir = new File(m_rootDir, "catalog");
+        catalogDir.mkdirs();
+        return new File(catalogDir, NoteCatalog.CATALOG_FILENAME);
+    }
+
+    File getDir(String name) {
+        File dir = new File(m_rootDir, name);
+        dir.mkdirs();
+        return dir;
+    }
+
+    /*
+                < NoteStorage.getStore()와 같은 구성의 저장소를 여는 메소드 >
+     */
+    static DeltaNoteStore openStore(File rootDir, String storeType) {
+        NoteStore store;
+        if(storeType.equals("segment")) {
+            store = new SegmentNoteStore(mkdirs(new File(rootDir, "notes")));
+        } else {
+            store = new FileNoteStore(mkdirs(new File(rootDir, "files")));
+            if(storeType.equals("dedup"))
+                store = new DedupNoteStore(mkdirs(new File(rootDir, "blobs")), store);
+        }
+        return new DeltaNoteStore(store, mkdirs(new File(rootDir, "deltas")));
+    }
+
+    static String makeBody(int seed) {
+        StringBuilder body = new StringBuilder();
+        for(int line = 0; line < BODY_LINES; line++)
+            body.append("메모 ").append(seed).append("의 ").append(line).append("번째 줄입니다. The quick brown fox.\n");
+        return body.toString();
+    }
+
+    private static File mkdirs(File dir) {
+        dir.mkdirs();
+        return dir;
+    }
+
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if(children != null) {
+            for(File child : children)
+                deleteRecursively(child);
+        }
+        file.delete();
+    }
+}
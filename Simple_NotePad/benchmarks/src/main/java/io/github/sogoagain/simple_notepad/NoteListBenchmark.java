@@ -0,0 +1,40 @@
+package io.github.sogoagain.simple_notepad;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/*
+            < 메모 목록 벤치마크 >
+ ShowNoteListActivity.getSavedNoteList()의 동작을 측정한다.
+    - loadList: 카탈로그 파일을 불러와 최근 수정 순으로 정렬된 목록을 만든다. (앱을 다시 시작할 때)
+    - scanStore: 카탈로그가 없거나 오래되었을 때 저장소 전체를 스캔한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NoteListBenchmark {
+    @Benchmark
+    public NoteOrderList loadList(NoteFixture fixture) {
+        NoteCatalog catalog = new NoteCatalog(fixture.m_store, fixture.getCatalogFile());
+        catalog.load();
+        return new NoteOrderList(NoteOrderList.BY_MODIFIED, catalog.getEntries());
+    }
+
+    @Benchmark
+    public ArrayList<NoteCatalog.Entry> scanStore(NoteFixture fixture) {
+        return fixture.m_store.scan();
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.sogoagain.simple_notepad;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+            < 메모 읽기 벤치마크 >
+ ViewNoteActivity가 메모를 여는 경로를 측정한다.
+    - readNote: 임의의 메모를 NoteReader로 페이지 단위로 모두 읽는다.
+    - readCachedNote: 카탈로그 항목의 스탬프로 NoteContentCache에서 찾고, 없을 때만 읽어서 보관한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadNoteBenchmark {
+    private final Random m_random = new Random(42);
+    private NoteContentCache m_contentCache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        m_contentCache = new NoteContentCache(8 * 1024 * 1024);
+    }
+
+    @Benchmark
+    public String readNote(NoteFixture fixture) throws IOException {
+        return read(fixture.m_store, pickTitle(fixture));
+    }
+
+    @Benchmark
+    public String readCachedNote(NoteFixture fixture) throws IOException {
+        String title = pickTitle(fixture);
+        NoteContentCache.Stamp stamp = NoteContentCache.getStamp(fixture.m_catalog.getEntry(title));
+        String body = m_contentCache.get(title, stamp);
+        if(body == null) {
+            body = read(fixture.m_store, title);
+            m_contentCache.put(title, stamp, body);
+        }
+        return body;
+    }
+
+    private String pickTitle(NoteFixture fixture) {
+        return fixture.m_titles[m_random.nextInt(fixture.m_titles.length)];
+    }
+
+    private static String read(NoteStore store, String title) throws IOException {
+        NoteReader reader = new NoteReader(store.openNote(title));
+        try {
+            StringBuilder body = new StringBuilder();
+            String page;
+            while((page = reader.readPage()) != null)
+                body.append(page);
+            return body.toString();
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.sogoagain.simple_notepad;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*
+            < 메모 저장 벤치마크 >
+ EditNoteActivity.onClickSaveBtn()이 요청하는 NoteWriter.saveNew()의 동작을 측정한다.
+    - saveNote: NoteWriter로 저장을 요청하고 (중복 제목 처리는 저장 스레드에서 한다.) 저장 완료 콜백까지 기다린다.
+    - resolveDuplicateTitle: 중복 제목이 numOfNotes / 10개 있는 제목의 새 번호를 할당한다. (예약은 바로 취소)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SaveNoteBenchmark {
+    // 동기화 서버 주소 (저장할 때 변경 기록만 남기고 서버에는 연결하지 않는다.)
+    private static final String SYNC_SERVER_URL = "http://localhost" + NoteSyncProtocol.SYNC_PATH;
+
+    private NoteWriter m_writer;
+    private String m_body;
+
+    @Setup(Level.Trial)
+    public void setUp(NoteFixture fixture) {
+        NoteSearchIndex searchIndex = new NoteSearchIndex(fixture.m_store, fixture.m_catalog,
+                fixture.getDir("catalog").toPath().resolve(NoteSearchIndex.INDEX_FILENAME).toFile());
+        NoteJournal journal = new NoteJournal(fixture.getDir("catalog").toPath().resolve(NoteJournal.JOURNAL_FILENAME).toFile());
+        journal.clear();
+        m_writer = new NoteWriter(fixture.m_store, fixture.m_catalog, journal, searchIndex,
+                new NoteContentCache(1024 * 1024), new NoteDraftStore(fixture.getDir("drafts")),
+                new NoteSyncEngine(SYNC_SERVER_URL, fixture.m_store, fixture.m_catalog, fixture.getDir("catalog")));
+        m_body = NoteFixture.makeBody(0);
+    }
+
+    // 검색 색인 반영이 끝나기 전에 NoteFixture가 임시 디렉터리를 지우지 않도록 저장 스레드를 종료한다.
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        m_writer.close();
+    }
+
+    @Benchmark
+    public String saveNote() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final String[] savedTitle = new String[1];
+        final IOException[] error = new IOException[1];
+        m_writer.saveNew(NoteFixture.DUPLICATE_TITLE, m_body, -1, new NoteWriter.Callback() {
+            @Override
+            public void onSaveCompleted(String title, IOException e) {
+                savedTitle[0] = title;
+                error[0] = e;
+                latch.countDown();
+            }
+        });
+        latch.await();
+        if(error[0] != null)
+            throw error[0];
+        return savedTitle[0];
+    }
+
+    @Benchmark
+    public String resolveDuplicateTitle(NoteFixture fixture) {
+        String title = fixture.m_catalog.resolveUniqueTitle(NoteFixture.DUPLICATE_TITLE);
+        fixture.m_catalog.releaseTitle(title);
+        return title;
+    }
+}
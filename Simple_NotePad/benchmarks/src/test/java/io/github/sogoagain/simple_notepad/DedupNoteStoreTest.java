@@ -0,0 +1,153 @@
+package io.github.sogoagain.simple_notepad;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+            < DedupNoteStore 참조 횟수 테스트 >
+ 같은 내용을 함께 쓰는 blob이 마지막 참조가 없어질 때만 지워지는지,
+ 한 묶음 안에서 메모들이 서로의 blob으로 옮겨가도 blob이 남아있는지 확인한다.
+ */
+public class DedupNoteStoreTest {
+    private File m_rootDir;
+    private File m_blobDir;
+    private DedupNoteStore m_store;
+
+    @Before
+    public void setUp() throws IOException {
+        m_rootDir = Files.createTempDirectory("dedup-test").toFile();
+        m_blobDir = new File(m_rootDir, "blobs");
+        m_blobDir.mkdirs();
+        m_store = openStore();
+    }
+
+    @After
+    public void tearDown() {
+        NoteFixture.deleteRecursively(m_rootDir);
+    }
+
+    @Test
+    public void sameBodiesShareOneBlob() throws IOException {
+        write(new String[] { "a", "b" }, new String[] { "same", "same" });
+        String hash = hashOf("a");
+
+        assertEquals(hash, hashOf("b"));
+        assertEquals(2, m_store.getRefCount(hash));
+
+        assertTrue(m_store.deleteNote("a"));
+        assertEquals(1, m_store.getRefCount(hash));
+        assertTrue(getBlobFile(hash).exists());
+        assertArrayEquals(TestNotes.bytes("same"), TestNotes.readBytes(m_store, "b"));
+
+        assertTrue(m_store.deleteNote("b"));
+        assertEquals(0, m_store.getRefCount(hash));
+        assertFalse(getBlobFile(hash).exists());
+    }
+
+    @Test
+    public void overwriteReleasesOldBlob() throws IOException {
+        write(new String[] { "a" }, new String[] { "old" });
+        String oldHash = hashOf("a");
+
+        write(new String[] { "a" }, new String[] { "new" });
+
+        assertEquals(0, m_store.getRefCount(oldHash));
+        assertFalse(getBlobFile(oldHash).exists());
+        assertArrayEquals(TestNotes.bytes("new"), TestNotes.readBytes(m_store, "a"));
+    }
+
+    @Test
+    public void batchMovingToReleasedBlobKeepsIt() throws IOException {
+        // a -> H, b -> H3
+        write(new String[] { "a", "b" }, new String[] { "H", "H3" });
+        String hash = hashOf("a");
+
+        // 한 묶음에서 a는 H를 떠나고 b가 H를 가리킨다.
+        write(new String[] { "a", "b" }, new String[] { "H2", "H" });
+
+        assertEquals(hash, hashOf("b"));
+        assertEquals(1, m_store.getRefCount(hash));
+        assertTrue(getBlobFile(hash).exists());
+        assertArrayEquals(TestNotes.bytes("H2"), TestNotes.readBytes(m_store, "a"));
+        assertArrayEquals(TestNotes.bytes("H"), TestNotes.readBytes(m_store, "b"));
+
+        // 두 메모가 blob을 맞바꿔도 둘 다 남는다.
+        String otherHash = hashOf("a");
+        write(new String[] { "a", "b" }, new String[] { "H", "H2" });
+        assertTrue(getBlobFile(hash).exists());
+        assertTrue(getBlobFile(otherHash).exists());
+
+        // 색인을 다시 불러와도 같은 내용을 읽는다.
+        m_store = openStore();
+        assertArrayEquals(TestNotes.bytes("H"), TestNotes.readBytes(m_store, "a"));
+        assertArrayEquals(TestNotes.bytes("H2"), TestNotes.readBytes(m_store, "b"));
+        assertEquals(1, m_store.getRefCount(hash));
+        assertEquals(2, blobCount());
+    }
+
+    @Test
+    public void sameTitleTwiceInBatchKeepsLastBody() throws IOException {
+        write(new String[] { "a", "a" }, new String[] { "first", "second" });
+
+        assertArrayEquals(TestNotes.bytes("second"), TestNotes.readBytes(m_store, "a"));
+        assertEquals(1, m_store.getRefCount(hashOf("a")));
+        assertEquals(1, blobCount());
+    }
+
+    @Test
+    public void deleteNotesReleasesSharedBlobOnce() throws IOException {
+        write(new String[] { "a", "b", "c" }, new String[] { "x", "x", "y" });
+        String hash = hashOf("a");
+
+        boolean[] isDeleted = new boolean[2];
+        m_store.deleteNotes(new String[] { "a", "c" }, isDeleted);
+
+        assertTrue(isDeleted[0]);
+        assertTrue(isDeleted[1]);
+        assertEquals(1, m_store.getRefCount(hash));
+        assertEquals(1, blobCount());
+        assertNull(m_store.stat("c"));
+    }
+
+    private DedupNoteStore openStore() {
+        File legacyDir = new File(m_rootDir, "files");
+        legacyDir.mkdirs();
+        return new DedupNoteStore(m_blobDir, new FileNoteStore(legacyDir));
+    }
+
+    private void write(String[] titles, String[] bodies) throws IOException {
+        byte[][] bytes = new byte[bodies.length][];
+        for(int i = 0; i < bodies.length; i++)
+            bytes[i] = TestNotes.bytes(bodies[i]);
+        TestNotes.write(m_store, titles, bytes);
+    }
+
+    private String hashOf(String title) {
+        String filename = m_store.stat(title).filename;
+        return filename.substring(0, filename.length() - DedupNoteStore.BLOB_EXTENSION.length());
+    }
+
+    private File getBlobFile(String hash) {
+        return new File(m_blobDir, hash + DedupNoteStore.BLOB_EXTENSION);
+    }
+
+    private int blobCount() {
+        int count = 0;
+        for(String filename : m_blobDir.list()) {
+            if(filename.endsWith(DedupNoteStore.BLOB_EXTENSION))
+                count++;
+        }
+        return count;
+    }
+}
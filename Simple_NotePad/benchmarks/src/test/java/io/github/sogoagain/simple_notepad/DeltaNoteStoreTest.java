@@ -0,0 +1,153 @@
+package io.github.sogoagain.simple_notepad;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+            < DeltaNoteStore 테스트 >
+ 수정 기록을 덧붙인 메모를 읽으면 원래 메모에 수정 기록을 차례로 적용한 내용이 나오는지,
+ 편집하는 동안 메모가 다시 저장되었으면 수정 기록 대신 편집한 메모 전체가 저장되는지,
+ 크기와 수정시각이 다른 스탬프가 서로 같게 비교되지 않는지 확인한다.
+ */
+public class DeltaNoteStoreTest {
+    private File m_rootDir;
+    private DeltaNoteStore m_store;
+
+    @Before
+    public void setUp() throws IOException {
+        m_rootDir = Files.createTempDirectory("delta-test").toFile();
+        m_store = NoteFixture.openStore(m_rootDir, "file");
+    }
+
+    @After
+    public void tearDown() {
+        NoteFixture.deleteRecursively(m_rootDir);
+    }
+
+    @Test
+    public void editsAreReplayedAcrossPages() throws IOException {
+        // 압축되어 저장되고 여러 페이지에 걸치는 메모 (서로게이트 쌍 포함)
+        StringBuilder original = new StringBuilder();
+        for(int line = 0; original.length() < NoteReader.PAGE_SIZE * 3; line++)
+            original.append("메모 ").append(line).append("번째 줄 😀 The quick brown fox.\n");
+        writeNote("note", original.toString());
+
+        ArrayList<NoteDelta.Edit> first = new ArrayList<>(Arrays.asList(
+                new NoteDelta.Edit(0, 2, "제목"),
+                new NoteDelta.Edit(NoteReader.PAGE_SIZE - 1, 0, "🎉")));
+        ArrayList<NoteDelta.Edit> second = new ArrayList<>(Arrays.asList(
+                new NoteDelta.Edit(NoteReader.PAGE_SIZE * 2, 100, ""),
+                new NoteDelta.Edit(5, 0, "추가")));
+        assertTrue(m_store.appendEdits("note", stampOf("note"), first));
+        assertTrue(m_store.appendEdits("note", stampOf("note"), second));
+
+        StringBuilder expected = new StringBuilder(original);
+        NoteDelta.apply(expected, first);
+        NoteDelta.apply(expected, second);
+        assertEquals(expected.toString(), readNote("note"));
+    }
+
+    @Test
+    public void fullWriteDiscardsEdits() throws IOException {
+        writeNote("note", "hello");
+        assertTrue(m_store.appendEdits("note", stampOf("note"), edits(new NoteDelta.Edit(5, 0, " world"))));
+        assertEquals("hello world", readNote("note"));
+
+        writeNote("note", "bye");
+        assertEquals("bye", readNote("note"));
+        assertFalse(new File(new File(m_rootDir, "deltas"), "note" + DeltaNoteStore.DELTA_EXTENSION).exists());
+    }
+
+    @Test
+    public void editsAgainstStaleNoteAreRejected() throws IOException {
+        writeNote("note", "hello");
+        NoteContentCache.Stamp stamp = stampOf("note");
+
+        // 편집하는 동안 동기화 등으로 메모 전체가 다시 저장되었다.
+        writeNote("note", "changed remotely");
+        assertFalse(m_store.appendEdits("note", stamp, edits(new NoteDelta.Edit(5, 0, " world"))));
+        assertEquals("changed remotely", readNote("note"));
+
+        // 수정 기록을 덧붙인 뒤의 스탬프로만 이어서 덧붙일 수 있다.
+        stamp = stampOf("note");
+        assertTrue(m_store.appendEdits("note", stamp, edits(new NoteDelta.Edit(0, 7, "edited"))));
+        assertFalse(m_store.appendEdits("note", stamp, edits(new NoteDelta.Edit(0, 0, "!"))));
+        assertEquals("edited remotely", readNote("note"));
+    }
+
+    @Test
+    public void staleStampDoesNotCollideWithCurrentStamp() throws IOException {
+        writeNote("note", "hello");
+        NoteContentCache.Stamp current = stampOf("note");
+
+        // 1ms 전에 저장된 31바이트 더 긴 메모의 스탬프는 크기와 수정시각을 합친 값이 같았다.
+        NoteContentCache.Stamp stale = new NoteContentCache.Stamp(current.size + 31, current.lastModified - 1);
+        assertFalse(m_store.appendEdits("note", stale, edits(new NoteDelta.Edit(5, 0, " world"))));
+        assertEquals("hello", readNote("note"));
+
+        assertTrue(m_store.appendEdits("note",
+                new NoteContentCache.Stamp(current.size, current.lastModified), edits(new NoteDelta.Edit(5, 0, " world"))));
+        assertEquals("hello world", readNote("note"));
+    }
+
+    @Test
+    public void writerFallsBackToFullWriteForStaleEdits() throws Exception {
+        writeNote("note", "hello");
+        NoteContentCache.Stamp stamp = stampOf("note");
+        writeNote("note", "changed remotely");
+
+        File catalogDir = new File(m_rootDir, "catalog");
+        catalogDir.mkdirs();
+        NoteCatalog catalog = new NoteCatalog(m_store, new File(catalogDir, "catalog"));
+        catalog.load();
+        NoteWriter writer = new NoteWriter(m_store, catalog, new NoteJournal(new File(catalogDir, NoteJournal.JOURNAL_FILENAME)),
+                new NoteSearchIndex(m_store, catalog, new File(catalogDir, NoteSearchIndex.INDEX_FILENAME)),
+                new NoteContentCache(1024 * 1024), new NoteDraftStore(new File(m_rootDir, "drafts")),
+                new NoteSyncEngine("http://localhost" + NoteSyncProtocol.SYNC_PATH, m_store, catalog, catalogDir));
+        final IOException[] result = new IOException[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        writer.saveEdits("note", stamp, edits(new NoteDelta.Edit(5, 0, " world")), "hello world",
+                new NoteWriter.Callback() {
+                    @Override
+                    public void onSaveCompleted(String title, IOException error) {
+                        result[0] = error;
+                        done.countDown();
+                    }
+                });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        writer.close();
+
+        assertNull(result[0]);
+        assertEquals("hello world", readNote("note"));
+    }
+
+    private NoteContentCache.Stamp stampOf(String title) {
+        return NoteContentCache.getStamp(m_store.stat(title));
+    }
+
+    private static ArrayList<NoteDelta.Edit> edits(NoteDelta.Edit... edits) {
+        return new ArrayList<>(Arrays.asList(edits));
+    }
+
+    private void writeNote(String title, String body) throws IOException {
+        TestNotes.write(m_store, new String[] { title }, new byte[][] { NoteCodec.encode(TestNotes.bytes(body)) });
+    }
+
+    private String readNote(String title) throws IOException {
+        return TestNotes.readText(m_store, title);
+    }
+}
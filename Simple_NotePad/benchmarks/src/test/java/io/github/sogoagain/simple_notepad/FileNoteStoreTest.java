@@ -0,0 +1,61 @@
+package io.github.sogoagain.simple_notepad;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+            < FileNoteStore 테스트 >
+ 한 묶음에 같은 제목이 두 번 들어와도 두 요청 모두 성공하고 나중 내용이 남는지,
+ 이전 실행에서 남은 임시 파일이 메모로 보이지 않고 정리되는지 확인한다.
+ */
+public class FileNoteStoreTest {
+    private File m_rootDir;
+    private FileNoteStore m_store;
+
+    @Before
+    public void setUp() throws IOException {
+        m_rootDir = Files.createTempDirectory("file-store-test").toFile();
+        m_store = new FileNoteStore(m_rootDir);
+    }
+
+    @After
+    public void tearDown() {
+        NoteFixture.deleteRecursively(m_rootDir);
+    }
+
+    @Test
+    public void sameTitleTwiceInBatchKeepsLastBody() throws IOException {
+        IOException[] errors = new IOException[2];
+        m_store.writeNotes(new String[] { "a", "a" }, new byte[][] { TestNotes.bytes("first"), TestNotes.bytes("second") }, errors);
+
+        assertNull(errors[0]);
+        assertNull(errors[1]);
+        assertArrayEquals(TestNotes.bytes("second"), TestNotes.readBytes(m_store, "a"));
+        assertEquals(1, m_store.scan().size());
+        assertEquals(1, m_rootDir.list().length);
+    }
+
+    @Test
+    public void staleTmpFilesAreDeleted() throws IOException {
+        File oldTmpFile = new File(m_rootDir, "a" + NoteCatalog.NOTE_EXTENSION + FileNoteStore.TMP_EXTENSION);
+        File tmpFile = new File(m_rootDir, "b" + NoteCatalog.NOTE_EXTENSION + ".123" + FileNoteStore.TMP_EXTENSION);
+        assertTrue(oldTmpFile.createNewFile());
+        assertTrue(tmpFile.createNewFile());
+        assertEquals(0, m_store.scan().size());
+
+        TestNotes.write(m_store, new String[] { "c" }, new byte[][] { TestNotes.bytes("c") });
+
+        assertEquals(1, m_rootDir.list().length);
+        assertEquals("c", m_store.scan().get(0).title);
+    }
+}
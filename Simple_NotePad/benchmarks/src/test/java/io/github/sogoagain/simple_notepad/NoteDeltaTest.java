@@ -0,0 +1,112 @@
+package io.github.sogoagain.simple_notepad;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/*
+            < NoteDelta 테스트 >
+ 수정 목록을 StringBuilder에 차례로 적용한 결과와
+ compose()로 합쳐 원래 메모를 읽으면서 적용한 결과(EditingReader)가 같은지 확인한다.
+ */
+public class NoteDeltaTest {
+    private static final String ALPHABET = "abc 가나다\n";
+
+    @Test
+    public void recordMergesTypingAndBackspace() {
+        NoteDelta delta = new NoteDelta();
+        delta.record(3, 0, "x");
+        delta.record(4, 0, "y");
+        delta.record(5, 0, "z");
+        delta.record(5, 1, "");
+
+        assertEquals(1, delta.getEdits().size());
+        assertEquals("xy", delta.getEdits().get(0).text);
+    }
+
+    @Test
+    public void composeSortsOverlappingEdits() throws IOException {
+        List<NoteDelta.Edit> edits = Arrays.asList(
+                new NoteDelta.Edit(5, 0, "!!"),       // "hello!! world"
+                new NoteDelta.Edit(0, 1, "J"),        // "Jello!! world"
+                new NoteDelta.Edit(4, 3, ""),         // "Jell world"
+                new NoteDelta.Edit(10, 0, "s"));      // "Jell worlds"
+
+        ArrayList<NoteDelta.Edit> composed = NoteDelta.compose(edits);
+        for(int i = 1; i < composed.size(); i++)
+            assertTrue(composed.get(i).start >= composed.get(i - 1).start + composed.get(i - 1).deleteLength);
+        assertEquals("Jell worlds", readAll(new NoteDelta.EditingReader(new StringReader("hello world"), edits), 3));
+    }
+
+    @Test
+    public void deleteBeyondEndIsClamped() throws IOException {
+        List<NoteDelta.Edit> edits = Arrays.asList(new NoteDelta.Edit(1, 100, ""), new NoteDelta.Edit(1, 0, "x"));
+        assertEquals(apply("abc", edits), readAll(new NoteDelta.EditingReader(new StringReader("abc"), edits), 8));
+    }
+
+    @Test
+    public void editBeyondEndFails() {
+        List<NoteDelta.Edit> edits = Arrays.asList(new NoteDelta.Edit(10, 0, "x"));
+        try {
+            readAll(new NoteDelta.EditingReader(new StringReader("abc"), edits), 8);
+            fail("원래 메모의 끝을 넘는 수정은 실패해야 한다.");
+        } catch (IOException e) {
+            // 맞지 않는 수정 목록
+        }
+    }
+
+    @Test
+    public void streamingMatchesApplyForRandomEdits() throws IOException {
+        Random random = new Random(7);
+        for(int round = 0; round < 300; round++) {
+            String original = randomText(random, random.nextInt(2000));
+            StringBuilder current = new StringBuilder(original);
+            ArrayList<NoteDelta.Edit> edits = new ArrayList<>();
+            int numOfEdits = 1 + random.nextInt(40);
+            for(int i = 0; i < numOfEdits; i++) {
+                int start = random.nextInt(current.length() + 1);
+                int deleteLength = random.nextInt(Math.min(current.length() - start, 30) + 1);
+                NoteDelta.Edit edit = new NoteDelta.Edit(start, deleteLength, randomText(random, random.nextInt(12)));
+                edits.add(edit);
+                current.replace(start, start + deleteLength, edit.text);
+            }
+
+            int bufferSize = 1 + random.nextInt(64);
+            assertEquals("round " + round, current.toString(),
+                    readAll(new NoteDelta.EditingReader(new StringReader(original), edits), bufferSize));
+        }
+    }
+
+    private static String apply(String original, List<NoteDelta.Edit> edits) {
+        StringBuilder body = new StringBuilder(original);
+        NoteDelta.apply(body, edits);
+        return body.toString();
+    }
+
+    private static String readAll(Reader reader, int bufferSize) throws IOException {
+        StringBuilder body = new StringBuilder();
+        char[] buffer = new char[bufferSize];
+        int length;
+        while((length = reader.read(buffer, 0, buffer.length)) != -1)
+            body.append(buffer, 0, length);
+        reader.close();
+        return body.toString();
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < length; i++)
+            text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        return text.toString();
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.sogoagain.simple_notepad;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+            < NoteJournal 복구 테스트 >
+ 앱이 저장/삭제 도중 종료된 것처럼 COMMIT하지 않은 기록을 남긴 뒤 다시 열어 recover()가
+ 삭제는 마저 하고, 저장은 끝까지 읽을 수 없는 메모만 지우는지 확인한다.
+ */
+public class NoteJournalTest {
+    private File m_rootDir;
+    private File m_journalFile;
+    private DeltaNoteStore m_store;
+
+    @Before
+    public void setUp() throws IOException {
+        m_rootDir = Files.createTempDirectory("journal-test").toFile();
+        m_journalFile = new File(m_rootDir, NoteJournal.JOURNAL_FILENAME);
+        m_store = NoteFixture.openStore(m_rootDir, "file");
+    }
+
+    @After
+    public void tearDown() {
+        NoteFixture.deleteRecursively(m_rootDir);
+    }
+
+    @Test
+    public void committedWorkIsNotRecovered() throws IOException {
+        writeNote("a", NoteCodec.encode(TestNotes.bytes("hello")));
+        NoteJournal journal = openJournal();
+        journal.commit(journal.begin(NoteJournal.OP_SAVE, new String[] { "a" }));
+        journal.commit(journal.begin(NoteJournal.OP_DELETE, new String[] { "b" }));
+
+        assertTrue(openJournal().recover(m_store).isEmpty());
+        assertNotNull(m_store.stat("a"));
+    }
+
+    @Test
+    public void interruptedDeleteIsFinished() throws IOException {
+        writeNote("a", NoteCodec.encode(TestNotes.bytes("hello")));
+        openJournal().begin(NoteJournal.OP_DELETE, new String[] { "a" });
+
+        assertEquals(Arrays.asList("a"), openJournal().recover(m_store));
+        assertNull(m_store.stat("a"));
+    }
+
+    @Test
+    public void interruptedSaveKeepsOnlyReadableNotes() throws IOException {
+        byte[] readable = NoteCodec.encode(TestNotes.bytes("끝까지 쓰인 메모"));
+        writeNote("kept", readable);
+        // UTF-8 문자가 중간에 잘린 메모 ("가"의 앞 두 바이트)
+        writeNote("truncated", NoteCodec.encode(new byte[] { 'a', (byte) 0xEA, (byte) 0xB0 }));
+        // 잘못된 UTF-8 바이트가 들어간 메모
+        writeNote("malformed", NoteCodec.encode(new byte[] { 'a', (byte) 0xFF, 'b' }));
+        openJournal().begin(NoteJournal.OP_SAVE, new String[] { "kept", "truncated", "malformed", "missing" });
+
+        ArrayList<String> titles = openJournal().recover(m_store);
+
+        assertEquals(Arrays.asList("kept", "truncated", "malformed", "missing"), titles);
+        assertArrayEquals(readable, TestNotes.readBytes(m_store, "kept"));
+        assertNull(m_store.stat("truncated"));
+        assertNull(m_store.stat("malformed"));
+    }
+
+    @Test
+    public void lastOperationPerTitleWins() throws IOException {
+        writeNote("a", NoteCodec.encode(TestNotes.bytes("hello")));
+        NoteJournal journal = openJournal();
+        journal.commit(journal.begin(NoteJournal.OP_DELETE, new String[] { "a" }));
+        journal.begin(NoteJournal.OP_SAVE, new String[] { "a" });
+
+        assertEquals(Arrays.asList("a"), openJournal().recover(m_store));
+        assertNotNull(m_store.stat("a"));
+    }
+
+    private NoteJournal openJournal() {
+        return new NoteJournal(m_journalFile);
+    }
+
+    private void writeNote(String title, byte[] encoded) throws IOException {
+        TestNotes.write(m_store, new String[] { title }, new byte[][] { encoded });
+    }
+}
@@ -0,0 +1,156 @@
+package io.github.sogoagain.simple_notepad;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+            < NoteSearchIndex 테스트 >
+ 같은 메모를 여러 번 저장하거나 메모를 많이 지워도 메모 번호가 계속 늘어나지 않는지,
+ 메모 번호를 다시 매긴 뒤에도 검색 결과와 색인 파일이 맞는지,
+ 선행 기록으로 정리된 메모들이 다시 색인되는지,
+ 끝이 잘린 색인 파일은 다시 만들지 않고 온전한 앞부분을 쓰는지 확인한다.
+ */
+public class NoteSearchIndexTest {
+    private File m_rootDir;
+    private File m_catalogDir;
+    private DeltaNoteStore m_store;
+    private NoteCatalog m_catalog;
+    private NoteSearchIndex m_index;
+
+    @Before
+    public void setUp() throws IOException {
+        m_rootDir = Files.createTempDirectory("search-test").toFile();
+        m_catalogDir = new File(m_rootDir, "catalog");
+        m_catalogDir.mkdirs();
+        m_store = NoteFixture.openStore(m_rootDir, "file");
+        m_catalog = new NoteCatalog(m_store, new File(m_catalogDir, NoteCatalog.CATALOG_FILENAME));
+        m_catalog.load();
+        m_index = openIndex();
+    }
+
+    @After
+    public void tearDown() {
+        NoteFixture.deleteRecursively(m_rootDir);
+    }
+
+    @Test
+    public void repeatedSavesDoNotGrowSlots() throws IOException {
+        saveNote("other", "cherry");
+        for(int i = 0; i < 500; i++)
+            saveNote("memo", "apple banana " + i);
+
+        assertTrue(m_index.getNumOfSlots() <= 4);
+        assertEquals(Arrays.asList("memo"), search("apple"));
+        assertEquals(Arrays.asList("memo"), search("499"));
+        assertEquals(new ArrayList<String>(), search("10"));
+        assertEquals(Arrays.asList("other"), search("cherry"));
+    }
+
+    @Test
+    public void compactedIndexMatchesAfterReload() throws IOException {
+        for(int i = 0; i < 10; i++)
+            saveNote("note " + i, "shared word" + i + " tail");
+
+        ArrayList<String> deletedTitles = new ArrayList<>();
+        for(int i = 0; i < 7; i++)
+            deletedTitles.add("note " + i);
+        deleteNotes(deletedTitles);
+
+        assertTrue(m_index.getNumOfSlots() <= 6);
+        assertEquals(Arrays.asList("note 7", "note 8", "note 9"), search("shared"));
+        assertEquals(Arrays.asList("note 8"), search("word8 tail"));
+
+        // 색인 파일을 다시 불러와도 같은 결과가 나온다.
+        m_index = openIndex();
+        assertEquals(Arrays.asList("note 7", "note 8", "note 9"), search("shared"));
+        assertEquals(new ArrayList<String>(), search("word3"));
+    }
+
+    @Test
+    public void recoveredNotesAreReindexed() throws IOException {
+        saveNote("kept", "old words");
+        saveNote("gone", "old words");
+
+        // 저장 도중 종료되어 색인에는 반영되지 않은 상태를 만든다.
+        m_index = openIndex();
+        TestNotes.write(m_store, new String[] { "kept" }, new byte[][] { NoteCodec.encode(TestNotes.bytes("new words")) });
+        m_catalog.putNote("kept", "new words");
+        m_store.deleteNote("gone");
+        m_catalog.removeNote("gone");
+
+        // 색인을 불러오기 전에 알린 경우
+        m_index.invalidateNotes(Arrays.asList("kept", "gone"));
+        m_index = openIndex();
+        assertEquals(Arrays.asList("kept"), search("new"));
+        assertEquals(new ArrayList<String>(), search("old"));
+
+        // 색인을 불러온 뒤에 알린 경우
+        TestNotes.write(m_store, new String[] { "kept" }, new byte[][] { NoteCodec.encode(TestNotes.bytes("newer")) });
+        m_catalog.putNote("kept", "newer");
+        m_index.invalidateNotes(Arrays.asList("kept"));
+        assertEquals(Arrays.asList("kept"), search("newer"));
+        assertEquals(new ArrayList<String>(), search("words"));
+    }
+
+    @Test
+    public void tornTailKeepsValidPrefix() throws IOException {
+        saveNote("a", "apple");
+        saveNote("b", "banana");
+
+        // 마지막 레코드를 덧붙이다 끊긴 상태를 만든다.
+        File indexFile = new File(m_catalogDir, NoteSearchIndex.INDEX_FILENAME);
+        RandomAccessFile file = new RandomAccessFile(indexFile, "rw");
+        try {
+            file.setLength(file.length() - 3);
+        } finally {
+            file.close();
+        }
+        // 색인을 다시 만들면 저장소의 새 내용이 보이므로, 앞부분을 그대로 쓰는지 알 수 있다.
+        TestNotes.write(m_store, new String[] { "a" }, new byte[][] { NoteCodec.encode(TestNotes.bytes("avocado")) });
+
+        m_index = openIndex();
+        assertEquals(Arrays.asList("a"), search("apple"));
+        assertEquals(new ArrayList<String>(), search("avocado"));
+        // 잘린 레코드의 메모는 카탈로그와 비교해 다시 색인한다.
+        assertEquals(Arrays.asList("b"), search("banana"));
+
+        saveNote("c", "cherry");
+        m_index = openIndex();
+        assertEquals(Arrays.asList("b"), search("banana"));
+        assertEquals(Arrays.asList("c"), search("cherry"));
+    }
+
+    private NoteSearchIndex openIndex() {
+        return new NoteSearchIndex(m_store, m_catalog, new File(m_catalogDir, NoteSearchIndex.INDEX_FILENAME));
+    }
+
+    private void saveNote(String title, String body) throws IOException {
+        TestNotes.write(m_store, new String[] { title }, new byte[][] { NoteCodec.encode(TestNotes.bytes(body)) });
+        m_catalog.putNote(title, body);
+        m_index.addNote(title, body);
+    }
+
+    private void deleteNotes(ArrayList<String> titles) {
+        m_store.deleteNotes(titles.toArray(new String[titles.size()]), new boolean[titles.size()]);
+        m_catalog.removeNotes(titles);
+        m_index.removeNotes(titles);
+    }
+
+    private ArrayList<String> search(String query) {
+        ArrayList<String> titles = new ArrayList<>();
+        for(NoteSearchIndex.Result result : m_index.search(query, 10))
+            titles.add(result.title);
+        return titles;
+    }
+}
@@ -0,0 +1,137 @@
+package io.github.sogoagain.simple_notepad;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+            < NoteSyncEngine 충돌 테스트 >
+ 로컬 대역 NoteSyncServer에 두 클라이언트를 연결해,
+ 같은 메모를 양쪽에서 고치면 늦게 보낸 쪽의 내용이 "제목 (1)"로 따로 저장되고 서버의 내용을 받아오는지,
+ 서버에 연결하지 못해도 예외 대신 실패 원인을 담은 결과가 반환되는지 확인한다.
+ */
+public class NoteSyncEngineTest {
+    /*
+                < 동기화 클라이언트 하나 (저장소, 카탈로그, 저장 담당, 동기화 엔진) >
+     */
+    private static class Client {
+        final DeltaNoteStore m_store;
+        final NoteCatalog m_catalog;
+        final NoteSyncEngine m_syncEngine;
+        final NoteWriter m_writer;
+
+        Client(File rootDir, String serverUrl) {
+            File catalogDir = new File(rootDir, "catalog");
+            catalogDir.mkdirs();
+            m_store = NoteFixture.openStore(rootDir, "file");
+            m_catalog = new NoteCatalog(m_store, new File(catalogDir, NoteCatalog.CATALOG_FILENAME));
+            m_catalog.load();
+            m_syncEngine = new NoteSyncEngine(serverUrl, m_store, m_catalog, catalogDir);
+            m_writer = new NoteWriter(m_store, m_catalog, new NoteJournal(new File(catalogDir, NoteJournal.JOURNAL_FILENAME)),
+                    new NoteSearchIndex(m_store, m_catalog, new File(catalogDir, NoteSearchIndex.INDEX_FILENAME)),
+                    new NoteContentCache(1024 * 1024), new NoteDraftStore(new File(rootDir, "drafts")), m_syncEngine);
+        }
+
+        void save(String title, String body) throws Exception {
+            final IOException[] result = new IOException[1];
+            final CountDownLatch done = new CountDownLatch(1);
+            m_writer.save(title, body, new NoteWriter.Callback() {
+                @Override
+                public void onSaveCompleted(String title, IOException error) {
+                    result[0] = error;
+                    done.countDown();
+                }
+            });
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            if(result[0] != null)
+                throw result[0];
+        }
+
+        String read(String title) throws IOException {
+            return TestNotes.readText(m_store, title);
+        }
+    }
+
+    private File m_rootDir;
+    private NoteSyncServer m_server;
+    private Client m_clientA;
+    private Client m_clientB;
+
+    @Before
+    public void setUp() throws IOException {
+        m_rootDir = Files.createTempDirectory("sync-test").toFile();
+        m_server = new NoteSyncServer(0);
+        m_server.start();
+        String serverUrl = "http://localhost:" + m_server.getPort() + NoteSyncProtocol.SYNC_PATH;
+        m_clientA = new Client(new File(m_rootDir, "a"), serverUrl);
+        m_clientB = new Client(new File(m_rootDir, "b"), serverUrl);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        m_clientA.m_writer.close();
+        m_clientB.m_writer.close();
+        m_server.stop();
+        NoteFixture.deleteRecursively(m_rootDir);
+    }
+
+    @Test
+    public void conflictingEditIsKeptAsCopy() throws Exception {
+        m_clientA.save("note", "처음 내용");
+        NoteSyncEngine.Result result = m_clientA.m_syncEngine.sync(m_clientA.m_writer);
+        assertNull(result.error);
+        assertEquals(1, result.numOfSent);
+
+        result = m_clientB.m_syncEngine.sync(m_clientB.m_writer);
+        assertEquals(1, result.numOfReceived);
+        assertEquals(Arrays.asList("note"), result.changedTitles);
+        assertEquals("처음 내용", m_clientB.read("note"));
+
+        // 양쪽에서 같은 메모를 고치고 A가 먼저 보낸다.
+        m_clientA.save("note", "A가 고친 내용");
+        m_clientB.save("note", "B가 고친 내용");
+        assertEquals(1, m_clientA.m_syncEngine.sync(m_clientA.m_writer).numOfSent);
+        result = m_clientB.m_syncEngine.sync(m_clientB.m_writer);
+
+        assertNull(result.error);
+        assertEquals(0, result.numOfSent);
+        assertEquals(1, result.numOfConflicts);
+        assertEquals(1, result.numOfReceived);
+        assertEquals(new HashSet<>(Arrays.asList("note", "note (1)")), new HashSet<>(result.changedTitles));
+        assertEquals("A가 고친 내용", m_clientB.read("note"));
+        assertEquals("B가 고친 내용", m_clientB.read("note (1)"));
+        assertNotNull(m_clientB.m_catalog.getEntry("note (1)"));
+
+        // 따로 저장된 B의 내용은 다음 동기화 때 A에게 전달된다.
+        assertEquals(1, m_clientB.m_syncEngine.sync(m_clientB.m_writer).numOfSent);
+        result = m_clientA.m_syncEngine.sync(m_clientA.m_writer);
+        assertEquals(Arrays.asList("note (1)"), result.changedTitles);
+        assertEquals("B가 고친 내용", m_clientA.read("note (1)"));
+    }
+
+    @Test
+    public void failedSyncReturnsErrorAndKeepsChanges() throws Exception {
+        m_clientA.save("note", "보내지 못한 내용");
+        m_server.stop();
+
+        NoteSyncEngine.Result result = m_clientA.m_syncEngine.sync(m_clientA.m_writer);
+
+        assertNotNull(result.error);
+        assertEquals(0, result.numOfSent);
+        assertTrue(result.changedTitles.isEmpty());
+        assertEquals(1, m_clientA.m_syncEngine.getNumOfChanged());
+    }
+}
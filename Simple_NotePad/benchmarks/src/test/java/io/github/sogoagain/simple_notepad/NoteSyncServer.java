@@ -0,0 +1,227 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+            < 메모 동기화 서버 (로컬 대역) >
+ 실제 백엔드 대신 개발 PC나 테스트에서 띄우는 간단한 HTTP 서버이다. 메모는 메모리에만 보관한다.
+ 앱에는 포함되지 않도록 benchmarks 모듈의 테스트 소스에 둔다.
+ "POST /sync" 요청 하나만 처리하며, 요청과 응답 본문은 NoteSyncProtocol 형식이다.
+ 메모마다 마지막으로 바뀐 버전과 내용(삭제되었으면 null), 바꾼 클라이언트를 기억하고,
+ 버전 -> 메모 제목 색인으로 커서 이후에 바뀐 메모들을 찾는다.
+ 에뮬레이터에서는 개발 PC의 주소가 10.0.2.2이므로 benchmarks 디렉터리에서 다음과 같이 띄운 뒤 NoteStorage.SYNC_SERVER_URL로 접속한다.
+    mvn -B test-compile
+    java -cp target/test-classes:target/classes io.github.sogoagain.simple_notepad.NoteSyncServer 8080
+ */
+class NoteSyncServer {
+    private static final int MAX_HEADER_LINE = 8 * 1024;
+
+    /*
+                < 서버에 저장된 메모 >
+     */
+    private static class Note {
+        final long version;
+        final byte[] body;      // 삭제된 메모는 null
+        final String origin;    // 마지막으로 바꾼 클라이언트 ID
+
+        Note(long version, byte[] body, String origin) {
+            this.version = version;
+            this.body = body;
+            this.origin = origin;
+        }
+    }
+
+    private final HashMap<String, Note> m_notes = new HashMap<>();            // 메모 제목 -> 마지막 버전
+    private final TreeMap<Long, String> m_titlesByVersion = new TreeMap<>();  // 버전 -> 그 버전에 바뀐 메모 제목
+    private long m_version;                 // 마지막으로 붙인 버전
+
+    private final ServerSocket m_serverSocket;
+    private final ExecutorService m_executor = Executors.newCachedThreadPool();
+
+    /*
+     port가 0이면 비어있는 포트를 사용한다. (테스트에서 getPort()로 확인한다.)
+     */
+    NoteSyncServer(int port) throws IOException {
+        m_serverSocket = new ServerSocket();
+        m_serverSocket.setReuseAddress(true);
+        m_serverSocket.bind(new InetSocketAddress(port));
+    }
+
+    int getPort() {
+        return m_serverSocket.getLocalPort();
+    }
+
+    /*
+                < 연결을 받기 시작하는 메소드 >
+     연결마다 스레드 풀에서 요청 하나를 처리하고 연결을 닫는다.
+     */
+    void start() {
+        m_executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                while(!m_serverSocket.isClosed()) {
+                    try {
+                        final Socket socket = m_serverSocket.accept();
+                        m_executor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        });
+                    } catch (IOException e) {
+                        if(!m_serverSocket.isClosed())
+                            e.printStackTrace();
+                    }
+                }
+            }
+        });
+    }
+
+    void stop() {
+        try {
+            m_serverSocket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        m_executor.shutdown();
+    }
+
+    /*
+                < 동기화 요청을 처리하는 메소드 >
+     1. 요청의 변경마다 기준 버전이 서버의 현재 버전과 같으면 반영하고 새 버전을 붙인다. 다르면 거절한다.
+     2. 커서 이후에 다른 클라이언트가 바꾼 메모들과 거절된 메모들의 현재 상태를 원격 변경으로 돌려준다.
+     */
+    synchronized NoteSyncProtocol.Response handle(NoteSyncProtocol.Request request) {
+        int numOfChanges = request.changes.size();
+        byte[] statuses = new byte[numOfChanges];
+        long[] versions = new long[numOfChanges];
+        HashMap<String, NoteSyncProtocol.Change> remoteChanges = new HashMap<>();
+
+        for(int i = 0; i < numOfChanges; i++) {
+            NoteSyncProtocol.Change change = request.changes.get(i);
+            Note note = m_notes.get(change.title);
+            long currentVersion = (note == null) ? 0 : note.version;
+            if(change.version != currentVersion) {
+                statuses[i] = NoteSyncProtocol.STATUS_CONFLICT;
+                versions[i] = currentVersion;
+                if(note != null)
+                    remoteChanges.put(change.title, toChange(change.title, note));
+                continue;
+            }
+
+            m_version++;
+            if(note != null)
+                m_titlesByVersion.remove(note.version);
+            m_notes.put(change.title, new Note(m_version,
+                    change.op == NoteSyncProtocol.OP_PUT ? change.body : null, request.clientId));
+            m_titlesByVersion.put(m_version, change.title);
+            statuses[i] = NoteSyncProtocol.STATUS_ACCEPTED;
+            versions[i] = m_version;
+        }
+
+        for(Map.Entry<Long, String> changed : m_titlesByVersion.tailMap(request.cursor, false).entrySet()) {
+            Note note = m_notes.get(changed.getValue());
+            if(!note.origin.equals(request.clientId))
+                remoteChanges.put(changed.getValue(), toChange(changed.getValue(), note));
+        }
+        return new NoteSyncProtocol.Response(m_version, statuses, versions,
+                new ArrayList<>(remoteChanges.values()));
+    }
+
+    private static NoteSyncProtocol.Change toChange(String title, Note note) {
+        if(note.body == null)
+            return new NoteSyncProtocol.Change(NoteSyncProtocol.OP_DELETE, title, note.version, null);
+        return new NoteSyncProtocol.Change(NoteSyncProtocol.OP_PUT, title, note.version, note.body);
+    }
+
+    /*
+                < HTTP 요청 하나를 처리하는 메소드 >
+     요청 줄과 헤더를 읽고 Content-Length만큼 본문을 읽어 handle()에 넘긴다.
+     */
+    private void serve(Socket socket) {
+        try {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            String[] requestLine = readLine(in).split(" ");
+            int contentLength = -1;
+            String line;
+            while(!(line = readLine(in)).isEmpty()) {
+                int colon = line.indexOf(':');
+                if(colon > 0 && line.substring(0, colon).trim().toLowerCase(Locale.US).equals("content-length"))
+                    contentLength = Integer.parseInt(line.substring(colon + 1).trim());
+            }
+
+            if(requestLine.length < 2 || !requestLine[0].equals("POST") || !requestLine[1].equals(NoteSyncProtocol.SYNC_PATH)) {
+                writeResponse(out, "404 Not Found", new byte[0]);
+                return;
+            }
+            if(contentLength < 0) {
+                writeResponse(out, "411 Length Required", new byte[0]);
+                return;
+            }
+
+            byte[] body = new byte[contentLength];
+            new DataInputStream(in).readFully(body);
+            NoteSyncProtocol.Response response;
+            try {
+                response = handle(NoteSyncProtocol.decodeRequest(new ByteArrayInputStream(body)));
+            } catch (IOException e) {
+                writeResponse(out, "400 Bad Request", new byte[0]);
+                return;
+            }
+            writeResponse(out, "200 OK", NoteSyncProtocol.encodeResponse(response));
+        } catch (IOException | NumberFormatException e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int ch;
+        while((ch = in.read()) != -1 && ch != '\n') {
+            if(ch != '\r')
+                line.append((char) ch);
+            if(line.length() > MAX_HEADER_LINE)
+                throw new IOException("헤더가 너무 깁니다.");
+        }
+        return line.toString();
+    }
+
+    private static void writeResponse(OutputStream out, String status, byte[] body) throws IOException {
+        String header = "HTTP/1.1 " + status + "\r\n"
+                + "Content-Type: " + NoteSyncProtocol.CONTENT_TYPE + "\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + "Connection: close\r\n\r\n";
+        out.write(header.getBytes("US-ASCII"));
+        out.write(body);
+        out.flush();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : 8080;
+        NoteSyncServer server = new NoteSyncServer(port);
+        server.start();
+        System.out.println("note sync server listening on port " + server.getPort());
+    }
+}
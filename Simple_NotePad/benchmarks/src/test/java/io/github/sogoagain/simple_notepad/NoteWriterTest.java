@@ -0,0 +1,89 @@
+package io.github.sogoagain.simple_notepad;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+            < NoteWriter 테스트 >
+ 저장 중에 예상하지 못한 예외가 생겨도 모든 요청의 콜백이 오류와 함께 호출되고,
+ 저장 스레드가 계속 다음 요청을 처리하는지 확인한다.
+ */
+public class NoteWriterTest {
+    /*
+                < 콜백 결과를 기다리는 도우미 >
+     */
+    private static class Result implements NoteWriter.Callback {
+        final CountDownLatch done = new CountDownLatch(1);
+        String title;
+        IOException error;
+
+        @Override
+        public void onSaveCompleted(String title, IOException error) {
+            this.title = title;
+            this.error = error;
+            done.countDown();
+        }
+
+        Result await() throws InterruptedException {
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            return this;
+        }
+    }
+
+    private File m_rootDir;
+    private DeltaNoteStore m_store;
+    private NoteCatalog m_catalog;
+    private NoteWriter m_writer;
+
+    @Before
+    public void setUp() throws IOException {
+        m_rootDir = Files.createTempDirectory("writer-test").toFile();
+        File catalogDir = new File(m_rootDir, "catalog");
+        catalogDir.mkdirs();
+        m_store = NoteFixture.openStore(m_rootDir, "file");
+        m_catalog = new NoteCatalog(m_store, new File(catalogDir, NoteCatalog.CATALOG_FILENAME));
+        m_catalog.load();
+        m_writer = new NoteWriter(m_store, m_catalog, new NoteJournal(new File(catalogDir, NoteJournal.JOURNAL_FILENAME)),
+                new NoteSearchIndex(m_store, m_catalog, new File(catalogDir, NoteSearchIndex.INDEX_FILENAME)),
+                new NoteContentCache(1024 * 1024), new NoteDraftStore(new File(m_rootDir, "drafts")),
+                new NoteSyncEngine("http://localhost" + NoteSyncProtocol.SYNC_PATH, m_store, m_catalog, catalogDir));
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        m_writer.close();
+        NoteFixture.deleteRecursively(m_rootDir);
+    }
+
+    @Test
+    public void unexpectedExceptionStillCompletesCallbacks() throws Exception {
+        // 내용이 null이면 인코딩하다 NullPointerException이 생긴다.
+        Result failed = new Result();
+        m_writer.saveNew("broken", null, -1, failed);
+
+        failed.await();
+        assertNotNull(failed.error);
+        assertEquals("broken", failed.title);
+        assertNull(m_catalog.getEntry("broken"));
+
+        // 저장 스레드는 계속 동작하고, 실패한 새 메모의 제목 예약도 취소되어 있다.
+        Result saved = new Result();
+        m_writer.saveNew("broken", "fixed", -1, saved);
+        saved.await();
+        assertNull(saved.error);
+        assertEquals("broken", saved.title);
+        assertEquals("fixed", TestNotes.readText(m_store, "broken"));
+    }
+}
@@ -0,0 +1,198 @@
+package io.github.sogoagain.simple_notepad;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/*
+            < SegmentNoteStore 테스트 >
+ compaction 도중에 끼어든 저장과 삭제가 새 세그먼트에 남는지,
+ 다시 열 때 힌트를 불러온 뒤 힌트 이후에 덧붙여진 레코드를 반영하는지,
+ 끝이 잘렸거나 CRC가 맞지 않는 레코드는 잘라내고 그 앞까지의 메모를 쓰는지 확인한다.
+ */
+public class SegmentNoteStoreTest {
+    private static final int BIG_SIZE = 512 * 1024;    // 세 번 저장하면 compaction이 시작되는 메모 크기
+
+    /*
+                < compaction 도중에 저장과 삭제를 끼워넣는 저장소 >
+     */
+    private static class InterruptedStore extends SegmentNoteStore {
+        boolean isCalled;
+        boolean isDeleted;
+        IOException error;
+
+        InterruptedStore(File storeDir) {
+            super(storeDir);
+        }
+
+        @Override
+        void onSnapshotCopied() {
+            isCalled = true;
+            try {
+                TestNotes.write(this, new String[] { "a", "c" }, new byte[][] { TestNotes.bytes("new a"), TestNotes.bytes("sea") });
+            } catch (IOException e) {
+                error = e;
+            }
+            isDeleted = deleteNote("b");
+        }
+    }
+
+    private File m_rootDir;
+    private SegmentNoteStore m_store;
+
+    @Before
+    public void setUp() throws IOException {
+        m_rootDir = Files.createTempDirectory("segment-test").toFile();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if(m_store != null)
+            m_store.close();
+        NoteFixture.deleteRecursively(m_rootDir);
+    }
+
+    @Test
+    public void writesDuringCompactionAreKept() throws Exception {
+        InterruptedStore store = new InterruptedStore(m_rootDir);
+        m_store = store;
+        TestNotes.write(store, new String[] { "a", "b" }, new byte[][] { TestNotes.bytes("old a"), TestNotes.bytes("bee") });
+        for(int i = 0; i < 3; i++)
+            TestNotes.write(store, new String[] { "big" }, new byte[][] { bigBody(i) });
+
+        // compaction이 끝날 때까지 기다린다.
+        store.close();
+        assertTrue(store.isCalled);
+        assertTrue(store.isDeleted);
+        assertNull(store.error);
+        assertTrue(getSegmentFile().length() < BIG_SIZE + 4096);
+
+        // compaction이 쓴 힌트로 다시 열어도 끼어든 저장과 삭제가 남아있다.
+        m_store = new SegmentNoteStore(m_rootDir);
+        assertEquals("new a", TestNotes.readText(m_store, "a"));
+        assertEquals("sea", TestNotes.readText(m_store, "c"));
+        assertArrayEquals(bigBody(2), TestNotes.readBytes(m_store, "big"));
+        assertNull(m_store.stat("b"));
+        assertEquals(3, m_store.scan().size());
+    }
+
+    @Test
+    public void recordsAfterHintAreReplayed() throws Exception {
+        // 힌트 파일을 쓰는 간격만큼 레코드를 덧붙인다.
+        String[] titles = new String[1024];
+        byte[][] bodies = new byte[titles.length][];
+        for(int i = 0; i < titles.length; i++) {
+            titles[i] = "note " + i;
+            bodies[i] = TestNotes.bytes("body " + i);
+        }
+        m_store = new SegmentNoteStore(m_rootDir);
+        TestNotes.write(m_store, titles, bodies);
+        assertTrue(new File(m_rootDir, SegmentNoteStore.SEGMENT_FILENAME + ".hint").exists());
+
+        TestNotes.write(m_store, new String[] { "late", "note 1" }, new byte[][] { TestNotes.bytes("late"), TestNotes.bytes("edited") });
+        assertTrue(m_store.deleteNote("note 0"));
+        m_store.close();
+
+        m_store = new SegmentNoteStore(m_rootDir);
+        assertEquals(1024, m_store.scan().size());
+        assertEquals("late", TestNotes.readText(m_store, "late"));
+        assertEquals("edited", TestNotes.readText(m_store, "note 1"));
+        assertEquals("body 1023", TestNotes.readText(m_store, "note 1023"));
+        assertNull(m_store.stat("note 0"));
+    }
+
+    @Test
+    public void tornTailIsTruncatedOnReopen() throws Exception {
+        m_store = new SegmentNoteStore(m_rootDir);
+        TestNotes.write(m_store, new String[] { "a" }, new byte[][] { TestNotes.bytes("apple") });
+        long validLength = getSegmentFile().length();
+        TestNotes.write(m_store, new String[] { "b" }, new byte[][] { TestNotes.bytes("banana") });
+        m_store.close();
+
+        // 마지막 레코드를 쓰다가 끊긴 상태를 만든다.
+        setLength(getSegmentFile().length() - 3);
+
+        m_store = new SegmentNoteStore(m_rootDir);
+        assertEquals(Arrays.asList("a"), titlesOf(m_store));
+        assertEquals("apple", TestNotes.readText(m_store, "a"));
+        assertEquals(validLength, getSegmentFile().length());
+
+        // 잘라낸 위치부터 이어서 덧붙인다.
+        TestNotes.write(m_store, new String[] { "c" }, new byte[][] { TestNotes.bytes("cherry") });
+        m_store.close();
+        m_store = new SegmentNoteStore(m_rootDir);
+        assertEquals(Arrays.asList("a", "c"), titlesOf(m_store));
+        assertEquals("cherry", TestNotes.readText(m_store, "c"));
+    }
+
+    @Test
+    public void recordWithBadCrcIsTruncatedOnReopen() throws Exception {
+        m_store = new SegmentNoteStore(m_rootDir);
+        TestNotes.write(m_store, new String[] { "a" }, new byte[][] { TestNotes.bytes("apple") });
+        long validLength = getSegmentFile().length();
+        TestNotes.write(m_store, new String[] { "b" }, new byte[][] { TestNotes.bytes("banana") });
+        m_store.close();
+
+        // 마지막 레코드의 메모 내용 한 바이트를 바꾼다.
+        RandomAccessFile file = new RandomAccessFile(getSegmentFile(), "rw");
+        try {
+            file.seek(file.length() - 5);
+            file.write('B');
+        } finally {
+            file.close();
+        }
+
+        m_store = new SegmentNoteStore(m_rootDir);
+        assertEquals(Arrays.asList("a"), titlesOf(m_store));
+        assertEquals(validLength, getSegmentFile().length());
+        try {
+            m_store.openNote("b").close();
+            fail();
+        } catch (FileNotFoundException e) {
+            // 잘라낸 메모는 찾을 수 없다.
+        }
+        assertFalse(m_store.deleteNote("b"));
+    }
+
+    private File getSegmentFile() {
+        return new File(m_rootDir, SegmentNoteStore.SEGMENT_FILENAME);
+    }
+
+    private void setLength(long length) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(getSegmentFile(), "rw");
+        try {
+            file.setLength(length);
+        } finally {
+            file.close();
+        }
+    }
+
+    private static byte[] bigBody(int seed) {
+        byte[] body = new byte[BIG_SIZE];
+        Arrays.fill(body, (byte) ('0' + seed));
+        return body;
+    }
+
+    private static List<String> titlesOf(NoteStore store) {
+        ArrayList<String> titles = new ArrayList<>();
+        for(NoteCatalog.Entry entry : store.scan())
+            titles.add(entry.title);
+        return titles;
+    }
+}
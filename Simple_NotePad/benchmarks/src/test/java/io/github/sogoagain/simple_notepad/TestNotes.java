@@ -0,0 +1,63 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+            < 테스트에서 함께 쓰는 메모 저장소 도우미 >
+ */
+final class TestNotes {
+
+    private TestNotes() {
+    }
+
+    static byte[] bytes(String body) {
+        return body.getBytes(NoteReader.UTF_8);
+    }
+
+    /*
+                < 메모들을 한 번에 저장하고, 실패한 메모가 있으면 그 예외를 던지는 메소드 >
+     */
+    static void write(NoteStore store, String[] titles, byte[][] bodies) throws IOException {
+        IOException[] errors = new IOException[titles.length];
+        store.writeNotes(titles, bodies, errors);
+        for(IOException error : errors) {
+            if(error != null)
+                throw error;
+        }
+    }
+
+    /*
+                < 메모 내용을 NoteReader로 끝까지 읽는 메소드 >
+     */
+    static String readText(NoteStore store, String title) throws IOException {
+        NoteReader reader = new NoteReader(store.openNote(title));
+        try {
+            StringBuilder body = new StringBuilder();
+            String page;
+            while((page = reader.readPage()) != null)
+                body.append(page);
+            return body.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /*
+                < 저장소에 기록된 바이트를 그대로 읽는 메소드 >
+     */
+    static byte[] readBytes(NoteStore store, String title) throws IOException {
+        InputStream in = store.openNote(title);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int length;
+            while((length = in.read(buffer)) != -1)
+                out.write(buffer, 0, length);
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,705 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/*
+            < 같은 내용의 메모를 한 번만 저장하는 저장소 >
+ 메모 내용(NoteCodec으로 인코딩된 바이트)의 SHA-256 해시를 이름으로 하는 blob 파일에 메모 내용을 저장하고,
+ 메모 제목 -> blob 해시를 색인 파일에 기록한다. 같은 내용의 메모들은 blob 하나를 함께 사용한다.
+ blob마다 참조하는 메모 수(참조 횟수)를 세어, 마지막 메모가 삭제되거나 다른 내용으로 저장되면 blob을 지운다.
+ 참조 횟수는 색인을 불러올 때 다시 계산하므로 따로 저장하지 않는다.
+ 저장 순서: blob을 쓰고 fsync → 색인 레코드를 덧붙이고 fsync → 참조가 없어진 blob을 지운다.
+ 그 사이에 앱이 종료되어 남은 blob(어떤 메모도 참조하지 않는 blob)은 다음에 색인을 불러올 때 지운다.
+ 색인에 없는 메모는 이전 저장소(legacyStore)에서 찾으므로 기존 메모 파일을 한 번에 옮기지 않고,
+ 메모가 다시 저장될 때 이 저장소로 옮기고 이전 저장소에서 지운다.
+ blob 파일 쓰기와 fsync는 잠그지 않고 하므로 여러 스레드가 다른 메모들을 동시에 저장할 수 있고,
+ 색인과 참조 횟수를 바꾸는 부분만 이 객체로 동기화한다.
+
+ 색인 파일 형식
+    스냅샷 : 매직넘버(int), 세대(long), 항목 길이(int), 항목 수(int), 항목마다 [메모 제목, 해시, 크기, 수정시각]
+    레코드 : payload 길이(int), payload, CRC32(int)
+    payload : 종류(PUT/DEL), 메모 제목, (PUT이면) 해시, 크기, 수정시각
+ 세대는 레코드가 덧붙여질 때마다 1씩 늘어나며 getStamp()에 사용된다.
+ */
+class DedupNoteStore implements NoteStore {
+    static final String INDEX_FILENAME = "blobs.index";
+    static final String BLOB_EXTENSION = ".blob";
+
+    private static final int INDEX_MAGIC = 0x4E424931;     // "NBI1"
+    private static final byte RECORD_PUT = 1;              // 메모 저장 레코드
+    private static final byte RECORD_DEL = 2;              // 메모 삭제 레코드
+    private static final int HEADER_SIZE = 16;             // 스냅샷 헤더 크기 (매직넘버 + 세대 + 항목 길이)
+    private static final int COMPACT_THRESHOLD = 1024;     // 레코드가 이 개수를 넘으면 스냅샷을 새로 쓴다.
+    private static final int COPY_BUFFER_SIZE = 8 * 1024;
+
+    /*
+                < 메모 제목이 가리키는 blob >
+     */
+    private static class BlobRef {
+        final String hash;
+        final long size;
+        final long lastModified;
+
+        BlobRef(String hash, long size, long lastModified) {
+            this.hash = hash;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private final File m_storeDir;          // blob 파일과 색인 파일이 저장되는 디렉터리
+    private final File m_indexFile;         // 메모 제목 -> blob 색인 파일
+    private final NoteStore m_legacyStore;  // 색인에 없는 메모를 찾는 이전 저장소
+
+    private final LinkedHashMap<String, BlobRef> m_refs = new LinkedHashMap<>();   // 메모 제목 -> blob
+    private final HashMap<String, Integer> m_refCounts = new HashMap<>();         // blob 해시 -> 참조 횟수
+    private boolean m_isLoaded;             // 색인을 불러왔는지 여부
+    private long m_generation;              // 색인 세대
+    private long m_validLength;             // 색인 파일에서 온전한 레코드가 끝나는 위치
+    private int m_numOfRecords;             // 마지막 스냅샷 이후 덧붙인 레코드 수
+
+    DedupNoteStore(File storeDir, NoteStore legacyStore) {
+        m_storeDir = storeDir;
+        m_indexFile = new File(storeDir, INDEX_FILENAME);
+        m_legacyStore = legacyStore;
+    }
+
+    /*
+                < 메모들을 한 번에 저장하는 메소드 >
+     1. 메모 내용의 해시를 구하고, 아직 없는 blob만 임시 파일에 쓴다. (같은 묶음 안의 같은 내용도 한 번만 쓴다.)
+     2. 임시 파일들을 연달아 fsync한다.
+     3. 잠금을 잡고 임시 파일들을 blob 파일 이름으로 바꾼 뒤, 색인 레코드들을 덧붙이고 fsync하고 참조 횟수를 반영한다.
+     1, 2는 잠그지 않으므로 여러 스레드가 다른 메모들의 blob을 동시에 쓸 수 있다.
+     그 사이에 다른 스레드가 같은 blob을 먼저 만들었으면 임시 파일을 지우고, 있던 blob이 지워졌으면 3에서 다시 쓴다.
+     */
+    @Override
+    public void writeNotes(String[] titles, byte[][] bodies, IOException[] errors) {
+        synchronized (this) {
+            try {
+                ensureLoaded();
+            } catch (IOException e) {
+                for(int i = 0; i < titles.length; i++)
+                    errors[i] = e;
+                return;
+            }
+        }
+
+        String[] hashes = new String[titles.length];
+        HashMap<String, File> tmpFiles = new HashMap<>();      // 이번에 새로 쓰는 blob들의 임시 파일
+        HashMap<String, FileOutputStream> streams = new HashMap<>();
+        for(int i = 0; i < titles.length; i++) {
+            hashes[i] = hash(bodies[i]);
+            if(tmpFiles.containsKey(hashes[i]) || getBlobFile(hashes[i]).exists())
+                continue;
+            File tmpFile = null;
+            FileOutputStream out = null;
+            try {
+                tmpFile = createTmpFile(hashes[i]);
+                out = new FileOutputStream(tmpFile);
+                out.write(bodies[i]);
+                tmpFiles.put(hashes[i], tmpFile);
+                streams.put(hashes[i], out);
+            } catch (IOException e) {
+                errors[i] = e;
+                closeQuietly(out);
+                if(tmpFile != null)
+                    tmpFile.delete();
+            }
+        }
+
+        HashSet<String> failedHashes = new HashSet<>();
+        for(Map.Entry<String, FileOutputStream> stream : streams.entrySet()) {
+            try {
+                stream.getValue().getFD().sync();
+                stream.getValue().close();
+            } catch (IOException e) {
+                e.printStackTrace();
+                closeQuietly(stream.getValue());
+                tmpFiles.remove(stream.getKey()).delete();
+                failedHashes.add(stream.getKey());
+            }
+        }
+
+        synchronized (this) {
+            for(Map.Entry<String, File> tmpFile : tmpFiles.entrySet()) {
+                String hash = tmpFile.getKey();
+                File blobFile = getBlobFile(hash);
+                if(m_refCounts.containsKey(hash) || blobFile.exists()) {
+                    tmpFile.getValue().delete();
+                } else if(!tmpFile.getValue().renameTo(blobFile)) {
+                    tmpFile.getValue().delete();
+                    failedHashes.add(hash);
+                }
+            }
+
+            long[] sizes = new long[titles.length];
+            for(int i = 0; i < titles.length; i++) {
+                sizes[i] = bodies[i].length;
+                if(errors[i] != null)
+                    continue;
+                if(failedHashes.contains(hashes[i])) {
+                    errors[i] = new IOException(titles[i] + "을 저장하지 못했습니다.");
+                } else if(!m_refCounts.containsKey(hashes[i]) && !getBlobFile(hashes[i]).exists()) {
+                    // 확인한 뒤에 다른 스레드가 blob을 지웠으면 다시 쓴다.
+                    try {
+                        writeBlob(hashes[i], bodies[i]);
+                    } catch (IOException e) {
+                        errors[i] = e;
+                    }
+                }
+            }
+            commitRefs(titles, hashes, sizes, errors);
+        }
+    }
+
+    /*
+                < 디스크에 기록된 파일을 메모로 저장하는 메소드 >
+     파일을 읽어 해시만 구하고, 같은 blob이 이미 있으면 파일을 지우고 없으면 blob 파일로 이름을 바꾼다.
+     */
+    @Override
+    public synchronized void adoptNote(String title, File file) throws IOException {
+        ensureLoaded();
+
+        String hash;
+        InputStream in = new FileInputStream(file);
+        try {
+            hash = hash(in);
+        } finally {
+            in.close();
+        }
+
+        long size = file.length();
+        File blobFile = getBlobFile(hash);
+        if(m_refCounts.containsKey(hash) || blobFile.exists())
+            file.delete();
+        else if(!file.renameTo(blobFile))
+            throw new IOException(blobFile.getName() + "으로 이름을 바꾸지 못했습니다.");
+
+        IOException[] errors = new IOException[1];
+        commitRefs(new String[] { title }, new String[] { hash }, new long[] { size }, errors);
+        if(errors[0] != null)
+            throw errors[0];
+    }
+
+    /*
+                < 메모 내용을 읽는 InputStream을 여는 메소드 >
+     색인에서 메모 제목이 가리키는 blob을 찾아 연다. 색인에 없으면 이전 저장소에서 찾는다.
+     */
+    @Override
+    public synchronized InputStream openNote(String title) throws IOException {
+        ensureLoaded();
+        BlobRef ref = m_refs.get(title);
+        if(ref == null)
+            return m_legacyStore.openNote(title);
+        return new FileInputStream(getBlobFile(ref.hash));
+    }
+
+    /*
+                < 메모를 삭제하는 메소드 >
+     삭제 레코드를 덧붙인 뒤 blob의 참조 횟수를 줄이고, 더 이상 참조하는 메모가 없으면 blob을 지운다.
+     */
+    @Override
+    public synchronized boolean deleteNote(String title) {
+        try {
+            ensureLoaded();
+            BlobRef ref = m_refs.get(title);
+            if(ref == null)
+                return m_legacyStore.deleteNote(title);
+
+            appendRecords(new byte[][] { encodeRecord(RECORD_DEL, title, null) });
+            m_refs.remove(title);
+            releaseBlob(ref.hash);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /*
+                < 메모들을 한 번에 삭제하는 메소드 >
+     색인에 있는 메모들의 삭제 레코드를 한 번에 덧붙이고 fsync한 뒤 blob들의 참조 횟수를 줄인다.
+     색인에 없는 메모들은 이전 저장소에서 한 번에 지운다.
+     */
+    @Override
+    public synchronized void deleteNotes(String[] titles, boolean[] isDeleted) {
+        try {
+            ensureLoaded();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        ArrayList<byte[]> records = new ArrayList<>();
+        ArrayList<Integer> legacyIndexes = new ArrayList<>();
+        HashSet<String> indexedTitles = new HashSet<>();
+        try {
+            for(int i = 0; i < titles.length; i++) {
+                if(!m_refs.containsKey(titles[i]))
+                    legacyIndexes.add(i);
+                else if(indexedTitles.add(titles[i]))
+                    records.add(encodeRecord(RECORD_DEL, titles[i], null));
+            }
+            appendRecords(records.toArray(new byte[records.size()][]));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        for(int i = 0; i < titles.length; i++) {
+            BlobRef ref = indexedTitles.contains(titles[i]) ? m_refs.remove(titles[i]) : null;
+            if(ref != null) {
+                releaseBlob(ref.hash);
+                isDeleted[i] = true;
+            }
+        }
+
+        if(!legacyIndexes.isEmpty()) {
+            String[] legacyTitles = new String[legacyIndexes.size()];
+            boolean[] isLegacyDeleted = new boolean[legacyTitles.length];
+            for(int i = 0; i < legacyTitles.length; i++)
+                legacyTitles[i] = titles[legacyIndexes.get(i)];
+            m_legacyStore.deleteNotes(legacyTitles, isLegacyDeleted);
+            for(int i = 0; i < legacyTitles.length; i++)
+                isDeleted[legacyIndexes.get(i)] = isLegacyDeleted[i];
+        }
+    }
+
+    @Override
+    public synchronized NoteCatalog.Entry stat(String title) {
+        try {
+            ensureLoaded();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        BlobRef ref = m_refs.get(title);
+        if(ref == null)
+            return m_legacyStore.stat(title);
+        return new NoteCatalog.Entry(title, ref.hash + BLOB_EXTENSION, ref.size, ref.lastModified);
+    }
+
+    /*
+                < 저장된 모든 메모의 카탈로그 항목을 반환하는 메소드 >
+     색인의 항목들과 이전 저장소에만 남아있는 메모들을 합친다.
+     */
+    @Override
+    public synchronized ArrayList<NoteCatalog.Entry> scan() {
+        ArrayList<NoteCatalog.Entry> entries = new ArrayList<>();
+        try {
+            ensureLoaded();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return entries;
+        }
+
+        for(Map.Entry<String, BlobRef> ref : m_refs.entrySet())
+            entries.add(new NoteCatalog.Entry(ref.getKey(), ref.getValue().hash + BLOB_EXTENSION,
+                    ref.getValue().size, ref.getValue().lastModified));
+        for(NoteCatalog.Entry entry : m_legacyStore.scan()) {
+            if(!m_refs.containsKey(entry.title))
+                entries.add(entry);
+        }
+        return entries;
+    }
+
+    /*
+                < 저장소의 현재 상태를 나타내는 값을 반환하는 메소드 >
+     색인 세대와 이전 저장소의 상태값을 합친다.
+     */
+    @Override
+    public synchronized long getStamp() {
+        try {
+            ensureLoaded();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return m_generation * 31 + m_legacyStore.getStamp();
+    }
+
+    /*
+                < blob을 참조하는 개수를 반환하는 메소드 >
+     */
+    synchronized int getRefCount(String hash) {
+        Integer count = m_refCounts.get(hash);
+        return count == null ? 0 : count;
+    }
+
+    /*
+                < 저장된 blob의 해시를 색인에 반영하는 메소드 >
+     errors[i]가 null인 메모들의 레코드를 한 번에 덧붙이고 fsync한다.
+     색인이 디스크에 기록된 뒤에 이전 blob의 참조를 줄이고, 이전 저장소에 남은 같은 제목의 메모를 지운다.
+     묶음 안에서 한 메모가 떠난 blob을 다른 메모가 가리킬 수 있으므로 (A: H → H2, B: → H)
+     새 blob들의 참조를 모두 늘린 뒤에 이전 blob들의 참조를 줄이고, 끝까지 참조가 없는 blob만 지운다.
+     */
+    private void commitRefs(String[] titles, String[] hashes, long[] sizes, IOException[] errors) {
+        long lastModified = System.currentTimeMillis();
+        ArrayList<byte[]> records = new ArrayList<>();
+        try {
+            for(int i = 0; i < titles.length; i++) {
+                if(errors[i] == null)
+                    records.add(encodeRecord(RECORD_PUT, titles[i], new BlobRef(hashes[i], sizes[i], lastModified)));
+            }
+            appendRecords(records.toArray(new byte[records.size()][]));
+        } catch (IOException e) {
+            for(int i = 0; i < titles.length; i++) {
+                if(errors[i] == null)
+                    errors[i] = e;
+            }
+        }
+
+        BlobRef[] oldRefs = new BlobRef[titles.length];
+        for(int i = 0; i < titles.length; i++) {
+            if(errors[i] != null)
+                continue;
+
+            m_refCounts.put(hashes[i], getRefCount(hashes[i]) + 1);
+            oldRefs[i] = m_refs.put(titles[i], new BlobRef(hashes[i], sizes[i], lastModified));
+        }
+
+        HashSet<String> releasedHashes = new HashSet<>();
+        for(int i = 0; i < titles.length; i++) {
+            if(errors[i] != null)
+                continue;
+
+            if(oldRefs[i] != null) {
+                if(dropRef(oldRefs[i].hash))
+                    releasedHashes.add(oldRefs[i].hash);
+            } else if(m_legacyStore.stat(titles[i]) != null) {
+                m_legacyStore.deleteNote(titles[i]);
+            }
+        }
+        for(String hash : releasedHashes) {
+            if(!m_refCounts.containsKey(hash))
+                getBlobFile(hash).delete();
+        }
+
+        // 저장에 실패한 메모를 위해 쓴 blob은 아무도 참조하지 않으면 지운다.
+        for(int i = 0; i < titles.length; i++) {
+            if(errors[i] != null && !m_refCounts.containsKey(hashes[i]))
+                getBlobFile(hashes[i]).delete();
+        }
+    }
+
+    /*
+                < blob의 참조 횟수를 줄이는 메소드 >
+     참조하는 메모가 없어지면 blob 파일을 지운다.
+     */
+    private void releaseBlob(String hash) {
+        if(dropRef(hash))
+            getBlobFile(hash).delete();
+    }
+
+    /*
+                < blob의 참조 횟수만 줄이는 메소드 >
+     참조하는 메모가 없어지면 true를 반환한다. blob 파일은 호출한 쪽에서 지운다.
+     */
+    private boolean dropRef(String hash) {
+        int count = getRefCount(hash) - 1;
+        if(count > 0) {
+            m_refCounts.put(hash, count);
+            return false;
+        }
+        m_refCounts.remove(hash);
+        return true;
+    }
+
+    /*
+                < 색인을 불러오는 메소드 >
+     처음 호출될 때 색인 파일을 읽어 참조 횟수를 계산하고, 아무도 참조하지 않는 blob과 임시 파일을 지운다.
+     */
+    private void ensureLoaded() throws IOException {
+        if(m_isLoaded)
+            return;
+
+        m_storeDir.mkdirs();
+        readIndex();
+        for(BlobRef ref : m_refs.values())
+            m_refCounts.put(ref.hash, getRefCount(ref.hash) + 1);
+
+        File[] blobFiles = m_storeDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String filename) {
+                return filename.endsWith(BLOB_EXTENSION) || filename.endsWith(FileNoteStore.TMP_EXTENSION);
+            }
+        });
+        if(blobFiles != null) {
+            for(File blobFile : blobFiles) {
+                String filename = blobFile.getName();
+                if(!filename.endsWith(BLOB_EXTENSION)
+                        || !m_refCounts.containsKey(filename.substring(0, filename.length() - BLOB_EXTENSION.length())))
+                    blobFile.delete();
+            }
+        }
+        m_isLoaded = true;
+    }
+
+    /*
+                < 색인 파일을 읽는 메소드 >
+     스냅샷을 읽은 뒤 덧붙여진 레코드를 차례로 적용한다.
+     CRC가 맞지 않거나 끊긴 레코드를 만나면 그 앞까지만 읽고, 다음에 덧붙일 때 잘라낸다.
+     */
+    private void readIndex() throws IOException {
+        m_refs.clear();
+        m_generation = 0;
+        m_numOfRecords = 0;
+        m_validLength = 0;
+        if(!m_indexFile.exists())
+            return;
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(m_indexFile)));
+        try {
+            if(in.readInt() != INDEX_MAGIC)
+                throw new IOException(m_indexFile.getName() + "이 손상되었습니다.");
+            m_generation = in.readLong();
+            byte[] snapshot = new byte[in.readInt()];
+            in.readFully(snapshot);
+            DataInputStream snapshotIn = new DataInputStream(new ByteArrayInputStream(snapshot));
+            int numOfRefs = snapshotIn.readInt();
+            for(int i = 0; i < numOfRefs; i++) {
+                String title = snapshotIn.readUTF();
+                m_refs.put(title, readRef(snapshotIn));
+            }
+            m_validLength = HEADER_SIZE + snapshot.length;
+
+            CRC32 crc = new CRC32();
+            try {
+                while(true) {
+                    int payloadLength = in.readInt();
+                    if(payloadLength < 1 || payloadLength > m_indexFile.length())
+                        break;
+
+                    byte[] payload = new byte[payloadLength];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if(in.readInt() != (int) crc.getValue())
+                        break;
+
+                    DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                    byte type = record.readByte();
+                    String title = record.readUTF();
+                    if(type == RECORD_PUT)
+                        m_refs.put(title, readRef(record));
+                    else
+                        m_refs.remove(title);
+                    m_generation++;
+                    m_numOfRecords++;
+                    m_validLength += 8 + payloadLength;
+                }
+            } catch (EOFException e) {
+                // 색인의 끝 또는 덧붙이다 끊긴 레코드
+            }
+        } catch (EOFException e) {
+            // 스냅샷은 임시 파일에 쓴 뒤 이름을 바꾸므로 잘릴 수 없다.
+            throw new IOException(m_indexFile.getName() + "이 손상되었습니다.");
+        } finally {
+            in.close();
+        }
+    }
+
+    /*
+                < 레코드들을 색인 파일 끝에 덧붙이는 메소드 >
+     모든 레코드를 쓴 뒤 fsync를 한 번만 호출한다. 레코드가 많아지면 스냅샷을 새로 쓴다.
+     */
+    private void appendRecords(byte[][] records) throws IOException {
+        if(records.length == 0)
+            return;
+        if(m_numOfRecords >= COMPACT_THRESHOLD || m_validLength == 0) {
+            // 스냅샷에 새 레코드를 먼저 반영할 수 없으므로 스냅샷을 쓴 뒤 이어서 덧붙인다.
+            writeSnapshot();
+        }
+
+        RandomAccessFile indexFile = new RandomAccessFile(m_indexFile, "rw");
+        try {
+            // 덧붙이다 끊긴 레코드가 있으면 잘라낸다.
+            indexFile.setLength(m_validLength);
+            indexFile.seek(m_validLength);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            for(byte[] record : records)
+                buffer.write(record);
+            indexFile.write(buffer.toByteArray());
+            indexFile.getFD().sync();
+            m_validLength += buffer.size();
+        } finally {
+            indexFile.close();
+        }
+        m_generation += records.length;
+        m_numOfRecords += records.length;
+    }
+
+    /*
+                < 스냅샷을 새로 쓰는 메소드 >
+     임시 파일에 전체 항목을 기록하고 fsync한 뒤 색인 파일로 이름을 바꾼다.
+     */
+    private void writeSnapshot() throws IOException {
+        File tmpFile = new File(m_storeDir, INDEX_FILENAME + FileNoteStore.TMP_EXTENSION);
+        FileOutputStream out = new FileOutputStream(tmpFile);
+        try {
+            ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+            DataOutputStream snapshotOut = new DataOutputStream(snapshot);
+            snapshotOut.writeInt(m_refs.size());
+            for(Map.Entry<String, BlobRef> ref : m_refs.entrySet()) {
+                snapshotOut.writeUTF(ref.getKey());
+                writeRef(snapshotOut, ref.getValue());
+            }
+            snapshotOut.flush();
+
+            DataOutputStream dataOut = new DataOutputStream(out);
+            dataOut.writeInt(INDEX_MAGIC);
+            dataOut.writeLong(m_generation);
+            dataOut.writeInt(snapshot.size());
+            snapshot.writeTo(dataOut);
+            dataOut.flush();
+            out.getFD().sync();
+            out.close();
+
+            if(!tmpFile.renameTo(m_indexFile))
+                throw new IOException("색인 파일을 교체하지 못했습니다.");
+            m_validLength = HEADER_SIZE + snapshot.size();
+            m_numOfRecords = 0;
+        } catch (IOException e) {
+            closeQuietly(out);
+            tmpFile.delete();
+            throw e;
+        }
+    }
+
+    private static byte[] encodeRecord(byte type, String title, BlobRef ref) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeByte(type);
+        out.writeUTF(title);
+        if(ref != null)
+            writeRef(out, ref);
+        out.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.toByteArray());
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(payload.size() + 8);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        recordOut.writeInt(payload.size());
+        payload.writeTo(recordOut);
+        recordOut.writeInt((int) crc.getValue());
+        recordOut.flush();
+        return record.toByteArray();
+    }
+
+    private static BlobRef readRef(DataInputStream in) throws IOException {
+        String hash = in.readUTF();
+        long size = in.readLong();
+        long lastModified = in.readLong();
+        return new BlobRef(hash, size, lastModified);
+    }
+
+    private static void writeRef(DataOutputStream out, BlobRef ref) throws IOException {
+        out.writeUTF(ref.hash);
+        out.writeLong(ref.size);
+        out.writeLong(ref.lastModified);
+    }
+
+    private File getBlobFile(String hash) {
+        return new File(m_storeDir, hash + BLOB_EXTENSION);
+    }
+
+    /*
+                < blob을 쓸 임시 파일을 만드는 메소드 >
+     여러 스레드가 같은 내용을 동시에 저장할 수 있으므로 임시 파일 이름이 겹치지 않도록 만든다.
+     */
+    private File createTmpFile(String hash) throws IOException {
+        return File.createTempFile(hash + BLOB_EXTENSION, FileNoteStore.TMP_EXTENSION, m_storeDir);
+    }
+
+    /*
+                < blob 하나를 임시 파일에 쓰고 fsync한 뒤 blob 파일 이름으로 바꾸는 메소드 >
+     */
+    private void writeBlob(String hash, byte[] body) throws IOException {
+        File tmpFile = createTmpFile(hash);
+        FileOutputStream out = new FileOutputStream(tmpFile);
+        try {
+            out.write(body);
+            out.getFD().sync();
+        } catch (IOException e) {
+            closeQuietly(out);
+            tmpFile.delete();
+            throw e;
+        }
+        out.close();
+
+        File blobFile = getBlobFile(hash);
+        if(!tmpFile.renameTo(blobFile)) {
+            tmpFile.delete();
+            throw new IOException(blobFile.getName() + "으로 이름을 바꾸지 못했습니다.");
+        }
+    }
+
+    /*
+                < 메모 내용의 SHA-256 해시를 16진수 문자열로 만드는 메소드 >
+     */
+    private static String hash(byte[] body) {
+        MessageDigest digest = newDigest();
+        digest.update(body);
+        return toHex(digest.digest());
+    }
+
+    private static String hash(InputStream in) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        int length;
+        while((length = in.read(buffer)) != -1)
+            digest.update(buffer, 0, length);
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // 모든 자바 플랫폼은 SHA-256을 지원해야 한다.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] hex = new char[bytes.length * 2];
+        for(int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = digits[(bytes[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = digits[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if(closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+/*
+            < 메모 수정 내용을 따로 기록하는 저장소 >
+ 다른 NoteStore를 감싸서, 기존 메모를 수정할 때 메모 전체를 다시 쓰지 않고
+ 수정된 범위(NoteDelta)만 "메모제목.delta" 파일에 덧붙인다. 작은 수정의 I/O 비용은 메모 크기가 아니라 수정 크기에 비례한다.
+ 메모를 읽을 때는 원래 메모를 앞에서부터 읽으면서 수정 기록을 적용한 내용을 돌려준다. (메모 전체를 메모리에 올리지 않는다.)
+ 수정 기록이 MAX_DELTA_EDITS개를 넘거나 메모 크기에 비해 커지면, 또는 수정하는 동안 메모가 다시 저장되었으면
+ appendEdits()가 false를 반환하고 NoteWriter는 메모 전체를 다시 쓴다. writeNotes()로 메모 전체가 저장되면 수정 기록은 지워진다.
+
+ 수정 기록 파일 형식
+    헤더 : 매직넘버(int), 기록을 시작할 때 원래 메모의 크기(long), 수정시각(long)
+    레코드 : payload 길이(int), payload, CRC32(int)
+    payload : Edit 개수(int), Edit마다 start(int), deleteLength(int), text 바이트 수(int), text(UTF-8)
+ 원래 메모가 다시 저장되어 헤더의 크기, 수정시각과 맞지 않는 수정 기록은 무시한다.
+
+ 메모마다 NoteLocks의 잠금을 잡고 작업하므로 같은 제목에 대한 작업은 차례로 실행되고,
+ 다른 제목에 대한 작업은 여러 스레드에서 동시에 실행될 수 있다.
+ (감싸는 저장소는 다른 제목에 대한 동시 호출을 처리할 수 있어야 한다.)
+ */
+class DeltaNoteStore implements NoteStore {
+    static final String DELTA_EXTENSION = ".delta";
+
+    private static final int DELTA_MAGIC = 0x4E444C31;     // "NDL1"
+    private static final int HEADER_SIZE = 20;             // 헤더 크기 (매직넘버 + 크기 + 수정시각)
+    private static final int MAX_DELTA_EDITS = 256;        // 이보다 많은 Edit이 쌓이면 메모 전체를 다시 쓴다.
+    private static final long MIN_DELTA_LENGTH = 64 * 1024;    // 메모 크기와 상관없이 허용되는 수정 기록 크기
+
+    /*
+                < 수정 기록 파일을 읽은 결과 >
+     */
+    private static class DeltaLog {
+        final ArrayList<NoteDelta.Edit> edits = new ArrayList<>();
+        long validLength;           // 마지막으로 온전한 레코드의 끝 위치
+    }
+
+    private final NoteStore m_store;        // 메모 전체를 저장하는 저장소
+    private final File m_deltaDir;          // 수정 기록 파일들이 저장되는 디렉터리
+    private final NoteLocks m_locks = new NoteLocks();     // 메모 제목별 잠금
+
+    DeltaNoteStore(NoteStore store, File deltaDir) {
+        m_store = store;
+        m_deltaDir = deltaDir;
+    }
+
+    /*
+                < 메모 제목별 잠금을 반환하는 메소드 >
+     저장소와 카탈로그를 함께 갱신하는 쪽(NoteWriter, ViewNoteActivity)이 그 사이에
+     같은 제목에 대한 다른 작업이 끼어들지 않도록 잠글 때 사용한다.
+     */
+    NoteLocks getLocks() {
+        return m_locks;
+    }
+
+    /*
+                < 메모들을 한 번에 저장하는 메소드 >
+     메모 전체가 새로 저장되었으므로 저장에 성공한 메모의 수정 기록을 지운다.
+     */
+    @Override
+    public void writeNotes(String[] titles, byte[][] bodies, IOException[] errors) {
+        int[] stripes = m_locks.lockAll(titles);
+        try {
+            m_store.writeNotes(titles, bodies, errors);
+            for(int i = 0; i < titles.length; i++) {
+                if(errors[i] == null)
+                    getDeltaFile(titles[i]).delete();
+            }
+        } finally {
+            m_locks.unlockAll(stripes);
+        }
+    }
+
+    /*
+                < 디스크에 기록된 파일을 메모로 저장하는 메소드 >
+     writeNotes()와 같이 메모 전체가 새로 저장되므로 수정 기록을 지운다.
+     */
+    @Override
+    public void adoptNote(String title, File file) throws IOException {
+        int stripe = m_locks.lock(title);
+        try {
+            m_store.adoptNote(title, file);
+            getDeltaFile(title).delete();
+        } finally {
+            m_locks.unlock(stripe);
+        }
+    }
+
+    /*
+                < 메모 내용을 읽는 InputStream을 여는 메소드 >
+     수정 기록이 없으면 원래 저장소의 InputStream을 그대로 반환한다.
+     수정 기록이 있으면 원래 메모를 읽는 만큼 수정 기록을 적용해 UTF-8로 돌려주는 InputStream을 반환한다.
+     여는 데는 수정 기록 파일만 읽으므로 첫 페이지를 보여주기 전에 메모 전체를 읽지 않는다.
+     */
+    @Override
+    public InputStream openNote(String title) throws IOException {
+        int stripe = m_locks.lock(title);
+        try {
+            return openEditedNote(title);
+        } finally {
+            m_locks.unlock(stripe);
+        }
+    }
+
+    private InputStream openEditedNote(String title) throws IOException {
+        DeltaLog log = readDeltaLog(title, m_store.stat(title));
+        if(log == null || log.edits.isEmpty())
+            return m_store.openNote(title);
+
+        Reader reader = new InputStreamReader(NoteCodec.decode(m_store.openNote(title)), NoteReader.UTF_8);
+        return new EditedNoteInputStream(new NoteDelta.EditingReader(reader, log.edits));
+    }
+
+    @Override
+    public boolean deleteNote(String title) {
+        int stripe = m_locks.lock(title);
+        try {
+            getDeltaFile(title).delete();
+            return m_store.deleteNote(title);
+        } finally {
+            m_locks.unlock(stripe);
+        }
+    }
+
+    @Override
+    public void deleteNotes(String[] titles, boolean[] isDeleted) {
+        int[] stripes = m_locks.lockAll(titles);
+        try {
+            for(String title : titles)
+                getDeltaFile(title).delete();
+            m_store.deleteNotes(titles, isDeleted);
+        } finally {
+            m_locks.unlockAll(stripes);
+        }
+    }
+
+    /*
+                < 메모 하나의 카탈로그 항목을 반환하는 메소드 >
+     수정 기록이 있으면 수정 기록 파일의 수정시각을 메모의 수정시각으로 한다.
+     */
+    @Override
+    public NoteCatalog.Entry stat(String title) {
+        int stripe = m_locks.lock(title);
+        try {
+            NoteCatalog.Entry entry = m_store.stat(title);
+            if(entry == null)
+                return null;
+
+            File deltaFile = getDeltaFile(title);
+            if(!deltaFile.exists())
+                return entry;
+            return new NoteCatalog.Entry(title, entry.filename, entry.size + deltaFile.length(),
+                    Math.max(entry.lastModified, deltaFile.lastModified()));
+        } finally {
+            m_locks.unlock(stripe);
+        }
+    }
+
+    /*
+                < 저장된 모든 메모의 카탈로그 항목을 반환하는 메소드 >
+     메모를 잠그지 않으므로 스캔하는 동안 저장되거나 삭제된 메모는 반영되지 않을 수 있다.
+     (카탈로그를 다시 만들 때만 호출되고, 그 뒤의 변경은 카탈로그에 따로 반영된다.)
+     */
+    @Override
+    public ArrayList<NoteCatalog.Entry> scan() {
+        ArrayList<NoteCatalog.Entry> entries = m_store.scan();
+
+        File[] deltaFiles = m_deltaDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String filename) {
+                return filename.endsWith(DELTA_EXTENSION);
+            }
+        });
+        if(deltaFiles == null || deltaFiles.length == 0)
+            return entries;
+
+        HashMap<String, File> deltaFileMap = new HashMap<>();
+        for(File deltaFile : deltaFiles) {
+            String filename = deltaFile.getName();
+            deltaFileMap.put(filename.substring(0, filename.length() - DELTA_EXTENSION.length()), deltaFile);
+        }
+        for(int i = 0; i < entries.size(); i++) {
+            NoteCatalog.Entry entry = entries.get(i);
+            File deltaFile = deltaFileMap.get(entry.title);
+            if(deltaFile != null)
+                entries.set(i, new NoteCatalog.Entry(entry.title, entry.filename, entry.size + deltaFile.length(),
+                        Math.max(entry.lastModified, deltaFile.lastModified())));
+        }
+        return entries;
+    }
+
+    @Override
+    public long getStamp() {
+        return m_store.getStamp();
+    }
+
+    /*
+                < 수정 내용을 수정 기록 파일에 덧붙이는 메소드 >
+     baseStamp는 수정 내용을 기록하기 시작할 때 불러온 메모의 수정 스탬프(NoteContentCache.getStamp(stat()))이다.
+     1. 그 사이에 메모가 다시 저장되어 스탬프가 다르면 edits는 지금 메모와 맞지 않으므로 false를 반환한다.
+     2. 기존 수정 기록을 읽어 온전한 레코드의 끝 위치를 구한다. (원래 메모와 맞지 않으면 새로 시작한다.)
+     3. 수정 기록이 너무 커지면 아무것도 쓰지 않고 false를 반환한다.
+     4. 레코드를 덧붙이고 fsync한다.
+     false를 반환하면 호출한 쪽(NoteWriter)은 수정된 메모 전체를 저장한다.
+     */
+    boolean appendEdits(String title, NoteContentCache.Stamp baseStamp, ArrayList<NoteDelta.Edit> edits) throws IOException {
+        int stripe = m_locks.lock(title);
+        try {
+            return appendEditsLocked(title, baseStamp, edits);
+        } finally {
+            m_locks.unlock(stripe);
+        }
+    }
+
+    private boolean appendEditsLocked(String title, NoteContentCache.Stamp baseStamp, ArrayList<NoteDelta.Edit> edits) throws IOException {
+        NoteCatalog.Entry current = stat(title);
+        if(current == null || !NoteContentCache.getStamp(current).equals(baseStamp))
+            return false;
+
+        NoteCatalog.Entry entry = m_store.stat(title);
+        if(entry == null)
+            return false;
+
+        DeltaLog log = readDeltaLog(title, entry);
+        byte[] record = encodeRecord(edits);
+        long validLength = (log == null) ? 0 : log.validLength;
+        int numOfEdits = (log == null) ? edits.size() : log.edits.size() + edits.size();
+        if(numOfEdits > MAX_DELTA_EDITS || validLength + record.length > Math.max(MIN_DELTA_LENGTH, entry.size / 4))
+            return false;
+
+        RandomAccessFile deltaFile = new RandomAccessFile(getDeltaFile(title), "rw");
+        try {
+            if(log == null) {
+                deltaFile.setLength(0);
+                deltaFile.writeInt(DELTA_MAGIC);
+                deltaFile.writeLong(entry.size);
+                deltaFile.writeLong(entry.lastModified);
+                validLength = HEADER_SIZE;
+            } else {
+                // 덧붙이다 끊긴 레코드가 있으면 잘라낸다.
+                deltaFile.setLength(validLength);
+            }
+            deltaFile.seek(validLength);
+            deltaFile.write(record);
+            deltaFile.getFD().sync();
+        } finally {
+            deltaFile.close();
+        }
+        return true;
+    }
+
+    private File getDeltaFile(String title) {
+        return new File(m_deltaDir, title + DELTA_EXTENSION);
+    }
+
+    /*
+                < 수정 기록 파일을 읽는 메소드 >
+     수정 기록 파일이 없거나 원래 메모와 맞지 않으면 null을 반환한다.
+     CRC가 맞지 않거나 끊긴 레코드를 만나면 그 앞까지만 읽는다.
+     */
+    private DeltaLog readDeltaLog(String title, NoteCatalog.Entry entry) {
+        File deltaFile = getDeltaFile(title);
+        if(entry == null || !deltaFile.exists())
+            return null;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(deltaFile)));
+            if(in.readInt() != DELTA_MAGIC || in.readLong() != entry.size || in.readLong() != entry.lastModified)
+                return null;
+
+            DeltaLog log = new DeltaLog();
+            log.validLength = HEADER_SIZE;
+            CRC32 crc = new CRC32();
+            try {
+                while(true) {
+                    int payloadLength = in.readInt();
+                    if(payloadLength < 4 || payloadLength > deltaFile.length())
+                        break;
+
+                    byte[] payload = new byte[payloadLength];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if(in.readInt() != (int) crc.getValue())
+                        break;
+
+                    decodeRecord(payload, log.edits);
+                    log.validLength += 8 + payloadLength;
+                }
+            } catch (EOFException e) {
+                // 수정 기록의 끝 또는 덧붙이다 끊긴 레코드
+            }
+            return log;
+        } catch (EOFException e) {
+            // 끊긴 헤더
+            return null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private static byte[] encodeRecord(ArrayList<NoteDelta.Edit> edits) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        NoteDelta.writeEdits(out, edits);
+        out.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.toByteArray());
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(payload.size() + 8);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        recordOut.writeInt(payload.size());
+        payload.writeTo(recordOut);
+        recordOut.writeInt((int) crc.getValue());
+        recordOut.flush();
+        return record.toByteArray();
+    }
+
+    private static void decodeRecord(byte[] payload, ArrayList<NoteDelta.Edit> edits) throws IOException {
+        NoteDelta.readEdits(new DataInputStream(new ByteArrayInputStream(payload)), edits);
+    }
+
+    /*
+                < 수정 기록을 적용한 메모 내용을 UTF-8 바이트로 읽는 InputStream >
+     NoteDelta.EditingReader에서 PAGE_SIZE 글자씩 읽어 UTF-8로 인코딩한다.
+     서로게이트 쌍이 버퍼 경계에서 나뉘지 않도록 마지막 high surrogate는 다음 버퍼로 넘긴다.
+     */
+    private static class EditedNoteInputStream extends InputStream {
+        private final Reader m_reader;
+        private final char[] m_chars = new char[NoteReader.PAGE_SIZE];
+        private int m_numOfPending;         // 이전 버퍼에서 넘어온 글자 수 (0 또는 1)
+        private byte[] m_bytes = new byte[0];   // 인코딩한 바이트
+        private int m_offset;               // m_bytes 중 읽어간 바이트 수
+
+        EditedNoteInputStream(Reader reader) {
+            m_reader = reader;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(!fill())
+                return -1;
+            return m_bytes[m_offset++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if(length == 0)
+                return 0;
+            if(!fill())
+                return -1;
+            int count = Math.min(length, m_bytes.length - m_offset);
+            System.arraycopy(m_bytes, m_offset, buffer, offset, count);
+            m_offset += count;
+            return count;
+        }
+
+        /*
+         인코딩한 바이트를 모두 읽어갔으면 다음 글자들을 읽어 인코딩한다. 더 읽을 내용이 없으면 false를 반환한다.
+         */
+        private boolean fill() throws IOException {
+            while(m_offset == m_bytes.length) {
+                int length;
+                int numOfRead = m_reader.read(m_chars, m_numOfPending, m_chars.length - m_numOfPending);
+                if(numOfRead == -1) {
+                    if(m_numOfPending == 0)
+                        return false;
+                    length = m_numOfPending;
+                    m_numOfPending = 0;
+                } else {
+                    length = m_numOfPending + numOfRead;
+                    m_numOfPending = 0;
+                    if(Character.isHighSurrogate(m_chars[length - 1])) {
+                        m_numOfPending = 1;
+                        length--;
+                    }
+                }
+
+                m_bytes = new String(m_chars, 0, length).getBytes(NoteReader.UTF_8);
+                m_offset = 0;
+                if(m_numOfPending == 1)
+                    m_chars[0] = m_chars[length];
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            m_reader.close();
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if(closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
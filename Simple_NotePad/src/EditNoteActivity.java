@@ -1,24 +1,90 @@
 package io.github.sogoagain.simple_notepad;
 
-import android.content.Context;
 import android.content.Intent;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.v7.app.AppCompatActivity;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.View;
+import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Toast;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 
 /**
  * Created by sogoagain on 2016. 10. 29..
  */
 public class EditNoteActivity extends AppCompatActivity {
+    private static final long AUTOSAVE_DELAY = 1000;  // 마지막 입력 후 임시 저장까지 기다리는 시간 (ms)
 
-    private String m_strFilename;               // 저장할 메모의 파일 이름
     private String m_strNoteTitle;              // 메모 제목
     private EditText m_etTitle, m_etContent;    // 사용자가 메모 제목과 내용을 작성하는 EditText 참조변수
+    private Button m_btSave;                    // 저장 버튼
+
+    private String m_strEditTitle;              // 수정 모드에서 수정하는 메모의 제목 (새 메모 작성 모드이면 null)
+    private NoteDelta m_delta;                  // 수정 모드에서 메모를 불러온 뒤 바뀐 내용
+    private NoteContentCache.Stamp m_noteStamp = NoteContentCache.Stamp.NONE;   // 수정 모드에서 불러온 메모의 수정 스탬프
+    private ArrayList<NoteDelta.Edit> m_recoveredEdits;    // 수정 모드에서 복구한 임시 저장 수정 내용
+
+    private final Handler m_handler = new Handler();
+    private NoteDraftStore m_draftStore;        // 작성 중인 메모 임시 저장소
+    private int m_draftSeq = -1;                // 마지막으로 요청한 새 메모 임시 저장 번호
+    private boolean m_isDraftDirty;             // 마지막 임시 저장 이후 내용이 바뀌었는지 여부
+    private boolean m_isSaving;                 // 저장 버튼을 눌러 저장 중인지 여부
+
+    /*
+                < 임시 저장 Runnable >
+    마지막 입력 후 AUTOSAVE_DELAY 동안 입력이 없으면 실행된다.
+    */
+    private final Runnable m_autosave = new Runnable() {
+        @Override
+        public void run() {
+            saveDraft();
+        }
+    };
+
+    /*
+                < 새 메모 작성 모드의 제목, 내용 변경 리스너 >
+    입력할 때마다 임시 저장을 미룬다.
+    */
+    private TextWatcher onChangeDraft = new TextWatcher() {
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            scheduleAutosave();
+        }
+    };
+
+    /*
+                < m_etContent 내용 변경 리스너 >
+    수정 모드에서 메모를 불러온 뒤 바뀐 범위를 m_delta에 기록하고 임시 저장을 미룬다.
+    */
+    private TextWatcher onChangeContent = new TextWatcher() {
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+            m_delta.record(start, before, s.subSequence(start, start + count));
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            scheduleAutosave();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -28,36 +94,282 @@ public class EditNoteActivity extends AppCompatActivity {
         // 각 EditText 참조변수에 객체 연결
         m_etTitle = (EditText)findViewById(R.id.etEditTitle);
         m_etContent = (EditText)findViewById(R.id.etEditContent);
+        m_btSave = (Button)findViewById(R.id.btEditSave);
+        m_draftStore = NoteStorage.getDraftStore(this);
+
+        // ViewNoteActivity로 부터 수정할 메모 제목을 전달받으면 수정 모드로 동작한다.
+        // 메모 제목은 바꿀 수 없고, 메모 내용을 모두 불러올 때까지 저장 버튼을 비활성화한다.
+        m_strEditTitle = getIntent().getStringExtra("EDIT_NOTE_TITLE");
+        if(m_strEditTitle != null) {
+            m_etTitle.setText(m_strEditTitle);
+            m_etTitle.setEnabled(false);
+            m_btSave.setEnabled(false);
+            new LoadNoteTask().execute(m_strEditTitle);
+        } else {
+            new RestoreDraftTask().execute();
+        }
+    }
+
+    /*
+                < 엑티비티가 가려질 때 호출되는 메소드 >
+    기다리고 있던 임시 저장을 바로 요청해, 엑티비티가 종료되어도 입력한 내용이 남도록 한다.
+     */
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if(!m_isSaving)
+            saveDraft();
+    }
+
+    /*
+                < 임시 저장을 예약하는 메소드 >
+    입력할 때마다 예약을 다시 하므로 입력이 계속되는 동안에는 임시 저장하지 않는다.
+     */
+    private void scheduleAutosave() {
+        if(m_isSaving)
+            return;
+        m_isDraftDirty = true;
+        m_handler.removeCallbacks(m_autosave);
+        m_handler.postDelayed(m_autosave, AUTOSAVE_DELAY);
+    }
+
+    /*
+                < 작성 중인 내용의 임시 저장을 요청하는 메소드 >
+    파일 쓰기는 NoteDraftStore의 임시 저장 스레드에서 이루어진다.
+    새 메모는 제목과 내용 전체를, 수정 모드에서는 m_delta에 기록된 수정 내용만 임시 저장한다.
+    제목과 내용을 모두 지운 경우에는 임시 저장본을 지운다.
+     */
+    private void saveDraft() {
+        m_handler.removeCallbacks(m_autosave);
+        if(!m_isDraftDirty)
+            return;
+        m_isDraftDirty = false;
+
+        if(m_strEditTitle != null) {
+            if(m_delta.isEmpty())
+                m_draftStore.discardEditDraft(m_strEditTitle);
+            else
+                m_draftStore.saveEditDraft(m_strEditTitle, m_noteStamp, m_delta.getEdits());
+            return;
+        }
+
+        String title = m_etTitle.getText().toString();
+        String body = m_etContent.getText().toString();
+        if(title.isEmpty() && body.isEmpty()) {
+            m_draftStore.discardNewDraft(m_draftSeq);
+            m_draftSeq = -1;
+        } else {
+            m_draftSeq = m_draftStore.saveNewDraft(title, body);
+        }
     }
 
     /*
                 < 저장 버튼의 onClick 메소드 >
-    renameDuplicatFile()메소드를 통해 저장할 파일의 이름을 만든다.
-    그 후 해당 파일이름으로 파일스트림 객체를 생성해 메모내용을 저장한다.
+    사용자가 입력한 메모 제목으로 NoteWriter에 메모내용의 저장을 요청한다.
+    같은 제목의 메모가 있으면 저장 스레드에서 "메모제목 (i)"로 바뀌고, 바뀐 제목은 onNoteSaved()로 전달된다.
+    마지막 임시 저장 이후 바뀐 내용이 없으면 임시 저장 번호를 함께 넘겨 임시 저장 파일을 그대로 메모로 옮기도록 한다.
+    저장은 백그라운드 스레드에서 NoteStore를 통해 이루어지며,
+    저장이 끝나면 onNoteSaved()가 UI 스레드에서 호출된다.
+    저장이 끝날 때까지 저장 버튼을 비활성화해 같은 메모가 두 번 저장되지 않도록 한다.
+     */
+    public void onClickSaveBtn(View v) {
+        if(m_strEditTitle != null) {
+            saveEdits(v);
+            return;
+        }
+
+        // 사용자가 입력한 메모제목을 받아온다. (중복검사는 저장 스레드에서 한다.)
+        m_strNoteTitle = m_etTitle.getText().toString();
+        v.setEnabled(false);
+        m_isSaving = true;
+        m_handler.removeCallbacks(m_autosave);
+
+        // NoteWriter에 메모내용의 저장을 요청한다.
+        NoteWriter writer = NoteStorage.getWriter(this);
+        int draftSeq = m_isDraftDirty ? -1 : m_draftSeq;
+        writer.saveNew(m_strNoteTitle, m_etContent.getText().toString(), draftSeq, new NoteWriter.Callback() {
+            // 저장 스레드에서 호출되므로 UI 스레드로 넘겨서 처리한다.
+            @Override
+            public void onSaveCompleted(final String title, final IOException error) {
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        onNoteSaved(title, error);
+                    }
+                });
+            }
+        });
+    }
+
+    /*
+                < 수정 모드에서 수정 내용을 저장하는 메소드 >
+    메모 전체가 아니라 m_delta에 기록된 수정 내용만 불러올 때의 수정 스탬프와 함께 NoteWriter에 넘긴다.
+    바뀐 내용이 없으면 저장하지 않고 엑티비티를 종료한다.
+     */
+    private void saveEdits(View v) {
+        if(m_delta.isEmpty()) {
+            m_isSaving = true;
+            m_handler.removeCallbacks(m_autosave);
+            m_draftStore.discardEditDraft(m_strEditTitle);
+            finish();
+            return;
+        }
+
+        m_strNoteTitle = m_strEditTitle;
+        v.setEnabled(false);
+        m_isSaving = true;
+        m_handler.removeCallbacks(m_autosave);
+        m_etContent.removeTextChangedListener(onChangeContent);
+
+        NoteWriter writer = NoteStorage.getWriter(this);
+        writer.saveEdits(m_strNoteTitle, m_noteStamp, m_delta.getEdits(), m_etContent.getText().toString(),
+                new NoteWriter.Callback() {
+            // 저장 스레드에서 호출되므로 UI 스레드로 넘겨서 처리한다.
+            @Override
+            public void onSaveCompleted(final String title, final IOException error) {
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        onNoteSaved(title, error);
+                    }
+                });
+            }
+        });
+    }
+
+    /*
+                < 수정할 메모를 백그라운드에서 불러오는 AsyncTask >
+    메모 전체를 읽어 m_etContent에 보여준 뒤 내용 변경 리스너를 등록하고 저장 버튼을 활성화한다.
+    불러온 메모에 대해 임시 저장된 수정 내용이 있으면 적용해서 보여주고, 이어서 수정 내용을 기록한다.
+    읽는데 실패하면 토스트메세지로 사용자에게 알려주고 엑티비티를 종료한다.
+     */
+    private class LoadNoteTask extends AsyncTask<String, Void, String> {
+        @Override
+        protected String doInBackground(String... params) {
+            NoteStore store = NoteStorage.getStore(EditNoteActivity.this);
+            NoteReader reader = null;
+            try {
+                // 메모를 열기 전에 스탬프를 구한다. 그 사이에 메모가 다시 저장되면 스탬프가 달라지므로
+                // 저장할 때 수정 내용 대신 메모 전체가 저장된다.
+                NoteCatalog.Entry entry = store.stat(params[0]);
+                m_noteStamp = (entry == null) ? NoteContentCache.Stamp.NONE : NoteContentCache.getStamp(entry);
+
+                reader = new NoteReader(store.openNote(params[0]));
+                StringBuilder body = new StringBuilder();
+                String page;
+                while((page = reader.readPage()) != null)
+                    body.append(page);
+
+                ArrayList<NoteDelta.Edit> edits = m_draftStore.readEditDraft(params[0], m_noteStamp);
+                if(edits != null) {
+                    StringBuilder editedBody = new StringBuilder(body);
+                    try {
+                        NoteDelta.apply(editedBody, edits);
+                        m_recoveredEdits = edits;
+                        return editedBody.toString();
+                    } catch (IndexOutOfBoundsException e) {
+                        // 불러온 메모와 맞지 않는 임시 저장본은 무시한다.
+                        e.printStackTrace();
+                    }
+                }
+                return body.toString();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            } finally {
+                if(reader != null) {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+
+        @Override
+        protected void onPostExecute(String body) {
+            if(body == null) {
+                Toast.makeText(EditNoteActivity.this, m_strEditTitle + "을 읽는데 실패했습니다.", Toast.LENGTH_SHORT).show();
+                finish();
+                return;
+            }
+
+            m_etContent.setText(body);
+            if(m_recoveredEdits == null) {
+                m_delta = new NoteDelta();
+            } else {
+                m_delta = new NoteDelta(m_recoveredEdits);
+                Toast.makeText(EditNoteActivity.this, "수정 중이던 내용을 불러왔습니다.", Toast.LENGTH_SHORT).show();
+            }
+            m_etContent.addTextChangedListener(onChangeContent);
+            m_btSave.setEnabled(true);
+        }
+    }
+
+    /*
+                < 임시 저장된 새 메모를 백그라운드에서 불러오는 AsyncTask >
+    저장하지 못하고 종료된 메모가 있으면 제목과 내용을 복구한 뒤 변경 리스너를 등록한다.
+    불러오는 동안 사용자가 이미 입력을 시작했으면 입력한 내용을 덮어쓰지 않는다.
+    저장 버튼을 눌렀을 때 UI 스레드에서 카탈로그를 불러오지 않도록 NoteWriter도 미리 만들어 둔다.
+     */
+    private class RestoreDraftTask extends AsyncTask<Void, Void, NoteDraftStore.Draft> {
+        @Override
+        protected NoteDraftStore.Draft doInBackground(Void... params) {
+            NoteStorage.getWriter(EditNoteActivity.this);
+            return m_draftStore.readNewDraft();
+        }
+
+        @Override
+        protected void onPostExecute(NoteDraftStore.Draft draft) {
+            boolean isEmpty = m_etTitle.getText().length() == 0 && m_etContent.getText().length() == 0;
+            if(draft != null && isEmpty) {
+                m_etTitle.setText(draft.title);
+                m_etContent.setText(draft.body);
+                m_draftSeq = draft.seq;
+                Toast.makeText(EditNoteActivity.this, "작성 중이던 메모를 불러왔습니다.", Toast.LENGTH_SHORT).show();
+            }
+
+            m_etTitle.addTextChangedListener(onChangeDraft);
+            m_etContent.addTextChangedListener(onChangeDraft);
+            if(!isEmpty)
+                scheduleAutosave();
+        }
+    }
+
+    /*
+                < 메모 저장이 끝났을 때 호출되는 메소드 >
     메모의 작성 성공과 실패를 토스트메세지를 통해 사용자에게 알려준다.
+    새 메모의 제목이 중복되어 바뀌었으면 바뀐 제목도 토스트메세지로 알린다.
     작성 성공시 메모제목은 MainActivity인 ShowNoteListActivity에 넘겨준다.
+    그 후 엑티비티를 종료한다.
      */
-    public void onClickSaveBtn(View v) {
-        try {
-            // 중복검사를 마친 메모제목을 받아오고, 메모제목에 ".txt"를 더한 메모파일명을 만든다.
-            m_strNoteTitle = renameDuplicateFile();
-            m_strFilename = m_strNoteTitle + ".txt";
+    private void onNoteSaved(String title, IOException error) {
+        if(error == null) {
+            // 저장된 내용의 임시 저장본을 지운다.
+            if(m_strEditTitle == null)
+                m_draftStore.discardNewDraft(m_draftSeq);
+            else
+                m_draftStore.discardEditDraft(m_strEditTitle);
 
-            // 메모파일을 작성할 FileOutputStream 객체를 생성한다.
-            FileOutputStream fosNoteStream = openFileOutput(m_strFilename, Context.MODE_PRIVATE);
-            fosNoteStream.write(m_etContent.getText().toString().getBytes());
-            fosNoteStream.close();
+            // 중복으로 메모제목이 변경되었을 경우 토스트메세지로 사용자에게 알린다.
+            if(m_strEditTitle == null && !title.equals(m_strNoteTitle))
+                Toast.makeText(this, "메모 제목이 중복되어 제목을 " + title + "으로 변경했습니다.", Toast.LENGTH_SHORT).show();
+            m_strNoteTitle = title;
 
             // Intent객체를 통해 생성한 메모 제목을 ShowNoteListActivity에 넘겨준다.
             Intent intent = new Intent();
-            intent.putExtra("NEW_NOTE_TITLE", m_strNoteTitle);
+            intent.putExtra("NEW_NOTE_TITLE", title);
             setResult(RESULT_OK, intent);
 
-            Toast.makeText(this, m_strNoteTitle+" 작성", Toast.LENGTH_SHORT).show();
-        } catch (IOException e) {
-            e.printStackTrace();
-            Toast.makeText(EditNoteActivity.this, e.getMessage().toString(), Toast.LENGTH_SHORT).show();
-            Toast.makeText(this, m_strNoteTitle+" 작성 실패", Toast.LENGTH_SHORT).show();
+            Toast.makeText(this, title + (m_strEditTitle == null ? " 작성" : " 수정"), Toast.LENGTH_SHORT).show();
+        } else {
+            // 엑티비티가 종료될 때 작성한 내용을 다시 임시 저장한다.
+            m_isSaving = false;
+            m_isDraftDirty = true;
+            error.printStackTrace();
+            Toast.makeText(EditNoteActivity.this, error.getMessage(), Toast.LENGTH_SHORT).show();
+            Toast.makeText(this, title + (m_strEditTitle == null ? " 작성 실패" : " 수정 실패"), Toast.LENGTH_SHORT).show();
         }
 
         finish();
@@ -66,52 +378,11 @@ public class EditNoteActivity extends AppCompatActivity {
     /*
                 < 취소 버튼의 onClick 메소드 >
     취소 버튼을 누르면 사용자가 입력한 메모 제목과 내용을 지워 초기화한다.
+    수정 모드에서는 메모 제목을 바꿀 수 없으므로 메모 내용만 지운다.
      */
     public void onClickCancelBtn(View v) {
         m_etContent.setText("");
-        m_etTitle.setText("");
-    }
-
-    /*
-                < 메모 파일명이 중복되었을 경우 renaming하는 메소드 >
-     저장된 메모 파일들의 이름과 현재 메모제목.txt를 비교해 일치하는 파일이 있으면
-     "메모제목 (i)" 형식으로 새로운 메모제목을 할당한다.
-     중복으로 인해 메모제목을 변경한 경우 토스트메세지로 사용자에게 알린다.
-     새로운 메모제목을 반환한다.
-     */
-    private String renameDuplicateFile() {
-        String[] savedFiles = fileList();
-        String tmpNoteTitle;
-        int i = 1;
-        boolean isDuplicateFile = true;
-        boolean isChangedName = false;
-
-        // 사용자가 입력한 초기 메모제목을 받아온다.
-        m_strNoteTitle = m_etTitle.getText().toString();
-        tmpNoteTitle = m_strNoteTitle;
-
-        // 중복검사를 하는 부분
-        // 중복을 검사하고 중복되었을 경우에는 메모제목을 새롭게 할당한다.
-        // 새롭게 할당된 메모제목에 대해서 중복검사를 다시 실시한다.
-        while(isDuplicateFile) {
-            for (String tmp : savedFiles) {
-                if (tmp.equals(tmpNoteTitle + ".txt")) {
-                    tmpNoteTitle = m_strNoteTitle + " (" + i + ")";
-                    i++;
-                    isDuplicateFile = true;
-                    isChangedName = true;
-                    break;
-                }
-                isDuplicateFile = false;
-            }
-        }
-
-        // 중복으로 메모제목이 변경되었을 경우 토스트메세지로 사용자에게 알린다.
-        if(isChangedName)
-            Toast.makeText(EditNoteActivity.this, "메모 제목이 중복되어 제목을 "
-                    + tmpNoteTitle + "으로 변경했습니다.", Toast.LENGTH_SHORT).show();
-
-        // 중복검사를 거친 메모제목을 반환한다.
-        return tmpNoteTitle;
+        if(m_strEditTitle == null)
+            m_etTitle.setText("");
     }
 }
@@ -0,0 +1,183 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+/*
+            < 메모 하나를 파일 하나로 저장하는 저장소 >
+ 내부 저장소(getFilesDir())에 "메모제목.txt" 파일로 메모를 저장한다.
+ 메모는 "메모제목.txt.(임의의 숫자).tmp" 임시 파일에 먼저 쓰고, 디스크에 기록(fsync)한 뒤 "메모제목.txt"로 이름을 바꾼다.
+ 한 묶음이나 여러 스레드에서 같은 제목의 메모를 저장해도 임시 파일이 겹치지 않도록 File.createTempFile()로 만든다.
+ (같은 묶음에서는 나중 요청의 이름 바꾸기가 마지막에 일어나므로 나중 요청의 내용이 남는다.)
+ 이름 바꾸기는 원자적이므로 저장 도중 앱이 종료되어도 기존 메모가 깨지지 않는다.
+ 여러 메모를 한 번에 저장할 때는 모두 쓴 다음 fsync를 연달아 호출한다.
+ 메모마다 다른 파일을 사용하므로 다른 제목의 메모들은 여러 스레드에서 동시에 저장할 수 있다.
+ */
+class FileNoteStore implements NoteStore {
+    static final String TMP_EXTENSION = ".tmp";     // 저장 중인 임시 파일의 확장자
+
+    private final File m_noteDir;           // 메모 파일들이 저장되는 디렉터리
+    private boolean m_isTmpFilesChecked;    // 이전 실행에서 남은 임시 파일을 정리했는지 여부
+
+    FileNoteStore(File noteDir) {
+        m_noteDir = noteDir;
+    }
+
+    /*
+                < 메모들을 한 번에 저장하는 메소드 >
+     1. 모든 메모를 각자의 임시 파일에 쓴다.
+     2. 임시 파일들을 연달아 fsync하고 닫는다.
+     3. 임시 파일들을 메모 파일 이름으로 바꾼다.
+     */
+    @Override
+    public void writeNotes(String[] titles, byte[][] bodies, IOException[] errors) {
+        // 다른 스레드가 임시 파일을 쓰기 전에 정리가 끝나도록 잠근다.
+        synchronized (this) {
+            if(!m_isTmpFilesChecked) {
+                deleteStaleTmpFiles();
+                m_isTmpFilesChecked = true;
+            }
+        }
+
+        File[] tmpFiles = new File[titles.length];
+        FileOutputStream[] streams = new FileOutputStream[titles.length];
+
+        for(int i = 0; i < titles.length; i++) {
+            try {
+                tmpFiles[i] = createTmpFile(titles[i]);
+                streams[i] = new FileOutputStream(tmpFiles[i]);
+                streams[i].write(bodies[i]);
+            } catch (IOException e) {
+                errors[i] = e;
+            }
+        }
+
+        for(int i = 0; i < titles.length; i++) {
+            if(streams[i] == null)
+                continue;
+            try {
+                if(errors[i] == null)
+                    streams[i].getFD().sync();
+                streams[i].close();
+            } catch (IOException e) {
+                if(errors[i] == null)
+                    errors[i] = e;
+            }
+        }
+
+        for(int i = 0; i < titles.length; i++) {
+            File noteFile = getNoteFile(titles[i]);
+            if(errors[i] == null && !tmpFiles[i].renameTo(noteFile))
+                errors[i] = new IOException(noteFile.getName() + "으로 이름을 바꾸지 못했습니다.");
+            if(errors[i] != null && tmpFiles[i] != null)
+                tmpFiles[i].delete();
+        }
+    }
+
+    /*
+                < 디스크에 기록된 파일을 메모 파일로 옮기는 메소드 >
+     같은 파일 시스템 안에서 이름만 바꾸므로 메모 내용을 다시 쓰지 않는다.
+     */
+    @Override
+    public void adoptNote(String title, File file) throws IOException {
+        File noteFile = getNoteFile(title);
+        file.setLastModified(System.currentTimeMillis());
+        if(!file.renameTo(noteFile))
+            throw new IOException(noteFile.getName() + "으로 이름을 바꾸지 못했습니다.");
+    }
+
+    @Override
+    public InputStream openNote(String title) throws IOException {
+        return new FileInputStream(getNoteFile(title));
+    }
+
+    @Override
+    public boolean deleteNote(String title) {
+        return getNoteFile(title).delete();
+    }
+
+    @Override
+    public void deleteNotes(String[] titles, boolean[] isDeleted) {
+        for(int i = 0; i < titles.length; i++)
+            isDeleted[i] = getNoteFile(titles[i]).delete();
+    }
+
+    @Override
+    public NoteCatalog.Entry stat(String title) {
+        File noteFile = getNoteFile(title);
+        if(!noteFile.exists())
+            return null;
+        return new NoteCatalog.Entry(title, noteFile.getName(), noteFile.length(), noteFile.lastModified());
+    }
+
+    /*
+                < 메모 디렉터리를 스캔하는 메소드 >
+     확장자가 .txt인 파일들을 찾아 제목(확장자 제외), 크기, 수정시각을 기록한다.
+     */
+    @Override
+    public ArrayList<NoteCatalog.Entry> scan() {
+        ArrayList<NoteCatalog.Entry> entries = new ArrayList<>();
+
+        File[] noteFiles = m_noteDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String filename) {
+                return filename.endsWith(NoteCatalog.NOTE_EXTENSION);
+            }
+        });
+        if(noteFiles == null)
+            return entries;
+
+        for(File noteFile : noteFiles) {
+            String filename = noteFile.getName();
+            String title = filename.substring(0, filename.length() - NoteCatalog.NOTE_EXTENSION.length());
+            entries.add(new NoteCatalog.Entry(title, filename, noteFile.length(), noteFile.lastModified()));
+        }
+        return entries;
+    }
+
+    /*
+                < 메모 디렉터리의 수정시각을 반환하는 메소드 >
+     파일이 추가되거나 삭제되거나 이름이 바뀌면 디렉터리의 수정시각이 바뀐다.
+     */
+    @Override
+    public long getStamp() {
+        return m_noteDir.lastModified();
+    }
+
+    private File getNoteFile(String title) {
+        return new File(m_noteDir, title + NoteCatalog.NOTE_EXTENSION);
+    }
+
+    /*
+                < 메모를 저장할 임시 파일을 만드는 메소드 >
+     "메모제목.txt." 뒤에 File.createTempFile()이 붙이는 숫자로 이름이 겹치지 않게 한다.
+     */
+    private File createTmpFile(String title) throws IOException {
+        return File.createTempFile(title + NoteCatalog.NOTE_EXTENSION + ".", TMP_EXTENSION, m_noteDir);
+    }
+
+    /*
+                < 이전 실행에서 남은 임시 파일을 지우는 메소드 >
+     저장 도중 앱이 종료되면 임시 파일이 남을 수 있다. 이 파일들은 메모 목록에 나타나지 않으므로 지운다.
+     (이전 버전이 남긴 "메모제목.txt.tmp" 임시 파일도 함께 지운다.)
+     디렉터리를 스캔하므로 처음 저장할 때 저장 스레드에서 한 번만 호출한다.
+     */
+    private void deleteStaleTmpFiles() {
+        File[] tmpFiles = m_noteDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String filename) {
+                return filename.endsWith(NoteCatalog.NOTE_EXTENSION + TMP_EXTENSION)
+                        || (filename.endsWith(TMP_EXTENSION) && filename.contains(NoteCatalog.NOTE_EXTENSION + "."));
+            }
+        });
+        if(tmpFiles == null)
+            return;
+        for(File tmpFile : tmpFiles)
+            tmpFile.delete();
+    }
+}
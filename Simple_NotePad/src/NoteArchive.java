@@ -0,0 +1,153 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/*
+            < 모든 메모를 하나의 압축 파일로 내보내고 가져오는 클래스 >
+ 내보내기: 메모마다 "메모제목.txt" 항목을 만들어 ZIP 스트림에 차례로 쓴다.
+          메모 내용은 COPY_BUFFER_SIZE 버퍼로 복사하므로 메모 크기와 상관없이 사용하는 메모리가 일정하다.
+ 가져오기: ZIP 항목을 차례로 읽어 IMPORT_BATCH_BYTES 또는 IMPORT_BATCH_NOTES만큼 모이면 NoteWriter에 한 번에 저장을 요청하고,
+          저장이 끝날 때까지 기다린 뒤 다음 항목을 읽는다. (메모리에는 한 묶음만 올라간다.)
+          제목이 겹치면 EditNoteActivity와 같이 NoteCatalog.resolveUniqueTitle()로 "메모제목 (i)"를 할당하므로
+          메모마다 저장소를 다시 스캔하지 않는다.
+ 메소드들은 파일 I/O를 하므로 UI 스레드가 아닌 곳에서 호출해야 한다.
+ */
+class NoteArchive {
+    static final String ARCHIVE_MIME_TYPE = "application/zip";
+    private static final int COPY_BUFFER_SIZE = 8 * 1024;
+    private static final int IMPORT_BATCH_BYTES = 1024 * 1024;     // 한 번에 저장을 요청하는 메모 내용의 최대 크기
+    private static final int IMPORT_BATCH_NOTES = 64;              // 한 번에 저장을 요청하는 최대 메모 수
+
+    private NoteArchive() {
+    }
+
+    /*
+                < 메모들을 ZIP 스트림으로 내보내는 메소드 >
+     압축된 메모는 풀어서 일반 텍스트로 내보낸다.
+     내보내는 도중 삭제된 메모는 건너뛴다. 내보낸 메모 수를 반환한다.
+     */
+    static int exportNotes(NoteStore store, List<NoteCatalog.Entry> entries, OutputStream out) throws IOException {
+        ZipOutputStream zipOut = new ZipOutputStream(out);
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        int numOfExported = 0;
+        try {
+            for(NoteCatalog.Entry entry : entries) {
+                InputStream in;
+                try {
+                    in = NoteCodec.decode(store.openNote(entry.title));
+                } catch (FileNotFoundException e) {
+                    continue;
+                }
+
+                try {
+                    ZipEntry zipEntry = new ZipEntry(entry.title + NoteCatalog.NOTE_EXTENSION);
+                    zipEntry.setTime(entry.lastModified);
+                    zipOut.putNextEntry(zipEntry);
+                    int length;
+                    while((length = in.read(buffer)) != -1)
+                        zipOut.write(buffer, 0, length);
+                    zipOut.closeEntry();
+                    numOfExported++;
+                } finally {
+                    in.close();
+                }
+            }
+            zipOut.finish();
+        } finally {
+            zipOut.close();
+        }
+        return numOfExported;
+    }
+
+    /*
+                < ZIP 스트림의 메모들을 가져오는 메소드 >
+     확장자가 .txt인 항목만 가져오고, 항목 이름에 경로가 있으면 마지막 부분만 제목으로 사용한다.
+     저장에 성공한 메모들의 (중복 처리를 거친) 제목을 반환한다.
+     */
+    static ArrayList<String> importNotes(InputStream in, NoteCatalog catalog, NoteWriter writer) throws IOException {
+        ZipInputStream zipIn = new ZipInputStream(in);
+        ArrayList<String> importedTitles = new ArrayList<>();
+        ArrayList<String> batchTitles = new ArrayList<>();
+        ArrayList<String> batchBodies = new ArrayList<>();
+        int batchBytes = 0;
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+
+        try {
+            ZipEntry zipEntry;
+            while((zipEntry = zipIn.getNextEntry()) != null) {
+                String name = zipEntry.getName();
+                if(zipEntry.isDirectory() || !name.endsWith(NoteCatalog.NOTE_EXTENSION))
+                    continue;
+
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                int length;
+                while((length = zipIn.read(buffer)) != -1)
+                    body.write(buffer, 0, length);
+
+                String title = name.substring(name.lastIndexOf('/') + 1, name.length() - NoteCatalog.NOTE_EXTENSION.length());
+                batchTitles.add(catalog.resolveUniqueTitle(title));
+                batchBodies.add(new String(body.toByteArray(), NoteReader.UTF_8));
+                batchBytes += body.size();
+
+                if(batchBytes >= IMPORT_BATCH_BYTES || batchTitles.size() >= IMPORT_BATCH_NOTES) {
+                    saveBatch(writer, batchTitles, batchBodies, importedTitles);
+                    batchBytes = 0;
+                }
+            }
+            saveBatch(writer, batchTitles, batchBodies, importedTitles);
+        } finally {
+            // 저장을 요청하지 못한 제목들의 예약을 취소한다.
+            for(String title : batchTitles)
+                catalog.releaseTitle(title);
+            zipIn.close();
+        }
+        return importedTitles;
+    }
+
+    /*
+                < 모아진 메모들의 저장을 요청하고 끝날 때까지 기다리는 메소드 >
+     NoteWriter가 요청들을 한 번에 모아 저장하므로 fsync 비용이 묶음 단위로 든다.
+     */
+    private static void saveBatch(NoteWriter writer, ArrayList<String> titles, ArrayList<String> bodies,
+                                  final ArrayList<String> savedTitles) throws IOException {
+        if(titles.isEmpty())
+            return;
+
+        final CountDownLatch latch = new CountDownLatch(titles.size());
+        NoteWriter.Callback callback = new NoteWriter.Callback() {
+            @Override
+            public void onSaveCompleted(String title, IOException error) {
+                if(error == null) {
+                    synchronized (savedTitles) {
+                        savedTitles.add(title);
+                    }
+                } else {
+                    error.printStackTrace();
+                }
+                latch.countDown();
+            }
+        };
+
+        for(int i = 0; i < titles.size(); i++)
+            writer.save(titles.get(i), bodies.get(i), callback);
+        titles.clear();
+        bodies.clear();
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("메모 가져오기가 중단되었습니다.");
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+            < 메모 목록을 영구적으로 보관하는 카탈로그 >
+ 메모 저장소(NoteStore)를 매번 스캔하는 대신 카탈로그 파일에 메모 목록을 저장해 두고 불러온다.
+ 카탈로그 파일은 [스냅샷 + 변경 기록] 형식이다.
+    - 스냅샷: 헤더(매직넘버, 버전, 저장소 상태값)와 전체 메모 항목
+    - 변경 기록: 메모가 저장되거나 삭제될 때마다 파일 끝에 덧붙이는 PUT/DEL 레코드
+ 각 레코드에는 변경 직후의 저장소 상태값(NoteStore.getStamp(), 파일 저장소는 디렉터리 수정시각)이 기록된다.
+ 카탈로그가 없거나, 손상되었거나, 기록된 상태값이 실제 저장소와 다르면(stale) 전체 스캔을 다시 한다.
+ 단, 앱이 저장/삭제 도중 종료되어 stale이 된 경우에는 NoteJournal이 알려준 메모들의 항목만 다시 읽는다.
+ 메모 저장/삭제는 NoteWriter와 ViewNoteActivity에서 putNote()/removeNote()로 반영한다.
+ 메모를 저장할 때 메모 앞부분(미리보기)과 줄 수도 함께 기록해 두므로 메모 목록은 메모 파일을 열지 않고 미리보기를 보여줄 수 있다.
+ 또한 "메모제목 (i)" 형식의 중복 제목마다 다음에 쓸 번호를 기억해 두어
+ 중복된 제목을 파일 목록 스캔 없이 상수 시간에 새 제목으로 바꿀 수 있다.
+ 항목은 ConcurrentHashMap에 담으므로 목록 조회(getEntries(), getEntry() 등)는 잠그지 않고,
+ 저장/삭제 중에도 UI 스레드가 기다리지 않는다. 변경(putNote(), removeNote() 등)과 파일 쓰기만 동기화한다.
+ */
+class NoteCatalog {
+    static final String NOTE_EXTENSION = ".txt";    // 메모 파일의 확장자
+
+    static final String CATALOG_FILENAME = "notes.catalog";
+    private static final int CATALOG_MAGIC = 0x4E435431;    // "NCT1"
+    private static final int CATALOG_VERSION = 2;      // 2: 미리보기와 줄 수 추가
+    private static final byte RECORD_PUT = 1;       // 메모 추가/갱신 레코드
+    private static final byte RECORD_DEL = 2;       // 메모 삭제 레코드
+    private static final int COMPACT_THRESHOLD = 1024;  // 변경 기록이 이 개수를 넘으면 스냅샷을 새로 쓴다.
+    static final int PREVIEW_LENGTH = 100;          // 미리보기로 기록하는 메모 앞부분의 글자 수
+
+    /*
+                < 카탈로그 항목 >
+     메모 제목, 파일명, 파일 크기, 마지막 수정시각, 미리보기, 줄 수를 담는다.
+     미리보기를 아직 만들지 못한 항목(저장소를 다시 스캔한 경우)은 preview가 null이고 lineCount가 -1이다.
+     */
+    static class Entry {
+        final String title;
+        final String filename;
+        final long size;
+        final long lastModified;
+        final String preview;
+        final int lineCount;
+
+        Entry(String title, String filename, long size, long lastModified) {
+            this(title, filename, size, lastModified, null, -1);
+        }
+
+        Entry(String title, String filename, long size, long lastModified, String preview, int lineCount) {
+            this.title = title;
+            this.filename = filename;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.preview = preview;
+            this.lineCount = lineCount;
+        }
+
+        Entry withPreview(String preview, int lineCount) {
+            return new Entry(title, filename, size, lastModified, preview, lineCount);
+        }
+    }
+
+    private final NoteStore m_store;    // 메모가 저장되는 저장소
+    private final File m_catalogFile;   // 카탈로그 파일
+    private final ConcurrentHashMap<String, Entry> m_entries = new ConcurrentHashMap<>();  // 메모 제목 -> 항목
+    private final HashMap<String, Integer> m_nextSuffix = new HashMap<>(); // 기본 제목 -> 다음에 붙일 " (i)" 번호
+    private final HashSet<String> m_reservedTitles = new HashSet<>();  // 저장 중이라 아직 카탈로그에 없는 제목들
+    private int m_numOfRecords;         // 마지막 스냅샷 이후 덧붙인 변경 기록 수
+    private long m_catalogStamp;        // 카탈로그에 마지막으로 기록된 저장소 상태값
+
+    /*
+     catalogFile은 메모 디렉터리가 아닌 다른 디렉터리에 있어야 한다.
+     (카탈로그 파일을 쓸 때 메모 디렉터리의 수정시각이 바뀌면 안되기 때문이다.)
+     */
+    NoteCatalog(NoteStore store, File catalogFile) {
+        m_store = store;
+        m_catalogFile = catalogFile;
+    }
+
+    /*
+                < 카탈로그를 불러오는 메소드 >
+     카탈로그 파일을 한 번에 읽어 메모 항목들을 복원한다.
+     카탈로그가 없거나 손상되었거나 오래된(stale) 경우 저장소를 다시 스캔하고 스냅샷을 새로 쓴다.
+     */
+    synchronized void load() {
+        load(Collections.<String>emptyList());
+    }
+
+    /*
+                < 끝나지 않은 작업을 정리한 뒤 카탈로그를 불러오는 메소드 >
+     changedTitles는 NoteJournal.recover()가 정리한 메모 제목들이다.
+     카탈로그가 stale이어도 changedTitles가 있으면 그 메모들의 항목만 저장소에서 다시 읽는다.
+     */
+    synchronized void load(Collection<String> changedTitles) {
+        if(!readCatalog()) {
+            rescan();
+            writeSnapshot();
+        } else if(m_catalogStamp != m_store.getStamp()) {
+            if(changedTitles.isEmpty()) {
+                rescan();
+            } else {
+                for(String title : changedTitles)
+                    refreshEntry(title);
+            }
+            writeSnapshot();
+        }
+
+        // 불러온 제목들로 중복 번호 색인을 만든다.
+        m_nextSuffix.clear();
+        for(String title : m_entries.keySet())
+            indexSuffix(title);
+    }
+
+    /*
+                < 저장된 메모 제목 목록을 반환하는 메소드 >
+     */
+    ArrayList<String> getTitles() {
+        return new ArrayList<>(m_entries.keySet());
+    }
+
+    /*
+                < 저장된 메모 항목 목록을 반환하는 메소드 >
+     */
+    ArrayList<Entry> getEntries() {
+        return new ArrayList<>(m_entries.values());
+    }
+
+    /*
+                < 미리보기가 없는 메모 제목 목록을 반환하는 메소드 >
+     */
+    ArrayList<String> getTitlesWithoutPreview() {
+        ArrayList<String> titles = new ArrayList<>();
+        for(Entry entry : m_entries.values()) {
+            if(entry.preview == null)
+                titles.add(entry.title);
+        }
+        return titles;
+    }
+
+    Entry getEntry(String title) {
+        return m_entries.get(title);
+    }
+
+    boolean contains(String title) {
+        return m_entries.containsKey(title);
+    }
+
+    int size() {
+        return m_entries.size();
+    }
+
+    /*
+                < 메모가 저장되었을 때 카탈로그에 반영하는 메소드 >
+     저장소에서 메모의 크기와 수정시각을 읽고, 저장된 메모 내용 body로 미리보기와 줄 수를 만들어
+     항목을 추가하고 PUT 레코드를 덧붙인다.
+     */
+    synchronized void putNote(String title, String body) {
+        Entry entry = m_store.stat(title);
+        if(entry == null) {
+            m_reservedTitles.remove(title);
+            return;
+        }
+        entry = entry.withPreview(makePreview(body), countLines(body));
+
+        m_entries.put(title, entry);
+        m_reservedTitles.remove(title);
+        indexSuffix(title);
+        appendRecord(RECORD_PUT, entry);
+    }
+
+    /*
+                < 미리보기가 없던 메모의 미리보기를 기록하는 메소드 >
+     메모를 읽어 미리보기를 만드는 동안 메모가 바뀌었으면(수정시각이 다르면) 기록하지 않는다.
+     기록된 항목을 반환하고, 기록하지 않았으면 null을 반환한다.
+     */
+    synchronized Entry setPreview(String title, long lastModified, String preview, int lineCount) {
+        Entry entry = m_entries.get(title);
+        if(entry == null || entry.lastModified != lastModified)
+            return null;
+
+        entry = entry.withPreview(preview, lineCount);
+        m_entries.put(title, entry);
+        appendRecord(RECORD_PUT, entry);
+        return entry;
+    }
+
+    /*
+                < 메모 앞부분으로 미리보기를 만드는 메소드 >
+     앞에서부터 PREVIEW_LENGTH 글자를 잘라 줄바꿈과 탭을 공백으로 바꾼다.
+     서로게이트 쌍이 잘리지 않도록 한다.
+     */
+    static String makePreview(CharSequence body) {
+        int end = Math.min(body.length(), PREVIEW_LENGTH);
+        if(end < body.length() && Character.isHighSurrogate(body.charAt(end - 1)))
+            end--;
+
+        StringBuilder preview = new StringBuilder(end);
+        for(int i = 0; i < end; i++) {
+            char c = body.charAt(i);
+            preview.append((c == '\n' || c == '\r' || c == '\t') ? ' ' : c);
+        }
+        return preview.toString().trim();
+    }
+
+    /*
+                < 메모의 줄 수를 세는 메소드 >
+     빈 메모는 0줄이다.
+     */
+    static int countLines(CharSequence body) {
+        if(body.length() == 0)
+            return 0;
+        return countNewlines(body) + 1;
+    }
+
+    /*
+                < 줄바꿈 문자 수를 세는 메소드 >
+     메모를 페이지 단위로 읽으며 줄 수를 셀 때도 쓰인다.
+     */
+    static int countNewlines(CharSequence text) {
+        int count = 0;
+        for(int i = 0; i < text.length(); i++) {
+            if(text.charAt(i) == '\n')
+                count++;
+        }
+        return count;
+    }
+
+    /*
+                < 저장에 실패한 메모 제목의 예약을 취소하는 메소드 >
+     */
+    synchronized void releaseTitle(String title) {
+        m_reservedTitles.remove(title);
+    }
+
+    /*
+                < 메모가 삭제되었을 때 카탈로그에 반영하는 메소드 >
+     항목을 지우고 DEL 레코드를 덧붙인다.
+     */
+    synchronized void removeNote(String title) {
+        Entry entry = m_entries.remove(title);
+        if(entry != null)
+            appendRecord(RECORD_DEL, entry);
+    }
+
+    /*
+                < 여러 메모가 삭제되었을 때 카탈로그에 한 번에 반영하는 메소드 >
+     항목들을 지우고 DEL 레코드들을 한 번에 덧붙인다.
+     */
+    synchronized void removeNotes(Collection<String> titles) {
+        ArrayList<Entry> entries = new ArrayList<>();
+        for(String title : titles) {
+            Entry entry = m_entries.remove(title);
+            if(entry != null)
+                entries.add(entry);
+        }
+        appendRecords(RECORD_DEL, entries);
+    }
+
+    /*
+                < 중복되지 않는 메모 제목을 만드는 메소드 >
+     title과 같은 제목의 메모가 없으면 title을 그대로 반환한다.
+     있으면 title에 대해 기억해 둔 다음 번호부터 "title (i)"를 만들어 반환한다.
+     번호는 저장된 제목들 중 가장 큰 번호 다음부터 시작하므로 대부분 한 번에 비어있는 제목을 찾는다.
+     반환된 제목은 저장이 끝나 putNote()가 호출될 때까지 예약되어 다른 저장 요청에 다시 쓰이지 않는다.
+     저장에 실패하면 releaseTitle()로 예약을 취소한다.
+     */
+    synchronized String resolveUniqueTitle(String title) {
+        long start = NoteMetrics.start();
+        String tmpNoteTitle = title;
+        if(isTaken(tmpNoteTitle)) {
+            Integer nextSuffix = m_nextSuffix.get(title);
+            int i = (nextSuffix == null) ? 1 : nextSuffix;
+            tmpNoteTitle = title + " (" + i + ")";
+            while(isTaken(tmpNoteTitle)) {
+                i++;
+                tmpNoteTitle = title + " (" + i + ")";
+            }
+            m_nextSuffix.put(title, i + 1);
+        }
+
+        m_reservedTitles.add(tmpNoteTitle);
+        NoteMetrics.stop(NoteMetrics.RESOLVE_TITLE, start);
+        return tmpNoteTitle;
+    }
+
+    private boolean isTaken(String title) {
+        return m_entries.containsKey(title) || m_reservedTitles.contains(title);
+    }
+
+    /*
+                < "기본제목 (i)" 형식의 제목을 중복 번호 색인에 반영하는 메소드 >
+     제목이 " (숫자)"로 끝나면 기본제목의 다음 번호를 숫자 + 1 이상으로 올린다.
+     */
+    private void indexSuffix(String title) {
+        int open = title.lastIndexOf(" (");
+        if(open < 0 || !title.endsWith(")") || open + 2 >= title.length() - 1)
+            return;
+
+        int suffix = 0;
+        for(int i = open + 2; i < title.length() - 1; i++) {
+            char ch = title.charAt(i);
+            if(ch < '0' || ch > '9' || suffix > 100000000)
+                return;
+            suffix = suffix * 10 + (ch - '0');
+        }
+
+        String baseTitle = title.substring(0, open);
+        Integer nextSuffix = m_nextSuffix.get(baseTitle);
+        if(nextSuffix == null || nextSuffix <= suffix)
+            m_nextSuffix.put(baseTitle, suffix + 1);
+    }
+
+    /*
+                < 저장소를 스캔해 항목을 다시 만드는 메소드 >
+     크기와 수정시각이 그대로인 메모는 이전 항목의 미리보기를 이어서 사용한다.
+     */
+    private void rescan() {
+        HashMap<String, Entry> oldEntries = new HashMap<>(m_entries);
+        m_entries.clear();
+        for(Entry entry : m_store.scan()) {
+            Entry oldEntry = oldEntries.get(entry.title);
+            if(oldEntry != null && oldEntry.size == entry.size && oldEntry.lastModified == entry.lastModified)
+                entry = entry.withPreview(oldEntry.preview, oldEntry.lineCount);
+            m_entries.put(entry.title, entry);
+        }
+    }
+
+    /*
+                < 메모 하나의 항목을 저장소에서 다시 읽는 메소드 >
+     크기와 수정시각이 그대로이면 이전 항목의 미리보기를 이어서 사용한다.
+     */
+    private void refreshEntry(String title) {
+        Entry entry = m_store.stat(title);
+        if(entry == null) {
+            m_entries.remove(title);
+            return;
+        }
+
+        Entry oldEntry = m_entries.get(title);
+        if(oldEntry != null && oldEntry.size == entry.size && oldEntry.lastModified == entry.lastModified)
+            entry = entry.withPreview(oldEntry.preview, oldEntry.lineCount);
+        m_entries.put(title, entry);
+    }
+
+    /*
+                < 카탈로그 파일을 읽는 메소드 >
+     스냅샷을 읽은 뒤 덧붙여진 변경 기록을 차례로 적용한다.
+     끝까지 읽으면 true를 반환하고, 마지막으로 기록된 저장소 상태값을 m_catalogStamp에 둔다.
+     */
+    private boolean readCatalog() {
+        if(!m_catalogFile.exists())
+            return false;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(m_catalogFile)));
+            if(in.readInt() != CATALOG_MAGIC || in.readInt() != CATALOG_VERSION)
+                return false;
+
+            long storeStamp = in.readLong();
+            int numOfEntries = in.readInt();
+
+            m_entries.clear();
+            for(int i = 0; i < numOfEntries; i++) {
+                Entry entry = readEntry(in);
+                m_entries.put(entry.title, entry);
+            }
+
+            // 스냅샷 이후의 변경 기록을 적용한다.
+            m_numOfRecords = 0;
+            int type;
+            while((type = in.read()) != -1) {
+                Entry entry = readEntry(in);
+                storeStamp = in.readLong();
+                if(type == RECORD_PUT)
+                    m_entries.put(entry.title, entry);
+                else if(type == RECORD_DEL)
+                    m_entries.remove(entry.title);
+                else
+                    return false;
+                m_numOfRecords++;
+            }
+
+            m_catalogStamp = storeStamp;
+            return true;
+        } catch (EOFException e) {
+            // 기록 도중 중단되어 잘린 카탈로그는 다시 스캔한다.
+            return false;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /*
+                < 스냅샷을 새로 쓰는 메소드 >
+     임시 파일에 전체 항목을 기록한 뒤 카탈로그 파일로 이름을 바꾼다.
+     */
+    private void writeSnapshot() {
+        File tmpFile = new File(m_catalogFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(CATALOG_MAGIC);
+            out.writeInt(CATALOG_VERSION);
+            out.writeLong(m_store.getStamp());
+            out.writeInt(m_entries.size());
+            for(Entry entry : m_entries.values())
+                writeEntry(out, entry);
+            out.close();
+            out = null;
+
+            if(!tmpFile.renameTo(m_catalogFile))
+                throw new IOException("카탈로그 파일을 교체하지 못했습니다.");
+            m_numOfRecords = 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeQuietly(out);
+            tmpFile.delete();
+        }
+    }
+
+    /*
+                < 변경 기록을 카탈로그 파일 끝에 덧붙이는 메소드 >
+     변경 기록이 많아지면 스냅샷을 새로 써서 카탈로그 파일 크기를 줄인다.
+     */
+    private void appendRecord(byte type, Entry entry) {
+        appendRecords(type, Collections.singletonList(entry));
+    }
+
+    private void appendRecords(byte type, List<Entry> entries) {
+        if(entries.isEmpty())
+            return;
+        if(m_numOfRecords + entries.size() > COMPACT_THRESHOLD || !m_catalogFile.exists()) {
+            writeSnapshot();
+            return;
+        }
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(m_catalogFile, true)));
+            long storeStamp = m_store.getStamp();
+            for(Entry entry : entries) {
+                out.writeByte(type);
+                writeEntry(out, entry);
+                out.writeLong(storeStamp);
+            }
+            out.close();
+            out = null;
+            m_numOfRecords += entries.size();
+        } catch (IOException e) {
+            // 기록에 실패하면 다음 실행 때 stale로 판단되어 다시 스캔된다.
+            e.printStackTrace();
+            closeQuietly(out);
+        }
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        String title = in.readUTF();
+        String filename = in.readUTF();
+        long size = in.readLong();
+        long lastModified = in.readLong();
+        if(!in.readBoolean())
+            return new Entry(title, filename, size, lastModified);
+        String preview = in.readUTF();
+        int lineCount = in.readInt();
+        return new Entry(title, filename, size, lastModified, preview, lineCount);
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+        out.writeUTF(entry.title);
+        out.writeUTF(entry.filename);
+        out.writeLong(entry.size);
+        out.writeLong(entry.lastModified);
+        out.writeBoolean(entry.preview != null);
+        if(entry.preview != null) {
+            out.writeUTF(entry.preview);
+            out.writeInt(entry.lineCount);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if(closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
+
+/*
+            < 메모 내용을 압축하고 푸는 클래스 >
+ COMPRESS_THRESHOLD 바이트 이상인 메모는 Deflater(BEST_SPEED)로 압축해 저장한다.
+ 압축된 메모 앞에는 4바이트 헤더(0xFF 'N' 'Z' 버전)를 붙인다.
+ 0xFF는 UTF-8 텍스트에 나타나지 않는 바이트이므로, 헤더가 없는 기존의 일반 .txt 메모와 구분할 수 있다.
+ 압축해도 크기가 줄지 않는 메모는 그대로 저장한다.
+ */
+class NoteCodec {
+    static final int COMPRESS_THRESHOLD = 4 * 1024;    // 이 크기 이상인 메모만 압축한다.
+
+    private static final byte[] HEADER = {(byte) 0xFF, 'N', 'Z', 1};
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private NoteCodec() {
+    }
+
+    /*
+                < 저장할 메모 내용을 인코딩하는 메소드 >
+     메모가 작거나 압축 효과가 없으면 body를 그대로 반환한다.
+     */
+    static byte[] encode(byte[] body) {
+        if(body.length < COMPRESS_THRESHOLD)
+            return body;
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2);
+            out.write(HEADER, 0, HEADER.length);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while(!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+                // 압축 결과가 원본보다 커지면 압축을 포기한다.
+                if(out.size() >= body.length)
+                    return body;
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /*
+                < 저장된 메모 내용을 디코딩하는 InputStream을 반환하는 메소드 >
+     앞의 4바이트를 읽어 압축 헤더이면 압축을 푸는 InputStream을,
+     아니면 읽은 바이트를 되돌려 놓은 원래 내용의 InputStream을 반환한다.
+     */
+    static InputStream decode(InputStream in) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(in, HEADER.length);
+        try {
+            byte[] header = new byte[HEADER.length];
+            int length = 0;
+            while(length < header.length) {
+                int numOfRead = pushback.read(header, length, header.length - length);
+                if(numOfRead == -1)
+                    break;
+                length += numOfRead;
+            }
+
+            if(length == header.length && isCompressed(header))
+                return new InflaterInputStream(pushback);
+
+            pushback.unread(header, 0, length);
+            return pushback;
+        } catch (IOException e) {
+            pushback.close();
+            throw e;
+        }
+    }
+
+    private static boolean isCompressed(byte[] header) {
+        for(int i = 0; i < HEADER.length; i++) {
+            if(header[i] != HEADER[i])
+                return false;
+        }
+        return true;
+    }
+}
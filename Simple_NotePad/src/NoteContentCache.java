@@ -0,0 +1,132 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+            < 디코딩된 메모 내용을 보관하는 LRU 캐시 >
+ 최근에 본 메모를 다시 열 때 파일을 다시 읽고 디코딩하지 않도록 메모 내용(String)을 보관한다.
+ 메모 제목과 수정 스탬프(카탈로그의 크기, 수정시각)를 함께 확인하므로 바뀐 메모의 내용을 돌려주지 않는다.
+ 보관하는 글자 수의 합이 m_maxChars를 넘으면 가장 오래 사용하지 않은 메모부터 버린다.
+ 여러 스레드(UI 스레드, 저장 스레드)에서 사용하므로 모든 메소드는 synchronized이다.
+ */
+class NoteContentCache {
+    /*
+                < 캐시에 보관된 메모 내용 >
+     */
+    private static class CachedNote {
+        final Stamp stamp;
+        final String body;
+
+        CachedNote(Stamp stamp, String body) {
+            this.stamp = stamp;
+            this.body = body;
+        }
+    }
+
+    private final LinkedHashMap<String, CachedNote> m_notes = new LinkedHashMap<>(16, 0.75f, true);    // 사용 순서로 정렬된 메모들
+    private final int m_maxChars;       // 보관할 수 있는 최대 글자 수
+    private int m_numOfChars;           // 보관 중인 글자 수
+
+    NoteContentCache(int maxChars) {
+        m_maxChars = maxChars;
+    }
+
+    /*
+                < 메모의 수정 스탬프 >
+     카탈로그 항목의 크기와 수정시각을 한 쌍으로 비교한다.
+     (두 값을 하나의 숫자로 합치면 서로 다른 저장이 같은 스탬프가 될 수 있다.)
+     NONE은 저장소에 없는 메모의 스탬프로, 어떤 메모의 스탬프와도 같지 않다.
+     */
+    static class Stamp {
+        static final Stamp NONE = new Stamp(-1, 0);
+
+        final long size;
+        final long lastModified;
+
+        Stamp(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof Stamp))
+                return false;
+            Stamp stamp = (Stamp) obj;
+            return size == stamp.size && lastModified == stamp.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (size ^ (size >>> 32)) * 31 + (int) (lastModified ^ (lastModified >>> 32));
+        }
+    }
+
+    /*
+                < 카탈로그 항목으로 수정 스탬프를 만드는 메소드 >
+     */
+    static Stamp getStamp(NoteCatalog.Entry entry) {
+        return new Stamp(entry.size, entry.lastModified);
+    }
+
+    /*
+                < 메모 내용을 찾는 메소드 >
+     없거나 스탬프가 다르면 null을 반환한다.
+     */
+    synchronized String get(String title, Stamp stamp) {
+        CachedNote note = m_notes.get(title);
+        if(note == null)
+            return null;
+        if(!note.stamp.equals(stamp)) {
+            remove(title);
+            return null;
+        }
+        return note.body;
+    }
+
+    /*
+                < 메모 내용을 보관하는 메소드 >
+     캐시 크기의 1/4보다 큰 메모는 다른 메모들을 모두 밀어내므로 보관하지 않는다.
+     */
+    synchronized void put(String title, Stamp stamp, String body) {
+        remove(title);
+        if(body.length() > m_maxChars / 4)
+            return;
+
+        m_notes.put(title, new CachedNote(stamp, body));
+        m_numOfChars += body.length();
+        trimToSize(m_maxChars);
+    }
+
+    /*
+                < 메모를 캐시에서 지우는 메소드 >
+     메모가 저장되거나 삭제되었을 때 호출한다.
+     */
+    synchronized void remove(String title) {
+        CachedNote note = m_notes.remove(title);
+        if(note != null)
+            m_numOfChars -= note.body.length();
+    }
+
+    /*
+                < 보관 중인 글자 수를 maxChars 이하로 줄이는 메소드 >
+     가장 오래 사용하지 않은 메모부터 버린다.
+     */
+    synchronized void trimToSize(int maxChars) {
+        Iterator<Map.Entry<String, CachedNote>> iterator = m_notes.entrySet().iterator();
+        while(m_numOfChars > maxChars && iterator.hasNext()) {
+            m_numOfChars -= iterator.next().getValue().body.length();
+            iterator.remove();
+        }
+    }
+
+    int getMaxChars() {
+        return m_maxChars;
+    }
+
+    synchronized int size() {
+        return m_numOfChars;
+    }
+}
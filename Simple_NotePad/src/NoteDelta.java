@@ -0,0 +1,275 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+            < 메모 수정 내용을 기록하는 클래스 >
+ EditNoteActivity의 TextWatcher가 알려주는 변경 범위를 "start 위치부터 deleteLength 글자를 text로 바꾼다"는
+ Edit 목록으로 기록한다. 기록된 순서대로 원래 메모에 적용하면 수정된 메모가 된다.
+ 연속으로 입력하거나 방금 입력한 글자를 지우는 경우에는 마지막 Edit에 합쳐서 기록이 길어지지 않도록 한다.
+ */
+class NoteDelta {
+    private static final long UNBOUNDED = Long.MAX_VALUE / 2;  // 길이를 모르는 원래 메모의 나머지 구간 길이
+
+    /*
+                < 수정 한 번 >
+     */
+    static class Edit {
+        final int start;            // 수정이 시작되는 글자 위치
+        final int deleteLength;     // 지워지는 글자 수
+        final String text;          // 새로 들어가는 글자들
+
+        Edit(int start, int deleteLength, String text) {
+            this.start = start;
+            this.deleteLength = deleteLength;
+            this.text = text;
+        }
+    }
+
+    /*
+                < compose()에서 수정된 메모를 이루는 조각 >
+     원래 메모의 구간(text가 null) 또는 새로 들어간 글자들이다.
+     */
+    private static class Piece {
+        final long origin;          // 원래 메모에서 구간이 시작되는 위치 (새로 들어간 글자들이면 -1)
+        final long length;          // 조각의 글자 수
+        final String text;          // 새로 들어간 글자들 (원래 메모의 구간이면 null)
+
+        Piece(long origin, long length, String text) {
+            this.origin = origin;
+            this.length = length;
+            this.text = text;
+        }
+
+        Piece subPiece(long from, long length) {
+            if(text == null)
+                return new Piece(origin + from, length, null);
+            return new Piece(-1, length, text.substring((int) from, (int) (from + length)));
+        }
+    }
+
+    private final ArrayList<Edit> m_edits = new ArrayList<>();
+
+    NoteDelta() {
+    }
+
+    /*
+     임시 저장된 수정 목록에 이어서 기록할 때 사용한다.
+     */
+    NoteDelta(List<Edit> edits) {
+        m_edits.addAll(edits);
+    }
+
+    /*
+                < 변경 범위를 기록하는 메소드 >
+     TextWatcher.onTextChanged()의 인자 그대로 start 위치의 before 글자가 inserted로 바뀌었음을 기록한다.
+     */
+    void record(int start, int before, CharSequence inserted) {
+        if(before == 0 && inserted.length() == 0)
+            return;
+
+        if(!m_edits.isEmpty()) {
+            Edit last = m_edits.get(m_edits.size() - 1);
+            int lastEnd = last.start + last.text.length();
+
+            // 마지막으로 입력한 글자 바로 뒤에 이어서 입력한 경우
+            if(before == 0 && start == lastEnd) {
+                m_edits.set(m_edits.size() - 1, new Edit(last.start, last.deleteLength, last.text + inserted));
+                return;
+            }
+            // 마지막으로 입력한 글자들의 끝부분을 지운 경우
+            if(inserted.length() == 0 && start >= last.start && start + before == lastEnd) {
+                String text = last.text.substring(0, start - last.start);
+                if(text.isEmpty() && last.deleteLength == 0)
+                    m_edits.remove(m_edits.size() - 1);
+                else
+                    m_edits.set(m_edits.size() - 1, new Edit(last.start, last.deleteLength, text));
+                return;
+            }
+        }
+        m_edits.add(new Edit(start, before, inserted.toString()));
+    }
+
+    /*
+                < 기록된 수정 목록을 반환하는 메소드 >
+     이후의 기록에 영향을 받지 않도록 복사본을 반환한다.
+     */
+    ArrayList<Edit> getEdits() {
+        return new ArrayList<>(m_edits);
+    }
+
+    boolean isEmpty() {
+        return m_edits.isEmpty();
+    }
+
+    /*
+                < 수정 목록을 메모 내용에 적용하는 메소드 >
+     */
+    static void apply(StringBuilder body, List<Edit> edits) {
+        for(Edit edit : edits)
+            body.replace(edit.start, edit.start + edit.deleteLength, edit.text);
+    }
+
+    /*
+                < 수정 목록을 원래 메모 기준으로 합치는 메소드 >
+     각 Edit의 start는 앞선 Edit들이 적용된 내용에서의 위치이다.
+     원래 메모를 앞에서부터 한 번만 읽으면서 적용할 수 있도록, 원래 메모에서의 위치 순서로 정렬되고
+     서로 겹치지 않는 Edit 목록으로 바꾼다. 원래 메모의 글자 수는 몰라도 된다.
+     */
+    static ArrayList<Edit> compose(List<Edit> edits) {
+        // 수정된 메모를 원래 메모의 구간과 새로 들어간 글자들의 조각으로 나타낸다.
+        // 처음에는 원래 메모 전체를 가리키는 조각 하나이고, 마지막 조각은 항상 원래 메모의 나머지 구간이다.
+        ArrayList<Piece> pieces = new ArrayList<>();
+        pieces.add(new Piece(0, UNBOUNDED, null));
+        for(Edit edit : edits) {
+            int first = split(pieces, edit.start);
+            int last = split(pieces, (long) edit.start + edit.deleteLength);
+            pieces.subList(first, last).clear();
+            if(!edit.text.isEmpty())
+                pieces.add(first, new Piece(-1, edit.text.length(), edit.text));
+        }
+
+        // 원래 메모의 구간 사이마다 지워진 범위와 새로 들어간 글자들을 Edit 하나로 만든다.
+        ArrayList<Edit> composed = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        long position = 0;      // 원래 메모에서 이미 지나온 위치
+        for(Piece piece : pieces) {
+            if(piece.text != null) {
+                text.append(piece.text);
+                continue;
+            }
+            if(piece.origin > position || text.length() > 0)
+                composed.add(new Edit((int) position, (int) (piece.origin - position), text.toString()));
+            text.setLength(0);
+            position = piece.origin + piece.length;
+        }
+        return composed;
+    }
+
+    /*
+                < position 위치에서 조각을 나누는 메소드 >
+     position에서 시작하는 조각의 번호를 반환한다.
+     */
+    private static int split(ArrayList<Piece> pieces, long position) {
+        long offset = 0;
+        for(int i = 0; i < pieces.size(); i++) {
+            Piece piece = pieces.get(i);
+            if(position == offset)
+                return i;
+            if(position < offset + piece.length) {
+                long head = position - offset;
+                pieces.set(i, piece.subPiece(0, head));
+                pieces.add(i + 1, piece.subPiece(head, piece.length - head));
+                return i + 1;
+            }
+            offset += piece.length;
+        }
+        return pieces.size();
+    }
+
+    /*
+                < 원래 메모를 읽으면서 수정 목록을 적용하는 Reader >
+     compose()로 합친 Edit들을 원래 메모의 앞에서부터 차례로 적용하므로 메모 전체를 메모리에 올리지 않는다.
+     지우는 범위가 원래 메모의 끝을 넘으면 끝까지만 지운다. (StringBuilder.replace()와 같다.)
+     Edit의 위치가 원래 메모의 끝을 넘으면 원래 메모와 맞지 않는 수정 목록이므로 IOException을 던진다.
+     */
+    static class EditingReader extends Reader {
+        private final Reader m_in;              // 원래 메모를 읽는 Reader
+        private final ArrayList<Edit> m_edits;  // 원래 메모 기준으로 합친 수정 목록
+        private int m_editIndex;                // 다음에 적용할 Edit의 번호
+        private long m_position;                // 원래 메모에서 읽거나 건너뛴 글자 수
+        private String m_text;                  // 내보내는 중인 새 글자들 (없으면 null)
+        private int m_textOffset;               // m_text 중 내보낸 글자 수
+
+        EditingReader(Reader in, List<Edit> edits) {
+            m_in = in;
+            m_edits = compose(edits);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if(length == 0)
+                return 0;
+
+            while(true) {
+                if(m_text != null) {
+                    int count = Math.min(length, m_text.length() - m_textOffset);
+                    m_text.getChars(m_textOffset, m_textOffset + count, buffer, offset);
+                    m_textOffset += count;
+                    if(m_textOffset == m_text.length())
+                        m_text = null;
+                    return count;
+                }
+                if(m_editIndex == m_edits.size())
+                    return m_in.read(buffer, offset, length);
+
+                Edit edit = m_edits.get(m_editIndex);
+                if(m_position == edit.start) {
+                    skipOriginal(edit.deleteLength);
+                    m_editIndex++;
+                    if(!edit.text.isEmpty()) {
+                        m_text = edit.text;
+                        m_textOffset = 0;
+                    }
+                    continue;
+                }
+
+                int numOfRead = m_in.read(buffer, offset, (int) Math.min(length, edit.start - m_position));
+                if(numOfRead == -1)
+                    throw new IOException("수정 기록이 메모와 맞지 않습니다.");
+                m_position += numOfRead;
+                return numOfRead;
+            }
+        }
+
+        private void skipOriginal(int count) throws IOException {
+            long remain = count;
+            while(remain > 0) {
+                long numOfSkipped = m_in.skip(remain);
+                if(numOfSkipped <= 0)
+                    break;
+                remain -= numOfSkipped;
+            }
+            m_position += count - remain;
+        }
+
+        @Override
+        public void close() throws IOException {
+            m_in.close();
+        }
+    }
+
+    /*
+                < 수정 목록을 기록하는 메소드 >
+     Edit 개수(int), Edit마다 start(int), deleteLength(int), text 바이트 수(int), text(UTF-8) 순서로 쓴다.
+     */
+    static void writeEdits(DataOutputStream out, List<Edit> edits) throws IOException {
+        out.writeInt(edits.size());
+        for(Edit edit : edits) {
+            byte[] text = edit.text.getBytes(NoteReader.UTF_8);
+            out.writeInt(edit.start);
+            out.writeInt(edit.deleteLength);
+            out.writeInt(text.length);
+            out.write(text);
+        }
+    }
+
+    /*
+                < writeEdits()로 기록된 수정 목록을 읽는 메소드 >
+     */
+    static void readEdits(DataInputStream in, List<Edit> edits) throws IOException {
+        int numOfEdits = in.readInt();
+        for(int i = 0; i < numOfEdits; i++) {
+            int start = in.readInt();
+            int deleteLength = in.readInt();
+            byte[] text = new byte[in.readInt()];
+            in.readFully(text);
+            edits.add(new Edit(start, deleteLength, new String(text, NoteReader.UTF_8)));
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+            < 작성 중인 메모를 임시 저장하는 클래스 >
+ EditNoteActivity가 저장 버튼을 누르기 전에 종료되어도 작성 중인 내용을 잃지 않도록 임시 저장(draft)한다.
+ 임시 저장은 전용 스레드에서 이루어지며, 스레드가 바쁜 동안 들어온 요청은 마지막 내용만 남기고 한 번에 쓴다.
+    - 새 메모: 메모 내용을 NoteCodec으로 인코딩해 "new.txt"에, 제목을 "new.title"에 저장한다.
+              최종 저장할 때는 takeNewDraft()로 받은 파일을 NoteStore.adoptNote()로 옮기므로 메모 내용을 두 번 쓰지 않는다.
+    - 기존 메모 수정: 메모 전체가 아니라 불러온 뒤 바뀐 내용(NoteDelta)만 "메모제목.edits"에 저장한다.
+                   메모를 불러올 때의 수정 스탬프를 함께 저장해 메모가 그 사이 바뀌었으면 무시한다.
+ 모든 파일은 임시 파일에 쓰고 fsync한 뒤 이름을 바꾸므로 임시 저장 도중 종료되어도 이전 임시 저장본이 남는다.
+ */
+class NoteDraftStore {
+    static final String NEW_DRAFT_FILENAME = "new" + NoteCatalog.NOTE_EXTENSION;
+    static final String NEW_TITLE_FILENAME = "new.title";
+    static final String EDIT_DRAFT_EXTENSION = ".edits";
+
+    private static final String PROMOTED_FILENAME = "promoted" + NoteCatalog.NOTE_EXTENSION;  // 최종 저장을 위해 넘겨준 파일
+
+    /*
+                < 임시 저장된 새 메모 >
+     */
+    static class Draft {
+        final String title;
+        final String body;
+        final int seq;      // 임시 저장 번호 (내용을 바꾸지 않고 저장하면 이 번호로 takeNewDraft()를 호출할 수 있다.)
+
+        Draft(String title, String body, int seq) {
+            this.title = title;
+            this.body = body;
+            this.seq = seq;
+        }
+    }
+
+    /*
+                < 아직 쓰지 않은 임시 저장 요청 >
+     새 메모이면 body를, 기존 메모 수정이면 stamp와 edits를 사용한다.
+     */
+    private static class PendingDraft {
+        final String title;
+        final String body;
+        final int seq;
+        final NoteContentCache.Stamp stamp;
+        final ArrayList<NoteDelta.Edit> edits;
+
+        PendingDraft(String title, String body, int seq, NoteContentCache.Stamp stamp, ArrayList<NoteDelta.Edit> edits) {
+            this.title = title;
+            this.body = body;
+            this.seq = seq;
+            this.stamp = stamp;
+            this.edits = edits;
+        }
+    }
+
+    private final File m_draftDir;          // 임시 저장 파일들이 저장되는 디렉터리
+    private final ExecutorService m_executor = Executors.newSingleThreadExecutor();    // 임시 저장 전용 스레드
+    private PendingDraft m_pendingNewDraft;     // 아직 쓰지 않은 새 메모
+    private LinkedHashMap<String, PendingDraft> m_pendingEditDrafts = new LinkedHashMap<>();   // 아직 쓰지 않은 수정 내용들
+    private boolean m_isDrainScheduled;     // 임시 저장 스레드에 처리 작업을 맡겼는지 여부
+    private int m_lastSeq;                  // 마지막으로 발급한 새 메모 임시 저장 번호
+    private int m_writtenSeq = -1;          // "new.txt"에 기록된 새 메모의 임시 저장 번호 (임시 저장 스레드에서만 사용)
+
+    NoteDraftStore(File draftDir) {
+        m_draftDir = draftDir;
+    }
+
+    /*
+                < 새 메모의 임시 저장을 요청하는 메소드 >
+     임시 저장 번호를 반환한다. 최종 저장할 때 이 번호로 takeNewDraft()를 호출하면
+     이 내용이 기록된 파일을 받을 수 있다.
+     */
+    synchronized int saveNewDraft(String title, String body) {
+        m_lastSeq++;
+        m_pendingNewDraft = new PendingDraft(title, body, m_lastSeq, null, null);
+        scheduleDrain();
+        return m_lastSeq;
+    }
+
+    /*
+                < 기존 메모 수정 내용의 임시 저장을 요청하는 메소드 >
+     stamp는 메모를 불러올 때의 수정 스탬프(NoteContentCache.getStamp())이다.
+     */
+    synchronized void saveEditDraft(String title, NoteContentCache.Stamp stamp, ArrayList<NoteDelta.Edit> edits) {
+        m_pendingEditDrafts.put(title, new PendingDraft(title, null, 0, stamp, edits));
+        scheduleDrain();
+    }
+
+    /*
+                < 임시 저장된 새 메모를 읽는 메소드 >
+     임시 저장된 메모가 없으면 null을 반환한다. 파일을 읽으므로 UI 스레드가 아닌 곳에서 호출해야 한다.
+     임시 저장 스레드에서 읽으므로 쓰고 있는 도중의 내용을 읽지 않으며,
+     읽은 내용에 새 임시 저장 번호를 붙여 그대로 최종 저장할 때 파일을 다시 쓰지 않도록 한다.
+     */
+    Draft readNewDraft() {
+        try {
+            return m_executor.submit(new Callable<Draft>() {
+                @Override
+                public Draft call() {
+                    File draftFile = new File(m_draftDir, NEW_DRAFT_FILENAME);
+                    if(!draftFile.exists())
+                        return null;
+
+                    NoteReader reader = null;
+                    DataInputStream titleIn = null;
+                    try {
+                        reader = new NoteReader(new FileInputStream(draftFile));
+                        StringBuilder body = new StringBuilder();
+                        String page;
+                        while((page = reader.readPage()) != null)
+                            body.append(page);
+
+                        // 제목은 메모 내용 다음에 쓰므로 그 사이에 종료되었으면 제목 파일이 없을 수 있다.
+                        String title = "";
+                        try {
+                            titleIn = new DataInputStream(new FileInputStream(new File(m_draftDir, NEW_TITLE_FILENAME)));
+                            title = titleIn.readUTF();
+                        } catch (FileNotFoundException e) {
+                            // 제목 없이 내용만 복구한다.
+                        }
+
+                        int seq;
+                        synchronized (NoteDraftStore.this) {
+                            seq = ++m_lastSeq;
+                        }
+                        m_writtenSeq = seq;
+                        return new Draft(title, body.toString(), seq);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        return null;
+                    } finally {
+                        closeQuietly(reader);
+                        closeQuietly(titleIn);
+                    }
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /*
+                < 임시 저장된 기존 메모의 수정 내용을 읽는 메소드 >
+     임시 저장된 내용이 없거나, 메모를 불러올 때의 수정 스탬프가 stamp와 다르면 null을 반환한다.
+     */
+    ArrayList<NoteDelta.Edit> readEditDraft(String title, NoteContentCache.Stamp stamp) {
+        File draftFile = getEditDraftFile(title);
+        if(!draftFile.exists())
+            return null;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(draftFile)));
+            if(in.readLong() != stamp.size || in.readLong() != stamp.lastModified)
+                return null;
+            ArrayList<NoteDelta.Edit> edits = new ArrayList<>();
+            NoteDelta.readEdits(in, edits);
+            return edits;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /*
+                < 최종 저장할 새 메모 파일을 넘겨받는 메소드 >
+     임시 저장 스레드가 seq번 임시 저장을 마칠 때까지 기다린 뒤,
+     "new.txt"에 seq번 내용이 기록되어 있으면 파일 이름을 바꿔 넘겨준다. 넘겨준 파일은 호출한 쪽이 옮기거나 지워야 한다.
+     기록된 내용이 다르거나 임시 저장에 실패했으면 null을 반환하고, 호출한 쪽은 메모 전체를 직접 저장해야 한다.
+     NoteWriter의 저장 스레드에서 호출된다.
+     */
+    File takeNewDraft(final int seq) {
+        try {
+            return m_executor.submit(new Callable<File>() {
+                @Override
+                public File call() {
+                    if(m_writtenSeq != seq)
+                        return null;
+                    m_writtenSeq = -1;
+
+                    File promotedFile = new File(m_draftDir, PROMOTED_FILENAME);
+                    if(!new File(m_draftDir, NEW_DRAFT_FILENAME).renameTo(promotedFile))
+                        return null;
+                    new File(m_draftDir, NEW_TITLE_FILENAME).delete();
+                    return promotedFile;
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /*
+                < 임시 저장된 새 메모를 지우는 메소드 >
+     메모가 저장되었거나 내용이 모두 지워졌을 때 호출한다.
+     seq번 이후에 요청된 임시 저장이 있으면 그 내용은 지우지 않는다.
+     */
+    void discardNewDraft(final int seq) {
+        synchronized (this) {
+            if(seq != m_lastSeq)
+                return;
+            m_pendingNewDraft = null;
+        }
+
+        m_executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (NoteDraftStore.this) {
+                    if(seq != m_lastSeq)
+                        return;
+                }
+                m_writtenSeq = -1;
+                new File(m_draftDir, NEW_DRAFT_FILENAME).delete();
+                new File(m_draftDir, NEW_TITLE_FILENAME).delete();
+                new File(m_draftDir, PROMOTED_FILENAME).delete();
+            }
+        });
+    }
+
+    /*
+                < 임시 저장된 기존 메모의 수정 내용을 지우는 메소드 >
+     수정 내용이 저장되었을 때 호출한다.
+     */
+    void discardEditDraft(final String title) {
+        synchronized (this) {
+            m_pendingEditDrafts.remove(title);
+        }
+
+        m_executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                getEditDraftFile(title).delete();
+            }
+        });
+    }
+
+    private void scheduleDrain() {
+        if(m_isDrainScheduled)
+            return;
+        m_isDrainScheduled = true;
+
+        m_executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                PendingDraft newDraft;
+                LinkedHashMap<String, PendingDraft> editDrafts;
+                synchronized (NoteDraftStore.this) {
+                    newDraft = m_pendingNewDraft;
+                    editDrafts = m_pendingEditDrafts;
+                    m_pendingNewDraft = null;
+                    m_pendingEditDrafts = new LinkedHashMap<>();
+                    m_isDrainScheduled = false;
+                }
+
+                if(newDraft != null)
+                    writeNewDraft(newDraft);
+                for(PendingDraft editDraft : editDrafts.values())
+                    writeEditDraft(editDraft);
+            }
+        });
+    }
+
+    /*
+                < 새 메모를 임시 저장하는 메소드 >
+     메모 내용을 먼저 쓰고 제목을 쓴다. 최종 저장과 같은 형식(NoteCodec)으로 인코딩한다.
+     */
+    private void writeNewDraft(PendingDraft draft) {
+        m_writtenSeq = -1;
+        try {
+            byte[] body = NoteCodec.encode(draft.body.getBytes(NoteReader.UTF_8));
+            File tmpFile = new File(m_draftDir, NEW_DRAFT_FILENAME + FileNoteStore.TMP_EXTENSION);
+            FileOutputStream out = new FileOutputStream(tmpFile);
+            try {
+                out.write(body);
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            renameOrThrow(tmpFile, new File(m_draftDir, NEW_DRAFT_FILENAME));
+            m_writtenSeq = draft.seq;
+
+            tmpFile = new File(m_draftDir, NEW_TITLE_FILENAME + FileNoteStore.TMP_EXTENSION);
+            out = new FileOutputStream(tmpFile);
+            try {
+                DataOutputStream titleOut = new DataOutputStream(out);
+                titleOut.writeUTF(draft.title);
+                titleOut.flush();
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            renameOrThrow(tmpFile, new File(m_draftDir, NEW_TITLE_FILENAME));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /*
+                < 기존 메모의 수정 내용을 임시 저장하는 메소드 >
+     파일 형식: 수정 스탬프(크기 long, 수정시각 long), NoteDelta.writeEdits()로 기록한 수정 목록
+     */
+    private void writeEditDraft(PendingDraft draft) {
+        File draftFile = getEditDraftFile(draft.title);
+        File tmpFile = new File(m_draftDir, draftFile.getName() + FileNoteStore.TMP_EXTENSION);
+        try {
+            FileOutputStream out = new FileOutputStream(tmpFile);
+            try {
+                DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out));
+                dataOut.writeLong(draft.stamp.size);
+                dataOut.writeLong(draft.stamp.lastModified);
+                NoteDelta.writeEdits(dataOut, draft.edits);
+                dataOut.flush();
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            renameOrThrow(tmpFile, draftFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private File getEditDraftFile(String title) {
+        return new File(m_draftDir, title + EDIT_DRAFT_EXTENSION);
+    }
+
+    private static void renameOrThrow(File from, File to) throws IOException {
+        if(!from.renameTo(to))
+            throw new IOException(to.getName() + "으로 이름을 바꾸지 못했습니다.");
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if(closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
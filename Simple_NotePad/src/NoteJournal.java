@@ -0,0 +1,266 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/*
+            < 메모 저장/삭제의 선행 기록(write-ahead journal) >
+ 메모를 저장하거나 삭제하기 전에 어떤 메모들을 바꿀지 BEGIN 레코드로 덧붙이고 fsync한다.
+ 저장소와 카탈로그에 모두 반영한 뒤 COMMIT 레코드를 덧붙인다.
+ 앱이 그 사이에 종료되면 다음 실행 때 recover()가 COMMIT되지 않은 메모들만 정리한다.
+    - 삭제: 삭제를 마저 한다.
+    - 저장: 저장소의 메모를 끝까지 읽어보고, 읽을 수 없으면(반쯤 쓰인 메모) 지운다.
+           저장소는 새 내용을 임시 파일에 쓴 뒤 바꾸므로, 읽을 수 있으면 이전 내용 또는 새 내용 중 하나이다.
+ 정리한 메모 제목들은 NoteCatalog.load()에 넘겨 해당 항목만 다시 읽으므로 저장소 전체를 다시 스캔하지 않는다.
+ 검색 색인(NoteSearchIndex.invalidateNotes())과 동기화 엔진(NoteSyncEngine.markChanged())에도 알린 뒤 기록을 비운다.
+ COMMIT 레코드는 fsync하지 않는다. (잃어버려도 이미 반영된 작업을 한 번 더 확인할 뿐이다.)
+ 진행 중인 작업이 없을 때 기록이 TRUNCATE_THRESHOLD 바이트를 넘으면 기록 파일을 비운다.
+
+ 기록 파일 형식
+    레코드 : payload 길이(int), payload, CRC32(int)
+    payload : 종류(SAVE/DELETE/COMMIT), 작업 번호(long), (SAVE/DELETE이면) 메모 수(int), 메모 제목들
+ */
+class NoteJournal {
+    static final String JOURNAL_FILENAME = "notes.journal";
+
+    static final byte OP_SAVE = 1;                  // 메모 저장 시작 레코드
+    static final byte OP_DELETE = 2;                // 메모 삭제 시작 레코드
+    private static final byte RECORD_COMMIT = 3;    // 작업 완료 레코드
+    private static final int TRUNCATE_THRESHOLD = 64 * 1024;
+
+    private final File m_journalFile;       // 기록 파일
+    private final HashSet<Long> m_openSeqs = new HashSet<>();   // 아직 COMMIT되지 않은 작업 번호들
+    private long m_nextSeq = 1;             // 다음 작업 번호
+    private long m_validLength;             // 기록 파일에서 온전한 레코드가 끝나는 위치
+
+    /*
+     journalFile은 메모 디렉터리가 아닌 다른 디렉터리에 있어야 한다.
+     (기록할 때 메모 디렉터리의 수정시각이 바뀌면 안되기 때문이다.)
+     begin()을 호출하기 전에 recover()로 이전 실행의 기록을 정리해야 한다.
+     */
+    NoteJournal(File journalFile) {
+        m_journalFile = journalFile;
+    }
+
+    /*
+                < 작업 시작을 기록하는 메소드 >
+     레코드를 덧붙이고 fsync한 뒤 작업 번호를 반환한다. 작업이 끝나면 commit()을 호출해야 한다.
+     기록에 실패하면 -1을 반환한다. 작업은 그대로 진행하고, 그 사이에 앱이 종료되면
+     다음 실행 때 저장소 상태값이 맞지 않아 카탈로그가 저장소를 다시 스캔한다.
+     */
+    synchronized long begin(byte op, String[] titles) {
+        long seq = m_nextSeq++;
+        try {
+            append(encodeRecord(op, seq, titles), true);
+            m_openSeqs.add(seq);
+            return seq;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /*
+                < 작업 완료를 기록하는 메소드 >
+     진행 중인 작업이 없고 기록이 커졌으면 COMMIT 레코드 대신 기록 파일을 비운다.
+     */
+    synchronized void commit(long seq) {
+        if(seq < 0)
+            return;
+
+        m_openSeqs.remove(seq);
+        try {
+            if(m_openSeqs.isEmpty() && m_validLength >= TRUNCATE_THRESHOLD)
+                clear();
+            else
+                append(encodeRecord(RECORD_COMMIT, seq, null), false);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /*
+                < 이전 실행에서 끝나지 않은 작업들을 정리하는 메소드 >
+     메모 제목마다 마지막으로 시작된 작업만 본다. 그 작업이 COMMIT되지 않았으면 삭제는 마저 하고,
+     저장은 메모를 읽을 수 없을 때만 지운다. 정리한 메모 제목들을 반환한다.
+     반환된 제목들을 카탈로그, 검색 색인, 동기화 엔진에 반영한 뒤 clear()로 기록을 비운다.
+     */
+    synchronized ArrayList<String> recover(NoteStore store) {
+        ArrayList<String> titles = new ArrayList<>();
+        for(Map.Entry<String, Byte> pending : readPending().entrySet()) {
+            String title = pending.getKey();
+            if(pending.getValue() == OP_DELETE || !isReadable(store, title))
+                store.deleteNote(title);
+            titles.add(title);
+        }
+        return titles;
+    }
+
+    /*
+                < 기록 파일을 비우는 메소드 >
+     */
+    synchronized void clear() {
+        m_journalFile.delete();
+        m_validLength = 0;
+    }
+
+    /*
+                < 끝나지 않은 작업들을 읽는 메소드 >
+     메모 제목 -> 마지막으로 시작된 작업의 종류를 반환한다. (COMMIT된 작업은 빠진다.)
+     덧붙이다 끊기거나 CRC가 맞지 않는 레코드부터는 무시한다.
+     */
+    private LinkedHashMap<String, Byte> readPending() {
+        LinkedHashMap<String, Long> lastSeqs = new LinkedHashMap<>();   // 메모 제목 -> 마지막 작업 번호
+        LinkedHashMap<Long, Byte> ops = new LinkedHashMap<>();          // COMMIT되지 않은 작업 번호 -> 종류
+        m_validLength = 0;
+
+        if(m_journalFile.exists()) {
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(m_journalFile)));
+                CRC32 crc = new CRC32();
+                while(true) {
+                    int payloadLength = in.readInt();
+                    if(payloadLength < 1 || payloadLength > m_journalFile.length())
+                        break;
+
+                    byte[] payload = new byte[payloadLength];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if(in.readInt() != (int) crc.getValue())
+                        break;
+
+                    DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                    byte type = record.readByte();
+                    long seq = record.readLong();
+                    if(type == RECORD_COMMIT) {
+                        ops.remove(seq);
+                    } else {
+                        ops.put(seq, type);
+                        int numOfTitles = record.readInt();
+                        for(int i = 0; i < numOfTitles; i++) {
+                            String title = record.readUTF();
+                            lastSeqs.remove(title);
+                            lastSeqs.put(title, seq);
+                        }
+                    }
+                    m_nextSeq = Math.max(m_nextSeq, seq + 1);
+                    m_validLength += 8 + payloadLength;
+                }
+            } catch (EOFException e) {
+                // 기록의 끝 또는 덧붙이다 끊긴 레코드
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                closeQuietly(in);
+            }
+        }
+
+        LinkedHashMap<String, Byte> pending = new LinkedHashMap<>();
+        for(Map.Entry<String, Long> lastSeq : lastSeqs.entrySet()) {
+            Byte op = ops.get(lastSeq.getValue());
+            if(op != null)
+                pending.put(lastSeq.getKey(), op);
+        }
+        return pending;
+    }
+
+    /*
+                < 메모를 끝까지 읽을 수 있는지 확인하는 메소드 >
+     저장소에 없는 메모는 지울 것이 없으므로 true를 반환한다.
+     NoteReader는 잘못된 UTF-8 바이트를 대체 문자로 바꿔 읽으므로,
+     잘못된 바이트가 있으면 예외를 던지는 디코더로 메모 끝까지 디코딩해 본다.
+     */
+    private static boolean isReadable(NoteStore store, String title) {
+        if(store.stat(title) == null)
+            return true;
+
+        Reader reader = null;
+        try {
+            CharsetDecoder decoder = NoteReader.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+            reader = new InputStreamReader(NoteCodec.decode(store.openNote(title)), decoder);
+            char[] buffer = new char[NoteReader.PAGE_SIZE];
+            while(reader.read(buffer) != -1) {
+                // 메모 끝까지 디코딩한다.
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /*
+                < 레코드를 기록 파일 끝에 덧붙이는 메소드 >
+     덧붙이다 끊긴 레코드가 있으면 잘라내고 쓴다.
+     */
+    private void append(byte[] record, boolean isSync) throws IOException {
+        RandomAccessFile journalFile = new RandomAccessFile(m_journalFile, "rw");
+        try {
+            journalFile.setLength(m_validLength);
+            journalFile.seek(m_validLength);
+            journalFile.write(record);
+            if(isSync)
+                journalFile.getFD().sync();
+            m_validLength += record.length;
+        } finally {
+            journalFile.close();
+        }
+    }
+
+    private static byte[] encodeRecord(byte type, long seq, String[] titles) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream payloadOut = new DataOutputStream(payload);
+        payloadOut.writeByte(type);
+        payloadOut.writeLong(seq);
+        if(titles != null) {
+            payloadOut.writeInt(titles.length);
+            for(String title : titles)
+                payloadOut.writeUTF(title);
+        }
+        payloadOut.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.toByteArray());
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream recordOut = new DataOutputStream(record);
+        recordOut.writeInt(payload.size());
+        recordOut.write(payload.toByteArray());
+        recordOut.writeInt((int) crc.getValue());
+        recordOut.flush();
+        return record.toByteArray();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if(closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
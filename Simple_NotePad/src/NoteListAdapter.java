@@ -0,0 +1,178 @@
+package io.github.sogoagain.simple_notepad;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/*
+            < 메모 목록 ListView 어댑터 >
+ 카탈로그 항목들을 NoteOrderList에 정렬된 상태로 보관하고, ListView가 요청하는 위치의 항목만 찾아 보여준다.
+ 메모가 추가, 삭제, 수정될 때 목록 전체를 다시 만들지 않고 O(log n)으로 반영한다.
+ 각 항목은 메모 제목과 카탈로그에 기록된 미리보기를 두 줄로 보여주므로 스크롤할 때 메모 파일을 읽지 않는다.
+ */
+class NoteListAdapter extends BaseAdapter {
+    private final LayoutInflater m_inflater;
+    private final HashMap<String, NoteCatalog.Entry> m_entries = new HashMap<>();  // 메모 제목 -> 목록에 들어있는 항목
+    private NoteOrderList m_orderList;      // 정렬된 메모 목록
+
+    NoteListAdapter(Context context, Collection<NoteCatalog.Entry> entries, Comparator<NoteCatalog.Entry> comparator) {
+        m_inflater = LayoutInflater.from(context);
+        for(NoteCatalog.Entry entry : entries)
+            m_entries.put(entry.title, entry);
+        m_orderList = new NoteOrderList(comparator, m_entries.values());
+    }
+
+    /*
+                < 정렬 기준을 바꾸는 메소드 >
+     */
+    void setComparator(Comparator<NoteCatalog.Entry> comparator) {
+        if(comparator == m_orderList.getComparator())
+            return;
+        m_orderList = new NoteOrderList(comparator, m_entries.values());
+        notifyDataSetChanged();
+    }
+
+    Comparator<NoteCatalog.Entry> getComparator() {
+        return m_orderList.getComparator();
+    }
+
+    /*
+                < 메모를 추가하거나 갱신하는 메소드 >
+     같은 제목의 메모가 이미 있으면 이전 항목을 지우고 새 항목을 정렬된 위치에 넣는다.
+     */
+    void putNote(NoteCatalog.Entry entry) {
+        NoteCatalog.Entry oldEntry = m_entries.put(entry.title, entry);
+        if(oldEntry != null)
+            m_orderList.remove(oldEntry);
+        m_orderList.add(entry);
+        notifyDataSetChanged();
+    }
+
+    /*
+                < 목록을 카탈로그 항목들과 맞추는 메소드 >
+     스냅샷으로 만든 목록을 카탈로그를 불러온 뒤 맞출 때 사용한다.
+     없어진 메모는 지우고, 새로 생기거나 크기, 수정시각, 미리보기가 달라진 메모만 정렬된 위치에 다시 넣는다.
+     */
+    void reconcile(Collection<NoteCatalog.Entry> entries) {
+        HashMap<String, NoteCatalog.Entry> newEntries = new HashMap<>();
+        for(NoteCatalog.Entry entry : entries)
+            newEntries.put(entry.title, entry);
+
+        Iterator<NoteCatalog.Entry> iterator = m_entries.values().iterator();
+        while(iterator.hasNext()) {
+            NoteCatalog.Entry entry = iterator.next();
+            if(!newEntries.containsKey(entry.title)) {
+                m_orderList.remove(entry);
+                iterator.remove();
+            }
+        }
+
+        for(NoteCatalog.Entry entry : newEntries.values()) {
+            NoteCatalog.Entry oldEntry = m_entries.get(entry.title);
+            if(oldEntry != null && isSameEntry(oldEntry, entry))
+                continue;
+            m_entries.put(entry.title, entry);
+            if(oldEntry != null)
+                m_orderList.remove(oldEntry);
+            m_orderList.add(entry);
+        }
+        notifyDataSetChanged();
+    }
+
+    /*
+                < 목록에 들어있는 모든 메모 항목을 반환하는 메소드 >
+     */
+    ArrayList<NoteCatalog.Entry> getEntries() {
+        return new ArrayList<>(m_entries.values());
+    }
+
+    /*
+                < 메모를 삭제하는 메소드 >
+     */
+    void removeNote(String title) {
+        NoteCatalog.Entry entry = m_entries.remove(title);
+        if(entry == null)
+            return;
+        m_orderList.remove(entry);
+        notifyDataSetChanged();
+    }
+
+    /*
+                < 여러 메모를 한 번에 삭제하는 메소드 >
+     목록 변경은 마지막에 한 번만 알린다.
+     */
+    void removeNotes(Collection<String> titles) {
+        boolean isChanged = false;
+        for(String title : titles) {
+            NoteCatalog.Entry entry = m_entries.remove(title);
+            if(entry != null) {
+                m_orderList.remove(entry);
+                isChanged = true;
+            }
+        }
+        if(isChanged)
+            notifyDataSetChanged();
+    }
+
+    /*
+                < 목록에 들어있는 메모 항목을 반환하는 메소드 >
+     */
+    NoteCatalog.Entry getEntry(String title) {
+        return m_entries.get(title);
+    }
+
+    private static boolean isSameEntry(NoteCatalog.Entry lhs, NoteCatalog.Entry rhs) {
+        return lhs.size == rhs.size && lhs.lastModified == rhs.lastModified && lhs.lineCount == rhs.lineCount
+                && (lhs.preview == null ? rhs.preview == null : lhs.preview.equals(rhs.preview));
+    }
+
+    @Override
+    public int getCount() {
+        return m_orderList.size();
+    }
+
+    /*
+                < position 위치의 메모 제목을 반환하는 메소드 >
+     */
+    @Override
+    public String getItem(int position) {
+        return m_orderList.get(position).title;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    /*
+                < position 위치의 항목 뷰를 만드는 메소드 >
+     simple_list_item_activated_2 레이아웃에 메모 제목과 "줄 수 · 미리보기"를 보여주고, 화면 밖으로 나간 뷰(convertView)를 재사용한다.
+     (activated 레이아웃은 여러 메모를 선택했을 때 선택된 항목을 강조한다.)
+     미리보기가 아직 없는 메모는 두 번째 줄을 비워둔다.
+     */
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        View view = convertView;
+        if(view == null)
+            view = m_inflater.inflate(android.R.layout.simple_list_item_activated_2, parent, false);
+
+        NoteCatalog.Entry entry = m_orderList.get(position);
+        TextView tvTitle = (TextView) view.findViewById(android.R.id.text1);
+        TextView tvPreview = (TextView) view.findViewById(android.R.id.text2);
+        tvTitle.setText(entry.title);
+        if(entry.preview == null)
+            tvPreview.setText("");
+        else
+            tvPreview.setText(entry.lineCount + "줄 · " + entry.preview);
+        return view;
+    }
+}
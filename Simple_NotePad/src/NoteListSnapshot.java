@@ -0,0 +1,153 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+
+/*
+            < 마지막으로 보여준 메모 목록의 스냅샷 >
+ ShowNoteListActivity가 onStop()에서 목록에 들어있던 항목들과 정렬 기준을 작은 바이너리 파일로 기록한다.
+ 다음 실행 때는 카탈로그를 불러오기 전에 스냅샷 파일을 메모리 매핑(mmap)해 바로 목록을 보여주고,
+ 카탈로그는 백그라운드에서 불러와 목록과 맞춘다.
+ 스냅샷은 목록을 빨리 보여주기 위한 것이므로 손상되었거나 읽을 수 없으면 null을 반환하고 카탈로그로 목록을 만든다.
+
+ 스냅샷 파일 형식
+    헤더 : 매직넘버(int), 버전(int), 정렬 기준(byte), 항목 수(int)
+    항목 : 메모 제목, 파일명, 크기(long), 수정시각(long), 줄 수(int, 미리보기가 없으면 -1), (줄 수가 0 이상이면) 미리보기
+    문자열은 UTF-8 바이트 수(int)와 바이트로 기록한다.
+ */
+class NoteListSnapshot {
+    static final String SNAPSHOT_FILENAME = "notelist.snapshot";
+
+    private static final int SNAPSHOT_MAGIC = 0x4E4C5331;  // "NLS1"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final byte ORDER_BY_TITLE = 0;           // 제목 순 정렬
+    private static final byte ORDER_BY_MODIFIED = 1;        // 최근 수정 순 정렬
+
+    final ArrayList<NoteCatalog.Entry> entries;     // 목록에 들어있던 항목들
+    final Comparator<NoteCatalog.Entry> comparator; // 목록의 정렬 기준
+
+    private NoteListSnapshot(ArrayList<NoteCatalog.Entry> entries, Comparator<NoteCatalog.Entry> comparator) {
+        this.entries = entries;
+        this.comparator = comparator;
+    }
+
+    /*
+                < 스냅샷 파일을 읽는 메소드 >
+     파일을 읽기 전용으로 메모리 매핑해 한 번에 디코딩한다. 파일이 없거나 손상되었으면 null을 반환한다.
+     */
+    static NoteListSnapshot read(File file) {
+        if(!file.exists())
+            return null;
+
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            FileChannel channel = in.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION)
+                return null;
+
+            Comparator<NoteCatalog.Entry> comparator =
+                    (buffer.get() == ORDER_BY_MODIFIED) ? NoteOrderList.BY_MODIFIED : NoteOrderList.BY_TITLE;
+            int numOfEntries = buffer.getInt();
+            if(numOfEntries < 0)
+                return null;
+
+            ArrayList<NoteCatalog.Entry> entries = new ArrayList<>(Math.min(numOfEntries, buffer.remaining() / 32));
+            for(int i = 0; i < numOfEntries; i++) {
+                String title = getString(buffer);
+                String filename = getString(buffer);
+                long size = buffer.getLong();
+                long lastModified = buffer.getLong();
+                int lineCount = buffer.getInt();
+                if(lineCount < 0)
+                    entries.add(new NoteCatalog.Entry(title, filename, size, lastModified));
+                else
+                    entries.add(new NoteCatalog.Entry(title, filename, size, lastModified, getString(buffer), lineCount));
+            }
+            return new NoteListSnapshot(entries, comparator);
+        } catch (BufferUnderflowException e) {
+            // 기록 도중 중단되어 잘린 스냅샷
+            return null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /*
+                < 스냅샷 파일을 쓰는 메소드 >
+     임시 파일에 기록한 뒤 스냅샷 파일로 이름을 바꾼다.
+     */
+    static void write(File file, Collection<NoteCatalog.Entry> entries, Comparator<NoteCatalog.Entry> comparator) {
+        File tmpFile = new File(file.getPath() + FileNoteStore.TMP_EXTENSION);
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeByte(comparator == NoteOrderList.BY_MODIFIED ? ORDER_BY_MODIFIED : ORDER_BY_TITLE);
+            out.writeInt(entries.size());
+            for(NoteCatalog.Entry entry : entries) {
+                putString(out, entry.title);
+                putString(out, entry.filename);
+                out.writeLong(entry.size);
+                out.writeLong(entry.lastModified);
+                if(entry.preview == null || entry.lineCount < 0) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(entry.lineCount);
+                    putString(out, entry.preview);
+                }
+            }
+            out.close();
+            out = null;
+
+            if(!tmpFile.renameTo(file))
+                throw new IOException("스냅샷 파일을 교체하지 못했습니다.");
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeQuietly(out);
+            tmpFile.delete();
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if(length < 0 || length > buffer.remaining())
+            throw new BufferUnderflowException();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, NoteReader.UTF_8);
+    }
+
+    private static void putString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(NoteReader.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if(closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+            < 메모 제목별 잠금 >
+ 메모 제목의 해시로 NUM_OF_STRIPES개의 잠금 중 하나를 고른다(striped lock).
+ 같은 제목에 대한 저장, 수정, 삭제는 같은 잠금을 잡으므로 차례로 실행되고,
+ 다른 제목(대부분 다른 잠금)에 대한 작업은 동시에 실행될 수 있다.
+ 잠금은 ReentrantLock이므로 NoteWriter가 저장소와 카탈로그를 함께 갱신하는 동안 잡은 잠금을
+ DeltaNoteStore가 다시 잡아도 된다.
+ 여러 제목을 한 번에 잠글 때는 항상 잠금 번호 순서로 잡아 교착 상태(deadlock)가 생기지 않도록 한다.
+ */
+class NoteLocks {
+    private static final int NUM_OF_STRIPES = 64;
+
+    private final ReentrantLock[] m_stripes = new ReentrantLock[NUM_OF_STRIPES];
+
+    NoteLocks() {
+        for(int i = 0; i < NUM_OF_STRIPES; i++)
+            m_stripes[i] = new ReentrantLock();
+    }
+
+    /*
+                < 메모 하나를 잠그는 메소드 >
+     반환된 잠금 번호로 unlock()을 호출해야 한다.
+     */
+    int lock(String title) {
+        int stripe = stripeOf(title);
+        m_stripes[stripe].lock();
+        return stripe;
+    }
+
+    void unlock(int stripe) {
+        m_stripes[stripe].unlock();
+    }
+
+    /*
+                < 여러 메모를 한 번에 잠그는 메소드 >
+     겹치는 잠금은 한 번만 잡는다. 반환된 잠금 번호들로 unlockAll()을 호출해야 한다.
+     */
+    int[] lockAll(String[] titles) {
+        boolean[] isSelected = new boolean[NUM_OF_STRIPES];
+        int numOfStripes = 0;
+        for(String title : titles) {
+            int stripe = stripeOf(title);
+            if(!isSelected[stripe]) {
+                isSelected[stripe] = true;
+                numOfStripes++;
+            }
+        }
+
+        int[] stripes = new int[numOfStripes];
+        int index = 0;
+        for(int i = 0; i < NUM_OF_STRIPES; i++) {
+            if(isSelected[i])
+                stripes[index++] = i;
+        }
+        for(int stripe : stripes)
+            m_stripes[stripe].lock();
+        return stripes;
+    }
+
+    void unlockAll(int[] stripes) {
+        // 잡은 순서의 반대로 푼다.
+        for(int i = stripes.length - 1; i >= 0; i--)
+            m_stripes[stripes[i]].unlock();
+    }
+
+    /*
+                < 메모 제목의 잠금 번호를 구하는 메소드 >
+     String.hashCode()의 하위 비트가 고르지 않을 수 있으므로 상위 비트를 섞는다.
+     */
+    private static int stripeOf(String title) {
+        int hash = title.hashCode();
+        hash ^= (hash >>> 16);
+        hash ^= (hash >>> 7);
+        return hash & (NUM_OF_STRIPES - 1);
+    }
+}
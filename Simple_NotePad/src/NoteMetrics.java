@@ -0,0 +1,188 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+            < 메모 I/O 소요 시간을 기록하는 클래스 >
+ 메모 목록 불러오기, 저장, 중복 제목 처리, 읽기, 삭제에 걸린 시간을 작업별 히스토그램에 모은다.
+ 측정이 꺼져 있으면 start()가 volatile 변수 하나만 읽고 0을 반환하며, stop()은 아무것도 하지 않는다.
+ 측정이 켜져 있어도 기록은 배열 원소 하나를 원자적으로 증가시키는 것뿐이므로 잠금이 없다.
+ 사용법:
+    long start = NoteMetrics.start();
+    ... 측정할 작업 ...
+    NoteMetrics.stop(NoteMetrics.SAVE, start);
+ dump()로 작업별 횟수, p50, p99, 최대값을 문자열로 만들어 logcat이나 파일로 내보낸다.
+ */
+class NoteMetrics {
+    static final int LIST = 0;              // 메모 목록 불러오기
+    static final int SAVE = 1;              // 메모 저장 (요청부터 완료 콜백까지)
+    static final int RESOLVE_TITLE = 2;     // 중복 제목 처리
+    static final int READ = 3;              // 메모 읽기 (첫 페이지를 보여줄 때까지)
+    static final int DELETE = 4;            // 메모 삭제
+
+    private static final String[] OPERATION_NAMES = { "list", "save", "resolveTitle", "read", "delete" };
+
+    static final String METRICS_FILENAME = "note-metrics.txt";
+
+    /*
+                < 소요 시간 히스토그램 >
+     마이크로초 단위 값을 2의 거듭제곱 구간마다 SUB_BUCKETS개의 칸으로 나눠 센다. (상대 오차 12.5% 이하)
+     값이 작은 칸(SUB_BUCKETS 미만)은 1마이크로초 단위로 정확하게 센다.
+     */
+    static class Histogram {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int NUM_OF_BUCKETS = 64 * SUB_BUCKETS;
+
+        private final AtomicLongArray m_counts = new AtomicLongArray(NUM_OF_BUCKETS);
+        private final AtomicLong m_count = new AtomicLong();
+        private final AtomicLong m_max = new AtomicLong();
+
+        void record(long micros) {
+            m_counts.incrementAndGet(bucketOf(micros));
+            m_count.incrementAndGet();
+
+            long max;
+            while(micros > (max = m_max.get()) && !m_max.compareAndSet(max, micros)) {
+                // 다른 스레드가 최대값을 바꿨으면 다시 비교한다.
+            }
+        }
+
+        long getCount() {
+            return m_count.get();
+        }
+
+        long getMax() {
+            return m_max.get();
+        }
+
+        /*
+                    < 백분위수를 반환하는 메소드 >
+         값이 속한 칸의 상한을 반환하되 최대값을 넘지 않는다. 기록이 없으면 0을 반환한다.
+         */
+        long getPercentile(double percentile) {
+            long count = m_count.get();
+            if(count == 0)
+                return 0;
+
+            long rank = (long) Math.ceil(count * percentile / 100.0);
+            long seen = 0;
+            for(int i = 0; i < NUM_OF_BUCKETS; i++) {
+                seen += m_counts.get(i);
+                if(seen >= rank)
+                    return Math.min(upperBoundOf(i), getMax());
+            }
+            return getMax();
+        }
+
+        void reset() {
+            for(int i = 0; i < NUM_OF_BUCKETS; i++)
+                m_counts.set(i, 0);
+            m_count.set(0);
+            m_max.set(0);
+        }
+
+        private static int bucketOf(long micros) {
+            if(micros < SUB_BUCKETS)
+                return (int) Math.max(micros, 0);
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        private static long upperBoundOf(int bucket) {
+            if(bucket < SUB_BUCKETS)
+                return bucket;
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long subBucket = bucket % SUB_BUCKETS;
+            return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+    }
+
+    private static final Histogram[] s_histograms = new Histogram[OPERATION_NAMES.length];
+    private static volatile boolean s_isEnabled;    // 측정 여부
+
+    static {
+        for(int i = 0; i < s_histograms.length; i++)
+            s_histograms[i] = new Histogram();
+    }
+
+    private NoteMetrics() {
+    }
+
+    static void setEnabled(boolean isEnabled) {
+        s_isEnabled = isEnabled;
+    }
+
+    static boolean isEnabled() {
+        return s_isEnabled;
+    }
+
+    /*
+                < 측정을 시작하는 메소드 >
+     측정이 꺼져 있으면 0을 반환한다.
+     */
+    static long start() {
+        return s_isEnabled ? System.nanoTime() : 0;
+    }
+
+    /*
+                < 측정을 끝내고 소요 시간을 기록하는 메소드 >
+     startNanos는 start()가 반환한 값이다. 0이면 (측정이 꺼져 있을 때 시작했으면) 기록하지 않는다.
+     */
+    static void stop(int operation, long startNanos) {
+        if(startNanos == 0)
+            return;
+        s_histograms[operation].record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    static Histogram getHistogram(int operation) {
+        return s_histograms[operation];
+    }
+
+    static void reset() {
+        for(Histogram histogram : s_histograms)
+            histogram.reset();
+    }
+
+    /*
+                < 작업별 측정 결과를 문자열로 만드는 메소드 >
+     한 줄에 작업 하나씩 횟수와 p50, p99, 최대값(마이크로초)을 기록한다.
+     */
+    static String dump() {
+        StringBuilder report = new StringBuilder();
+        report.append("# note I/O latency (us) ")
+                .append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(new Date()))
+                .append('\n');
+        for(int i = 0; i < s_histograms.length; i++) {
+            Histogram histogram = s_histograms[i];
+            report.append(String.format(Locale.US, "%-13s count=%d p50=%d p99=%d max=%d%n", OPERATION_NAMES[i],
+                    histogram.getCount(), histogram.getPercentile(50), histogram.getPercentile(99), histogram.getMax()));
+        }
+        return report.toString();
+    }
+
+    /*
+                < 측정 결과를 파일 끝에 덧붙이는 메소드 >
+     덧붙인 측정 결과를 반환한다.
+     */
+    static String dumpTo(File file) throws IOException {
+        String report = dump();
+        Writer out = new OutputStreamWriter(new FileOutputStream(file, true), NoteReader.UTF_8);
+        try {
+            out.write(report);
+        } finally {
+            out.close();
+        }
+        return report;
+    }
+}
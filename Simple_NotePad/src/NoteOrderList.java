@@ -0,0 +1,228 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Random;
+
+/*
+            < 정렬된 메모 목록을 유지하는 클래스 >
+ 순위 통계(order-statistic) 트립으로 카탈로그 항목들을 정렬된 상태로 보관한다.
+ 노드마다 서브트리 크기를 기록하므로 추가, 삭제, i번째 항목 찾기, 항목의 위치 찾기가 모두 O(log n)이다.
+ ListView는 화면에 보이는 위치의 항목만 get()으로 찾으므로 목록 전체를 ArrayList로 만들 필요가 없다.
+ */
+class NoteOrderList {
+    /*
+                < 제목 순 정렬 >
+     */
+    static final Comparator<NoteCatalog.Entry> BY_TITLE = new Comparator<NoteCatalog.Entry>() {
+        @Override
+        public int compare(NoteCatalog.Entry lhs, NoteCatalog.Entry rhs) {
+            return lhs.title.compareTo(rhs.title);
+        }
+    };
+
+    /*
+                < 최근 수정 순 정렬 >
+     수정시각이 같으면 제목 순으로 정렬해 항목의 순서가 항상 하나로 정해지도록 한다.
+     */
+    static final Comparator<NoteCatalog.Entry> BY_MODIFIED = new Comparator<NoteCatalog.Entry>() {
+        @Override
+        public int compare(NoteCatalog.Entry lhs, NoteCatalog.Entry rhs) {
+            if(lhs.lastModified != rhs.lastModified)
+                return lhs.lastModified > rhs.lastModified ? -1 : 1;
+            return lhs.title.compareTo(rhs.title);
+        }
+    };
+
+    /*
+                < 트립 노드 >
+     */
+    private static class Node {
+        final NoteCatalog.Entry entry;
+        final int priority;     // 힙 순서를 정하는 임의의 값
+        int size = 1;           // 이 노드를 루트로 하는 서브트리의 노드 수
+        Node left, right;
+
+        Node(NoteCatalog.Entry entry, int priority) {
+            this.entry = entry;
+            this.priority = priority;
+        }
+    }
+
+    private final Comparator<NoteCatalog.Entry> m_comparator;
+    private final Random m_random = new Random();
+    private Node m_root;
+
+    NoteOrderList(Comparator<NoteCatalog.Entry> comparator) {
+        m_comparator = comparator;
+    }
+
+    NoteOrderList(Comparator<NoteCatalog.Entry> comparator, Collection<NoteCatalog.Entry> entries) {
+        this(comparator);
+        for(NoteCatalog.Entry entry : entries)
+            add(entry);
+    }
+
+    Comparator<NoteCatalog.Entry> getComparator() {
+        return m_comparator;
+    }
+
+    int size() {
+        return size(m_root);
+    }
+
+    /*
+                < 항목을 추가하는 메소드 >
+     추가된 위치를 반환한다.
+     */
+    int add(NoteCatalog.Entry entry) {
+        int index = countLess(entry);
+        m_root = insert(m_root, new Node(entry, m_random.nextInt()));
+        return index;
+    }
+
+    /*
+                < 항목을 삭제하는 메소드 >
+     삭제된 위치를 반환하고, 항목이 없으면 -1을 반환한다.
+     entry는 추가할 때와 같은 정렬 기준 값(제목, 수정시각)을 가져야 한다.
+     */
+    int remove(NoteCatalog.Entry entry) {
+        int index = indexOf(entry);
+        if(index >= 0)
+            m_root = delete(m_root, entry);
+        return index;
+    }
+
+    /*
+                < index번째 항목을 반환하는 메소드 >
+     */
+    NoteCatalog.Entry get(int index) {
+        if(index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size());
+
+        Node node = m_root;
+        while(true) {
+            int leftSize = size(node.left);
+            if(index < leftSize) {
+                node = node.left;
+            } else if(index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.entry;
+            }
+        }
+    }
+
+    /*
+                < 항목의 위치를 반환하는 메소드 >
+     항목이 없으면 -1을 반환한다.
+     */
+    int indexOf(NoteCatalog.Entry entry) {
+        int index = 0;
+        Node node = m_root;
+        while(node != null) {
+            int result = m_comparator.compare(entry, node.entry);
+            if(result < 0) {
+                node = node.left;
+            } else if(result > 0) {
+                index += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return index + size(node.left);
+            }
+        }
+        return -1;
+    }
+
+    void clear() {
+        m_root = null;
+    }
+
+    /*
+                < entry보다 앞에 오는 항목 수를 세는 메소드 >
+     */
+    private int countLess(NoteCatalog.Entry entry) {
+        int count = 0;
+        Node node = m_root;
+        while(node != null) {
+            if(m_comparator.compare(entry, node.entry) <= 0) {
+                node = node.left;
+            } else {
+                count += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return count;
+    }
+
+    private Node insert(Node root, Node node) {
+        if(root == null)
+            return node;
+
+        if(m_comparator.compare(node.entry, root.entry) < 0) {
+            root.left = insert(root.left, node);
+            if(root.left.priority > root.priority)
+                root = rotateRight(root);
+        } else {
+            root.right = insert(root.right, node);
+            if(root.right.priority > root.priority)
+                root = rotateLeft(root);
+        }
+        update(root);
+        return root;
+    }
+
+    private Node delete(Node root, NoteCatalog.Entry entry) {
+        if(root == null)
+            return null;
+
+        int result = m_comparator.compare(entry, root.entry);
+        if(result < 0) {
+            root.left = delete(root.left, entry);
+        } else if(result > 0) {
+            root.right = delete(root.right, entry);
+        } else {
+            // 우선순위가 높은 자식을 위로 올리며 삭제할 노드를 잎으로 내린다.
+            if(root.left == null)
+                return root.right;
+            if(root.right == null)
+                return root.left;
+            if(root.left.priority > root.right.priority) {
+                root = rotateRight(root);
+                root.right = delete(root.right, entry);
+            } else {
+                root = rotateLeft(root);
+                root.left = delete(root.left, entry);
+            }
+        }
+        update(root);
+        return root;
+    }
+
+    private static Node rotateRight(Node root) {
+        Node pivot = root.left;
+        root.left = pivot.right;
+        pivot.right = root;
+        update(root);
+        update(pivot);
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node root) {
+        Node pivot = root.right;
+        root.right = pivot.left;
+        pivot.left = root;
+        update(root);
+        update(pivot);
+        return pivot;
+    }
+
+    private static void update(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+}
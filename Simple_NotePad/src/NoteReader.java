@@ -0,0 +1,83 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/*
+            < 메모 내용을 페이지 단위로 읽어주는 클래스 >
+ 메모 파일 전체를 한 번에 byte[]로 읽지 않고 PAGE_SIZE 글자씩 나누어 읽는다.
+ InputStreamReader가 UTF-8을 점진적으로 디코딩하므로
+ 여러 바이트로 이루어진 글자가 버퍼 경계에서 잘려도 올바르게 복원된다.
+ 서로게이트 쌍(surrogate pair)이 페이지 경계에서 나뉘지 않도록 마지막 high surrogate는 다음 페이지로 넘긴다.
+ 압축되어 저장된 메모는 NoteCodec을 통해 압축을 풀면서 읽는다.
+ */
+class NoteReader implements Closeable {
+    static final int PAGE_SIZE = 16 * 1024;    // 한 번에 읽어들이는 글자 수
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Reader m_reader;      // UTF-8 디코더가 연결된 Reader
+    private final char[] m_buffer;      // 한 페이지를 담는 버퍼
+    private int m_numOfPending;         // 이전 페이지에서 넘어온 글자 수 (0 또는 1)
+    private boolean m_isEndOfNote;      // 메모 끝까지 읽었는지 여부
+
+    NoteReader(InputStream in) throws IOException {
+        this(in, PAGE_SIZE);
+    }
+
+    NoteReader(InputStream in, int pageSize) throws IOException {
+        m_reader = new InputStreamReader(NoteCodec.decode(in), UTF_8);
+        m_buffer = new char[pageSize];
+    }
+
+    /*
+                < 다음 페이지를 읽는 메소드 >
+     최대 PAGE_SIZE 글자를 읽어 문자열로 반환한다.
+     메모 끝에 도달해 더 읽을 내용이 없으면 null을 반환한다.
+     */
+    String readPage() throws IOException {
+        if(m_isEndOfNote)
+            return null;
+
+        // 버퍼가 찰 때까지 읽는다. (read()는 요청보다 적게 읽을 수 있다.)
+        int length = m_numOfPending;
+        while(length < m_buffer.length) {
+            int numOfRead = m_reader.read(m_buffer, length, m_buffer.length - length);
+            if(numOfRead == -1) {
+                m_isEndOfNote = true;
+                break;
+            }
+            length += numOfRead;
+        }
+
+        // 페이지 마지막 글자가 서로게이트 쌍의 앞부분이면 다음 페이지로 넘긴다.
+        m_numOfPending = 0;
+        if(!m_isEndOfNote && length > 1 && Character.isHighSurrogate(m_buffer[length - 1])) {
+            m_numOfPending = 1;
+            length--;
+        }
+
+        String page = new String(m_buffer, 0, length);
+        if(m_numOfPending == 1)
+            m_buffer[0] = m_buffer[length];
+
+        if(m_isEndOfNote && length == 0)
+            return null;
+        return page;
+    }
+
+    /*
+                < 메모 끝까지 읽었는지 확인하는 메소드 >
+     */
+    boolean isEndOfNote() {
+        return m_isEndOfNote;
+    }
+
+    @Override
+    public void close() throws IOException {
+        m_reader.close();
+    }
+}
@@ -0,0 +1,732 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/*
+            < 메모 전문 검색을 위한 역색인(inverted index) >
+ 메모 내용을 단어(token)로 나누어 "단어 -> (메모 번호 -> 단어가 나온 위치들)" 형태로 보관한다.
+ 검색할 때는 메모 파일을 읽지 않고 색인만으로 결과를 찾아 점수 순으로 정렬한다.
+ 색인은 메모가 저장될 때(addNote)와 삭제될 때(removeNote) 조금씩 갱신된다.
+ 색인 파일은 NoteCatalog와 같이 [스냅샷 + 변경 기록] 형식으로 저장되며,
+ 색인이 없거나 머리말이 손상된 경우 카탈로그에 있는 메모들을 저장소에서 읽어 다시 만든다.
+ 레코드는 NoteJournal과 같이 길이와 CRC32로 감싸고 fsync하므로, 끝이 잘린 색인은 온전한 앞부분을 그대로 쓴다.
+ 색인은 처음 사용될 때 불러오며, 메소드들은 메모를 읽거나 색인 파일을 쓰므로 UI 스레드가 아닌 곳에서 호출해야 한다.
+
+ 색인 파일 형식
+    머리말 : INDEX_MAGIC(int), INDEX_VERSION(int), 스냅샷의 메모 수(int)
+    레코드 : payload 길이(int), payload, CRC32(int)
+    payload : 종류(ADD/DEL), 메모 제목, (ADD이면) 단어별 출현 정보
+ 스냅샷은 살아있는 메모마다 ADD 레코드 하나이고, 변경 기록은 그 뒤에 덧붙인다.
+ */
+class NoteSearchIndex {
+    static final String INDEX_FILENAME = "notes.search";
+    private static final int INDEX_MAGIC = 0x4E534931;      // "NSI1"
+    private static final int INDEX_VERSION = 2;
+    private static final int HEADER_SIZE = 12;      // 머리말 크기
+    private static final int RECORD_OVERHEAD = 8;   // 레코드의 payload 길이와 CRC32 크기
+    private static final byte RECORD_ADD = 1;       // 메모 색인 추가/갱신 레코드
+    private static final byte RECORD_DEL = 2;       // 메모 색인 삭제 레코드
+    private static final int COMPACT_THRESHOLD = 1024;  // 변경 기록이 이 개수를 넘으면 스냅샷을 새로 쓴다.
+    private static final int MAX_POSITIONS = 64;    // 메모 하나에서 단어마다 기록하는 최대 위치 수
+    private static final int MAX_TOKEN_LENGTH = 64; // 색인하는 단어의 최대 길이
+
+    /*
+                < 한 메모 안에서 한 단어의 출현 정보 >
+     count는 단어가 나온 전체 횟수이고, positions에는 앞에서부터 MAX_POSITIONS개의 위치만 기록한다.
+     */
+    private static class Posting {
+        final int count;
+        final int[] positions;
+
+        Posting(int count, int[] positions) {
+            this.count = count;
+            this.positions = positions;
+        }
+    }
+
+    /*
+                < 한 단어가 나온 메모 목록 (posting list) >
+     메모 번호와 단어 빈도 가중치(1 + log(출현 횟수))를 배열에 이어 붙인다.
+     삭제된 메모는 바로 지우지 않고 검색할 때 건너뛰며, 삭제된 항목이 절반을 넘으면 배열을 정리한다.
+     */
+    private static class PostingList {
+        int[] docIds = new int[4];
+        float[] weights = new float[4];
+        int size;           // 배열에 들어있는 항목 수 (삭제된 메모 포함)
+        int numOfLive;      // 살아있는 메모 수 (idf 계산에 사용)
+
+        void add(int docId, int count) {
+            if(size == docIds.length) {
+                docIds = Arrays.copyOf(docIds, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            docIds[size] = docId;
+            weights[size] = (float) (1 + Math.log(count));
+            size++;
+            numOfLive++;
+        }
+
+        void compact(ArrayList<String> docTitles) {
+            int j = 0;
+            for(int i = 0; i < size; i++) {
+                if(docTitles.get(docIds[i]) != null) {
+                    docIds[j] = docIds[i];
+                    weights[j] = weights[i];
+                    j++;
+                }
+            }
+            size = j;
+        }
+    }
+
+    /*
+                < 검색 결과 항목 >
+     */
+    static class Result {
+        final String title;
+        final double score;
+
+        Result(String title, double score) {
+            this.title = title;
+            this.score = score;
+        }
+    }
+
+    private final NoteStore m_store;        // 메모가 저장되는 저장소
+    private final NoteCatalog m_catalog;    // 색인과 맞춰볼 메모 목록 카탈로그
+    private final File m_indexFile;         // 색인 파일
+    private boolean m_isLoaded;             // 색인을 불러왔는지 여부
+    private final HashMap<String, Integer> m_docIds = new HashMap<>();     // 메모 제목 -> 메모 번호
+    private final ArrayList<String> m_docTitles = new ArrayList<>();        // 메모 번호 -> 메모 제목 (삭제된 번호는 null)
+    private final ArrayList<HashMap<String, Posting>> m_docTerms = new ArrayList<>();   // 메모 번호 -> 단어별 출현 정보 (삭제된 번호는 null)
+    private double[] m_scores = new double[0];  // 검색할 때 메모 번호별 점수를 모으는 배열 (검색마다 다시 쓴다.)
+    private int[] m_numOfMatched = new int[0];  // 검색할 때 메모 번호별 일치한 검색어 단어 수를 모으는 배열
+    private final TreeMap<String, PostingList> m_postings = new TreeMap<>();    // 단어 -> 단어가 나온 메모 목록
+    private int m_numOfRecords;             // 마지막 스냅샷 이후 덧붙인 변경 기록 수
+    private long m_validLength;             // 색인 파일에서 온전한 레코드가 끝나는 위치
+
+    NoteSearchIndex(NoteStore store, NoteCatalog catalog, File indexFile) {
+        m_store = store;
+        m_catalog = catalog;
+        m_indexFile = indexFile;
+    }
+
+    /*
+                < 색인을 불러오는 메소드 >
+     색인 파일을 읽은 뒤 카탈로그와 비교해
+     색인에 없는 메모는 읽어서 추가하고, 카탈로그에 없는 메모는 색인에서 지운다.
+     처음 한 번만 불러오며, 색인을 사용하는 메소드들이 먼저 호출한다.
+     */
+    private void ensureLoaded() {
+        if(m_isLoaded)
+            return;
+        m_isLoaded = true;
+
+        boolean isLoaded = readIndex(true);
+        if(!isLoaded)
+            clear();
+
+        HashSet<String> catalogTitles = new HashSet<>(m_catalog.getTitles());
+        boolean isChanged = !isLoaded;
+        for(String title : new ArrayList<>(m_docIds.keySet())) {
+            if(!catalogTitles.contains(title)) {
+                removeDocument(title);
+                isChanged = true;
+            }
+        }
+        for(String title : catalogTitles) {
+            if(!m_docIds.containsKey(title)) {
+                indexDocument(title, readNote(title));
+                isChanged = true;
+            }
+        }
+
+        if(isChanged)
+            writeSnapshot();
+    }
+
+    /*
+                < 저장된 메모를 색인에 반영하는 메소드 >
+     같은 제목의 메모가 이미 색인되어 있으면 교체한다.
+     */
+    synchronized void addNote(String title, String body) {
+        ensureLoaded();
+        HashMap<String, Posting> terms = indexDocument(title, body);
+        appendRecord(RECORD_ADD, title, terms);
+    }
+
+    /*
+                < 삭제된 메모를 색인에서 지우는 메소드 >
+     */
+    synchronized void removeNote(String title) {
+        ensureLoaded();
+        if(removeDocument(title))
+            appendRecord(RECORD_DEL, title, null);
+    }
+
+    /*
+                < 삭제된 메모들을 색인에서 한 번에 지우는 메소드 >
+     삭제 레코드들을 한 번에 덧붙인다.
+     */
+    synchronized void removeNotes(Collection<String> titles) {
+        ensureLoaded();
+        ArrayList<String> removedTitles = new ArrayList<>();
+        for(String title : titles) {
+            if(removeDocument(title))
+                removedTitles.add(title);
+        }
+        appendRecords(RECORD_DEL, removedTitles, null);
+    }
+
+    /*
+                < 선행 기록으로 정리된 메모들을 다시 색인하도록 하는 메소드 >
+     NoteJournal.recover()가 지우거나 새 내용으로 남긴 메모들은 색인의 내용과 다를 수 있다.
+     색인을 아직 불러오지 않았으면 색인 파일에 삭제 레코드만 덧붙인다.
+     (색인을 불러올 때 카탈로그에 있는 메모는 저장소에서 다시 읽어 색인한다.)
+     이미 불러왔으면 카탈로그에 있는 메모는 다시 읽어 색인하고, 없는 메모는 지운다.
+     */
+    synchronized void invalidateNotes(Collection<String> titles) {
+        if(!m_isLoaded) {
+            // 불러오지 않은 색인의 스냅샷을 새로 쓰면 안되므로 레코드가 너무 많으면 색인 파일을 지워 다시 만들게 한다.
+            // 덧붙이다 끊긴 레코드 뒤에 쓰면 읽을 때 무시되므로, 먼저 온전한 레코드가 끝나는 위치를 찾는다.
+            if(titles.size() > COMPACT_THRESHOLD)
+                m_indexFile.delete();
+            else if(readIndex(false))
+                appendRecords(RECORD_DEL, new ArrayList<>(titles), null);
+            return;
+        }
+
+        HashSet<String> catalogTitles = new HashSet<>(m_catalog.getTitles());
+        for(String title : titles) {
+            if(catalogTitles.contains(title))
+                addNote(title, readNote(title));
+            else
+                removeNote(title);
+        }
+    }
+
+    /*
+                < 메모를 검색하는 메소드 >
+     검색어를 단어로 나누고, 모든 단어를 포함하는 메모들을 점수 순으로 최대 maxResults개 반환한다.
+     검색어의 각 단어는 그 단어로 시작하는 색인 단어와도 일치한다. ("메모"는 "메모를"과 일치)
+     점수는 단어마다 (1 + log(출현 횟수)) * log(1 + 전체 메모 수 / 단어가 나온 메모 수)를 더하고,
+     검색어의 단어들이 메모에서 순서대로 붙어 나오면 가산점을 준다.
+     */
+    synchronized ArrayList<Result> search(String query, int maxResults) {
+        ensureLoaded();
+        ArrayList<String> queryTerms = new ArrayList<>(tokenize(query).keySet());
+        ArrayList<Result> results = new ArrayList<>();
+        if(queryTerms.isEmpty())
+            return results;
+
+        // 메모 번호로 바로 접근하는 배열에 점수와 일치한 검색어 단어 수를 모은다.
+        // 배열은 검색마다 새로 만들지 않고 메모 번호 수만큼 늘려서 다시 쓴다.
+        int numOfSlots = m_docTitles.size();
+        double numOfDocs = m_docIds.size();
+        if(m_scores.length < numOfSlots) {
+            m_scores = new double[numOfSlots + numOfSlots / 2];
+            m_numOfMatched = new int[m_scores.length];
+        } else {
+            Arrays.fill(m_scores, 0, numOfSlots, 0);
+            Arrays.fill(m_numOfMatched, 0, numOfSlots, 0);
+        }
+        double[] scores = m_scores;
+        int[] numOfMatched = m_numOfMatched;
+
+        for(int q = 0; q < queryTerms.size(); q++) {
+            String queryTerm = queryTerms.get(q);
+            SortedMap<String, PostingList> matchedTerms =
+                    m_postings.subMap(queryTerm, queryTerm + Character.MAX_VALUE);
+
+            for(PostingList postings : matchedTerms.values()) {
+                if(postings.numOfLive == 0)
+                    continue;
+                double idf = Math.log(1 + numOfDocs / postings.numOfLive);
+                for(int i = 0; i < postings.size; i++) {
+                    int docId = postings.docIds[i];
+                    // 삭제된 메모이거나 앞의 검색어 단어와 일치하지 않은 메모는 건너뛴다.
+                    if(m_docTitles.get(docId) == null || numOfMatched[docId] < q)
+                        continue;
+                    scores[docId] += postings.weights[i] * idf;
+                    numOfMatched[docId] = q + 1;
+                }
+            }
+        }
+
+        // 점수가 높은 maxResults개만 최소 힙(min-heap)에 남긴다.
+        PriorityQueue<Result> topResults = new PriorityQueue<>(Math.max(1, maxResults), new Comparator<Result>() {
+            @Override
+            public int compare(Result a, Result b) {
+                return compareResult(b, a);
+            }
+        });
+        for(int docId = 0; docId < numOfSlots; docId++) {
+            if(numOfMatched[docId] < queryTerms.size())
+                continue;
+            double score = scores[docId] * (hasPhrase(docId, queryTerms) ? 1.5 : 1.0);
+            if(topResults.size() < maxResults) {
+                topResults.add(new Result(m_docTitles.get(docId), score));
+            } else if(maxResults > 0 && score >= topResults.peek().score) {
+                Result result = new Result(m_docTitles.get(docId), score);
+                if(compareResult(result, topResults.peek()) < 0) {
+                    topResults.poll();
+                    topResults.add(result);
+                }
+            }
+        }
+
+        results.addAll(topResults);
+        Collections.sort(results, new Comparator<Result>() {
+            @Override
+            public int compare(Result a, Result b) {
+                return compareResult(a, b);
+            }
+        });
+        return results;
+    }
+
+    /*
+                < 검색 결과의 순서를 정하는 메소드 >
+     점수가 높은 결과가 앞에 오고, 점수가 같으면 제목 순서로 정렬한다.
+     */
+    private static int compareResult(Result a, Result b) {
+        if(a.score != b.score)
+            return a.score > b.score ? -1 : 1;
+        return a.title.compareTo(b.title);
+    }
+
+    /*
+                < 검색어의 단어들이 메모에 순서대로 붙어서 나오는지 확인하는 메소드 >
+     기록된 위치들만 비교하므로 정확히 일치하는 단어들에 대해서만 확인한다.
+     */
+    private boolean hasPhrase(int docId, ArrayList<String> queryTerms) {
+        if(queryTerms.size() < 2)
+            return false;
+
+        HashMap<String, Posting> terms = m_docTerms.get(docId);
+        Posting first = terms.get(queryTerms.get(0));
+        if(first == null)
+            return false;
+
+        for(int start : first.positions) {
+            boolean isPhrase = true;
+            for(int i = 1; i < queryTerms.size() && isPhrase; i++) {
+                Posting next = terms.get(queryTerms.get(i));
+                isPhrase = next != null && contains(next.positions, start + i);
+            }
+            if(isPhrase)
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean contains(int[] positions, int position) {
+        for(int tmp : positions) {
+            if(tmp == position)
+                return true;
+        }
+        return false;
+    }
+
+    /*
+                < 문자열을 단어로 나누는 메소드 >
+     글자나 숫자가 연속된 부분을 하나의 단어로 보고 소문자로 바꾼다.
+     단어 -> 출현 정보(출현 횟수, 위치들)를 단어가 처음 나온 순서대로 담아 반환한다.
+     */
+    private static LinkedHashMap<String, Posting> tokenize(String text) {
+        LinkedHashMap<String, ArrayList<Integer>> positions = new LinkedHashMap<>();
+        HashMap<String, Integer> counts = new HashMap<>();
+        int position = 0;
+        int length = text.length();
+        int i = 0;
+        while(i < length) {
+            while(i < length && !Character.isLetterOrDigit(text.charAt(i)))
+                i++;
+            int start = i;
+            while(i < length && Character.isLetterOrDigit(text.charAt(i)))
+                i++;
+            if(start == i)
+                break;
+
+            String token = text.substring(start, Math.min(i, start + MAX_TOKEN_LENGTH)).toLowerCase();
+            ArrayList<Integer> tokenPositions = positions.get(token);
+            if(tokenPositions == null) {
+                tokenPositions = new ArrayList<>();
+                positions.put(token, tokenPositions);
+                counts.put(token, 0);
+            }
+            if(tokenPositions.size() < MAX_POSITIONS)
+                tokenPositions.add(position);
+            counts.put(token, counts.get(token) + 1);
+            position++;
+        }
+
+        LinkedHashMap<String, Posting> terms = new LinkedHashMap<>();
+        for(Map.Entry<String, ArrayList<Integer>> entry : positions.entrySet()) {
+            int[] tokenPositions = new int[entry.getValue().size()];
+            for(int j = 0; j < tokenPositions.length; j++)
+                tokenPositions[j] = entry.getValue().get(j);
+            terms.put(entry.getKey(), new Posting(counts.get(entry.getKey()), tokenPositions));
+        }
+        return terms;
+    }
+
+    /*
+                < 메모 하나를 메모리의 색인에 넣는 메소드 >
+     */
+    private HashMap<String, Posting> indexDocument(String title, String body) {
+        return putDocument(title, new HashMap<>(tokenize(body)));
+    }
+
+    private HashMap<String, Posting> putDocument(String title, HashMap<String, Posting> terms) {
+        removeDocument(title);
+
+        int docId = m_docTitles.size();
+        m_docTitles.add(title);
+        m_docTerms.add(terms);
+        m_docIds.put(title, docId);
+
+        for(Map.Entry<String, Posting> term : terms.entrySet()) {
+            PostingList postings = m_postings.get(term.getKey());
+            if(postings == null) {
+                postings = new PostingList();
+                m_postings.put(term.getKey(), postings);
+            }
+            postings.add(docId, term.getValue().count);
+        }
+        return terms;
+    }
+
+    /*
+                < 메모 하나를 메모리의 색인에서 지우는 메소드 >
+     메모 번호별로 기록해둔 단어 목록을 이용하므로 메모 파일을 읽지 않는다.
+     메모 목록에서는 바로 지우지 않고, 삭제된 항목이 절반을 넘는 목록만 정리한다.
+     메모가 저장될 때마다 새 메모 번호를 쓰므로, 삭제된 번호가 절반을 넘으면 메모 번호를 다시 매긴다.
+     */
+    private boolean removeDocument(String title) {
+        Integer docId = m_docIds.remove(title);
+        if(docId == null)
+            return false;
+
+        m_docTitles.set(docId, null);
+        for(String term : m_docTerms.set(docId, null).keySet()) {
+            PostingList postings = m_postings.get(term);
+            postings.numOfLive--;
+            if(postings.numOfLive == 0)
+                m_postings.remove(term);
+            else if(postings.numOfLive * 2 < postings.size)
+                postings.compact(m_docTitles);
+        }
+        if(m_docIds.size() * 2 < m_docTitles.size())
+            compactDocIds();
+        return true;
+    }
+
+    /*
+                < 삭제된 메모 번호를 없애고 살아있는 메모들의 번호를 앞에서부터 다시 매기는 메소드 >
+     번호의 순서는 그대로이므로 메모 목록들은 정렬된 상태를 유지한다.
+     */
+    private void compactDocIds() {
+        int[] newDocIds = new int[m_docTitles.size()];
+        int numOfLive = 0;
+        for(int docId = 0; docId < m_docTitles.size(); docId++) {
+            String title = m_docTitles.get(docId);
+            if(title == null) {
+                newDocIds[docId] = -1;
+                continue;
+            }
+            newDocIds[docId] = numOfLive;
+            m_docTitles.set(numOfLive, title);
+            m_docTerms.set(numOfLive, m_docTerms.get(docId));
+            m_docIds.put(title, numOfLive);
+            numOfLive++;
+        }
+        m_docTitles.subList(numOfLive, m_docTitles.size()).clear();
+        m_docTerms.subList(numOfLive, m_docTerms.size()).clear();
+
+        for(PostingList postings : m_postings.values()) {
+            int j = 0;
+            for(int i = 0; i < postings.size; i++) {
+                int docId = newDocIds[postings.docIds[i]];
+                if(docId >= 0) {
+                    postings.docIds[j] = docId;
+                    postings.weights[j] = postings.weights[i];
+                    j++;
+                }
+            }
+            postings.size = j;
+        }
+    }
+
+    /*
+                < 색인에 있는 메모 번호 수를 반환하는 메소드 (삭제된 번호 포함) >
+     */
+    synchronized int getNumOfSlots() {
+        ensureLoaded();
+        return m_docTitles.size();
+    }
+
+    private void clear() {
+        m_docIds.clear();
+        m_docTitles.clear();
+        m_docTerms.clear();
+        m_postings.clear();
+    }
+
+    /*
+                < 색인을 다시 만들 때 메모 파일을 읽는 메소드 >
+     */
+    private String readNote(String title) {
+        NoteReader reader = null;
+        try {
+            reader = new NoteReader(m_store.openNote(title));
+            StringBuilder body = new StringBuilder();
+            String page;
+            while((page = reader.readPage()) != null)
+                body.append(page);
+            return body.toString();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return "";
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /*
+                < 색인 파일을 읽는 메소드 >
+     머리말을 확인한 뒤 스냅샷의 레코드들과 덧붙여진 변경 기록을 차례로 적용한다.
+     덧붙이다 끊기거나 CRC가 맞지 않는 레코드부터는 무시하고 그 앞까지의 색인을 사용한다.
+     (빠진 메모는 ensureLoaded()에서 카탈로그와 비교해 다시 색인한다.)
+     isApply가 false이면 메모리의 색인은 그대로 두고 온전한 레코드가 끝나는 위치만 찾는다.
+     */
+    private boolean readIndex(boolean isApply) {
+        m_validLength = 0;
+        if(!m_indexFile.exists())
+            return false;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(m_indexFile)));
+            if(in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION)
+                return false;
+            int numOfDocs = in.readInt();
+            m_validLength = HEADER_SIZE;
+
+            if(isApply)
+                clear();
+            int numOfRecords = readRecords(in, isApply);
+            if(isApply)
+                m_numOfRecords = Math.max(0, numOfRecords - numOfDocs);
+            return true;
+        } catch (EOFException e) {
+            // 머리말도 다 쓰이지 않은 색인은 다시 만든다.
+            return false;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /*
+                < 색인 파일의 레코드들을 읽는 메소드 >
+     온전한 레코드 수를 반환하고, m_validLength를 마지막 온전한 레코드가 끝나는 위치로 옮긴다.
+     */
+    private int readRecords(DataInputStream in, boolean isApply) {
+        CRC32 crc = new CRC32();
+        int numOfRecords = 0;
+        try {
+            while(true) {
+                int payloadLength = in.readInt();
+                if(payloadLength < 1 || payloadLength > m_indexFile.length())
+                    break;
+
+                byte[] payload = new byte[payloadLength];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if(in.readInt() != (int) crc.getValue())
+                    break;
+
+                if(isApply) {
+                    DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                    byte type = record.readByte();
+                    String title = record.readUTF();
+                    if(type == RECORD_ADD)
+                        putDocument(title, readTerms(record));
+                    else if(type == RECORD_DEL)
+                        removeDocument(title);
+                    else
+                        break;
+                }
+                m_validLength += RECORD_OVERHEAD + payloadLength;
+                numOfRecords++;
+            }
+        } catch (EOFException e) {
+            // 색인 파일의 끝 또는 덧붙이다 끊긴 레코드
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return numOfRecords;
+    }
+
+    /*
+                < 스냅샷을 새로 쓰는 메소드 >
+     살아있는 메모마다 추가 레코드를 하나씩 쓰고 fsync한 뒤 색인 파일과 바꾼다.
+     */
+    private void writeSnapshot() {
+        File tmpFile = new File(m_indexFile.getPath() + ".tmp");
+        FileOutputStream fileOut = null;
+        DataOutputStream out = null;
+        try {
+            fileOut = new FileOutputStream(tmpFile);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeInt(m_docIds.size());
+            for(int docId = 0; docId < m_docTitles.size(); docId++) {
+                if(m_docTitles.get(docId) == null)
+                    continue;
+                out.write(encodeRecord(RECORD_ADD, m_docTitles.get(docId), m_docTerms.get(docId)));
+            }
+            out.flush();
+            fileOut.getFD().sync();
+            out.close();
+            out = null;
+
+            if(!tmpFile.renameTo(m_indexFile))
+                throw new IOException("색인 파일을 교체하지 못했습니다.");
+            m_numOfRecords = 0;
+            m_validLength = m_indexFile.length();
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeQuietly(out != null ? out : fileOut);
+            tmpFile.delete();
+        }
+    }
+
+    /*
+                < 변경 기록을 색인 파일 끝에 덧붙이는 메소드 >
+     레코드들을 한 번에 덧붙이고 fsync한다. 덧붙이다 끊긴 레코드가 있으면 잘라내고 쓴다.
+     레코드가 너무 많아지면 스냅샷을 새로 쓴다.
+     삭제 레코드는 단어 목록이 없으므로 termsList에 null을 넘긴다.
+     */
+    private void appendRecord(byte type, String title, HashMap<String, Posting> terms) {
+        appendRecords(type, Collections.singletonList(title), Collections.singletonList(terms));
+    }
+
+    private void appendRecords(byte type, List<String> titles, List<HashMap<String, Posting>> termsList) {
+        if(titles.isEmpty())
+            return;
+        if(m_numOfRecords + titles.size() > COMPACT_THRESHOLD || !m_indexFile.exists()) {
+            writeSnapshot();
+            return;
+        }
+
+        RandomAccessFile indexFile = null;
+        try {
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            for(int i = 0; i < titles.size(); i++)
+                records.write(encodeRecord(type, titles.get(i), type == RECORD_ADD ? termsList.get(i) : null));
+
+            indexFile = new RandomAccessFile(m_indexFile, "rw");
+            indexFile.setLength(m_validLength);
+            indexFile.seek(m_validLength);
+            indexFile.write(records.toByteArray());
+            indexFile.getFD().sync();
+            indexFile.close();
+            indexFile = null;
+            m_validLength += records.size();
+            m_numOfRecords += titles.size();
+        } catch (IOException e) {
+            // 기록에 실패하면 색인 파일을 지워 다음 실행 때 다시 만들도록 한다.
+            e.printStackTrace();
+            closeQuietly(indexFile);
+            m_indexFile.delete();
+            m_validLength = 0;
+        }
+    }
+
+    private static byte[] encodeRecord(byte type, String title, HashMap<String, Posting> terms) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream payloadOut = new DataOutputStream(payload);
+        payloadOut.writeByte(type);
+        payloadOut.writeUTF(title);
+        if(type == RECORD_ADD)
+            writeTerms(payloadOut, terms);
+        payloadOut.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.toByteArray());
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream recordOut = new DataOutputStream(record);
+        recordOut.writeInt(payload.size());
+        recordOut.write(payload.toByteArray());
+        recordOut.writeInt((int) crc.getValue());
+        recordOut.flush();
+        return record.toByteArray();
+    }
+
+    private static HashMap<String, Posting> readTerms(DataInputStream in) throws IOException {
+        int numOfTerms = in.readInt();
+        HashMap<String, Posting> terms = new HashMap<>();
+        for(int i = 0; i < numOfTerms; i++) {
+            String term = in.readUTF();
+            int count = in.readInt();
+            int[] positions = new int[in.readInt()];
+            for(int j = 0; j < positions.length; j++)
+                positions[j] = in.readInt();
+            terms.put(term, new Posting(count, positions));
+        }
+        return terms;
+    }
+
+    private static void writeTerms(DataOutputStream out, HashMap<String, Posting> terms) throws IOException {
+        out.writeInt(terms.size());
+        for(Map.Entry<String, Posting> term : terms.entrySet()) {
+            out.writeUTF(term.getKey());
+            out.writeInt(term.getValue().count);
+            out.writeInt(term.getValue().positions.length);
+            for(int position : term.getValue().positions)
+                out.writeInt(position);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if(closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package io.github.sogoagain.simple_notepad;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import java.io.File;
+import java.util.ArrayList;
+
+/*
+            < 메모 저장소 관련 객체들을 만들어 공유하는 클래스 >
+ NoteStore, NoteCatalog, NoteJournal, NoteWriter, NoteSearchIndex, NoteContentCache, NoteDraftStore, NoteSyncEngine을 프로세스 전체에서 하나씩만 만들어 엑티비티들이 함께 사용한다.
+ 메모 저장소는 같은 내용을 한 번만 저장하도록 DedupNoteStore로, 수정 내용만 따로 기록할 수 있도록 DeltaNoteStore로 감싼다.
+ (DedupNoteStore는 모든 메모를 blobs 디렉터리에 쓰므로 SegmentNoteStore를 사용할 때는 감싸지 않는다.)
+ 엑티비티는 저장소의 구현이나 파일 위치를 알 필요 없이 이 클래스의 메소드로 필요한 객체를 받아온다.
+ 카탈로그, 선행 기록, 검색 색인, 동기화 상태 파일은 메모 디렉터리와 별도인 "catalog" 디렉터리에 저장한다.
+ 임시 저장 파일은 "drafts" 디렉터리에 저장한다. (메모 디렉터리와 같은 파일 시스템이므로 이름 바꾸기로 옮길 수 있다.)
+ */
+class NoteStorage {
+    // true이면 모든 메모를 하나의 세그먼트 파일에 저장하는 SegmentNoteStore를 사용한다.
+    // 기존의 "메모제목.txt" 파일들은 옮겨지지 않으므로 기본값은 FileNoteStore이다.
+    static final boolean USE_SEGMENT_STORE = false;
+    // true이면 같은 내용의 메모를 blob 하나로 저장하는 DedupNoteStore를 사용한다.
+    // 기존 저장소의 메모는 다시 저장될 때 옮겨진다.
+    // DedupNoteStore는 메모마다 blob 파일을 쓰고 감싼 저장소는 읽기만 하므로, USE_SEGMENT_STORE와 함께 쓰면 무시된다.
+    static final boolean USE_DEDUP_STORE = true;
+    // 메모 동기화 서버 주소. 에뮬레이터에서 개발 PC에 띄운 NoteSyncServer(benchmarks 모듈의 테스트 소스)에 접속한다.
+    static final String SYNC_SERVER_URL = "http://10.0.2.2:8080" + NoteSyncProtocol.SYNC_PATH;
+
+    private static DeltaNoteStore s_store;          // 메모 저장소
+    private static NoteCatalog s_catalog;           // 메모 목록 카탈로그
+    private static NoteJournal s_journal;           // 메모 저장/삭제 선행 기록
+    private static NoteWriter s_writer;             // 백그라운드 저장 담당
+    private static NoteSearchIndex s_searchIndex;   // 전문 검색 색인
+    private static NoteContentCache s_contentCache; // 디코딩된 메모 내용 캐시
+    private static NoteDraftStore s_draftStore;     // 작성 중인 메모 임시 저장소
+    private static NoteSyncEngine s_syncEngine;     // 메모 동기화 엔진
+
+    private NoteStorage() {
+    }
+
+    /*
+                < 메모 저장소를 반환하는 메소드 >
+     */
+    static synchronized NoteStore getStore(Context context) {
+        if(s_store == null) {
+            Context appContext = context.getApplicationContext();
+            NoteStore store;
+            if(USE_SEGMENT_STORE)
+                store = new SegmentNoteStore(appContext.getDir("notes", Context.MODE_PRIVATE));
+            else
+                store = new FileNoteStore(appContext.getFilesDir());
+            if(USE_DEDUP_STORE && !USE_SEGMENT_STORE)
+                store = new DedupNoteStore(appContext.getDir("blobs", Context.MODE_PRIVATE), store);
+            s_store = new DeltaNoteStore(store, appContext.getDir("deltas", Context.MODE_PRIVATE));
+        }
+        return s_store;
+    }
+
+    /*
+                < 메모 제목별 잠금을 반환하는 메소드 >
+     저장소와 카탈로그를 함께 갱신할 때 같은 제목에 대한 작업이 끼어들지 않도록 잡는다.
+     */
+    static synchronized NoteLocks getLocks(Context context) {
+        getStore(context);
+        return s_store.getLocks();
+    }
+
+    /*
+                < 메모 목록 카탈로그를 반환하는 메소드 >
+     처음 호출될 때 이전 실행에서 끝나지 않은 저장/삭제를 정리한 뒤 카탈로그 파일을 불러온다.
+     정리된 메모들은 검색 색인과 동기화 엔진에도 알린 뒤 선행 기록을 비운다.
+     (저장이 끝나지 않았던 메모는 지워졌거나 새 내용으로 남았으므로 색인을 다시 만들고 서버에 보내야 한다.)
+     */
+    static synchronized NoteCatalog getCatalog(Context context) {
+        if(s_catalog == null) {
+            NoteJournal journal = new NoteJournal(new File(getCatalogDir(context), NoteJournal.JOURNAL_FILENAME));
+            s_catalog = new NoteCatalog(getStore(context), new File(getCatalogDir(context), NoteCatalog.CATALOG_FILENAME));
+            ArrayList<String> recoveredTitles = journal.recover(s_store);
+            s_catalog.load(recoveredTitles);
+            if(!recoveredTitles.isEmpty()) {
+                getSearchIndex(context).invalidateNotes(recoveredTitles);
+                getSyncEngine(context).markChanged(recoveredTitles.toArray(new String[recoveredTitles.size()]));
+            }
+            journal.clear();
+            s_journal = journal;
+        }
+        return s_catalog;
+    }
+
+    /*
+                < 메모 저장/삭제 선행 기록을 반환하는 메소드 >
+     카탈로그를 불러올 때 이전 기록이 정리되므로 카탈로그를 먼저 불러온다.
+     */
+    static synchronized NoteJournal getJournal(Context context) {
+        getCatalog(context);
+        return s_journal;
+    }
+
+    /*
+                < 검색 색인을 반환하는 메소드 >
+     색인은 처음 검색하거나 변경될 때 불러오므로 UI 스레드에서 호출해도 된다.
+     */
+    static synchronized NoteSearchIndex getSearchIndex(Context context) {
+        if(s_searchIndex == null)
+            s_searchIndex = new NoteSearchIndex(getStore(context), getCatalog(context),
+                    new File(getCatalogDir(context), NoteSearchIndex.INDEX_FILENAME));
+        return s_searchIndex;
+    }
+
+    /*
+                < 백그라운드 저장 담당 객체를 반환하는 메소드 >
+     */
+    static synchronized NoteWriter getWriter(Context context) {
+        if(s_writer == null) {
+            getStore(context);
+            s_writer = new NoteWriter(s_store, getCatalog(context), getJournal(context), getSearchIndex(context),
+                    getContentCache(context), getDraftStore(context), getSyncEngine(context));
+        }
+        return s_writer;
+    }
+
+    /*
+                < 메모 내용 캐시를 반환하는 메소드 >
+     앱이 사용할 수 있는 힙 크기의 1/16까지 메모 내용을 보관한다. (한 글자는 2바이트)
+     시스템이 메모리 부족을 알리면 onTrimMemory()에서 캐시를 줄이거나 비운다.
+     */
+    static synchronized NoteContentCache getContentCache(Context context) {
+        if(s_contentCache == null) {
+            Context appContext = context.getApplicationContext();
+            ActivityManager activityManager = (ActivityManager) appContext.getSystemService(Context.ACTIVITY_SERVICE);
+            final NoteContentCache cache = new NoteContentCache(activityManager.getMemoryClass() * 1024 * 1024 / 16 / 2);
+
+            appContext.registerComponentCallbacks(new ComponentCallbacks2() {
+                @Override
+                public void onTrimMemory(int level) {
+                    // 앱이 백그라운드에 있거나 메모리가 매우 부족하면 캐시를 비우고, 조금 부족하면 절반으로 줄인다.
+                    if(level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_CRITICAL)
+                        cache.trimToSize(0);
+                    else if(level >= TRIM_MEMORY_RUNNING_LOW)
+                        cache.trimToSize(cache.getMaxChars() / 2);
+                }
+
+                @Override
+                public void onLowMemory() {
+                    cache.trimToSize(0);
+                }
+
+                @Override
+                public void onConfigurationChanged(Configuration newConfig) {
+                }
+            });
+            s_contentCache = cache;
+        }
+        return s_contentCache;
+    }
+
+    /*
+                < 작성 중인 메모 임시 저장소를 반환하는 메소드 >
+     */
+    static synchronized NoteDraftStore getDraftStore(Context context) {
+        if(s_draftStore == null)
+            s_draftStore = new NoteDraftStore(context.getApplicationContext().getDir("drafts", Context.MODE_PRIVATE));
+        return s_draftStore;
+    }
+
+    /*
+                < 메모 동기화 엔진을 반환하는 메소드 >
+     */
+    static synchronized NoteSyncEngine getSyncEngine(Context context) {
+        if(s_syncEngine == null)
+            s_syncEngine = new NoteSyncEngine(SYNC_SERVER_URL, getStore(context), getCatalog(context), getCatalogDir(context));
+        return s_syncEngine;
+    }
+
+    /*
+                < 성능 측정 결과를 내보낼 파일을 반환하는 메소드 >
+     메모 디렉터리에 두면 메모로 보이므로 별도인 "metrics" 디렉터리에 저장한다.
+     */
+    static File getMetricsFile(Context context) {
+        return new File(context.getApplicationContext().getDir("metrics", Context.MODE_PRIVATE), NoteMetrics.METRICS_FILENAME);
+    }
+
+    /*
+                < 메모 목록 스냅샷 파일을 반환하는 메소드 >
+     */
+    static File getListSnapshotFile(Context context) {
+        return new File(getCatalogDir(context), NoteListSnapshot.SNAPSHOT_FILENAME);
+    }
+
+    private static File getCatalogDir(Context context) {
+        return context.getApplicationContext().getDir("catalog", Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+/*
+            < 메모 저장소 인터페이스 >
+ 엑티비티와 NoteCatalog, NoteWriter, NoteSearchIndex는 openFileOutput()/openFileInput()/deleteFile()을
+ 직접 호출하지 않고 이 인터페이스를 통해 메모를 읽고, 쓰고, 지운다.
+ 구현 클래스는 다음과 같다.
+    - FileNoteStore: 메모 하나를 "메모제목.txt" 파일 하나로 저장한다. (기본)
+    - SegmentNoteStore: 모든 메모를 하나의 추가 전용(append-only) 세그먼트 파일에 저장한다.
+    - DedupNoteStore: 메모 내용의 해시로 blob 파일을 만들어 같은 내용의 메모들이 함께 사용한다.
+                      (다른 저장소를 이전 저장소로 두고 그 위에서 동작한다.)
+ */
+interface NoteStore {
+    /*
+                < 메모들을 한 번에 저장하는 메소드 >
+     titles[i] 메모의 내용으로 bodies[i]를 저장한다.
+     각 메모의 저장 결과를 errors[i]에 기록한다. (성공하면 null)
+     */
+    void writeNotes(String[] titles, byte[][] bodies, IOException[] errors);
+
+    /*
+                < 이미 디스크에 기록된 파일을 메모로 저장하는 메소드 >
+     file은 NoteCodec으로 인코딩되어 fsync까지 끝난 메모 내용이어야 한다.
+     가능하면 내용을 다시 쓰지 않고 파일을 옮기며, 저장에 성공하면 file은 더 이상 남아있지 않다.
+     (임시 저장된 메모를 최종 저장할 때 사용한다.)
+     */
+    void adoptNote(String title, File file) throws IOException;
+
+    /*
+                < 메모 내용을 읽는 InputStream을 여는 메소드 >
+     */
+    InputStream openNote(String title) throws IOException;
+
+    /*
+                < 메모를 삭제하는 메소드 >
+     삭제에 성공하면 true를 반환한다.
+     */
+    boolean deleteNote(String title);
+
+    /*
+                < 메모들을 한 번에 삭제하는 메소드 >
+     각 메모의 삭제 결과를 isDeleted[i]에 기록한다.
+     여러 메모를 지울 때 메모마다 deleteNote()를 호출하는 대신 기록과 fsync를 한 번에 한다.
+     */
+    void deleteNotes(String[] titles, boolean[] isDeleted);
+
+    /*
+                < 메모 하나의 카탈로그 항목(크기, 수정시각)을 반환하는 메소드 >
+     메모가 없으면 null을 반환한다.
+     */
+    NoteCatalog.Entry stat(String title);
+
+    /*
+                < 저장된 모든 메모의 카탈로그 항목을 반환하는 메소드 >
+     카탈로그가 없거나 오래된 경우에만 호출된다.
+     */
+    ArrayList<NoteCatalog.Entry> scan();
+
+    /*
+                < 저장소의 현재 상태를 나타내는 값을 반환하는 메소드 >
+     메모가 저장되거나 삭제되면 바뀌는 값으로, 카탈로그가 오래되었는지(stale) 판단하는 데 쓰인다.
+     */
+    long getStamp();
+}
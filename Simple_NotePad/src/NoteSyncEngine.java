@@ -0,0 +1,493 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+            < 메모 동기화 엔진 >
+ 메모마다 마지막으로 알고 있는 서버 버전과, 마지막 동기화 이후에 바뀐 메모들(dirty)을 기록한다.
+ NoteWriter가 메모를 저장하거나 삭제할 때마다 markChanged()로 바뀐 메모를 알린다.
+ sync()는 바뀐 메모들만 모아 NoteSyncProtocol 요청(gzip 압축)으로 서버에 보내고,
+ 서버가 돌려준 원격 변경들을 NoteWriter로 저장소와 카탈로그에 반영한 뒤 바뀐 메모 제목들을 반환한다.
+ 목록 화면은 반환된 제목들만 다시 그린다.
+    - 요청 하나에 담는 메모 내용은 MAX_BATCH_BYTES 정도로 제한하고, 넘치면 여러 요청으로 나눠 보낸다.
+    - 서버에서 거절(CONFLICT)된 저장은 로컬 내용을 "제목 (i)" 메모로 따로 저장하고 서버의 내용을 받아온다.
+    - 아직 보내지 못한 로컬 변경이 있는 메모의 원격 변경은 반영하지 않는다. (다음 동기화 때 충돌로 처리된다.)
+
+ 상태 파일(STATE_FILENAME) : 매직넘버, 클라이언트 ID, 커서, 다음 변경 번호, 메모별 서버 버전들, 바뀐 메모들
+ 동기화 사이에 바뀐 메모 제목은 상태 파일을 매번 다시 쓰지 않고 변경 기록 파일(DIRTY_LOG_FILENAME) 끝에 덧붙인다.
+ 동기화가 끝나면 상태 파일을 다시 쓰고 변경 기록 파일을 지운다.
+ */
+class NoteSyncEngine {
+    static final String STATE_FILENAME = "sync.state";
+    static final String DIRTY_LOG_FILENAME = "sync.dirty";
+
+    private static final int STATE_MAGIC = 0x4E535331;     // "NSS1"
+    private static final int MAX_BATCH_BYTES = 512 * 1024;  // 요청 하나에 담을 메모 내용의 크기
+    private static final int TIMEOUT_MILLIS = 15 * 1000;
+
+    /*
+                < 동기화 결과 >
+     도중에 실패해도 그 전까지 반영된 결과가 담기며, 실패한 원인은 error에 담긴다.
+     */
+    static class Result {
+        final ArrayList<String> changedTitles;  // 원격 변경이나 충돌로 저장소에서 바뀐 메모 제목들
+        final int numOfSent;                    // 서버에 반영된 로컬 변경 수
+        final int numOfReceived;                // 저장소에 반영된 원격 변경 수 (충돌한 로컬 내용을 따로 저장한 메모는 빠진다.)
+        final int numOfConflicts;               // 서버에서 거절된 로컬 변경 수
+        final IOException error;                // 동기화가 도중에 실패한 원인 (모두 끝났으면 null)
+
+        Result(ArrayList<String> changedTitles, int numOfSent, int numOfReceived, int numOfConflicts,
+               IOException error) {
+            this.changedTitles = changedTitles;
+            this.numOfSent = numOfSent;
+            this.numOfReceived = numOfReceived;
+            this.numOfConflicts = numOfConflicts;
+            this.error = error;
+        }
+    }
+
+    private final String m_serverUrl;       // 동기화 서버 주소
+    private final NoteStore m_store;        // 보낼 메모를 읽을 저장소
+    private final NoteCatalog m_catalog;    // 처음 동기화할 때 보낼 메모 목록, 충돌한 메모의 제목을 정할 카탈로그
+    private final File m_stateFile;         // 상태 파일
+    private final File m_dirtyLogFile;      // 변경 기록 파일
+    private final Object m_syncLock = new Object();    // sync()가 동시에 실행되지 않도록 잡는 잠금
+
+    private boolean m_isLoaded;
+    private String m_clientId;              // 서버가 이 기기의 변경을 구분하는 ID
+    private long m_cursor;                  // 서버에서 마지막으로 받아온 버전
+    private long m_nextChangeNo = 1;        // 다음 로컬 변경 번호
+    private final HashMap<String, Long> m_versions = new HashMap<>();        // 메모 제목 -> 마지막으로 알고 있는 서버 버전
+    private final LinkedHashMap<String, Long> m_dirty = new LinkedHashMap<>();  // 바뀐 메모 제목 -> 마지막 로컬 변경 번호
+
+    NoteSyncEngine(String serverUrl, NoteStore store, NoteCatalog catalog, File stateDir) {
+        m_serverUrl = serverUrl;
+        m_store = store;
+        m_catalog = catalog;
+        m_stateFile = new File(stateDir, STATE_FILENAME);
+        m_dirtyLogFile = new File(stateDir, DIRTY_LOG_FILENAME);
+    }
+
+    /*
+                < 메모들이 바뀌었음을 기록하는 메소드 >
+     저장/삭제가 끝난 뒤 NoteWriter가 호출한다. 변경 기록 파일 끝에 제목들을 덧붙인다.
+     */
+    synchronized void markChanged(String[] titles) {
+        load();
+        for(String title : titles) {
+            m_dirty.remove(title);
+            m_dirty.put(title, m_nextChangeNo++);
+        }
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(m_dirtyLogFile, true)));
+            for(String title : titles)
+                out.writeUTF(title);
+            out.close();
+            out = null;
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /*
+                < 아직 서버에 보내지 않은 변경 수를 반환하는 메소드 >
+     */
+    synchronized int getNumOfChanged() {
+        load();
+        return m_dirty.size();
+    }
+
+    /*
+                < 서버와 동기화하는 메소드 >
+     1. 바뀐 메모들을 MAX_BATCH_BYTES 단위로 나눠 보낸다. 저장소에 없는 메모는 삭제로 보낸다.
+        바뀐 메모가 없어도 원격 변경을 받아오기 위해 요청을 한 번은 보낸다.
+     2. 반영된 메모는 서버 버전을 기록하고, 보내는 동안 다시 바뀌지 않았으면 바뀐 메모에서 뺀다.
+        거절된 저장은 로컬 내용을 새 제목으로 저장한다.
+     3. 원격 변경들을 writer로 저장/삭제하고 모두 끝날 때까지 기다린다.
+     4. 상태 파일을 다시 쓴다.
+     요청은 묶음마다 따로 반영되므로, 통신에 실패해도 예외를 던지지 않고 그 전까지 반영된 결과와 함께
+     실패 원인을 Result.error에 담아 반환한다. 이미 반영된 요청의 결과는 상태 파일에 기록된다.
+     */
+    Result sync(NoteWriter writer) {
+        synchronized (m_syncLock) {
+            ArrayList<String> changedTitles = new ArrayList<>();
+            int[] numOfReceived = new int[1];
+            int numOfSent = 0;
+            int numOfConflicts = 0;
+            IOException error = null;
+
+            ArrayList<String> pendingTitles;
+            synchronized (this) {
+                load();
+                pendingTitles = new ArrayList<>(m_dirty.keySet());
+            }
+
+            try {
+                int next = 0;
+                do {
+                    // 1. 요청 하나에 담을 변경들을 만든다.
+                    ArrayList<NoteSyncProtocol.Change> changes = new ArrayList<>();
+                    ArrayList<Long> changeNos = new ArrayList<>();
+                    String clientId;
+                    long cursor;
+                    int batchBytes = 0;
+                    while(next < pendingTitles.size() && batchBytes < MAX_BATCH_BYTES) {
+                        String title = pendingTitles.get(next++);
+                        Long changeNo;
+                        long baseVersion;
+                        synchronized (this) {
+                            changeNo = m_dirty.get(title);
+                            baseVersion = getVersion(title);
+                        }
+                        if(changeNo == null)
+                            continue;
+
+                        NoteSyncProtocol.Change change = makeChange(title, baseVersion);
+                        if(change == null) {
+                            // 서버에 올린 적 없이 삭제된 메모는 보낼 것이 없다.
+                            if(baseVersion == 0 && m_store.stat(title) == null)
+                                forgetChange(title, changeNo);
+                            continue;
+                        }
+                        changes.add(change);
+                        changeNos.add(changeNo);
+                        if(change.body != null)
+                            batchBytes += change.body.length;
+                    }
+                    synchronized (this) {
+                        clientId = m_clientId;
+                        cursor = m_cursor;
+                    }
+
+                    NoteSyncProtocol.Response response =
+                            post(new NoteSyncProtocol.Request(clientId, cursor, changes));
+                    if(response.statuses.length != changes.size())
+                        throw new IOException("동기화 응답의 결과 수가 요청과 다릅니다.");
+
+                    // 2. 보낸 변경들의 결과를 기록한다.
+                    ArrayList<NoteSyncProtocol.Change> conflictedPuts = new ArrayList<>();
+                    synchronized (this) {
+                        for(int i = 0; i < changes.size(); i++) {
+                            String title = changes.get(i).title;
+                            m_versions.put(title, response.versions[i]);
+                            if(response.statuses[i] == NoteSyncProtocol.STATUS_ACCEPTED) {
+                                numOfSent++;
+                            } else {
+                                numOfConflicts++;
+                                if(changes.get(i).op == NoteSyncProtocol.OP_PUT)
+                                    conflictedPuts.add(changes.get(i));
+                            }
+                            if(changeNos.get(i).equals(m_dirty.get(title)))
+                                m_dirty.remove(title);
+                        }
+                    }
+
+                    // 3. 충돌한 로컬 내용을 따로 저장하고 원격 변경들을 반영한다.
+                    if(applyChanges(writer, conflictedPuts, response.remoteChanges, changedTitles, numOfReceived)) {
+                        synchronized (this) {
+                            m_cursor = Math.max(m_cursor, response.cursor);
+                        }
+                    }
+                } while(next < pendingTitles.size());
+            } catch (IOException e) {
+                e.printStackTrace();
+                error = e;
+            } finally {
+                // 4. 지금까지의 결과를 상태 파일에 기록한다.
+                saveState();
+            }
+            return new Result(changedTitles, numOfSent, numOfReceived[0], numOfConflicts, error);
+        }
+    }
+
+    /*
+                < 보낼 변경을 만드는 메소드 >
+     저장소에 있으면 메모 내용을 UTF-8로 담은 PUT, 없으면 DELETE를 만든다.
+     서버에 없는 메모의 삭제이거나 메모를 읽지 못하면 null을 반환한다. (바뀐 메모로 남아 다음 동기화 때 다시 보낸다.)
+     */
+    private NoteSyncProtocol.Change makeChange(String title, long baseVersion) {
+        if(m_store.stat(title) == null) {
+            if(baseVersion == 0)
+                return null;
+            return new NoteSyncProtocol.Change(NoteSyncProtocol.OP_DELETE, title, baseVersion, null);
+        }
+
+        NoteReader reader = null;
+        try {
+            reader = new NoteReader(m_store.openNote(title));
+            StringBuilder body = new StringBuilder();
+            String page;
+            while((page = reader.readPage()) != null)
+                body.append(page);
+            return new NoteSyncProtocol.Change(NoteSyncProtocol.OP_PUT, title, baseVersion,
+                    body.toString().getBytes(NoteReader.UTF_8));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /*
+                < 충돌한 로컬 내용과 원격 변경들을 저장소에 반영하는 메소드 >
+     저장은 writer의 저장 스레드에서 처리되므로 모두 끝날 때까지 기다린다.
+     바뀐 메모 제목들을 changedTitles에 넣고, 반영된 원격 변경 수를 numOfReceived[0]에 더한다.
+     모두 반영되었으면 true를 반환한다.
+     */
+    private boolean applyChanges(NoteWriter writer, ArrayList<NoteSyncProtocol.Change> conflictedPuts,
+                                 ArrayList<NoteSyncProtocol.Change> remoteChanges,
+                                 final ArrayList<String> changedTitles, final int[] numOfReceived) throws IOException {
+        ArrayList<NoteSyncProtocol.Change> remotePuts = new ArrayList<>();
+        ArrayList<String> remoteDeletes = new ArrayList<>();
+        synchronized (this) {
+            for(NoteSyncProtocol.Change change : remoteChanges) {
+                if(m_dirty.containsKey(change.title))
+                    continue;
+                m_versions.put(change.title, change.version);
+                if(change.op == NoteSyncProtocol.OP_PUT)
+                    remotePuts.add(change);
+                else
+                    remoteDeletes.add(change.title);
+            }
+        }
+
+        final CountDownLatch latch = new CountDownLatch(conflictedPuts.size() + remotePuts.size());
+        final AtomicInteger numOfFailed = new AtomicInteger();
+        NoteWriter.Callback conflictCallback = new NoteWriter.Callback() {
+            @Override
+            public void onSaveCompleted(String title, IOException error) {
+                if(error == null) {
+                    synchronized (changedTitles) {
+                        changedTitles.add(title);
+                    }
+                } else {
+                    numOfFailed.incrementAndGet();
+                }
+                latch.countDown();
+            }
+        };
+        NoteWriter.Callback remoteCallback = new NoteWriter.Callback() {
+            @Override
+            public void onSaveCompleted(String title, IOException error) {
+                if(error == null) {
+                    synchronized (changedTitles) {
+                        changedTitles.add(title);
+                        numOfReceived[0]++;
+                    }
+                } else {
+                    numOfFailed.incrementAndGet();
+                }
+                latch.countDown();
+            }
+        };
+
+        // 로컬 내용을 새 제목으로 먼저 저장한 뒤 원래 제목에 서버의 내용을 저장한다.
+        for(NoteSyncProtocol.Change change : conflictedPuts)
+            writer.saveNew(change.title, new String(change.body, NoteReader.UTF_8), -1, conflictCallback);
+        for(NoteSyncProtocol.Change change : remotePuts)
+            writer.saveRemote(change.title, new String(change.body, NoteReader.UTF_8), remoteCallback);
+
+        if(!remoteDeletes.isEmpty()) {
+            ArrayList<String> deletedTitles = writer.deleteNotes(remoteDeletes.toArray(new String[remoteDeletes.size()]), true);
+            synchronized (changedTitles) {
+                changedTitles.addAll(deletedTitles);
+                numOfReceived[0] += deletedTitles.size();
+            }
+        }
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("동기화가 중단되었습니다.");
+        }
+        return numOfFailed.get() == 0;
+    }
+
+    /*
+                < 동기화 요청을 서버에 보내고 응답을 받는 메소드 >
+     */
+    private NoteSyncProtocol.Response post(NoteSyncProtocol.Request request) throws IOException {
+        byte[] body = NoteSyncProtocol.encodeRequest(request);
+        HttpURLConnection connection = (HttpURLConnection) new URL(m_serverUrl).openConnection();
+        try {
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", NoteSyncProtocol.CONTENT_TYPE);
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+
+            OutputStream out = connection.getOutputStream();
+            try {
+                out.write(body);
+            } finally {
+                out.close();
+            }
+
+            int responseCode = connection.getResponseCode();
+            if(responseCode != HttpURLConnection.HTTP_OK)
+                throw new IOException("동기화 서버 응답 코드: " + responseCode);
+
+            InputStream in = new BufferedInputStream(connection.getInputStream());
+            try {
+                return NoteSyncProtocol.decodeResponse(in);
+            } finally {
+                closeQuietly(in);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private long getVersion(String title) {
+        Long version = m_versions.get(title);
+        return (version == null) ? 0 : version;
+    }
+
+    private synchronized void forgetChange(String title, long changeNo) {
+        Long current = m_dirty.get(title);
+        if(current != null && current == changeNo)
+            m_dirty.remove(title);
+    }
+
+    /*
+                < 상태 파일과 변경 기록 파일을 불러오는 메소드 >
+     상태 파일이 없으면(처음 동기화) 새 클라이언트 ID를 만들고 카탈로그의 모든 메모를 바뀐 메모로 기록한다.
+     변경 기록 파일에서 덧붙이다 끊긴 부분은 무시한다.
+     */
+    private void load() {
+        if(m_isLoaded)
+            return;
+        m_isLoaded = true;
+
+        if(!readState()) {
+            m_clientId = UUID.randomUUID().toString();
+            m_cursor = 0;
+            m_versions.clear();
+            m_dirty.clear();
+            for(String title : m_catalog.getTitles())
+                m_dirty.put(title, m_nextChangeNo++);
+        }
+
+        if(m_dirtyLogFile.exists()) {
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(m_dirtyLogFile)));
+                while(true) {
+                    String title = in.readUTF();
+                    m_dirty.remove(title);
+                    m_dirty.put(title, m_nextChangeNo++);
+                }
+            } catch (EOFException e) {
+                // 기록의 끝 또는 덧붙이다 끊긴 제목
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                closeQuietly(in);
+            }
+        }
+    }
+
+    private boolean readState() {
+        if(!m_stateFile.exists())
+            return false;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(m_stateFile)));
+            if(in.readInt() != STATE_MAGIC)
+                return false;
+            m_clientId = in.readUTF();
+            m_cursor = in.readLong();
+            m_nextChangeNo = in.readLong();
+            int numOfVersions = in.readInt();
+            for(int i = 0; i < numOfVersions; i++)
+                m_versions.put(in.readUTF(), in.readLong());
+            int numOfDirty = in.readInt();
+            for(int i = 0; i < numOfDirty; i++)
+                m_dirty.put(in.readUTF(), in.readLong());
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /*
+                < 상태 파일을 다시 쓰는 메소드 >
+     임시 파일에 기록한 뒤 상태 파일로 이름을 바꾸고 변경 기록 파일을 지운다.
+     그 사이에 markChanged()가 끼어들지 않도록 잠근 상태에서 한다.
+     */
+    private synchronized void saveState() {
+        File tmpFile = new File(m_stateFile.getPath() + FileNoteStore.TMP_EXTENSION);
+        DataOutputStream out = null;
+        try {
+            FileOutputStream fileOut = new FileOutputStream(tmpFile);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(STATE_MAGIC);
+            out.writeUTF(m_clientId);
+            out.writeLong(m_cursor);
+            out.writeLong(m_nextChangeNo);
+            out.writeInt(m_versions.size());
+            for(Map.Entry<String, Long> version : m_versions.entrySet()) {
+                out.writeUTF(version.getKey());
+                out.writeLong(version.getValue());
+            }
+            out.writeInt(m_dirty.size());
+            for(Map.Entry<String, Long> dirty : m_dirty.entrySet()) {
+                out.writeUTF(dirty.getKey());
+                out.writeLong(dirty.getValue());
+            }
+            out.flush();
+            fileOut.getFD().sync();
+            out.close();
+            out = null;
+
+            if(!tmpFile.renameTo(m_stateFile))
+                throw new IOException("동기화 상태 파일을 교체하지 못했습니다.");
+            m_dirtyLogFile.delete();
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeQuietly(out);
+            tmpFile.delete();
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if(closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+            < 메모 동기화 프로토콜 >
+ 클라이언트(NoteSyncEngine)와 동기화 서버(NoteSyncServer)가 주고받는 요청과 응답을 인코딩/디코딩한다.
+ 요청과 응답은 서버의 SYNC_PATH로 보내는 HTTP POST의 본문으로 전송되며 본문 전체를 gzip으로 압축한다.
+ 서버는 메모가 바뀔 때마다 1씩 늘어나는 번호(버전)를 메모에 붙이고, 클라이언트는 마지막으로 받은 버전(커서)을 기억한다.
+    요청 : 매직넘버, 클라이언트 ID, 커서, 변경 수, 변경마다 [종류, 메모 제목, 기준 버전, (PUT이면) 메모 내용]
+           기준 버전은 클라이언트가 마지막으로 알고 있던 서버 버전이다. (처음 올리는 메모는 0)
+    응답 : 매직넘버, 새 커서, 요청의 변경마다 [결과, 버전], 원격 변경 수, 원격 변경마다 [종류, 메모 제목, 버전, (PUT이면) 메모 내용]
+           기준 버전이 서버의 버전과 다르면 CONFLICT로 거절하고 서버의 현재 메모를 원격 변경에 넣는다.
+           원격 변경에는 커서 이후에 다른 클라이언트가 바꾼 메모들이 들어있다.
+ 메모 내용은 UTF-8로 인코딩된 텍스트이다.
+ */
+class NoteSyncProtocol {
+    static final String SYNC_PATH = "/sync";
+    static final String CONTENT_TYPE = "application/octet-stream";
+
+    private static final int REQUEST_MAGIC = 0x4E535131;   // "NSQ1"
+    private static final int RESPONSE_MAGIC = 0x4E535231;  // "NSR1"
+
+    static final byte OP_PUT = 1;               // 메모 저장
+    static final byte OP_DELETE = 2;            // 메모 삭제
+    static final byte STATUS_ACCEPTED = 1;      // 변경이 반영됨
+    static final byte STATUS_CONFLICT = 2;      // 기준 버전이 달라 거절됨
+
+    /*
+                < 메모 하나의 변경 >
+     요청에서 version은 기준 버전이고, 응답의 원격 변경에서는 서버 버전이다.
+     */
+    static class Change {
+        final byte op;
+        final String title;
+        final long version;
+        final byte[] body;      // 메모 내용 (삭제이면 null)
+
+        Change(byte op, String title, long version, byte[] body) {
+            this.op = op;
+            this.title = title;
+            this.version = version;
+            this.body = body;
+        }
+    }
+
+    /*
+                < 동기화 요청 >
+     */
+    static class Request {
+        final String clientId;
+        final long cursor;
+        final ArrayList<Change> changes;
+
+        Request(String clientId, long cursor, ArrayList<Change> changes) {
+            this.clientId = clientId;
+            this.cursor = cursor;
+            this.changes = changes;
+        }
+    }
+
+    /*
+                < 동기화 응답 >
+     statuses[i], versions[i]는 요청의 i번째 변경의 결과와, 반영되었으면 새 버전 / 거절되었으면 서버의 현재 버전이다.
+     */
+    static class Response {
+        final long cursor;
+        final byte[] statuses;
+        final long[] versions;
+        final ArrayList<Change> remoteChanges;
+
+        Response(long cursor, byte[] statuses, long[] versions, ArrayList<Change> remoteChanges) {
+            this.cursor = cursor;
+            this.statuses = statuses;
+            this.versions = versions;
+            this.remoteChanges = remoteChanges;
+        }
+    }
+
+    private NoteSyncProtocol() {
+    }
+
+    static byte[] encodeRequest(Request request) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(new GZIPOutputStream(buffer));
+        out.writeInt(REQUEST_MAGIC);
+        out.writeUTF(request.clientId);
+        out.writeLong(request.cursor);
+        writeChanges(out, request.changes);
+        out.close();
+        return buffer.toByteArray();
+    }
+
+    static Request decodeRequest(InputStream in) throws IOException {
+        DataInputStream dataIn = new DataInputStream(new GZIPInputStream(in));
+        if(dataIn.readInt() != REQUEST_MAGIC)
+            throw new IOException("동기화 요청이 아닙니다.");
+        String clientId = dataIn.readUTF();
+        long cursor = dataIn.readLong();
+        return new Request(clientId, cursor, readChanges(dataIn));
+    }
+
+    static byte[] encodeResponse(Response response) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(new GZIPOutputStream(buffer));
+        out.writeInt(RESPONSE_MAGIC);
+        out.writeLong(response.cursor);
+        out.writeInt(response.statuses.length);
+        for(int i = 0; i < response.statuses.length; i++) {
+            out.writeByte(response.statuses[i]);
+            out.writeLong(response.versions[i]);
+        }
+        writeChanges(out, response.remoteChanges);
+        out.close();
+        return buffer.toByteArray();
+    }
+
+    static Response decodeResponse(InputStream in) throws IOException {
+        DataInputStream dataIn = new DataInputStream(new GZIPInputStream(in));
+        if(dataIn.readInt() != RESPONSE_MAGIC)
+            throw new IOException("동기화 응답이 아닙니다.");
+        long cursor = dataIn.readLong();
+        int numOfResults = dataIn.readInt();
+        byte[] statuses = new byte[numOfResults];
+        long[] versions = new long[numOfResults];
+        for(int i = 0; i < numOfResults; i++) {
+            statuses[i] = dataIn.readByte();
+            versions[i] = dataIn.readLong();
+        }
+        return new Response(cursor, statuses, versions, readChanges(dataIn));
+    }
+
+    private static void writeChanges(DataOutputStream out, ArrayList<Change> changes) throws IOException {
+        out.writeInt(changes.size());
+        for(Change change : changes) {
+            out.writeByte(change.op);
+            out.writeUTF(change.title);
+            out.writeLong(change.version);
+            if(change.op == OP_PUT) {
+                out.writeInt(change.body.length);
+                out.write(change.body);
+            }
+        }
+    }
+
+    private static ArrayList<Change> readChanges(DataInputStream in) throws IOException {
+        int numOfChanges = in.readInt();
+        ArrayList<Change> changes = new ArrayList<>();
+        for(int i = 0; i < numOfChanges; i++) {
+            byte op = in.readByte();
+            String title = in.readUTF();
+            long version = in.readLong();
+            byte[] body = null;
+            if(op == OP_PUT) {
+                int length = in.readInt();
+                if(length < 0)
+                    throw new IOException("메모 내용의 길이가 잘못되었습니다.");
+                body = new byte[length];
+                in.readFully(body);
+            } else if(op != OP_DELETE) {
+                throw new IOException("알 수 없는 변경 종류: " + op);
+            }
+            changes.add(new Change(op, title, version, body));
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,348 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/*
+            < 메모를 백그라운드에서 저장하는 클래스 >
+ UI 스레드 대신 저장 전용 스레드에서 NoteStore에 메모를 쓴다.
+ 저장 스레드가 일하는 동안 들어온 저장 요청들은 한 번에 모아서 NoteStore.writeNotes()에 넘기므로
+ fsync가 연달아 호출되거나(FileNoteStore) 한 번만 호출된다(SegmentNoteStore).
+ 기존 메모를 수정한 경우에는 수정 내용(NoteDelta)만 DeltaNoteStore에 덧붙이고,
+ 수정 기록이 너무 커졌을 때만 메모 전체를 다시 쓴다.
+ 새 메모의 내용이 이미 임시 저장(NoteDraftStore)되어 있으면 임시 저장 파일을 옮겨서 메모 내용을 다시 쓰지 않는다.
+ 저장이 끝나면 카탈로그와 검색 색인, 메모 내용 캐시에 반영하고 요청마다 완료 콜백을 호출한다.
+ 저장되거나 삭제된 메모는 동기화 엔진(NoteSyncEngine)에 바뀐 메모로 알린다. (서버에서 받아온 변경은 제외한다.)
+ */
+class NoteWriter {
+    /*
+                < 저장 완료 콜백 인터페이스 >
+     저장 스레드에서 호출되므로 UI를 변경하려면 runOnUiThread()를 이용해야 한다.
+     저장에 실패하면 error에 원인이 전달되고, 성공하면 null이다.
+     */
+    interface Callback {
+        void onSaveCompleted(String title, IOException error);
+    }
+
+    /*
+                < 저장 요청 >
+     */
+    private static class SaveRequest {
+        final String title;
+        final String body;
+        final ArrayList<NoteDelta.Edit> edits;  // 수정 내용 (메모 전체를 저장하는 경우 null)
+        final NoteContentCache.Stamp baseStamp; // edits를 기록하기 시작할 때 불러온 메모의 수정 스탬프
+        final int draftSeq;                     // body가 임시 저장된 번호 (임시 저장되지 않았으면 -1)
+        final boolean isNewTitle;               // 저장 스레드에서 중복되지 않는 제목으로 바꿔야 하면 true
+        final boolean isRemote;                 // 동기화 서버에서 받아온 메모이면 true
+        final Callback callback;
+        final long startNanos = NoteMetrics.start();    // 저장을 요청한 시각 (측정이 꺼져 있으면 0)
+
+        SaveRequest(String title, String body, ArrayList<NoteDelta.Edit> edits, NoteContentCache.Stamp baseStamp,
+                    int draftSeq, boolean isNewTitle, boolean isRemote, Callback callback) {
+            this.title = title;
+            this.body = body;
+            this.edits = edits;
+            this.baseStamp = baseStamp;
+            this.draftSeq = draftSeq;
+            this.isNewTitle = isNewTitle;
+            this.isRemote = isRemote;
+            this.callback = callback;
+        }
+    }
+
+    private final DeltaNoteStore m_store;           // 메모를 저장할 저장소
+    private final NoteCatalog m_catalog;            // 저장된 메모를 반영할 카탈로그
+    private final NoteJournal m_journal;            // 저장 시작과 완료를 기록할 선행 기록
+    private final NoteSearchIndex m_searchIndex;    // 저장된 메모를 반영할 검색 색인
+    private final NoteContentCache m_contentCache;  // 저장된 메모의 이전 내용을 지울 캐시
+    private final NoteDraftStore m_draftStore;      // 새 메모의 임시 저장 파일을 넘겨받을 저장소
+    private final NoteSyncEngine m_syncEngine;      // 저장/삭제된 메모를 알릴 동기화 엔진
+    private final ExecutorService m_executor = Executors.newSingleThreadExecutor();    // 저장 전용 스레드
+    private ArrayList<SaveRequest> m_pendingRequests = new ArrayList<>();   // 아직 처리되지 않은 저장 요청들
+
+    NoteWriter(DeltaNoteStore store, NoteCatalog catalog, NoteJournal journal, NoteSearchIndex searchIndex,
+               NoteContentCache contentCache, NoteDraftStore draftStore, NoteSyncEngine syncEngine) {
+        m_store = store;
+        m_catalog = catalog;
+        m_journal = journal;
+        m_searchIndex = searchIndex;
+        m_contentCache = contentCache;
+        m_draftStore = draftStore;
+        m_syncEngine = syncEngine;
+    }
+
+    /*
+                < 메모 저장을 요청하는 메소드 >
+     요청을 대기 목록에 넣고, 대기 목록이 비어있었다면 저장 스레드에 처리 작업을 맡긴다.
+     저장 스레드가 바쁜 동안 들어온 요청들은 다음 처리 작업에서 한 번에 처리된다.
+     메모 내용은 저장 스레드에서 UTF-8로 인코딩된다.
+     title은 NoteCatalog.resolveUniqueTitle()로 미리 정한 제목이어야 한다.
+     */
+    void save(String title, String body, Callback callback) {
+        enqueue(new SaveRequest(title, body, null, null, -1, false, false, callback));
+    }
+
+    /*
+                < 사용자가 작성한 새 메모의 저장을 요청하는 메소드 >
+     같은 제목의 메모가 있으면 저장 스레드에서 NoteCatalog.resolveUniqueTitle()로 "메모제목 (i)"를 할당한다.
+     (카탈로그를 처음 불러오는 경우 UI 스레드가 기다리지 않도록 한다.) 실제로 저장된 제목은 콜백으로 전달된다.
+     draftSeq는 body를 임시 저장할 때 NoteDraftStore.saveNewDraft()가 반환한 번호이다. (임시 저장되지 않았으면 -1)
+     임시 저장 파일에 body가 그대로 기록되어 있으면 그 파일을 메모로 옮기고, 아니면 메모 전체를 저장한다.
+     */
+    void saveNew(String title, String body, int draftSeq, Callback callback) {
+        enqueue(new SaveRequest(title, body, null, null, draftSeq, true, false, callback));
+    }
+
+    /*
+                < 기존 메모의 수정 내용 저장을 요청하는 메소드 >
+     edits는 메모를 불러온 뒤 기록한 수정 내용이고, body는 수정된 메모 전체 내용이다.
+     baseStamp는 메모를 불러올 때의 수정 스탬프(NoteContentCache.getStamp())이다.
+     body는 검색 색인을 갱신하거나, 수정 기록이 너무 커졌거나 그 사이에 메모가 다시 저장되어(동기화 등)
+     edits를 지금 메모에 적용할 수 없을 때 메모 전체를 다시 쓰는 데 사용된다.
+     */
+    void saveEdits(String title, NoteContentCache.Stamp baseStamp, ArrayList<NoteDelta.Edit> edits, String body, Callback callback) {
+        enqueue(new SaveRequest(title, body, edits, baseStamp, -1, false, false, callback));
+    }
+
+    /*
+                < 동기화 서버에서 받아온 메모의 저장을 요청하는 메소드 >
+     메모 전체를 저장하며, 저장된 메모를 동기화 엔진에 다시 바뀐 메모로 알리지 않는다.
+     */
+    void saveRemote(String title, String body, Callback callback) {
+        enqueue(new SaveRequest(title, body, null, null, -1, false, true, callback));
+    }
+
+    /*
+                < 메모들을 삭제하는 메소드 >
+     호출한 스레드에서 바로 삭제한다. 메모들의 잠금을 한 번에 잡고 선행 기록에 삭제 시작을 남긴 뒤,
+     저장소에서 한 번에 지우고(NoteStore.deleteNotes()) 카탈로그와 캐시에도 반영한다.
+     isRemote가 false이면 삭제된 메모들을 동기화 엔진에 알린다.
+     검색 색인은 불러오는 데 시간이 걸릴 수 있으므로 저장 스레드에서 지운다.
+     삭제된 메모 제목들을 반환한다.
+     */
+    ArrayList<String> deleteNotes(String[] titles, boolean isRemote) {
+        long start = NoteMetrics.start();
+        boolean[] isDeleted = new boolean[titles.length];
+        final ArrayList<String> deletedTitles = new ArrayList<>();
+
+        int[] stripes = m_store.getLocks().lockAll(titles);
+        try {
+            long seq = m_journal.begin(NoteJournal.OP_DELETE, titles);
+            try {
+                m_store.deleteNotes(titles, isDeleted);
+                for(int i = 0; i < titles.length; i++) {
+                    if(isDeleted[i]) {
+                        deletedTitles.add(titles[i]);
+                        m_contentCache.remove(titles[i]);
+                    }
+                }
+                m_catalog.removeNotes(deletedTitles);
+            } finally {
+                m_journal.commit(seq);
+            }
+        } finally {
+            m_store.getLocks().unlockAll(stripes);
+        }
+        if(deletedTitles.isEmpty())
+            return deletedTitles;
+
+        if(!isRemote)
+            m_syncEngine.markChanged(deletedTitles.toArray(new String[deletedTitles.size()]));
+        NoteMetrics.stop(NoteMetrics.DELETE, start);
+
+        m_executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                m_searchIndex.removeNotes(deletedTitles);
+            }
+        });
+        return deletedTitles;
+    }
+
+    /*
+                < 저장 스레드를 종료하는 메소드 >
+     이미 요청된 저장과 검색 색인 반영이 모두 끝날 때까지 기다린다. 종료한 뒤에는 저장을 요청할 수 없다.
+     (앱에서는 프로세스가 끝날 때까지 저장 스레드를 쓰므로 테스트와 벤치마크에서 저장소를 지우기 전에 호출한다.)
+     */
+    void close() throws InterruptedException {
+        m_executor.shutdown();
+        m_executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    private void enqueue(SaveRequest request) {
+        boolean isFirstRequest;
+        synchronized (this) {
+            isFirstRequest = m_pendingRequests.isEmpty();
+            m_pendingRequests.add(request);
+        }
+
+        if(isFirstRequest) {
+            m_executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ArrayList<SaveRequest> requests;
+                    synchronized (NoteWriter.this) {
+                        requests = m_pendingRequests;
+                        m_pendingRequests = new ArrayList<>();
+                    }
+                    writeBatch(requests);
+                }
+            });
+        }
+    }
+
+    /*
+                < 모아진 저장 요청들을 처리하는 메소드 >
+     0. 새 메모는 중복되지 않는 제목을 할당한다. (같은 묶음의 다른 요청과도 겹치지 않도록 예약된다.)
+     1. 수정 요청은 수정 내용만 덧붙이고, 수정 기록이 너무 커졌거나 불러온 뒤 메모가 다시 저장된 경우에는
+        메모 전체를 저장할 목록에 넣는다.
+        임시 저장된 새 메모는 임시 저장 파일을 옮기고, 옮기지 못하면 메모 전체를 저장할 목록에 넣는다.
+        나머지 메모들은 UTF-8로 인코딩하고 NoteCodec으로 압축해 NoteStore에 한 번에 저장한다.
+     2. 저장에 성공한 메모는 카탈로그에 반영하고 캐시에서 이전 내용을 지운다. 실패한 메모는 제목 예약을 취소한다.
+     3. 저장된 메모들을 동기화 엔진에 알리고 각 요청의 콜백을 호출한다.
+     4. 저장된 메모들을 검색 색인에 반영한다. (콜백보다 늦어도 되므로 마지막에 한다.)
+     저장소, 카탈로그, 코덱 등에서 예상하지 못한 RuntimeException이 생겨도 콜백을 기다리는 쪽(동기화, 가져오기)이
+     멈추지 않도록, 아직 콜백이 호출되지 않은 요청들은 finally에서 그 예외를 담은 IOException으로 콜백을 호출한다.
+     */
+    private void writeBatch(ArrayList<SaveRequest> requests) {
+        String[] titles = new String[requests.size()];
+        IOException[] errors = new IOException[requests.size()];
+        int numOfNotified = 0;      // 콜백을 호출한 요청 수
+        try {
+            for(int i = 0; i < titles.length; i++) {
+                SaveRequest request = requests.get(i);
+                titles[i] = request.isNewTitle ? m_catalog.resolveUniqueTitle(request.title) : request.title;
+            }
+
+            // 저장소와 카탈로그를 갱신하는 동안 같은 제목의 삭제가 끼어들지 않도록 잠근다.
+            // 그 사이에 앱이 종료되어도 다음 실행 때 정리되도록 선행 기록에 저장 시작과 완료를 남긴다.
+            int[] stripes = m_store.getLocks().lockAll(titles);
+            try {
+                long seq = m_journal.begin(NoteJournal.OP_SAVE, titles);
+                try {
+                    writeLocked(requests, titles, errors);
+                } finally {
+                    m_journal.commit(seq);
+                }
+            } finally {
+                m_store.getLocks().unlockAll(stripes);
+            }
+
+            // 콜백에서 동기화를 시작해도 저장된 메모가 빠지지 않도록 콜백보다 먼저 알린다.
+            ArrayList<String> changedTitles = new ArrayList<>();
+            for(int i = 0; i < titles.length; i++) {
+                if(errors[i] == null && !requests.get(i).isRemote)
+                    changedTitles.add(titles[i]);
+            }
+            if(!changedTitles.isEmpty())
+                m_syncEngine.markChanged(changedTitles.toArray(new String[changedTitles.size()]));
+
+            while(numOfNotified < titles.length) {
+                int i = numOfNotified++;
+                notifyCompleted(requests.get(i), titles[i], errors[i]);
+            }
+
+            for(int i = 0; i < titles.length; i++) {
+                if(errors[i] == null)
+                    m_searchIndex.addNote(titles[i], requests.get(i).body);
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            IOException error = new IOException("메모를 저장하는 중 오류가 생겼습니다.", e);
+            for(int i = numOfNotified; i < titles.length; i++) {
+                errors[i] = error;
+                if(titles[i] != null && requests.get(i).isNewTitle)
+                    m_catalog.releaseTitle(titles[i]);
+            }
+        } finally {
+            while(numOfNotified < titles.length) {
+                int i = numOfNotified++;
+                notifyCompleted(requests.get(i), (titles[i] == null) ? requests.get(i).title : titles[i], errors[i]);
+            }
+        }
+    }
+
+    /*
+                < 저장 요청의 완료 콜백을 호출하는 메소드 >
+     콜백에서 생긴 예외 때문에 같은 묶음의 다른 콜백이 호출되지 않는 일이 없도록 예외는 기록만 한다.
+     */
+    private void notifyCompleted(SaveRequest request, String title, IOException error) {
+        try {
+            if(request.callback != null)
+                request.callback.onSaveCompleted(title, error);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        NoteMetrics.stop(NoteMetrics.SAVE, request.startNanos);
+    }
+
+    /*
+                < 잠금을 잡은 상태에서 저장소에 쓰고 카탈로그에 반영하는 메소드 >
+     */
+    private void writeLocked(ArrayList<SaveRequest> requests, String[] titles, IOException[] errors) {
+        ArrayList<Integer> fullWrites = new ArrayList<>();     // 메모 전체를 저장할 요청들의 번호
+        for(int i = 0; i < titles.length; i++) {
+            if(requests.get(i).draftSeq >= 0) {
+                if(!adoptDraft(titles[i], requests.get(i).draftSeq))
+                    fullWrites.add(i);
+                continue;
+            }
+            if(requests.get(i).edits == null) {
+                fullWrites.add(i);
+                continue;
+            }
+            try {
+                if(!m_store.appendEdits(titles[i], requests.get(i).baseStamp, requests.get(i).edits))
+                    fullWrites.add(i);
+            } catch (IOException e) {
+                errors[i] = e;
+            }
+        }
+
+        if(!fullWrites.isEmpty()) {
+            String[] fullTitles = new String[fullWrites.size()];
+            byte[][] bodies = new byte[fullWrites.size()][];
+            IOException[] fullErrors = new IOException[fullWrites.size()];
+            for(int i = 0; i < fullTitles.length; i++) {
+                fullTitles[i] = titles[fullWrites.get(i)];
+                bodies[i] = NoteCodec.encode(requests.get(fullWrites.get(i)).body.getBytes(NoteReader.UTF_8));
+            }
+
+            m_store.writeNotes(fullTitles, bodies, fullErrors);
+            for(int i = 0; i < fullTitles.length; i++)
+                errors[fullWrites.get(i)] = fullErrors[i];
+        }
+
+        for(int i = 0; i < titles.length; i++) {
+            if(errors[i] == null) {
+                m_catalog.putNote(titles[i], requests.get(i).body);
+                m_contentCache.remove(titles[i]);
+            } else {
+                m_catalog.releaseTitle(titles[i]);
+            }
+        }
+    }
+
+    /*
+                < 임시 저장 파일을 메모로 옮기는 메소드 >
+     임시 저장 파일의 내용이 저장할 내용과 다르거나 옮기는데 실패하면 false를 반환한다.
+     */
+    private boolean adoptDraft(String title, int draftSeq) {
+        File draftFile = m_draftStore.takeNewDraft(draftSeq);
+        if(draftFile == null)
+            return false;
+        try {
+            m_store.adoptNote(title, draftFile);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            draftFile.delete();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,738 @@
+package io.github.sogoagain.simple_notepad;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/*
+            < 모든 메모를 하나의 세그먼트 파일에 저장하는 저장소 >
+ 메모를 파일 하나씩 만들지 않고 추가 전용(append-only) 세그먼트 파일 끝에 레코드로 덧붙인다.
+    - 세그먼트 파일: [헤더(매직넘버, 세그먼트 ID)][레코드][레코드]...
+    - 레코드: [payload 길이][payload: 종류(PUT/DEL), 수정시각, 메모 제목, 메모 내용][payload의 CRC32]
+ 메모를 삭제하면 삭제 표시(tombstone) 레코드를 덧붙인다.
+ 메모 제목 -> 메모 내용의 위치를 메모리의 색인(offset index)에 보관하므로 읽을 때 세그먼트를 스캔하지 않는다.
+ 색인은 주기적으로 힌트(hint) 파일에 저장되고, 다음 실행 때 힌트를 읽은 뒤 힌트 이후에 덧붙여진 레코드만 다시 읽는다.
+ 덮어써지거나 삭제된 레코드(garbage)가 세그먼트의 절반을 넘으면 백그라운드에서 살아있는 레코드만 새 세그먼트로 옮긴다(compaction).
+ */
+class SegmentNoteStore implements NoteStore {
+    static final String SEGMENT_FILENAME = "notes.seg";
+    private static final String HINT_FILENAME = "notes.seg.hint";
+    private static final String COMPACT_FILENAME = "notes.seg.compact";
+    private static final String CORRUPT_FILENAME = "notes.seg.corrupt";
+
+    private static final int SEGMENT_MAGIC = 0x4E534731;   // "NSG1"
+    private static final int HINT_MAGIC = 0x4E534831;      // "NSH1"
+    private static final int HEADER_SIZE = 12;             // 세그먼트 헤더 크기 (매직넘버 + 세그먼트 ID)
+    private static final int RECORD_OVERHEAD = 8;          // 레코드의 payload 길이와 CRC32 크기
+    private static final byte RECORD_PUT = 1;              // 메모 저장 레코드
+    private static final byte RECORD_DEL = 2;              // 메모 삭제 표시 레코드
+    private static final long MIN_COMPACT_GARBAGE = 1024 * 1024;   // compaction을 시작하는 최소 garbage 크기
+    private static final int HINT_INTERVAL = 1024;         // 이 개수만큼 레코드가 덧붙여지면 힌트 파일을 새로 쓴다.
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /*
+                < 메모 내용의 위치 >
+     */
+    private static class Location {
+        final long bodyOffset;      // 세그먼트 파일 안에서 메모 내용이 시작하는 위치
+        final int bodyLength;       // 메모 내용의 바이트 수
+        final long lastModified;    // 저장된 시각
+        final int recordSize;       // 레코드 전체 크기 (garbage 계산에 사용)
+
+        Location(long bodyOffset, int bodyLength, long lastModified, int recordSize) {
+            this.bodyOffset = bodyOffset;
+            this.bodyLength = bodyLength;
+            this.lastModified = lastModified;
+            this.recordSize = recordSize;
+        }
+    }
+
+    /*
+                < 세그먼트에서 읽은 레코드 >
+     */
+    private static class Record {
+        byte type;
+        long lastModified;
+        String title;
+        byte[] payload;
+        int headerLength;       // payload에서 메모 내용 앞부분(종류, 수정시각, 제목)의 길이
+        int crc;
+    }
+
+    private final File m_storeDir;          // 세그먼트 파일이 저장되는 디렉터리
+    private final File m_segmentFile;       // 세그먼트 파일
+    private final File m_hintFile;          // 색인 힌트 파일
+    private final ExecutorService m_compactor = Executors.newSingleThreadExecutor();  // compaction 전용 스레드
+
+    private LinkedHashMap<String, Location> m_index = new LinkedHashMap<>();   // 메모 제목 -> 메모 내용의 위치
+    private RandomAccessFile m_segment;     // 레코드를 덧붙이는 세그먼트 파일 (열리기 전에는 null)
+    private long m_segmentId;               // 현재 세그먼트의 ID (힌트가 같은 세그먼트의 것인지 확인)
+    private long m_length;                  // 세그먼트에서 유효한 레코드가 끝나는 위치
+    private long m_garbage;                 // 덮어써지거나 삭제된 레코드들의 크기 합
+    private int m_numOfUnhinted;            // 힌트 파일에 반영되지 않은 레코드 수
+    private boolean m_isCompacting;         // compaction 진행 여부
+
+    SegmentNoteStore(File storeDir) {
+        m_storeDir = storeDir;
+        m_segmentFile = new File(storeDir, SEGMENT_FILENAME);
+        m_hintFile = new File(storeDir, HINT_FILENAME);
+    }
+
+    /*
+                < 메모들을 한 번에 저장하는 메소드 >
+     모든 메모의 레코드를 세그먼트 끝에 덧붙인 뒤 fsync를 한 번만 호출한다.
+     fsync가 끝난 뒤에 색인에 반영하므로, 저장이 끝나기 전에는 이전 메모 내용이 읽힌다.
+     */
+    @Override
+    public synchronized void writeNotes(String[] titles, byte[][] bodies, IOException[] errors) {
+        Location[] locations = new Location[titles.length];
+        try {
+            ensureOpen();
+            long offset = m_length;
+            for(int i = 0; i < titles.length; i++) {
+                locations[i] = appendRecord(offset, RECORD_PUT, System.currentTimeMillis(), titles[i], bodies[i]);
+                offset += locations[i].recordSize;
+            }
+            m_segment.getFD().sync();
+
+            for(int i = 0; i < titles.length; i++) {
+                Location oldLocation = m_index.remove(titles[i]);
+                if(oldLocation != null)
+                    m_garbage += oldLocation.recordSize;
+                m_index.put(titles[i], locations[i]);
+            }
+            m_length = offset;
+            onRecordsAppended(titles.length);
+        } catch (IOException e) {
+            // 덧붙이던 레코드를 모두 버리고 저장 실패로 처리한다.
+            for(int i = 0; i < titles.length; i++)
+                errors[i] = e;
+            truncateQuietly();
+        }
+    }
+
+    /*
+                < 디스크에 기록된 파일을 메모로 저장하는 메소드 >
+     모든 메모가 세그먼트 파일 하나에 들어있으므로 파일 내용을 읽어 레코드로 덧붙인 뒤 파일을 지운다.
+     */
+    @Override
+    public void adoptNote(String title, File file) throws IOException {
+        byte[] body = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(body);
+        } finally {
+            in.close();
+        }
+
+        IOException[] errors = new IOException[1];
+        writeNotes(new String[] { title }, new byte[][] { body }, errors);
+        if(errors[0] != null)
+            throw errors[0];
+        file.delete();
+    }
+
+    /*
+                < 메모 내용을 읽는 InputStream을 여는 메소드 >
+     세그먼트 파일을 열어 메모 내용 위치로 이동한 뒤, 메모 내용 길이만큼만 읽을 수 있는 InputStream을 반환한다.
+     compaction으로 세그먼트 파일이 교체되어도 이미 열린 파일은 이전 세그먼트를 계속 읽는다.
+     */
+    @Override
+    public synchronized InputStream openNote(String title) throws IOException {
+        ensureOpen();
+        Location location = m_index.get(title);
+        if(location == null)
+            throw new FileNotFoundException(title + "을 찾을 수 없습니다.");
+
+        FileInputStream in = new FileInputStream(m_segmentFile);
+        try {
+            long remain = location.bodyOffset;
+            while(remain > 0) {
+                long skipped = in.skip(remain);
+                if(skipped <= 0)
+                    throw new EOFException();
+                remain -= skipped;
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new LimitedInputStream(in, location.bodyLength);
+    }
+
+    /*
+                < 메모를 삭제하는 메소드 >
+     삭제 표시 레코드를 덧붙이고 색인에서 지운다.
+     */
+    @Override
+    public synchronized boolean deleteNote(String title) {
+        try {
+            ensureOpen();
+            if(!m_index.containsKey(title))
+                return false;
+
+            Location tombstone = appendRecord(m_length, RECORD_DEL, System.currentTimeMillis(), title, new byte[0]);
+            m_segment.getFD().sync();
+
+            m_garbage += m_index.remove(title).recordSize + tombstone.recordSize;
+            m_length += tombstone.recordSize;
+            onRecordsAppended(1);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            truncateQuietly();
+            return false;
+        }
+    }
+
+    /*
+                < 메모들을 한 번에 삭제하는 메소드 >
+     저장된 메모들의 삭제 레코드를 모두 덧붙인 뒤 fsync를 한 번만 호출한다.
+     */
+    @Override
+    public synchronized void deleteNotes(String[] titles, boolean[] isDeleted) {
+        try {
+            ensureOpen();
+            long offset = m_length;
+            long lastModified = System.currentTimeMillis();
+            HashSet<String> deletedTitles = new HashSet<>();
+            for(String title : titles) {
+                if(m_index.containsKey(title) && deletedTitles.add(title))
+                    offset += appendRecord(offset, RECORD_DEL, lastModified, title, new byte[0]).recordSize;
+            }
+            if(deletedTitles.isEmpty())
+                return;
+            m_segment.getFD().sync();
+
+            for(int i = 0; i < titles.length; i++) {
+                Location location = m_index.remove(titles[i]);
+                isDeleted[i] = (location != null);
+                if(location != null)
+                    m_garbage += location.recordSize;
+            }
+            m_garbage += offset - m_length;     // 삭제 레코드들
+            m_length = offset;
+            onRecordsAppended(deletedTitles.size());
+        } catch (IOException e) {
+            e.printStackTrace();
+            truncateQuietly();
+        }
+    }
+
+    @Override
+    public synchronized NoteCatalog.Entry stat(String title) {
+        try {
+            ensureOpen();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        Location location = m_index.get(title);
+        if(location == null)
+            return null;
+        return new NoteCatalog.Entry(title, SEGMENT_FILENAME, location.bodyLength, location.lastModified);
+    }
+
+    /*
+                < 저장된 모든 메모의 카탈로그 항목을 반환하는 메소드 >
+     메모리의 색인만으로 만들기 때문에 디렉터리나 세그먼트를 스캔하지 않는다.
+     */
+    @Override
+    public synchronized ArrayList<NoteCatalog.Entry> scan() {
+        ArrayList<NoteCatalog.Entry> entries = new ArrayList<>();
+        try {
+            ensureOpen();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return entries;
+        }
+        for(Map.Entry<String, Location> entry : m_index.entrySet()) {
+            entries.add(new NoteCatalog.Entry(entry.getKey(), SEGMENT_FILENAME,
+                    entry.getValue().bodyLength, entry.getValue().lastModified));
+        }
+        return entries;
+    }
+
+    /*
+                < 저장소의 현재 상태를 나타내는 값을 반환하는 메소드 >
+     세그먼트 ID와 유효한 레코드의 끝 위치를 조합한다.
+     레코드가 덧붙여지거나 compaction으로 세그먼트가 교체되면 값이 바뀐다.
+     */
+    @Override
+    public synchronized long getStamp() {
+        try {
+            ensureOpen();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return 0;
+        }
+        return m_segmentId * 31 + m_length;
+    }
+
+    /*
+                < 세그먼트를 여는 메소드 >
+     1. 힌트 파일이 현재 세그먼트의 것이면 색인을 힌트에서 불러온다.
+     2. 힌트 이후에 덧붙여진 레코드를 읽어 색인에 반영한다.
+     3. 마지막 레코드가 쓰는 도중 잘렸거나 CRC가 맞지 않으면 그 위치부터 잘라낸다.
+     */
+    private void ensureOpen() throws IOException {
+        if(m_segment != null)
+            return;
+
+        // 이전 실행에서 끝나지 않은 compaction 파일을 지운다.
+        new File(m_storeDir, COMPACT_FILENAME).delete();
+
+        m_segment = new RandomAccessFile(m_segmentFile, "rw");
+        if(m_segment.length() < HEADER_SIZE) {
+            initSegment();
+            return;
+        }
+
+        m_segment.seek(0);
+        if(m_segment.readInt() != SEGMENT_MAGIC) {
+            // 세그먼트가 아닌 파일은 따로 보관하고 새 세그먼트를 만든다.
+            m_segment.close();
+            m_segmentFile.renameTo(new File(m_storeDir, CORRUPT_FILENAME));
+            m_segment = new RandomAccessFile(m_segmentFile, "rw");
+            initSegment();
+            return;
+        }
+        m_segmentId = m_segment.readLong();
+
+        if(!readHint() || m_length > m_segment.length()) {
+            m_index.clear();
+            m_length = HEADER_SIZE;
+            m_garbage = 0;
+        }
+
+        long[] garbage = {m_garbage};
+        long validLength = replay(m_segment, m_length, m_segment.length(), m_index, garbage, null, 0);
+        m_numOfUnhinted = 0;
+        m_garbage = garbage[0];
+        if(validLength < m_segment.length())
+            m_segment.setLength(validLength);
+        m_length = validLength;
+    }
+
+    /*
+                < 비어있는 새 세그먼트를 만드는 메소드 >
+     */
+    private void initSegment() throws IOException {
+        m_segmentId = new Random().nextLong();
+        m_segment.setLength(0);
+        m_segment.seek(0);
+        m_segment.writeInt(SEGMENT_MAGIC);
+        m_segment.writeLong(m_segmentId);
+        m_segment.getFD().sync();
+
+        m_index.clear();
+        m_length = HEADER_SIZE;
+        m_garbage = 0;
+        m_numOfUnhinted = 0;
+        m_hintFile.delete();
+    }
+
+    /*
+                < 세그먼트의 from ~ to 구간에 있는 레코드들을 색인에 반영하는 메소드 >
+     out이 null이 아니면 읽은 레코드를 그대로 out의 outOffset 위치부터 옮겨 쓰고, 옮긴 위치로 색인을 만든다. (compaction)
+     유효한 마지막 레코드의 끝 위치를 반환한다. (out이 있으면 out에서의 끝 위치)
+     */
+    private static long replay(RandomAccessFile file, long from, long to, LinkedHashMap<String, Location> index,
+                               long[] garbage, RandomAccessFile out, long outOffset) throws IOException {
+        long offset = from;
+        while(true) {
+            Record record = readRecord(file, offset, to);
+            if(record == null)
+                break;
+
+            int recordSize = RECORD_OVERHEAD + record.payload.length;
+            long recordOffset = offset;
+            if(out != null) {
+                recordOffset = outOffset;
+                out.seek(outOffset);
+                out.writeInt(record.payload.length);
+                out.write(record.payload);
+                out.writeInt(record.crc);
+                outOffset += recordSize;
+            }
+
+            Location location = new Location(recordOffset + 4 + record.headerLength,
+                    record.payload.length - record.headerLength, record.lastModified, recordSize);
+            Location oldLocation = (record.type == RECORD_PUT)
+                    ? index.put(record.title, location) : index.remove(record.title);
+            if(oldLocation != null)
+                garbage[0] += oldLocation.recordSize;
+            if(record.type == RECORD_DEL)
+                garbage[0] += recordSize;
+
+            offset += recordSize;
+        }
+        return (out != null) ? outOffset : offset;
+    }
+
+    /*
+                < offset 위치의 레코드 하나를 읽는 메소드 >
+     레코드가 limit을 넘거나, 잘렸거나, CRC가 맞지 않으면 null을 반환한다.
+     */
+    private static Record readRecord(RandomAccessFile file, long offset, long limit) throws IOException {
+        if(limit - offset < RECORD_OVERHEAD)
+            return null;
+
+        file.seek(offset);
+        int payloadLength = file.readInt();
+        if(payloadLength < 11 || offset + RECORD_OVERHEAD + payloadLength > limit)
+            return null;
+
+        Record record = new Record();
+        record.payload = new byte[payloadLength];
+        file.readFully(record.payload);
+        record.crc = file.readInt();
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(record.payload);
+        if((int) crc32.getValue() != record.crc)
+            return null;
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.payload));
+        record.type = in.readByte();
+        record.lastModified = in.readLong();
+        record.title = in.readUTF();
+        record.headerLength = payloadLength - in.available();
+        if(record.type != RECORD_PUT && record.type != RECORD_DEL)
+            return null;
+        return record;
+    }
+
+    /*
+                < 레코드의 앞부분(종류, 수정시각, 메모 제목)을 만드는 메소드 >
+     */
+    private static byte[] buildHeader(byte type, long lastModified, String title) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeByte(type);
+        out.writeLong(lastModified);
+        out.writeUTF(title);
+        out.close();
+        return buffer.toByteArray();
+    }
+
+    /*
+                < 세그먼트의 offset 위치에 레코드를 쓰는 메소드 >
+     */
+    private Location appendRecord(long offset, byte type, long lastModified, String title, byte[] body) throws IOException {
+        byte[] header = buildHeader(type, lastModified, title);
+        CRC32 crc32 = new CRC32();
+        crc32.update(header);
+        crc32.update(body);
+
+        int payloadLength = header.length + body.length;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(RECORD_OVERHEAD + payloadLength);
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(payloadLength);
+        out.write(header);
+        out.write(body);
+        out.writeInt((int) crc32.getValue());
+        out.close();
+
+        m_segment.seek(offset);
+        m_segment.write(buffer.toByteArray());
+
+        return new Location(offset + 4 + header.length, body.length, lastModified, RECORD_OVERHEAD + payloadLength);
+    }
+
+    /*
+                < 저장에 실패했을 때 덧붙이던 레코드를 잘라내는 메소드 >
+     */
+    private void truncateQuietly() {
+        if(m_segment == null)
+            return;
+        try {
+            m_segment.setLength(m_length);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /*
+                < 레코드가 덧붙여진 뒤 호출되는 메소드 >
+     힌트에 반영되지 않은 레코드가 많아지면 힌트 파일을 새로 쓰고,
+     garbage가 세그먼트의 절반을 넘으면 compaction을 시작한다.
+     */
+    private void onRecordsAppended(int numOfRecords) {
+        m_numOfUnhinted += numOfRecords;
+        if(m_numOfUnhinted >= HINT_INTERVAL)
+            writeHint();
+
+        if(!m_isCompacting && m_garbage >= MIN_COMPACT_GARBAGE && m_garbage * 2 > m_length) {
+            m_isCompacting = true;
+            m_compactor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    compact();
+                }
+            });
+        }
+    }
+
+    /*
+                < 살아있는 레코드만 새 세그먼트로 옮기는 메소드 (compaction) >
+     1. 잠금을 잡고 색인과 세그먼트 끝 위치를 복사한다.
+     2. 잠금 없이 복사한 색인의 메모들을 새 세그먼트에 옮긴다. (그동안에도 저장/삭제가 가능하다.)
+     3. 잠금을 잡고 1 이후에 덧붙여진 레코드들을 새 세그먼트에 옮긴 뒤, 새 세그먼트로 교체한다.
+     */
+    private void compact() {
+        LinkedHashMap<String, Location> snapshot;
+        long snapshotLength;
+        synchronized (this) {
+            snapshot = new LinkedHashMap<>(m_index);
+            snapshotLength = m_length;
+        }
+
+        File compactFile = new File(m_storeDir, COMPACT_FILENAME);
+        RandomAccessFile src = null;
+        RandomAccessFile dst = null;
+        try {
+            // 세그먼트 파일은 compaction 스레드만 교체하므로 잠금 없이 열어도 된다.
+            src = new RandomAccessFile(m_segmentFile, "r");
+            dst = new RandomAccessFile(compactFile, "rw");
+            dst.setLength(0);
+
+            long segmentId = new Random().nextLong();
+            dst.writeInt(SEGMENT_MAGIC);
+            dst.writeLong(segmentId);
+
+            LinkedHashMap<String, Location> newIndex = new LinkedHashMap<>();
+            long offset = HEADER_SIZE;
+            byte[] copyBuffer = new byte[COPY_BUFFER_SIZE];
+            for(Map.Entry<String, Location> entry : snapshot.entrySet()) {
+                Location location = entry.getValue();
+                byte[] header = buildHeader(RECORD_PUT, location.lastModified, entry.getKey());
+                int payloadLength = header.length + location.bodyLength;
+
+                // 메모 내용을 나누어 옮기면서 CRC32를 계산한다.
+                CRC32 crc32 = new CRC32();
+                crc32.update(header);
+                dst.seek(offset);
+                dst.writeInt(payloadLength);
+                dst.write(header);
+                src.seek(location.bodyOffset);
+                int remain = location.bodyLength;
+                while(remain > 0) {
+                    int length = Math.min(remain, copyBuffer.length);
+                    src.readFully(copyBuffer, 0, length);
+                    crc32.update(copyBuffer, 0, length);
+                    dst.write(copyBuffer, 0, length);
+                    remain -= length;
+                }
+                dst.writeInt((int) crc32.getValue());
+
+                int recordSize = RECORD_OVERHEAD + payloadLength;
+                newIndex.put(entry.getKey(), new Location(offset + 4 + header.length,
+                        location.bodyLength, location.lastModified, recordSize));
+                offset += recordSize;
+            }
+            onSnapshotCopied();
+
+            synchronized (this) {
+                // compaction 도중 덧붙여진 레코드들을 옮긴다.
+                long[] garbage = {0};
+                offset = replay(src, snapshotLength, m_length, newIndex, garbage, dst, offset);
+                dst.getFD().sync();
+                dst.close();
+                dst = null;
+
+                if(!compactFile.renameTo(m_segmentFile))
+                    throw new IOException("세그먼트 파일을 교체하지 못했습니다.");
+
+                m_segment.close();
+                m_segment = new RandomAccessFile(m_segmentFile, "rw");
+                m_segmentId = segmentId;
+                m_index = newIndex;
+                m_length = offset;
+                m_garbage = garbage[0];
+                writeHint();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            compactFile.delete();
+        } finally {
+            closeQuietly(src);
+            closeQuietly(dst);
+            synchronized (this) {
+                m_isCompacting = false;
+            }
+        }
+    }
+
+    /*
+                < compaction이 복사한 색인의 메모들을 새 세그먼트에 옮긴 뒤 호출되는 메소드 >
+     잠금 없이 compaction 스레드에서 호출된다.
+     테스트에서 재정의해 compaction 도중에 저장이나 삭제가 끼어드는 경우를 만든다.
+     */
+    void onSnapshotCopied() {
+    }
+
+    /*
+                < compaction 스레드를 종료하고 세그먼트 파일을 닫는 메소드 >
+     진행 중인 compaction이 끝날 때까지 기다린다. 종료한 뒤에는 저장소를 사용할 수 없다.
+     (앱에서는 프로세스가 끝날 때까지 저장소를 쓰므로 테스트에서 저장소를 다시 열거나 지우기 전에 호출한다.)
+     */
+    void close() throws InterruptedException {
+        m_compactor.shutdown();
+        m_compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        synchronized (this) {
+            closeQuietly(m_segment);
+        }
+    }
+
+    /*
+                < 색인 힌트 파일을 읽는 메소드 >
+     힌트가 현재 세그먼트의 것일 때만 색인, 유효한 끝 위치, garbage 크기를 불러오고 true를 반환한다.
+     */
+    private boolean readHint() {
+        if(!m_hintFile.exists())
+            return false;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(m_hintFile)));
+            if(in.readInt() != HINT_MAGIC || in.readLong() != m_segmentId)
+                return false;
+
+            m_length = in.readLong();
+            m_garbage = in.readLong();
+            int numOfEntries = in.readInt();
+            m_index.clear();
+            for(int i = 0; i < numOfEntries; i++) {
+                String title = in.readUTF();
+                long bodyOffset = in.readLong();
+                int bodyLength = in.readInt();
+                long lastModified = in.readLong();
+                int recordSize = in.readInt();
+                m_index.put(title, new Location(bodyOffset, bodyLength, lastModified, recordSize));
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /*
+                < 색인 힌트 파일을 쓰는 메소드 >
+     임시 파일에 쓴 뒤 이름을 바꾼다. 힌트를 쓰지 못해도 다음 실행 때 세그먼트를 다시 읽으면 되므로 무시한다.
+     */
+    private void writeHint() {
+        File tmpFile = new File(m_hintFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(HINT_MAGIC);
+            out.writeLong(m_segmentId);
+            out.writeLong(m_length);
+            out.writeLong(m_garbage);
+            out.writeInt(m_index.size());
+            for(Map.Entry<String, Location> entry : m_index.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().bodyOffset);
+                out.writeInt(entry.getValue().bodyLength);
+                out.writeLong(entry.getValue().lastModified);
+                out.writeInt(entry.getValue().recordSize);
+            }
+            out.close();
+            out = null;
+
+            if(!tmpFile.renameTo(m_hintFile))
+                throw new IOException("힌트 파일을 교체하지 못했습니다.");
+            m_numOfUnhinted = 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeQuietly(out);
+            tmpFile.delete();
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if(closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /*
+                < 정해진 길이만큼만 읽을 수 있는 InputStream >
+     세그먼트 파일에서 메모 내용 하나만 읽도록 제한한다.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private long m_remain;
+
+        LimitedInputStream(InputStream in, long length) {
+            super(in);
+            m_remain = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(m_remain <= 0)
+                return -1;
+            int b = super.read();
+            if(b != -1)
+                m_remain--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if(m_remain <= 0)
+                return -1;
+            int numOfRead = super.read(buffer, offset, (int) Math.min(length, m_remain));
+            if(numOfRead > 0)
+                m_remain -= numOfRead;
+            return numOfRead;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, m_remain));
+            m_remain -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), m_remain);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -1,44 +1,117 @@
 package io.github.sogoagain.simple_notepad;
 
+import android.app.Dialog;
+import android.content.DialogInterface;
 import android.content.Intent;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.support.v4.app.DialogFragment;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
+import android.util.Log;
+import android.view.ActionMode;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.*;
 
 import java.io.File;
-import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Locale;
 
 public class ShowNoteListActivity extends AppCompatActivity {
     static final int GET_NEW_NOTE_TITLE = 1;
     static final int GET_DELETE_NOTE_TITLE = 2;
+    static final int EXPORT_NOTES = 3;
+    static final int IMPORT_NOTES = 4;
+    static final int MAX_SEARCH_RESULTS = 100;  // 검색 결과로 보여줄 최대 메모 수
+    static final String STATE_SELECTED_TITLES = "SELECTED_TITLES";  // 선택된 메모 제목들을 저장하는 상태 키
 
     private ListView m_lvNoteList;              // 메모들을 순차적으로 보여주는 ListView
-    private ArrayAdapter<String> m_adapter;     // ListView에 쓰일 ArrayAdapter
-    private ArrayList<String> m_listNoteTitle;  // 메모 제목들을 담고있는 ArrayList
+    private NoteListAdapter m_adapter;          // ListView에 쓰일 정렬된 메모 목록 어댑터
+    private String m_strOpenedTitle;            // ViewNoteActivity로 열어본 메모 제목
+    private PreviewTask m_previewTask;          // 미리보기가 없는 메모의 미리보기를 만드는 AsyncTask
+    private ReconcileTask m_reconcileTask;      // 백그라운드에서 카탈로그를 불러와 목록과 맞추는 AsyncTask (끝나면 null)
+    private final HashSet<String> m_pendingTitles = new HashSet<>();   // 카탈로그를 불러오는 동안 갱신을 미뤄둔 메모 제목들
+    private SyncTask m_syncTask;                // 동기화 서버와 메모를 주고받는 AsyncTask
+    private ActionMode m_actionMode;            // 여러 메모를 선택하는 동안의 선택 모드
+    private final HashSet<String> m_selectedTitles = new HashSet<>();  // 선택 모드에서 선택된 메모 제목들
 
 
     /*
                 < m_lvNoteList 리스트 뷰 아이템 터치 이벤트 리스너 >
     리스트 뷰에 있는 아이템 하나를 클릭하면 아이템의 이름을 ViewNoteActivity에 전달한다.
     그 후, ViewNoteActivity를 실행한다.
+    카탈로그를 불러오는 중이면 (목록이 스냅샷이라 이미 없는 메모일 수 있으므로) 클릭을 무시한다.
     */
     private AdapterView.OnItemClickListener onClickListItem = new AdapterView.OnItemClickListener() {
         @Override
         public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+            if(m_reconcileTask != null) {
+                Toast.makeText(ShowNoteListActivity.this, "메모 목록을 불러오는 중입니다.", Toast.LENGTH_SHORT).show();
+                return;
+            }
+
             // m_lvNoteList의 한 아이템이 클릭되었을 때,
-            // 클릭한 아이템의 이름을 Intent객체를 이용해
-            // ViewNoteActivity로 전달하고 ViewNoteActivity 실행
-            Intent intent = new Intent(ShowNoteListActivity.this, ViewNoteActivity.class);
-            intent.putExtra("READ_NOTE_TITLE",m_adapter.getItem(position).toString());
-            setResult(RESULT_OK, intent);
+            // 클릭한 아이템의 이름을 ViewNoteActivity로 전달하고 ViewNoteActivity 실행
+            openNote(m_adapter.getItem(position));
+        }
+    };
+
+    /*
+                < m_lvNoteList 리스트 뷰 다중 선택 리스너 >
+    아이템을 길게 누르면 선택 모드가 시작되고, 선택된 메모 수를 상단 바에 보여준다.
+    선택 모드의 삭제 항목을 누르면 선택된 메모들을 한 번에 삭제할지 묻는 대화상자를 띄운다.
+    목록의 순서는 선택하는 동안에도 바뀔 수 있으므로 위치가 아닌 메모 제목을 기억한다.
+    화면이 회전되면 ListView가 선택 모드를 다시 시작하므로, 기억한 제목들로 선택된 메모 수를 다시 보여준다.
+    */
+    private AbsListView.MultiChoiceModeListener onSelectNotes = new AbsListView.MultiChoiceModeListener() {
+        @Override
+        public void onItemCheckedStateChanged(ActionMode mode, int position, long id, boolean checked) {
+            if(checked)
+                m_selectedTitles.add(m_adapter.getItem(position));
+            else
+                m_selectedTitles.remove(m_adapter.getItem(position));
+            mode.setTitle(m_selectedTitles.size() + "개 선택");
+        }
+
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.list_context, menu);
+            mode.setTitle(m_selectedTitles.size() + "개 선택");
+            m_actionMode = mode;
+            return true;
+        }
 
-            // ViewNoteActivity를 실행할 때, 메모가 삭제되었을 때
-            // 메모제목을 GET_DELETE_NOTE_TITLE을 request code로 받아온다.
-            startActivityForResult(intent, GET_DELETE_NOTE_TITLE);
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            if(item.getItemId() == R.id.action_deleteSelected) {
+                if(!m_selectedTitles.isEmpty()) {
+                    DialogFragment deleteFragment = new DeleteNotesDialogFragment();
+                    deleteFragment.show(getSupportFragmentManager(), "Delete Notes");
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            m_actionMode = null;
+            m_selectedTitles.clear();
         }
     };
 
@@ -47,16 +120,87 @@ public class ShowNoteListActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_show_note_list);
 
-        // 내부 저장소에 저장된 메모 리스트를 getSavedNoteList() 메소드를 통해 m_listNoteTitle로 가져온다.
-        m_listNoteTitle = this.getSavedNoteList();
+        // 화면 회전 등으로 다시 만들어졌다면 선택 모드에서 선택되어 있던 메모 제목들을 되살린다.
+        // (ListView는 선택된 위치와 선택 모드를, DialogFragment는 삭제 확인 대화상자를 스스로 되살리지만
+        //  onItemCheckedStateChanged()는 다시 호출되지 않는다.)
+        if(savedInstanceState != null) {
+            ArrayList<String> selectedTitles = savedInstanceState.getStringArrayList(STATE_SELECTED_TITLES);
+            if(selectedTitles != null)
+                m_selectedTitles.addAll(selectedTitles);
+        }
 
-        // simple_list_item_1을 layout으로 하고 m_listNoteTitle을 항목으로하는 어댑터 생성
-        m_adapter = new ArrayAdapter<String>(this, android.R.layout.simple_list_item_1, m_listNoteTitle);
+        // 지난번에 보여준 목록의 스냅샷이 있으면 바로 보여주고, 없으면 빈 목록을 제목 순으로 정렬한 어댑터 생성
+        // 카탈로그는 (중단된 저장 정리와 다시 스캔을 포함해) 항상 ReconcileTask로 백그라운드에서 불러와 맞춘다.
+        NoteListSnapshot snapshot = NoteListSnapshot.read(NoteStorage.getListSnapshotFile(this));
+        if(snapshot != null)
+            m_adapter = new NoteListAdapter(this, snapshot.entries, snapshot.comparator);
+        else
+            m_adapter = new NoteListAdapter(this, new ArrayList<NoteCatalog.Entry>(), NoteOrderList.BY_TITLE);
 
         // lvNoteList 리스트 뷰에 어댑터를 연결한고 리스너를 설정한다.
         m_lvNoteList = (ListView)findViewById(R.id.lvNoteList);
         m_lvNoteList.setAdapter(m_adapter);
         m_lvNoteList.setOnItemClickListener(onClickListItem);
+        m_lvNoteList.setChoiceMode(ListView.CHOICE_MODE_MULTIPLE_MODAL);
+        m_lvNoteList.setMultiChoiceModeListener(onSelectNotes);
+
+        m_reconcileTask = new ReconcileTask();
+        m_reconcileTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /*
+                < 엑티비티 상태를 저장하는 메소드 >
+     선택 모드에서 선택된 메모 제목들을 저장한다.
+     */
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putStringArrayList(STATE_SELECTED_TITLES, new ArrayList<>(m_selectedTitles));
+    }
+
+    /*
+                < 목록의 스냅샷을 기록하는 메소드 >
+     다음 실행 때 목록을 바로 보여줄 수 있도록 지금 보여주는 항목들과 정렬 기준을 백그라운드에서 기록한다.
+     (AsyncTask.execute()는 작업을 차례로 실행하므로 스냅샷 파일을 동시에 쓰지 않는다.)
+     카탈로그를 불러오기 전에는 목록이 이전 스냅샷 그대로이거나 비어 있으므로 기록하지 않는다.
+     */
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if(m_reconcileTask != null)
+            return;
+        final File snapshotFile = NoteStorage.getListSnapshotFile(this);
+        final ArrayList<NoteCatalog.Entry> entries = m_adapter.getEntries();
+        final Comparator<NoteCatalog.Entry> comparator = m_adapter.getComparator();
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                NoteListSnapshot.write(snapshotFile, entries, comparator);
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if(m_reconcileTask != null)
+            m_reconcileTask.cancel(false);
+        if(m_previewTask != null)
+            m_previewTask.cancel(false);
+        if(m_syncTask != null)
+            m_syncTask.cancel(false);
+    }
+
+    /*
+                < 미리보기가 없는 메모의 미리보기를 만드는 메소드 >
+     카탈로그를 새로 만들어 미리보기가 없는 메모가 있으면 백그라운드에서 미리보기를 만든다.
+     검색이 미리보기 작업을 기다리지 않도록 스레드 풀에서 실행한다.
+     */
+    private void startPreviewTask(ArrayList<String> titlesWithoutPreview) {
+        if(!titlesWithoutPreview.isEmpty()) {
+            m_previewTask = new PreviewTask(titlesWithoutPreview);
+            m_previewTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }
     }
 
     /*
@@ -70,13 +214,57 @@ public class ShowNoteListActivity extends AppCompatActivity {
     }
 
     /*
-                < 메모 작성 액션 항목이 클릭되었을때 이벤트 처리 메소드 >
-    메모 작성 액션 항목이 클릭되면 EditNoteActivity를 실행한다.
-    EditNoteActivity로 부터 'GET_NOTE_TITLE'이라는 요청 코드를 통해 작성된 메모 제목을 전달받는다.
+                < 액션 항목이 클릭되었을때 이벤트 처리 메소드 >
+    1. 메모 작성 액션 항목이 클릭되면 EditNoteActivity를 실행한다.
+       EditNoteActivity로 부터 'GET_NOTE_TITLE'이라는 요청 코드를 통해 작성된 메모 제목을 전달받는다.
+    2. 메모 검색 액션 항목이 클릭되면 검색어를 입력받는 대화상자를 띄운다.
+    3. 메모 정렬 액션 항목이 클릭되면 제목 순과 최근 수정 순 정렬을 전환한다.
+    4. 메모 내보내기/가져오기 항목이 클릭되면 저장할 압축 파일 또는 가져올 압축 파일을 사용자가 고르게 한다.
+       선택된 파일은 EXPORT_NOTES, IMPORT_NOTES 요청 코드로 전달받는다.
+    5. 동기화 항목이 클릭되면 SyncTask로 동기화 서버와 메모를 주고받는다.
     */
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         switch(item.getItemId()) {
+            case R.id.action_searchNote:
+                DialogFragment searchFragment = new SearchDialogFragment();
+                searchFragment.show(getSupportFragmentManager(), "Search Note");
+                return true;
+            case R.id.action_sortNote:
+                if(m_adapter.getComparator() == NoteOrderList.BY_TITLE) {
+                    m_adapter.setComparator(NoteOrderList.BY_MODIFIED);
+                    Toast.makeText(this, "최근 수정 순으로 정렬합니다.", Toast.LENGTH_SHORT).show();
+                } else {
+                    m_adapter.setComparator(NoteOrderList.BY_TITLE);
+                    Toast.makeText(this, "제목 순으로 정렬합니다.", Toast.LENGTH_SHORT).show();
+                }
+                return true;
+            case R.id.action_exportNotes:
+                Intent exportIntent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+                exportIntent.addCategory(Intent.CATEGORY_OPENABLE);
+                exportIntent.setType(NoteArchive.ARCHIVE_MIME_TYPE);
+                exportIntent.putExtra(Intent.EXTRA_TITLE,
+                        "notes-" + new SimpleDateFormat("yyyyMMdd", Locale.US).format(new Date()) + ".zip");
+                startActivityForResult(exportIntent, EXPORT_NOTES);
+                return true;
+            case R.id.action_importNotes:
+                Intent importIntent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+                importIntent.addCategory(Intent.CATEGORY_OPENABLE);
+                importIntent.setType(NoteArchive.ARCHIVE_MIME_TYPE);
+                startActivityForResult(importIntent, IMPORT_NOTES);
+                return true;
+            case R.id.action_recordMetrics:
+                NoteMetrics.setEnabled(!item.isChecked());
+                item.setChecked(NoteMetrics.isEnabled());
+                Toast.makeText(this, NoteMetrics.isEnabled() ? "성능 측정을 시작합니다." : "성능 측정을 중지합니다.",
+                        Toast.LENGTH_SHORT).show();
+                return true;
+            case R.id.action_dumpMetrics:
+                dumpMetrics();
+                return true;
+            case R.id.action_syncNotes:
+                syncNotes();
+                return true;
             case R.id.action_addNote:
                 Intent intent = new Intent(ShowNoteListActivity.this, EditNoteActivity.class);
                 startActivityForResult(intent, GET_NEW_NOTE_TITLE);
@@ -92,49 +280,458 @@ public class ShowNoteListActivity extends AppCompatActivity {
         - requestCode가 GET_NEW_NOTE_TITLE 일때, 전달받은 메모 제목을 리스트뷰 어댑터에 추가한다.
      2. ViewNoteActivity로 부터 전달된 결과
         - requestCode가 GET_DELETE_NOTE_TITLE 일때, 전달받은 삭제된 메모 제목을 리스트뷰 어댑터에서 삭제한다.
+        - 삭제되지 않았으면 열어본 메모가 수정되었을 수 있으므로 카탈로그 항목으로 갱신한다.
+     어댑터는 정렬된 위치를 O(log n)으로 찾아 반영한다.
+     3. 문서 선택기로 부터 전달된 결과
+        - requestCode가 EXPORT_NOTES, IMPORT_NOTES 일때, 선택된 압축 파일로 메모를 내보내거나 가져온다.
      */
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         // EditNoteActivity를 통해 전달받은 메모 제목을 리스트뷰 어댑터에 추가한다
         if(requestCode == GET_NEW_NOTE_TITLE) {
             if(resultCode == RESULT_OK) {
-                m_adapter.add(data.getStringExtra("NEW_NOTE_TITLE"));
+                refreshNote(data.getStringExtra("NEW_NOTE_TITLE"));
             }
         }
         // ViewNoteActivity를 통해 전달받은 메모 제목을 리스트뷰 어댑터에서 삭제한다.
         else if(requestCode == GET_DELETE_NOTE_TITLE) {
             if(resultCode == RESULT_OK) {
-                m_adapter.remove(data.getStringExtra("DELETE_NOTE_TITLE"));
+                m_adapter.removeNote(data.getStringExtra("DELETE_NOTE_TITLE"));
+            } else if(m_strOpenedTitle != null) {
+                refreshNote(m_strOpenedTitle);
+            }
+        }
+        // 선택된 압축 파일로 메모를 내보내거나 가져온다.
+        else if(requestCode == EXPORT_NOTES || requestCode == IMPORT_NOTES) {
+            if(resultCode == RESULT_OK && data != null && data.getData() != null) {
+                new ArchiveTask(requestCode == EXPORT_NOTES).execute(data.getData());
             }
         }
         return;
     }
 
     /*
-                < 내부 저장소에 저장되어 있는 메모 제목들을 가져오는 메소드 >
-     내부 저장소에 있는 파일들 중 확장자가 .txt인 파일들을 읽어들인다.
-     그 후, 파일명에서 확장자 .txt를 지워 ArrayList에 담은 후 반환한다.
+                < 성능 측정 결과를 내보내는 메소드 >
+     작업별 소요 시간(p50, p99, 최대값)을 NoteStorage.getMetricsFile() 파일 끝에 덧붙이고 logcat에 출력한다.
+     파일 쓰기는 백그라운드에서 한다.
      */
-    private ArrayList<String> getSavedNoteList() {
-        // getFilesDir()은 내부 저장소의 디렉터리 파일 객체를 반환한다
-        File fileInternalDir = getFilesDir();
-
-        // FilenameFilter 인터페이스를 사용하여 .txt 파일을 추출한다
-        String[] strAryTxtFile = fileInternalDir.list(new FilenameFilter() {
+    private void dumpMetrics() {
+        final File metricsFile = NoteStorage.getMetricsFile(this);
+        AsyncTask.execute(new Runnable() {
             @Override
-            public boolean accept(File dir, String filename) {
-                return filename.endsWith(".txt");
+            public void run() {
+                try {
+                    Log.i("NoteMetrics", NoteMetrics.dumpTo(metricsFile));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
             }
         });
+        Toast.makeText(this, "성능 기록을 " + metricsFile.getPath() + "에 저장했습니다.", Toast.LENGTH_SHORT).show();
+    }
+
+    /*
+                < 내부 저장소에 저장되어 있는 메모 항목들을 가져오는 메소드 >
+     내부 저장소 디렉터리를 매번 스캔하지 않고 NoteCatalog에 기록된 메모 목록을 불러온다.
+     카탈로그가 없거나 오래된 경우에만 NoteCatalog가 확장자가 .txt인 파일들을 다시 스캔한다.
+     메모 항목(제목, 크기, 수정시각)들을 ArrayList에 담아 반환한다.
+     카탈로그를 처음 불러올 때 오래 걸릴 수 있으므로 백그라운드(ReconcileTask)에서만 호출한다.
+     */
+    private ArrayList<NoteCatalog.Entry> getSavedNoteList() {
+        long start = NoteMetrics.start();
+        ArrayList<NoteCatalog.Entry> entries = NoteStorage.getCatalog(this).getEntries();
+        NoteMetrics.stop(NoteMetrics.LIST, start);
+        return entries;
+    }
+
+    /*
+                < 메모 하나를 카탈로그와 맞추는 메소드 >
+     카탈로그에 없으면 목록에서 지우고, 있으면 새 항목(수정시각)으로 목록을 갱신한다.
+     카탈로그를 불러오는 중이면 UI 스레드가 기다리지 않도록 제목만 기억해두고 ReconcileTask가 끝난 뒤 갱신한다.
+     */
+    private void refreshNote(String title) {
+        if(m_reconcileTask != null) {
+            m_pendingTitles.add(title);
+            return;
+        }
+
+        NoteCatalog.Entry entry = NoteStorage.getCatalog(this).getEntry(title);
+        if(entry == null)
+            m_adapter.removeNote(title);
+        else if(entry != m_adapter.getEntry(title))
+            m_adapter.putNote(entry);
+    }
+
+    /*
+                < 메모를 여는 메소드 >
+     메모 제목을 Intent객체를 이용해 ViewNoteActivity로 전달하고 ViewNoteActivity 실행한다.
+     */
+    private void openNote(String title) {
+        Intent intent = new Intent(ShowNoteListActivity.this, ViewNoteActivity.class);
+        intent.putExtra("READ_NOTE_TITLE", title);
+        setResult(RESULT_OK, intent);
+        m_strOpenedTitle = title;
+
+        // ViewNoteActivity를 실행할 때, 메모가 삭제되었을 때
+        // 메모제목을 GET_DELETE_NOTE_TITLE을 request code로 받아온다.
+        startActivityForResult(intent, GET_DELETE_NOTE_TITLE);
+    }
+
+    /*
+                < 선택된 메모들을 삭제하는 메소드 >
+     DeleteNotesTask를 통해 백그라운드에서 한 번에 삭제하고 선택 모드를 끝낸다.
+     */
+    private void deleteSelectedNotes() {
+        new DeleteNotesTask(m_selectedTitles.toArray(new String[m_selectedTitles.size()])).execute();
+        if(m_actionMode != null)
+            m_actionMode.finish();
+    }
+
+    /*
+                < 메모를 동기화하는 메소드 >
+     SyncTask가 이미 실행 중이면 무시한다.
+     */
+    private void syncNotes() {
+        if(m_syncTask != null && m_syncTask.getStatus() != AsyncTask.Status.FINISHED)
+            return;
+        m_syncTask = new SyncTask();
+        m_syncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        Toast.makeText(this, "동기화를 시작합니다.", Toast.LENGTH_SHORT).show();
+    }
+
+    /*
+                < 메모를 검색하는 메소드 >
+     검색 색인을 불러오는 데 시간이 걸릴 수 있으므로 SearchTask를 통해 백그라운드에서 검색한다.
+     */
+    private void searchNotes(String query) {
+        new SearchTask().execute(query);
+    }
+
+    /*
+                < 여러 메모를 백그라운드에서 한 번에 삭제하는 AsyncTask >
+     NoteWriter.deleteNotes()로 저장소와 카탈로그, 검색 색인에서 한 번에 지우고, 목록은 onPostExecute()에서 한 번만 갱신한다.
+     */
+    private class DeleteNotesTask extends AsyncTask<Void, Void, ArrayList<String>> {
+        private final String[] m_titles;    // 삭제할 메모 제목들
+
+        DeleteNotesTask(String[] titles) {
+            m_titles = titles;
+        }
+
+        @Override
+        protected ArrayList<String> doInBackground(Void... params) {
+            return NoteStorage.getWriter(ShowNoteListActivity.this).deleteNotes(m_titles, false);
+        }
+
+        @Override
+        protected void onPostExecute(ArrayList<String> deletedTitles) {
+            m_adapter.removeNotes(deletedTitles);
+
+            if(deletedTitles.size() == m_titles.length)
+                Toast.makeText(ShowNoteListActivity.this, deletedTitles.size() + "개의 메모를 삭제했습니다.", Toast.LENGTH_SHORT).show();
+            else
+                Toast.makeText(ShowNoteListActivity.this, deletedTitles.size() + "개의 메모를 삭제했습니다. ("
+                        + (m_titles.length - deletedTitles.size()) + "개 삭제 실패)", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    /*
+                < 메모를 백그라운드에서 검색하는 AsyncTask >
+     NoteSearchIndex로 검색한 결과를 점수 순으로 대화상자에 보여준다.
+     검색 결과 중 하나를 선택하면 해당 메모를 연다.
+     */
+    private class SearchTask extends AsyncTask<String, Void, ArrayList<NoteSearchIndex.Result>> {
+        @Override
+        protected ArrayList<NoteSearchIndex.Result> doInBackground(String... params) {
+            NoteSearchIndex searchIndex = NoteStorage.getSearchIndex(ShowNoteListActivity.this);
+            return searchIndex.search(params[0], MAX_SEARCH_RESULTS);
+        }
+
+        @Override
+        protected void onPostExecute(ArrayList<NoteSearchIndex.Result> results) {
+            if(results.isEmpty()) {
+                Toast.makeText(ShowNoteListActivity.this, "검색 결과가 없습니다.", Toast.LENGTH_SHORT).show();
+                return;
+            }
+
+            final String[] titles = new String[results.size()];
+            for(int i = 0; i < titles.length; i++)
+                titles[i] = results.get(i).title;
+
+            new AlertDialog.Builder(ShowNoteListActivity.this)
+                    .setTitle("검색 결과 (" + titles.length + ")")
+                    .setItems(titles, new DialogInterface.OnClickListener() {
+                        // 검색 결과 중 선택된 메모를 연다.
+                        @Override
+                        public void onClick(DialogInterface dialog, int which) {
+                            openNote(titles[which]);
+                        }
+                    })
+                    .show();
+        }
+    }
+
+    /*
+                < 카탈로그를 불러와 목록과 맞추는 AsyncTask >
+     카탈로그를 불러오는 동안(중단된 저장 정리, 오래된 카탈로그의 스캔 포함) 목록은 스냅샷 또는 빈 목록을 보여준다.
+     불러온 항목들로 달라진 메모만 목록에 반영하고, 그 사이에 미뤄둔 메모들을 갱신한다.
+     미리보기가 없는 메모가 있으면 미리보기를 만든다.
+     */
+    private class ReconcileTask extends AsyncTask<Void, Void, ArrayList<NoteCatalog.Entry>> {
+        private ArrayList<String> m_titlesWithoutPreview;   // 미리보기가 없는 메모 제목들
+
+        @Override
+        protected ArrayList<NoteCatalog.Entry> doInBackground(Void... params) {
+            ArrayList<NoteCatalog.Entry> entries = getSavedNoteList();
+            m_titlesWithoutPreview = NoteStorage.getCatalog(ShowNoteListActivity.this).getTitlesWithoutPreview();
+            return entries;
+        }
+
+        @Override
+        protected void onPostExecute(ArrayList<NoteCatalog.Entry> entries) {
+            m_reconcileTask = null;
+            m_adapter.reconcile(entries);
+            for(String title : m_pendingTitles)
+                refreshNote(title);
+            m_pendingTitles.clear();
+            startPreviewTask(m_titlesWithoutPreview);
+        }
+    }
+
+    /*
+                < 미리보기가 없는 메모의 미리보기를 만드는 AsyncTask >
+     카탈로그를 다시 스캔했거나 이전 버전의 카탈로그에서 불러온 메모는 미리보기가 없다.
+     이런 메모들을 한 번씩 읽어 미리보기와 줄 수를 카탈로그에 기록하고, 기록된 항목을 모아서 목록에 반영한다.
+     */
+    private class PreviewTask extends AsyncTask<Void, NoteCatalog.Entry, Void> {
+        private static final int PUBLISH_INTERVAL = 32;     // 이 개수만큼 모이면 목록에 반영한다.
+
+        private final ArrayList<String> m_titles;   // 미리보기를 만들 메모 제목들
+
+        PreviewTask(ArrayList<String> titles) {
+            m_titles = titles;
+        }
+
+        @Override
+        protected Void doInBackground(Void... params) {
+            NoteStore store = NoteStorage.getStore(ShowNoteListActivity.this);
+            NoteCatalog catalog = NoteStorage.getCatalog(ShowNoteListActivity.this);
+            ArrayList<NoteCatalog.Entry> entries = new ArrayList<>();
+
+            for(String title : m_titles) {
+                if(isCancelled())
+                    break;
+
+                NoteCatalog.Entry entry = catalog.getEntry(title);
+                if(entry == null)
+                    continue;
+
+                NoteReader reader = null;
+                try {
+                    // 첫 페이지로 미리보기를 만들고, 줄 수는 끝까지 읽으며 센다.
+                    reader = new NoteReader(store.openNote(title));
+                    String page = reader.readPage();
+                    String preview = (page == null) ? "" : NoteCatalog.makePreview(page);
+                    int numOfNewlines = 0;
+                    boolean isEmpty = (page == null);
+                    while(page != null) {
+                        numOfNewlines += NoteCatalog.countNewlines(page);
+                        page = reader.readPage();
+                    }
+
+                    entry = catalog.setPreview(title, entry.lastModified, preview, isEmpty ? 0 : numOfNewlines + 1);
+                    if(entry != null)
+                        entries.add(entry);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    if(reader != null) {
+                        try {
+                            reader.close();
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+
+                if(entries.size() >= PUBLISH_INTERVAL) {
+                    publishProgress(entries.toArray(new NoteCatalog.Entry[entries.size()]));
+                    entries.clear();
+                }
+            }
+            if(!entries.isEmpty())
+                publishProgress(entries.toArray(new NoteCatalog.Entry[entries.size()]));
+            return null;
+        }
 
-        // 추출된 strAryTxtFile 배열 항목들의 ".txt" 확장자를 제거하여
-        // ArrayList인 listNoteTitle에 모두 추가한뒤 반환한다.
-        ArrayList<String> listNoteTitle = new ArrayList<>();
+        @Override
+        protected void onProgressUpdate(NoteCatalog.Entry... entries) {
+            // 그 사이에 삭제되거나 수정된 메모는 반영하지 않는다.
+            for(NoteCatalog.Entry entry : entries) {
+                NoteCatalog.Entry oldEntry = m_adapter.getEntry(entry.title);
+                if(oldEntry != null && oldEntry.lastModified == entry.lastModified)
+                    m_adapter.putNote(entry);
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Void result) {
+            m_previewTask = null;
+        }
+    }
+
+    /*
+                < 동기화 서버와 메모를 주고받는 AsyncTask >
+     NoteSyncEngine으로 바뀐 메모들을 보내고 원격 변경들을 받아 저장소에 반영한다.
+     목록 전체를 다시 만들지 않고 바뀐 메모들만 refreshNote()로 카탈로그와 맞춘다.
+     동기화가 도중에 실패해도 그 전까지 반영된 메모들은 목록에 반영한 뒤 실패를 알린다.
+     엑티비티가 종료된 뒤 끝나면 목록을 갱신하지 않는다. (다음 실행 때 카탈로그에서 불러온다.)
+     */
+    private class SyncTask extends AsyncTask<Void, Void, NoteSyncEngine.Result> {
+        @Override
+        protected NoteSyncEngine.Result doInBackground(Void... params) {
+            return NoteStorage.getSyncEngine(ShowNoteListActivity.this)
+                    .sync(NoteStorage.getWriter(ShowNoteListActivity.this));
+        }
+
+        @Override
+        protected void onPostExecute(NoteSyncEngine.Result result) {
+            for(String title : result.changedTitles)
+                refreshNote(title);
+
+            String message;
+            if(result.error != null)
+                message = "동기화 실패: " + result.error.getMessage();
+            else
+                message = "동기화 완료";
+            message += " (보냄 " + result.numOfSent + "개, 받음 " + result.numOfReceived + "개)";
+            if(result.numOfConflicts > 0)
+                message += " (충돌 " + result.numOfConflicts + "개는 새 메모로 저장)";
+            Toast.makeText(ShowNoteListActivity.this, message, Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    /*
+                < 메모를 압축 파일로 내보내거나 가져오는 AsyncTask >
+     NoteArchive를 이용해 백그라운드에서 모든 메모를 선택된 파일로 스트리밍하거나, 선택된 파일의 메모들을 묶음 단위로 저장한다.
+     가져온 메모들은 목록에 추가하고, 결과를 토스트메세지로 알린다.
+     */
+    private class ArchiveTask extends AsyncTask<Uri, Void, ArrayList<String>> {
+        private final boolean m_isExport;   // true이면 내보내기, false이면 가져오기
+        private int m_numOfExported;        // 내보낸 메모 수
+        private IOException m_error;        // 실패한 경우 원인
+
+        ArchiveTask(boolean isExport) {
+            m_isExport = isExport;
+        }
+
+        @Override
+        protected ArrayList<String> doInBackground(Uri... params) {
+            try {
+                if(m_isExport) {
+                    OutputStream out = getContentResolver().openOutputStream(params[0]);
+                    if(out == null)
+                        throw new IOException(params[0] + "을 열 수 없습니다.");
+                    m_numOfExported = NoteArchive.exportNotes(NoteStorage.getStore(ShowNoteListActivity.this),
+                            NoteStorage.getCatalog(ShowNoteListActivity.this).getEntries(), out);
+                    return new ArrayList<>();
+                } else {
+                    InputStream in = getContentResolver().openInputStream(params[0]);
+                    if(in == null)
+                        throw new IOException(params[0] + "을 열 수 없습니다.");
+                    return NoteArchive.importNotes(in, NoteStorage.getCatalog(ShowNoteListActivity.this),
+                            NoteStorage.getWriter(ShowNoteListActivity.this));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                m_error = e;
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(ArrayList<String> importedTitles) {
+            if(m_error != null) {
+                Toast.makeText(ShowNoteListActivity.this, (m_isExport ? "메모 내보내기 실패: " : "메모 가져오기 실패: ")
+                        + m_error.getMessage(), Toast.LENGTH_SHORT).show();
+                return;
+            }
+
+            if(m_isExport) {
+                Toast.makeText(ShowNoteListActivity.this, m_numOfExported + "개의 메모를 내보냈습니다.", Toast.LENGTH_SHORT).show();
+            } else {
+                for(String title : importedTitles)
+                    refreshNote(title);
+                Toast.makeText(ShowNoteListActivity.this, importedTitles.size() + "개의 메모를 가져왔습니다.", Toast.LENGTH_SHORT).show();
+            }
+        }
+    }
+
+    /*
+                < DialogFragment를 이용하여 여러 메모 삭제 확인 AlertDialog 생성 >
+    사용자가 삭제버튼을 누르면 deleteSelectedNotes()메소드를 호출해 선택된 메모들을 삭제한다.
+    취소버튼을 누르면 Dialog를 종료한다.
+    */
+    public static class DeleteNotesDialogFragment extends DialogFragment {
+        @Override
+        public Dialog onCreateDialog(Bundle savedInstanceState) {
+            final ShowNoteListActivity activity = (ShowNoteListActivity) getActivity();
+
+            // Builder 클래스를 이용하여 대화상자 구성
+            AlertDialog.Builder builder = new AlertDialog.Builder(activity);
+            builder.setTitle("메모 삭제 확인")
+                    .setMessage("선택한 메모 " + activity.m_selectedTitles.size() + "개를 삭제하시겠습니까?")
+                    .setPositiveButton("삭제", new DialogInterface.OnClickListener() {
+                        // 대화상자에서 삭제 버튼을 눌렀을 때, 선택된 메모들을 삭제한다.
+                        @Override
+                        public void onClick(DialogInterface dialog, int which) {
+                            activity.deleteSelectedNotes();
+                        }
+                    })
+                    .setNegativeButton("취소", new DialogInterface.OnClickListener() {
+                        // 대화상자에서 취소 버튼을 눌렀을 때
+                        @Override
+                        public void onClick(DialogInterface dialog, int which) {
+                            dialog.cancel();
+                        }
+                    });
+            // AlerDialog 생성 및 반환
+            return builder.create();
+        }
+    }
+
+    /*
+                < DialogFragment를 이용하여 검색어 입력 AlertDialog 생성 >
+    Builder 클래스를 이용하여 EditText가 있는 대화상자를 구성한다.
+    사용자가 검색버튼을 누르면 searchNotes()메소드를 호출해 메모를 검색한다.
+    */
+    public static class SearchDialogFragment extends DialogFragment {
+        @Override
+        public Dialog onCreateDialog(Bundle savedInstanceState) {
+            // 검색어를 입력받을 EditText 생성
+            final EditText etQuery = new EditText(getActivity());
+            etQuery.setSingleLine(true);
 
-        for(String filename : strAryTxtFile) {
-            filename = filename.replace(".txt","");
-            listNoteTitle.add(filename);
+            // Builder 클래스를 이용하여 대화상자 구성
+            AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
+            builder.setTitle("메모 검색")
+                    .setView(etQuery)
+                    .setPositiveButton("검색", new DialogInterface.OnClickListener() {
+                        // 대화상자에서 검색 버튼을 눌렀을 때, 입력된 검색어로 메모를 검색한다.
+                        @Override
+                        public void onClick(DialogInterface dialog, int which) {
+                            ((ShowNoteListActivity) getActivity()).searchNotes(etQuery.getText().toString());
+                        }
+                    })
+                    .setNegativeButton("취소", new DialogInterface.OnClickListener() {
+                        // 대화상자에서 취소 버튼을 눌렀을 때
+                        @Override
+                        public void onClick(DialogInterface dialog, int which) {
+                            dialog.cancel();
+                        }
+                    });
+            // AlerDialog 생성 및 반환
+            return builder.create();
         }
-        return listNoteTitle;
     }
 }
@@ -3,6 +3,7 @@ package io.github.sogoagain.simple_notepad;
 import android.app.Dialog;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v4.app.DialogFragment;
 import android.support.v7.app.AlertDialog;
@@ -10,22 +11,50 @@ import android.support.v7.app.AppCompatActivity;
 import android.text.method.ScrollingMovementMethod;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.ViewTreeObserver;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 
 /**
  * Created by sogoagain on 2016. 10. 29..
  */
 public class ViewNoteActivity extends AppCompatActivity {
+    static final int EDIT_NOTE = 1;
 
     private String m_strNoteTitle;  // ShowNoteListActivity로 부터 전달받은 메모 제목
     private String m_strFilename;   // 읽어야할 텍스트 파일의 파일 명 (m_strNoteTitle + .txt)
     private TextView m_tvTitle;     // 메모 제목을 보여주는 텍스트 뷰
     private TextView m_tvContent;   // 메모 내용을 보여주는 텍스트 뷰
 
+    private NoteReader m_noteReader;    // 메모 내용을 페이지 단위로 읽어주는 NoteReader
+    private OpenNoteTask m_openTask;    // 백그라운드에서 메모를 열고 첫 페이지를 읽는 AsyncTask (여는 중이 아니면 null)
+    private LoadPageTask m_loadTask;    // 백그라운드에서 다음 페이지를 읽는 AsyncTask (읽는 중이 아니면 null)
+    private boolean m_isDestroyed = false;  // 엑티비티가 종료되었는지 여부
+    private boolean m_isDeleting = false;   // 메모를 삭제하는 중인지 여부 (삭제하는 동안은 메뉴를 무시한다.)
+
+    private NoteContentCache.Stamp m_noteStamp;     // 메모의 수정 스탬프 (NoteContentCache의 키)
+    private String m_cachedBody;        // 캐시에서 찾은 메모 내용 (캐시에 없었으면 null)
+    private int m_cachedOffset;         // m_cachedBody 중 보여준 글자 수
+    private StringBuilder m_readBody;   // 캐시에 넣기 위해 모으는 읽은 내용 (캐시에 넣기에 너무 크면 null)
+
+    /*
+                < m_tvContent 스크롤 이벤트 리스너 >
+    사용자가 m_tvContent를 스크롤해서 남은 내용이 한 화면 이하가 되면 다음 페이지를 백그라운드에서 읽는다.
+    */
+    private ViewTreeObserver.OnScrollChangedListener onScrollContent = new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            if(m_tvContent.getLayout() == null)
+                return;
+
+            int remainHeight = m_tvContent.getLayout().getHeight() - m_tvContent.getScrollY() - m_tvContent.getHeight();
+            if(remainHeight < m_tvContent.getHeight())
+                loadNextPage();
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -52,42 +81,235 @@ public class ViewNoteActivity extends AppCompatActivity {
         // 메모 제목을 보여준다.
         m_tvTitle.setText(m_strNoteTitle);
 
-        // 내부저장소의 m_strFilename 파일을 읽어온다.
-        // 읽어온 내용을 m_tvContent 텍스트뷰를 통해 보여준다.
-        // 파일을 읽는데 실패하면 토스트메세지로 사용자에게 알려주고 Activity를 종료한다.
+        // 카탈로그를 불러오거나 메모 파일을 여는 데 시간이 걸릴 수 있으므로 OpenNoteTask로 백그라운드에서 연다.
+        m_openTask = new OpenNoteTask();
+        m_openTask.execute();
+    }
+
+    /*
+                < EditNoteActivity로 부터 전달된 결과를 처리하는 메소드 >
+    메모가 수정되었으면 엑티비티를 다시 만들어 수정된 메모를 처음부터 다시 읽는다.
+    */
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        if(requestCode == EDIT_NOTE && resultCode == RESULT_OK)
+            recreate();
+    }
+
+    // < onDestroy() >
+    // 여는 중이거나 읽는 중인 페이지가 없다면 바로 NoteReader를 닫는다.
+    // 여는 중이거나 읽는 중이라면 OpenNoteTask, LoadPageTask가 끝날 때 닫는다.
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        m_isDestroyed = true;
+        if(m_tvContent.getViewTreeObserver().isAlive())
+            m_tvContent.getViewTreeObserver().removeOnScrollChangedListener(onScrollContent);
+        if(m_openTask == null && m_loadTask == null)
+            closeNoteReader();
+    }
+
+    /*
+                < 다음 페이지를 읽기 시작하는 메소드 >
+    이미 읽는 중이거나 모두 읽었다면 아무것도 하지 않는다.
+    */
+    private void loadNextPage() {
+        if(m_openTask != null)
+            return;
+
+        // 캐시된 내용은 바로 이어 붙인다.
+        if(m_cachedBody != null) {
+            if(m_cachedOffset < m_cachedBody.length())
+                m_tvContent.append(nextCachedPage());
+            if(m_cachedOffset == m_cachedBody.length())
+                m_tvContent.getViewTreeObserver().removeOnScrollChangedListener(onScrollContent);
+            return;
+        }
+
+        if(m_loadTask != null || m_noteReader == null)
+            return;
+        m_loadTask = new LoadPageTask();
+        m_loadTask.execute();
+    }
+
+    /*
+                < 캐시된 내용에서 다음 페이지를 잘라내는 메소드 >
+    NoteReader와 같이 PAGE_SIZE 글자씩 자르고, 서로게이트 쌍이 나뉘지 않도록 한다.
+    */
+    private String nextCachedPage() {
+        int end = Math.min(m_cachedOffset + NoteReader.PAGE_SIZE, m_cachedBody.length());
+        if(end < m_cachedBody.length() && Character.isHighSurrogate(m_cachedBody.charAt(end - 1)))
+            end--;
+        String page = m_cachedBody.substring(m_cachedOffset, end);
+        m_cachedOffset = end;
+        return page;
+    }
+
+    /*
+                < 파일에서 페이지를 읽었을 때 호출되는 메소드 >
+    읽은 내용을 모으다가 메모 끝까지 읽으면 캐시에 넣는다.
+    캐시에 넣기에 너무 큰 메모는 모으지 않는다.
+    */
+    private void onPageRead(String page) {
+        if(m_readBody == null)
+            return;
+        if(page != null)
+            m_readBody.append(page);
+
+        NoteContentCache cache = NoteStorage.getContentCache(this);
+        if(m_readBody.length() > cache.getMaxChars() / 4) {
+            m_readBody = null;
+        } else if(m_noteReader.isEndOfNote()) {
+            cache.put(m_strNoteTitle, m_noteStamp, m_readBody.toString());
+            m_readBody = null;
+        }
+    }
+
+    /*
+                < NoteReader를 닫는 메소드 >
+    */
+    private void closeNoteReader() {
+        if(m_noteReader == null)
+            return;
         try {
-            // 파일을 열고 FileInputStream 객체를 연결
-            // available() 메소드를 이용하여 파일의 사이즈를 얻어 byte[] buffer 생성
-            FileInputStream fisNoteStream = openFileInput(m_strFilename);
-            byte[] buffer = new byte[fisNoteStream.available()];
-            fisNoteStream.read(buffer);
-
-            m_tvContent.setText(new String(buffer));
-            fisNoteStream.close();
+            m_noteReader.close();
         } catch (IOException e) {
-            Toast.makeText(this, m_strFilename+"을 읽는데 실패했습니다.",Toast.LENGTH_SHORT).show();
-            finish();
             e.printStackTrace();
         }
+        m_noteReader = null;
     }
 
     /*
-                < 메모 삭제 액션 항목 추가 메소드 >
+                < 메모를 백그라운드에서 여는 AsyncTask >
+    카탈로그에서 메모 항목을 찾아 수정 스탬프를 구하고, 최근에 본 메모라서 캐시에 내용이 남아있으면 파일을 다시 읽지 않는다.
+    캐시에 없으면 내부저장소의 메모를 열어 NoteReader를 연결하고 첫 페이지만 읽는다.
+    (파일 크기만큼 버퍼를 만들지 않고 PAGE_SIZE 글자씩 UTF-8로 디코딩한다.)
+    onPostExecute()에서 첫 페이지를 보여주고, 나머지는 사용자가 스크롤할 때 캐시된 내용에서 이어 붙이거나 백그라운드에서 이어서 읽는다.
+    끝까지 읽은 내용은 다음에 다시 열 때를 위해 캐시에 넣는다.
+    첫 페이지를 보여줄 때까지의 시간을 NoteMetrics에 기록한다.
+    파일을 읽는데 실패하면 토스트메세지로 사용자에게 알려주고 Activity를 종료한다.
+    */
+    private class OpenNoteTask extends AsyncTask<Void, Void, String> {
+        private final long m_start = NoteMetrics.start();
+        private IOException m_error;    // 메모를 여는 데 실패한 경우 원인
+
+        @Override
+        protected String doInBackground(Void... params) {
+            NoteContentCache cache = NoteStorage.getContentCache(ViewNoteActivity.this);
+            NoteCatalog.Entry entry = NoteStorage.getCatalog(ViewNoteActivity.this).getEntry(m_strNoteTitle);
+            if(entry != null) {
+                m_noteStamp = NoteContentCache.getStamp(entry);
+                m_cachedBody = cache.get(m_strNoteTitle, m_noteStamp);
+                m_readBody = new StringBuilder();
+            }
+            if(m_cachedBody != null)
+                return nextCachedPage();
+
+            try {
+                m_noteReader = new NoteReader(NoteStorage.getStore(ViewNoteActivity.this).openNote(m_strNoteTitle));
+                return m_noteReader.readPage();
+            } catch (IOException e) {
+                e.printStackTrace();
+                m_error = e;
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(String firstPage) {
+            m_openTask = null;
+            if(m_isDestroyed) {
+                closeNoteReader();
+                return;
+            }
+            if(m_error != null) {
+                Toast.makeText(ViewNoteActivity.this, m_strFilename+"을 읽는데 실패했습니다.",Toast.LENGTH_SHORT).show();
+                closeNoteReader();
+                finish();
+                return;
+            }
+
+            m_tvContent.setText(firstPage == null ? "" : firstPage);
+            NoteMetrics.stop(NoteMetrics.READ, m_start);
+
+            // 읽을 내용이 남아있으면 스크롤 리스너를 등록한다.
+            if(m_cachedBody != null) {
+                if(m_cachedOffset < m_cachedBody.length())
+                    m_tvContent.getViewTreeObserver().addOnScrollChangedListener(onScrollContent);
+                return;
+            }
+            onPageRead(firstPage);
+            if(m_noteReader.isEndOfNote())
+                closeNoteReader();
+            else
+                m_tvContent.getViewTreeObserver().addOnScrollChangedListener(onScrollContent);
+        }
+    }
+
+    /*
+                < 다음 페이지를 백그라운드에서 읽는 AsyncTask >
+    doInBackground()에서 한 페이지를 읽고 onPostExecute()에서 m_tvContent 뒤에 이어 붙인다.
+    메모 끝까지 읽었으면 스크롤 리스너를 해제하고 NoteReader를 닫는다.
+    */
+    private class LoadPageTask extends AsyncTask<Void, Void, String> {
+        @Override
+        protected String doInBackground(Void... params) {
+            try {
+                return m_noteReader.readPage();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(String page) {
+            m_loadTask = null;
+            if(m_isDestroyed) {
+                closeNoteReader();
+                return;
+            }
+
+            if(page != null)
+                m_tvContent.append(page);
+            onPageRead(page);
+
+            // 메모 끝까지 읽었거나 읽기에 실패했으면 더 이상 읽지 않는다.
+            if(page == null || m_noteReader.isEndOfNote()) {
+                m_tvContent.getViewTreeObserver().removeOnScrollChangedListener(onScrollContent);
+                closeNoteReader();
+            }
+        }
+    }
+
+    /*
+                < 메모 수정, 삭제 액션 항목 추가 메소드 >
     */
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
-        // 메뉴 리소스를 팽창하고 액션바에 메모 삭제 항목을 추가한다.
+        // 메뉴 리소스를 팽창하고 액션바에 메모 수정, 삭제 항목을 추가한다.
         getMenuInflater().inflate(R.menu.view_action_bar, menu);
         return super.onCreateOptionsMenu(menu);
     }
 
     /*
-                < 메모 삭제 액션 항목이 클릭되었을때 이벤트 처리 메소드 >
+                < 메모 수정, 삭제 액션 항목이 클릭되었을때 이벤트 처리 메소드 >
+    메모 수정 액션 항목이 클릭되면 EditNoteActivity를 수정 모드로 실행한다.
     메모 삭제 액션 항목이 클릭되면 삭제를 확인하는 대화상자를 띄운다.
+    메모를 삭제하는 중이면 아무것도 하지 않는다.
     */
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
+        if(m_isDeleting)
+            return true;
+
         switch(item.getItemId()) {
+            // 메모 수정 액션 항목이 클릭되면 수정할 메모 제목을 EditNoteActivity에 전달한다.
+            case R.id.action_editNote:
+                Intent intent = new Intent(this, EditNoteActivity.class);
+                intent.putExtra("EDIT_NOTE_TITLE", m_strNoteTitle);
+                startActivityForResult(intent, EDIT_NOTE);
+                return true;
             // 메모 삭제 액션 항목이 클릭되면 경고 대화상자를 띄운다.
             case R.id.action_deleteNote:
                 DialogFragment myFragment = new DeleteDialogFragment();
@@ -100,23 +322,43 @@ public class ViewNoteActivity extends AppCompatActivity {
 
     /*
                 < 해당 메모를 삭제하는 메소드 >
-    삭제할 메모의 파일명을 받아와 deleteFile() 메소드를 이용해 삭제한다.
+    삭제하는 동안 메뉴를 무시하도록 표시하고 DeleteNoteTask로 백그라운드에서 메모를 삭제한다.
+    */
+    private void deleteCurrentNote() {
+        if(m_isDeleting)
+            return;
+        m_isDeleting = true;
+        new DeleteNoteTask().execute(m_strNoteTitle);
+    }
+
+    /*
+                < 메모를 백그라운드에서 삭제하는 AsyncTask >
+    NoteWriter를 통해 메모를 삭제하고 카탈로그와 검색 색인에서도 지운다.
+    (잠금, 선행 기록, 카탈로그와 캐시 반영, 동기화 엔진에 알리는 것은 NoteWriter가 한다.)
     삭제에 성공하면 토스트 메세지로 삭제 성공을 알리고 인텐트 객체를 통해 삭제한 메모 제목을 ShowNoteListActivity에 전달한다.
     삭제에 실패하면 토스트 메세지로 삭제 실패를 알린다.
     삭제 시도 후 엑티비티를 종료한다.
     */
-    private void deleteCurrentNote() {
-        if(deleteFile(m_strFilename)) {
-            Toast.makeText(this, m_strNoteTitle + " 삭제", Toast.LENGTH_SHORT).show();
-
-            Intent intent = new Intent();
-            intent.putExtra("DELETE_NOTE_TITLE",m_strNoteTitle);
-            setResult(RESULT_OK, intent);
+    private class DeleteNoteTask extends AsyncTask<String, Void, Boolean> {
+        @Override
+        protected Boolean doInBackground(String... params) {
+            return !NoteStorage.getWriter(ViewNoteActivity.this).deleteNotes(params, false).isEmpty();
         }
-        else {
-            Toast.makeText(this, m_strNoteTitle + " 삭제 실패", Toast.LENGTH_SHORT).show();
+
+        @Override
+        protected void onPostExecute(Boolean isDeleted) {
+            if(isDeleted) {
+                Toast.makeText(ViewNoteActivity.this, m_strNoteTitle + " 삭제", Toast.LENGTH_SHORT).show();
+
+                Intent intent = new Intent();
+                intent.putExtra("DELETE_NOTE_TITLE", m_strNoteTitle);
+                setResult(RESULT_OK, intent);
+            }
+            else {
+                Toast.makeText(ViewNoteActivity.this, m_strNoteTitle + " 삭제 실패", Toast.LENGTH_SHORT).show();
+            }
+            finish();
         }
-        finish();
     }
 
     /*